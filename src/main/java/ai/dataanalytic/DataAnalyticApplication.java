@@ -3,8 +3,10 @@ package ai.dataanalytic;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class DataAnalyticApplication {
 
     public static void main(String[] args) {
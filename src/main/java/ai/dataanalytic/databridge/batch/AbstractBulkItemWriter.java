@@ -0,0 +1,60 @@
+package ai.dataanalytic.databridge.batch;
+
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Base of the writers that load a chunk into the destination table in one round trip instead of
+ * one batched statement per row. Destination columns are matched to source positions by name once per
+ * source schema; rows are then read by position.
+ */
+public abstract class AbstractBulkItemWriter implements ItemWriter<TransferRow> {
+
+    protected final JdbcTemplate jdbcTemplate;
+
+    protected final SqlDialect dialect;
+
+    protected final String tableName;
+
+    protected final List<String> columns;
+
+    // Última correspondencia calculada. El writer lo comparten las particiones del paso y cada una tiene
+    // su propio esquema, pero todos son iguales: se compara por valor para no recalcularla al alternar
+    private volatile Mapping mapping;
+
+    private record Mapping(RowSchema schema, int[] positions) {
+    }
+
+    protected AbstractBulkItemWriter(JdbcTemplate jdbcTemplate, SqlDialect dialect, String tableName, List<String> columns) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = dialect;
+        this.tableName = tableName;
+        this.columns = columns;
+    }
+
+    /**
+     * Returns {@code (col1, col2, ...)} with the destination columns quoted for the dialect.
+     */
+    protected String quotedColumnList() {
+        return columns.stream().map(dialect::quoteIdentifier).collect(Collectors.joining(", ", "(", ")"));
+    }
+
+    /**
+     * Returns, for each destination column, its position in the source rows.
+     *
+     * @throws IllegalStateException if the source and destination columns do not match
+     * @see RowSchema#destinationPositionsOf(List)
+     */
+    protected int[] positions(RowSchema schema) {
+        Mapping current = mapping;
+        if (current == null || !current.schema().equals(schema)) {
+            current = new Mapping(schema, schema.destinationPositionsOf(columns));
+            mapping = current;
+        }
+        return current.positions();
+    }
+}
@@ -0,0 +1,94 @@
+package ai.dataanalytic.databridge.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.context.RepeatContextSupport;
+import org.springframework.batch.repeat.policy.CompletionPolicySupport;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chunk completion policy that adapts the chunk size to the time a chunk takes to read, write and commit.
+ * The size doubles while chunks finish well under the target latency and halves when they exceed it,
+ * staying between the configured bounds. Partitions of the same step share the size.
+ * Must also be registered as a {@link ChunkListener} of the step so it can time the chunks.
+ */
+@Slf4j
+public class AdaptiveChunkCompletionPolicy extends CompletionPolicySupport implements ChunkListener {
+
+    private static final String START_ATTRIBUTE = AdaptiveChunkCompletionPolicy.class.getName() + ".start";
+
+    private final AtomicInteger chunkSize;
+
+    private final int minChunkSize;
+
+    private final int maxChunkSize;
+
+    private final long targetNanos;
+
+    public AdaptiveChunkCompletionPolicy(int initialChunkSize, int minChunkSize, int maxChunkSize, long targetMillis) {
+        this.minChunkSize = Math.max(1, minChunkSize);
+        this.maxChunkSize = Math.max(this.minChunkSize, maxChunkSize);
+        this.chunkSize = new AtomicInteger(Math.max(this.minChunkSize, Math.min(initialChunkSize, this.maxChunkSize)));
+        this.targetNanos = targetMillis * 1_000_000;
+    }
+
+    /**
+     * Counts the items of one chunk against the size in force when the chunk started.
+     */
+    private static class SizedContext extends RepeatContextSupport {
+
+        private final int size;
+
+        SizedContext(RepeatContext parent, int size) {
+            super(parent);
+            this.size = size;
+        }
+    }
+
+    @Override
+    public RepeatContext start(RepeatContext parent) {
+        return new SizedContext(parent, chunkSize.get());
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context) {
+        return context.getStartedCount() >= ((SizedContext) context).size;
+    }
+
+    public int getChunkSize() {
+        return chunkSize.get();
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        context.setAttribute(START_ATTRIBUTE, System.nanoTime());
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        Object start = context.getAttribute(START_ATTRIBUTE);
+        if (!(start instanceof Long startNanos)) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        int current = chunkSize.get();
+        int next = current;
+        if (elapsed > targetNanos) {
+            next = Math.max(minChunkSize, current / 2);
+        } else if (elapsed < targetNanos / 2) {
+            next = (int) Math.min(maxChunkSize, current * 2L);
+        }
+        if (next != current && chunkSize.compareAndSet(current, next)) {
+            log.debug("Chunk took {} ms; chunk size {} -> {}", elapsed / 1_000_000, current, next);
+        }
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        // A failed chunk says nothing about the latency of a healthy one
+        context.removeAttribute(START_ATTRIBUTE);
+    }
+}
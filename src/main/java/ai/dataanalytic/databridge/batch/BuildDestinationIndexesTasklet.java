@@ -0,0 +1,99 @@
+package ai.dataanalytic.databridge.batch;
+
+import ai.dataanalytic.querybridge.dto.SchemaSnapshot;
+import ai.dataanalytic.querybridge.service.SchemaDiscoveryService;
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Last step of a transfer that created its destination table: adds the primary key, the indexes and the
+ * foreign keys of the source table, then turns logging back on. Building each index once over the loaded
+ * rows is much cheaper than maintaining it on every insert. Keys and indexes already present are skipped,
+ * so the step can run again after a failure. Foreign keys to tables missing in the destination are left out.
+ */
+@Slf4j
+public class BuildDestinationIndexesTasklet implements Tasklet {
+
+    private final SchemaDiscoveryService schemaDiscoveryService;
+
+    private final JdbcTemplate sourceJdbcTemplate;
+
+    private final JdbcTemplate destinationJdbcTemplate;
+
+    private final SqlDialect destinationDialect;
+
+    private final String tableName;
+
+    public BuildDestinationIndexesTasklet(SchemaDiscoveryService schemaDiscoveryService, JdbcTemplate sourceJdbcTemplate,
+                                          JdbcTemplate destinationJdbcTemplate, SqlDialect destinationDialect, String tableName) {
+        this.schemaDiscoveryService = schemaDiscoveryService;
+        this.sourceJdbcTemplate = sourceJdbcTemplate;
+        this.destinationJdbcTemplate = destinationJdbcTemplate;
+        this.destinationDialect = destinationDialect;
+        this.tableName = tableName;
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) {
+        ExecutionContext jobContext = chunkContext.getStepContext().getStepExecution().getJobExecution().getExecutionContext();
+        if (!jobContext.containsKey(CreateDestinationTableTasklet.CREATED)) {
+            return RepeatStatus.FINISHED;
+        }
+        SchemaSnapshot.Table source = schemaDiscoveryService.getTableSnapshot(tableName, sourceJdbcTemplate);
+        SchemaSnapshot.Table destination = schemaDiscoveryService.getTableSnapshot(tableName, destinationJdbcTemplate);
+        if (source == null || destination == null) {
+            throw new IllegalStateException("Table not found while building indexes: " + tableName);
+        }
+
+        if (!source.getPrimaryKey().isEmpty() && destination.getPrimaryKey().isEmpty()) {
+            execute(destinationDialect.addPrimaryKeySql(tableName, source.getPrimaryKey()));
+        }
+
+        Set<String> existingIndexes = new HashSet<>();
+        destination.getIndexes().forEach(index -> existingIndexes.add(index.getName().toLowerCase()));
+        for (SchemaSnapshot.Index index : source.getIndexes()) {
+            // The index behind the primary key comes with it; expression indexes report no columns
+            if ((index.isUnique() && index.getColumns().equals(source.getPrimaryKey()))
+                    || index.getColumns().contains(null)
+                    || existingIndexes.contains(index.getName().toLowerCase())) {
+                continue;
+            }
+            execute(destinationDialect.createIndexSql(index.getName(), tableName, index.getColumns(), index.isUnique()));
+        }
+
+        Set<String> existingForeignKeys = new HashSet<>();
+        destination.getForeignKeys().forEach(fk -> existingForeignKeys.add(String.valueOf(fk.getName()).toLowerCase()));
+        for (SchemaSnapshot.ForeignKey foreignKey : source.getForeignKeys()) {
+            String name = foreignKey.getName() != null ? foreignKey.getName() : "fk_" + tableName + "_" + foreignKey.getReferencedTable();
+            if (existingForeignKeys.contains(name.toLowerCase())) {
+                continue;
+            }
+            try {
+                execute(destinationDialect.addForeignKeySql(tableName, name, foreignKey.getColumns(),
+                        foreignKey.getReferencedTable(), foreignKey.getReferencedColumns()));
+            } catch (DataAccessException e) {
+                log.warn("Foreign key {} of table {} not created: {}", name, tableName, e.getMessage());
+            }
+        }
+
+        if (Boolean.TRUE.equals(jobContext.get(CreateDestinationTableTasklet.UNLOGGED))) {
+            execute(destinationDialect.loggedTableSql(tableName));
+        }
+        return RepeatStatus.FINISHED;
+    }
+
+    private void execute(String sql) {
+        log.info("Finishing destination table: {}", sql);
+        destinationJdbcTemplate.execute(sql);
+    }
+}
@@ -0,0 +1,30 @@
+package ai.dataanalytic.databridge.batch;
+
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Picks the bulk writer for a destination from its SQL dialect.
+ */
+public class BulkItemWriters {
+
+    private BulkItemWriters() {}
+
+    /**
+     * @param mysqlLocalInfile whether MySQL destinations may be loaded with {@code LOAD DATA LOCAL INFILE}
+     */
+    public static ItemWriter<TransferRow> forDialect(JdbcTemplate jdbcTemplate, SqlDialect dialect, String tableName,
+                                                   List<String> columns, boolean mysqlLocalInfile) {
+        return switch (dialect.getName()) {
+            case "postgresql" -> new PostgresCopyItemWriter(jdbcTemplate, dialect, tableName, columns);
+            case "sqlserver" -> new SqlServerBulkCopyItemWriter(jdbcTemplate, dialect, tableName, columns);
+            case "mysql" -> mysqlLocalInfile
+                    ? new MySqlLoadDataItemWriter(jdbcTemplate, dialect, tableName, columns)
+                    : new MultiRowInsertItemWriter(jdbcTemplate, dialect, tableName, columns);
+            default -> new MultiRowInsertItemWriter(jdbcTemplate, dialect, tableName, columns);
+        };
+    }
+}
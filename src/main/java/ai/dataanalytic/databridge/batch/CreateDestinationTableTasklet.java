@@ -0,0 +1,85 @@
+package ai.dataanalytic.databridge.batch;
+
+import ai.dataanalytic.querybridge.dto.SchemaSnapshot;
+import ai.dataanalytic.querybridge.service.SchemaDiscoveryService;
+import ai.dataanalytic.sharedlibrary.dialect.ColumnDefinition;
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * First step of a transfer that may create its destination: when the table does not exist yet it is created
+ * from the source metadata, with columns only and unlogged where the engine supports it, so the load does not
+ * maintain indexes or write-ahead log row by row. {@link BuildDestinationIndexesTasklet} adds the keys and
+ * indexes once the rows are in. The job execution context records whether the table was created here.
+ */
+@Slf4j
+public class CreateDestinationTableTasklet implements Tasklet {
+
+    public static final String CREATED = "destination.created";
+
+    public static final String UNLOGGED = "destination.unlogged";
+
+    private final SchemaDiscoveryService schemaDiscoveryService;
+
+    private final JdbcTemplate sourceJdbcTemplate;
+
+    private final JdbcTemplate destinationJdbcTemplate;
+
+    private final SqlDialect destinationDialect;
+
+    private final String tableName;
+
+    private final boolean unlogged;
+
+    private final boolean primaryKeyUpFront;
+
+    /**
+     * @param primaryKeyUpFront add the primary key with the table instead of after the load; upserts need it
+     */
+    public CreateDestinationTableTasklet(SchemaDiscoveryService schemaDiscoveryService, JdbcTemplate sourceJdbcTemplate,
+                                         JdbcTemplate destinationJdbcTemplate, SqlDialect destinationDialect,
+                                         String tableName, boolean unlogged, boolean primaryKeyUpFront) {
+        this.schemaDiscoveryService = schemaDiscoveryService;
+        this.sourceJdbcTemplate = sourceJdbcTemplate;
+        this.destinationJdbcTemplate = destinationJdbcTemplate;
+        this.destinationDialect = destinationDialect;
+        this.tableName = tableName;
+        this.unlogged = unlogged;
+        this.primaryKeyUpFront = primaryKeyUpFront;
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) {
+        if (schemaDiscoveryService.getTableSnapshot(tableName, destinationJdbcTemplate) != null) {
+            log.info("Destination table {} already exists", tableName);
+            return RepeatStatus.FINISHED;
+        }
+        SchemaSnapshot.Table source = schemaDiscoveryService.getTableSnapshot(tableName, sourceJdbcTemplate);
+        if (source == null) {
+            throw new IllegalStateException("Source table not found: " + tableName);
+        }
+        List<ColumnDefinition> columns = source.getColumns().stream()
+                .map(column -> new ColumnDefinition(column.getName(), column.getSqlType(), column.getSize(),
+                        column.getDecimalDigits(), column.isNullable()))
+                .toList();
+        String sql = destinationDialect.createTableSql(tableName, columns, unlogged);
+        log.info("Creating destination table: {}", sql);
+        destinationJdbcTemplate.execute(sql);
+        if (primaryKeyUpFront && !source.getPrimaryKey().isEmpty()) {
+            destinationJdbcTemplate.execute(destinationDialect.addPrimaryKeySql(tableName, source.getPrimaryKey()));
+        }
+
+        ExecutionContext jobContext = chunkContext.getStepContext().getStepExecution().getJobExecution().getExecutionContext();
+        jobContext.put(CREATED, true);
+        jobContext.put(UNLOGGED, unlogged && destinationDialect.loggedTableSql(tableName) != null);
+        return RepeatStatus.FINISHED;
+    }
+}
@@ -0,0 +1,161 @@
+package ai.dataanalytic.databridge.batch;
+
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reads a partition in key order, one page at a time, and checkpoints the key of the last row of every
+ * committed chunk in the step execution context. A restarted partition continues after that key instead of
+ * reading the table again from the start.
+ * <p>
+ * The checkpoint is committed with the job repository, not with the destination, so a failure between the
+ * two can still write the last chunk twice; upserting writers make that harmless.
+ */
+@Slf4j
+public class KeysetTransferItemReader implements ItemStreamReader<TransferRow> {
+
+    /**
+     * Name the data transfer job gives the reader of checkpointed partitions.
+     */
+    public static final String DEFAULT_NAME = "keysetReader";
+
+    private static final String LAST_KEY = "lastKey";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final SqlDialect dialect;
+
+    private final String tableName;
+
+    private final List<String> keyColumns;
+
+    private final List<String> conditions;
+
+    private final List<Object> parameters;
+
+    private final int pageSize;
+
+    private final String name;
+
+    private final TransferRowMapper rowMapper = new TransferRowMapper();
+
+    private int[] keyPositions;
+
+    private ArrayList<Object> lastKey;
+
+    private Iterator<TransferRow> page;
+
+    private boolean exhausted;
+
+    /**
+     * @param conditions predicates every row must match (partition, watermark), with their {@code parameters}
+     * @param name       prefix of the keys in the execution context, unique within the step
+     */
+    public KeysetTransferItemReader(JdbcTemplate jdbcTemplate, SqlDialect dialect, String tableName, List<String> keyColumns,
+                                    List<String> conditions, List<Object> parameters, int pageSize, String name) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = dialect;
+        this.tableName = tableName;
+        this.keyColumns = keyColumns;
+        this.conditions = conditions;
+        this.parameters = parameters;
+        this.pageSize = Math.max(1, pageSize);
+        this.name = name;
+    }
+
+    /**
+     * Tells whether a step execution context holds the checkpoint of a reader with the given name, i.e.
+     * whether a restart of the partition continues after the rows already committed.
+     */
+    public static boolean hasCheckpoint(ExecutionContext executionContext, String name) {
+        return executionContext.containsKey(name + "." + LAST_KEY);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        String key = name + "." + LAST_KEY;
+        if (executionContext.containsKey(key)) {
+            lastKey = (ArrayList<Object>) executionContext.get(key);
+            log.info("Resuming {} after key {}", tableName, lastKey);
+        }
+    }
+
+    @Override
+    public TransferRow read() {
+        if (page == null || !page.hasNext()) {
+            if (exhausted) {
+                return null;
+            }
+            List<TransferRow> rows = fetchPage();
+            exhausted = rows.size() < pageSize;
+            page = rows.iterator();
+            if (!page.hasNext()) {
+                return null;
+            }
+        }
+        TransferRow row = page.next();
+        if (keyPositions == null) {
+            keyPositions = row.getSchema().positionsOf(keyColumns);
+        }
+        ArrayList<Object> key = new ArrayList<>(keyPositions.length);
+        for (int position : keyPositions) {
+            key.add(row.get(position));
+        }
+        lastKey = key;
+        return row;
+    }
+
+    /**
+     * Called before each chunk commits: the last row read is the last row of that chunk.
+     */
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (lastKey != null) {
+            executionContext.put(name + "." + LAST_KEY, checkpointable(lastKey));
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        page = null;
+        exhausted = false;
+    }
+
+    private List<TransferRow> fetchPage() {
+        List<String> where = new ArrayList<>(conditions);
+        List<Object> arguments = new ArrayList<>(parameters);
+        if (lastKey != null) {
+            where.add("(" + dialect.keysetPredicate(keyColumns) + ")");
+            arguments.addAll(dialect.keysetParameters(lastKey));
+        }
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(tableName);
+        if (!where.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", where));
+        }
+        sql.append(" ORDER BY ").append(String.join(", ", keyColumns.stream().map(dialect::quoteIdentifier).toList()));
+        arguments.add(pageSize);
+        return jdbcTemplate.query(dialect.limit(sql.toString(), true), rowMapper, arguments.toArray());
+    }
+
+    /**
+     * Keeps key values the execution context can serialize; other driver types are stored as text,
+     * which every engine compares against its own key type.
+     */
+    private static ArrayList<Object> checkpointable(List<Object> key) {
+        ArrayList<Object> values = new ArrayList<>(key.size());
+        for (Object value : key) {
+            values.add(value == null || value instanceof Serializable ? value : value.toString());
+        }
+        return values;
+    }
+}
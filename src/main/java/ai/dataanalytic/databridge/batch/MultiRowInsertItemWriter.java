@@ -0,0 +1,46 @@
+package ai.dataanalytic.databridge.batch;
+
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import org.springframework.batch.item.Chunk;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Generic bulk writer: multi-row {@code INSERT ... VALUES (...), (...)} statements (or {@code INSERT ALL} on Oracle),
+ * each as large as the dialect's bind parameter and row limits allow.
+ */
+public class MultiRowInsertItemWriter extends AbstractBulkItemWriter {
+
+    private final int rowsPerStatement;
+
+    private final String fullStatement;
+
+    public MultiRowInsertItemWriter(JdbcTemplate jdbcTemplate, SqlDialect dialect, String tableName, List<String> columns) {
+        super(jdbcTemplate, dialect, tableName, columns);
+        this.rowsPerStatement = Math.max(1, Math.min(dialect.maxInsertRows(), dialect.maxBindParameters() / Math.max(1, columns.size())));
+        this.fullStatement = dialect.insertSql(tableName, columns, rowsPerStatement);
+    }
+
+    @Override
+    public void write(Chunk<? extends TransferRow> chunk) {
+        List<? extends TransferRow> items = chunk.getItems();
+        if (items.isEmpty()) {
+            return;
+        }
+        int[] positions = positions(items.get(0).getSchema());
+        for (int start = 0; start < items.size(); start += rowsPerStatement) {
+            int rows = Math.min(rowsPerStatement, items.size() - start);
+            Object[] parameters = new Object[rows * positions.length];
+            int p = 0;
+            for (int r = start; r < start + rows; r++) {
+                TransferRow row = items.get(r);
+                for (int position : positions) {
+                    parameters[p++] = row.get(position);
+                }
+            }
+            String sql = rows == rowsPerStatement ? fullStatement : dialect.insertSql(tableName, columns, rows);
+            jdbcTemplate.update(sql, parameters);
+        }
+    }
+}
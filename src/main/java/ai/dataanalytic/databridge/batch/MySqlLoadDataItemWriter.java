@@ -0,0 +1,128 @@
+package ai.dataanalytic.databridge.batch;
+
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import com.mysql.cj.jdbc.JdbcStatement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.item.Chunk;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * MySQL bulk writer: loads each chunk with {@code LOAD DATA LOCAL INFILE} from an in-memory stream.
+ * The destination connection must allow local infile ({@code allowLoadLocalInfile=true}); when the server or
+ * the driver rejects it the writer switches to multi-row inserts for the rest of the step.
+ */
+@Slf4j
+public class MySqlLoadDataItemWriter extends AbstractBulkItemWriter {
+
+    private final String loadSql;
+
+    private final MultiRowInsertItemWriter fallback;
+
+    private volatile boolean useFallback;
+
+    public MySqlLoadDataItemWriter(JdbcTemplate jdbcTemplate, SqlDialect dialect, String tableName, List<String> columns) {
+        super(jdbcTemplate, dialect, tableName, columns);
+        this.loadSql = "LOAD DATA LOCAL INFILE 'chunk' INTO TABLE " + tableName + " CHARACTER SET utf8mb4"
+                + " FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' "
+                + quotedColumnList();
+        this.fallback = new MultiRowInsertItemWriter(jdbcTemplate, dialect, tableName, columns);
+    }
+
+    @Override
+    public void write(Chunk<? extends TransferRow> chunk) {
+        if (!useFallback) {
+            byte[] data = encode(chunk.getItems());
+            try {
+                jdbcTemplate.execute((Connection con) -> {
+                    try (Statement statement = con.createStatement()) {
+                        statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(new ByteArrayInputStream(data));
+                        return statement.executeUpdate(loadSql);
+                    }
+                });
+                return;
+            } catch (DataAccessException e) {
+                if (!isLocalInfileRejected(e)) {
+                    throw e;
+                }
+                log.warn("LOAD DATA LOCAL INFILE is not allowed on the destination; using multi-row inserts for table {}", tableName);
+                useFallback = true;
+            }
+        }
+        fallback.write(chunk);
+    }
+
+    private static boolean isLocalInfileRejected(DataAccessException e) {
+        String message = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase();
+        return message.contains("local infile") || message.contains("local data") || message.contains("loading local data");
+    }
+
+    private byte[] encode(List<? extends TransferRow> items) {
+        return encode(items, items.isEmpty() ? new int[0] : positions(items.get(0).getSchema()));
+    }
+
+    /**
+     * Encodes the rows in the format declared by the LOAD DATA statement: {@code \N} for nulls, every other value
+     * enclosed in double quotes with backslash escapes. Booleans are written as 1 and 0, binary values as their
+     * raw bytes.
+     *
+     * @param positions position in the rows of each destination column
+     */
+    static byte[] encode(List<? extends TransferRow> items, int[] positions) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(items.size() * positions.length * 16);
+        for (TransferRow row : items) {
+            for (int i = 0; i < positions.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                Object value = row.get(positions[i]);
+                if (value == null) {
+                    out.write('\\');
+                    out.write('N');
+                    continue;
+                }
+                byte[] bytes;
+                if (value instanceof byte[] raw) {
+                    bytes = raw;
+                } else if (value instanceof Boolean bool) {
+                    bytes = bool ? new byte[]{'1'} : new byte[]{'0'};
+                } else {
+                    bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                }
+                out.write('"');
+                for (byte b : bytes) {
+                    switch (b) {
+                        case '\\', '"' -> {
+                            out.write('\\');
+                            out.write(b);
+                        }
+                        case 0 -> {
+                            out.write('\\');
+                            out.write('0');
+                        }
+                        // Los saltos de línea escapados no se confunden con el fin de fila
+                        case '\n' -> {
+                            out.write('\\');
+                            out.write('n');
+                        }
+                        case '\r' -> {
+                            out.write('\\');
+                            out.write('r');
+                        }
+                        default -> out.write(b);
+                    }
+                }
+                out.write('"');
+            }
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+}
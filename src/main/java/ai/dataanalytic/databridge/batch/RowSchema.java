@@ -0,0 +1,127 @@
+package ai.dataanalytic.databridge.batch;
+
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Column names and JDBC types of the rows read by one reader, resolved once from the result set metadata
+ * and shared by every {@link TransferRow} it returns. Each partition has its own reader and so its own
+ * instance; schemas with the same columns are equal, which lets a writer shared by the partitions reuse
+ * one column mapping.
+ */
+public final class RowSchema {
+
+    private final String[] names;
+
+    private final int[] sqlTypes;
+
+    private final int hash;
+
+    public RowSchema(String[] names, int[] sqlTypes) {
+        this.names = names;
+        this.sqlTypes = sqlTypes;
+        this.hash = 31 * Arrays.hashCode(names) + Arrays.hashCode(sqlTypes);
+    }
+
+    public static RowSchema of(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] names = new String[columnCount];
+        int[] sqlTypes = new int[columnCount];
+        for (int i = 1; i <= columnCount; i++) {
+            names[i - 1] = metaData.getColumnName(i);
+            sqlTypes[i - 1] = metaData.getColumnType(i);
+        }
+        return new RowSchema(names, sqlTypes);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public int getSqlType(int index) {
+        return sqlTypes[index];
+    }
+
+    public List<String> getNames() {
+        return Arrays.asList(names);
+    }
+
+    /**
+     * Returns the position of a column, ignoring case, or -1 if the schema has no such column.
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Maps each of the given columns to its position in this schema (-1 when missing).
+     */
+    public int[] positionsOf(List<String> columns) {
+        int[] positions = new int[columns.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = indexOf(columns.get(i));
+        }
+        return positions;
+    }
+
+    /**
+     * Maps each destination column to its position in this schema. Fails when a destination column is not
+     * in the source, since binding it to NULL would override the column default, and when a source column
+     * has no destination column, since its values would be lost. Writers resolve this once per schema and
+     * then read values by position.
+     *
+     * @throws IllegalStateException if the source and destination columns do not match
+     */
+    public int[] destinationPositionsOf(List<String> columns) {
+        int[] positions = positionsOf(columns);
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i] < 0) {
+                missing.add(columns.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Destination columns " + missing + " are not in the source rows");
+        }
+        List<String> unmatched = new ArrayList<>();
+        for (String name : names) {
+            // La columna de número de fila que añaden algunos dialectos al paginar no es un dato
+            if (!SqlDialect.ROW_NUMBER_ALIAS.equalsIgnoreCase(name)
+                    && columns.stream().noneMatch(name::equalsIgnoreCase)) {
+                unmatched.add(name);
+            }
+        }
+        if (!unmatched.isEmpty()) {
+            throw new IllegalStateException("Source columns " + unmatched + " are not in the destination table");
+        }
+        return positions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof RowSchema other && hash == other.hash
+                && Arrays.equals(names, other.names) && Arrays.equals(sqlTypes, other.sqlTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
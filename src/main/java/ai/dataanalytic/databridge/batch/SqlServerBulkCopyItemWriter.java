@@ -0,0 +1,144 @@
+package ai.dataanalytic.databridge.batch;
+
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkData;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
+import com.microsoft.sqlserver.jdbc.SQLServerConnection;
+import org.springframework.batch.item.Chunk;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.ResultSetMetaData;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SQL Server bulk writer: sends each chunk through {@link SQLServerBulkCopy}, which uses the TDS bulk load
+ * protocol instead of one INSERT per row. Column types are read once from the destination table.
+ */
+public class SqlServerBulkCopyItemWriter extends AbstractBulkItemWriter {
+
+    private final int[] types;
+
+    private final int[] precisions;
+
+    private final int[] scales;
+
+    public SqlServerBulkCopyItemWriter(JdbcTemplate jdbcTemplate, SqlDialect dialect, String tableName, List<String> columns) {
+        super(jdbcTemplate, dialect, tableName, columns);
+        this.types = new int[columns.size()];
+        this.precisions = new int[columns.size()];
+        this.scales = new int[columns.size()];
+        jdbcTemplate.query("SELECT " + String.join(", ", columns.stream().map(dialect::quoteIdentifier).toList())
+                + " FROM " + tableName + " WHERE 1=0", rs -> {
+            ResultSetMetaData metaData = rs.getMetaData();
+            for (int i = 0; i < columns.size(); i++) {
+                types[i] = metaData.getColumnType(i + 1);
+                precisions[i] = metaData.getPrecision(i + 1);
+                scales[i] = metaData.getScale(i + 1);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void write(Chunk<? extends TransferRow> chunk) {
+        List<? extends TransferRow> items = chunk.getItems();
+        if (items.isEmpty()) {
+            return;
+        }
+        int[] positions = positions(items.get(0).getSchema());
+        jdbcTemplate.execute((Connection con) -> {
+            try (SQLServerBulkCopy bulkCopy = new SQLServerBulkCopy(con.unwrap(SQLServerConnection.class))) {
+                SQLServerBulkCopyOptions options = new SQLServerBulkCopyOptions();
+                options.setBatchSize(items.size());
+                options.setBulkCopyTimeout(0);
+                options.setKeepNulls(true);
+                bulkCopy.setBulkCopyOptions(options);
+                bulkCopy.setDestinationTableName(tableName);
+                for (String column : columns) {
+                    bulkCopy.addColumnMapping(column, column);
+                }
+                bulkCopy.writeToServer(new ChunkBulkData(columns, types, precisions, scales, items, positions));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Exposes the rows of a chunk to the bulk copy API: each row in destination column order, values as the
+     * reader returned them (the driver converts them to the column types) and nulls kept.
+     */
+    static final class ChunkBulkData implements ISQLServerBulkData {
+
+        private final transient List<String> columns;
+
+        private final int[] types;
+
+        private final int[] precisions;
+
+        private final int[] scales;
+
+        private final transient List<? extends TransferRow> items;
+
+        private final int[] positions;
+
+        private int position = -1;
+
+        ChunkBulkData(List<String> columns, int[] types, int[] precisions, int[] scales,
+                      List<? extends TransferRow> items, int[] positions) {
+            this.columns = columns;
+            this.types = types;
+            this.precisions = precisions;
+            this.scales = scales;
+            this.items = items;
+            this.positions = positions;
+        }
+
+        @Override
+        public Set<Integer> getColumnOrdinals() {
+            Set<Integer> ordinals = new LinkedHashSet<>();
+            for (int i = 1; i <= columns.size(); i++) {
+                ordinals.add(i);
+            }
+            return ordinals;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns.get(column - 1);
+        }
+
+        @Override
+        public int getColumnType(int column) {
+            return types[column - 1];
+        }
+
+        @Override
+        public int getPrecision(int column) {
+            return precisions[column - 1];
+        }
+
+        @Override
+        public int getScale(int column) {
+            return scales[column - 1];
+        }
+
+        @Override
+        public Object[] getRowData() {
+            TransferRow row = items.get(position);
+            Object[] values = new Object[positions.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = row.get(positions[i]);
+            }
+            return values;
+        }
+
+        @Override
+        public boolean next() {
+            return ++position < items.size();
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package ai.dataanalytic.databridge.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decouples the source reader from the destination writer of a partition. A background thread drains the
+ * source into a bounded in-memory buffer of row batches; when the writer falls behind and the buffer is full,
+ * batches are spilled to compressed segment files in a staging directory. The source cursor, and its
+ * connection, are released as soon as the source is read, however slow the destination is.
+ * <p>
+ * If the step fails after the whole source was staged, the rows not yet committed are spilled too and the
+ * directory is marked complete: the restarted step loads from the segments without reading the source again.
+ * A failure before that discards the staging directory and the restart reads the source from the start.
+ * <p>
+ * Segments are not Java-serialized: each value is written with a type tag, and only the JDBC value types
+ * listed in {@link #writeValue} are read back, anything else travels as text. Staging directories are
+ * created readable by their owner only.
+ */
+@Slf4j
+public class StagingItemReader implements ItemStreamReader<TransferRow> {
+
+    private static final String SOURCE_COMPLETE = "source-complete";
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    // Cabecera de los segmentos: los escritos con otro formato no se intentan leer
+    private static final int SEGMENT_FORMAT = 0x44425331;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INTEGER = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte BIG_DECIMAL = 8;
+    private static final byte BIG_INTEGER = 9;
+    private static final byte BOOLEAN = 10;
+    private static final byte BYTES = 11;
+    private static final byte TIMESTAMP = 12;
+    private static final byte DATE = 13;
+    private static final byte TIME = 14;
+    private static final byte LOCAL_DATE = 15;
+    private static final byte LOCAL_DATE_TIME = 16;
+    private static final byte LOCAL_TIME = 17;
+    private static final byte OFFSET_DATE_TIME = 18;
+    private static final byte UUID_VALUE = 19;
+
+    private final ItemStreamReader<TransferRow> delegate;
+
+    private final Path directory;
+
+    private final int batchRows;
+
+    private final BlockingQueue<List<TransferRow>> buffer;
+
+    private final Queue<Path> spilled = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger segmentSequence = new AtomicInteger();
+
+    private volatile boolean producerDone;
+
+    private volatile boolean sourceComplete;
+
+    private volatile Throwable producerError;
+
+    private Thread producer;
+
+    private RowSchema schema;
+
+    private Iterator<TransferRow> current = Collections.emptyIterator();
+
+    // Filas leídas desde el último commit y segmentos de los que salieron: se recuperan si el paso falla
+    private final List<TransferRow> uncommitted = new ArrayList<>();
+
+    private final List<Path> uncommittedSegments = new ArrayList<>();
+
+    private boolean exhausted;
+
+    /**
+     * @param directory  staging directory of this partition; it must not be shared with another reader
+     * @param batchRows  rows per in-memory batch and per spilled segment
+     * @param bufferRows rows kept in memory before spilling to disk
+     */
+    public StagingItemReader(ItemStreamReader<TransferRow> delegate, Path directory, int batchRows, int bufferRows) {
+        this.delegate = delegate;
+        this.directory = directory;
+        this.batchRows = Math.max(1, batchRows);
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferRows / this.batchRows));
+    }
+
+    /**
+     * Staging directory of one partition of a job, so a restarted partition finds its own segments.
+     */
+    public static Path directory(String stagingRoot, String jobId, String stepName) {
+        return Path.of(stagingRoot, jobId, stepName.replaceAll("[^A-Za-z0-9_-]", "_"));
+    }
+
+    /**
+     * Tells whether a failed partition left its whole source staged, i.e. whether a restart loads the rows it
+     * has not committed from the segments instead of reading the source again.
+     */
+    public static boolean isStaged(Path directory) {
+        return Files.exists(directory.resolve(SOURCE_COMPLETE));
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        try {
+            if (isStaged(directory)) {
+                // Restart: everything left to load is already staged
+                try (Stream<Path> files = Files.list(directory)) {
+                    files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                            .sorted()
+                            .forEach(spilled::add);
+                }
+                // New segments are numbered after the ones left
+                spilled.stream()
+                        .mapToInt(file -> Integer.parseInt(file.getFileName().toString().substring(SEGMENT_PREFIX.length())))
+                        .max()
+                        .ifPresent(last -> segmentSequence.set(last + 1));
+                sourceComplete = true;
+                producerDone = true;
+                log.info("Loading {} staged segments from {}", spilled.size(), directory);
+                return;
+            }
+            FileSystemUtils.deleteRecursively(directory);
+            createPrivateDirectories(directory);
+        } catch (IOException e) {
+            throw new ItemStreamException("Cannot prepare staging directory " + directory, e);
+        }
+        delegate.open(executionContext);
+        producer = new Thread(this::produce, "staging-" + directory.getFileName());
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    @Override
+    public TransferRow read() throws Exception {
+        while (!current.hasNext()) {
+            List<TransferRow> batch = nextBatch();
+            if (batch == null) {
+                exhausted = true;
+                return null;
+            }
+            if (schema == null && !batch.isEmpty()) {
+                schema = batch.get(0).getSchema();
+            }
+            current = batch.iterator();
+        }
+        TransferRow row = current.next();
+        uncommitted.add(row);
+        return row;
+    }
+
+    /**
+     * Called before each chunk commits: the rows read so far are in the destination and their segments can go.
+     */
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        uncommitted.clear();
+        for (Path segment : uncommittedSegments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                log.warn("Cannot delete staged segment {}: {}", segment, e.getMessage());
+            }
+        }
+        uncommittedSegments.clear();
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        try {
+            if (producer != null) {
+                producer.interrupt();
+                producer.join();
+            }
+            if (exhausted && producerError == null) {
+                FileSystemUtils.deleteRecursively(directory);
+            } else if (sourceComplete) {
+                // Keep what was not committed so a restart loads it without touching the source
+                List<TransferRow> pending = new ArrayList<>(uncommitted);
+                current.forEachRemaining(pending::add);
+                if (!pending.isEmpty()) {
+                    spill(pending);
+                }
+                List<List<TransferRow>> buffered = new ArrayList<>();
+                buffer.drainTo(buffered);
+                for (List<TransferRow> batch : buffered) {
+                    spill(batch);
+                }
+                for (Path segment : uncommittedSegments) {
+                    Files.deleteIfExists(segment);
+                }
+                if (!Files.exists(directory.resolve(SOURCE_COMPLETE))) {
+                    Files.createFile(directory.resolve(SOURCE_COMPLETE));
+                }
+                log.info("Partition staged in {} for restart", directory);
+            } else {
+                FileSystemUtils.deleteRecursively(directory);
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Cannot save staging directory " + directory, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            producer = null;
+            current = Collections.emptyIterator();
+            uncommitted.clear();
+            uncommittedSegments.clear();
+            buffer.clear();
+            spilled.clear();
+        }
+    }
+
+    private void produce() {
+        try {
+            List<TransferRow> batch = new ArrayList<>(batchRows);
+            TransferRow row;
+            while (!Thread.currentThread().isInterrupted() && (row = delegate.read()) != null) {
+                batch.add(row);
+                if (batch.size() == batchRows) {
+                    stage(batch);
+                    batch = new ArrayList<>(batchRows);
+                }
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            if (!batch.isEmpty()) {
+                stage(batch);
+            }
+            sourceComplete = true;
+        } catch (Throwable e) {
+            producerError = e;
+        } finally {
+            // Libera el cursor y la conexión de origen en cuanto se ha leído todo
+            try {
+                delegate.close();
+            } catch (RuntimeException e) {
+                log.warn("Error closing source reader: {}", e.getMessage());
+            }
+            producerDone = true;
+        }
+    }
+
+    private void stage(List<TransferRow> batch) throws IOException {
+        if (!buffer.offer(batch)) {
+            spill(batch);
+        }
+    }
+
+    private List<TransferRow> nextBatch() throws Exception {
+        while (true) {
+            List<TransferRow> batch = buffer.poll();
+            if (batch != null) {
+                return batch;
+            }
+            Path segment = spilled.poll();
+            if (segment != null) {
+                uncommittedSegments.add(segment);
+                return readSegment(segment);
+            }
+            if (producerError != null) {
+                throw new ItemStreamException("Error reading the source", producerError);
+            }
+            if (producerDone) {
+                if (buffer.isEmpty() && spilled.isEmpty()) {
+                    return null;
+                }
+                continue;
+            }
+            batch = buffer.poll(100, TimeUnit.MILLISECONDS);
+            if (batch != null) {
+                return batch;
+            }
+        }
+    }
+
+    private synchronized void spill(List<TransferRow> batch) throws IOException {
+        Path segment = directory.resolve(String.format("%s%08d", SEGMENT_PREFIX, segmentSequence.getAndIncrement()));
+        RowSchema rowSchema = batch.get(0).getSchema();
+        // Compresión rápida: el cuello de botella es el destino, no la CPU
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(segment)), new Deflater(Deflater.BEST_SPEED), 65536))) {
+            int columnCount = rowSchema.size();
+            out.writeInt(SEGMENT_FORMAT);
+            out.writeInt(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                writeString(out, rowSchema.getName(i));
+                out.writeInt(rowSchema.getSqlType(i));
+            }
+            out.writeInt(batch.size());
+            for (TransferRow row : batch) {
+                for (int i = 0; i < columnCount; i++) {
+                    writeValue(out, row.get(i));
+                }
+            }
+        }
+        spilled.add(segment);
+    }
+
+    private List<TransferRow> readSegment(Path segment) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(
+                new BufferedInputStream(Files.newInputStream(segment)), new Inflater(), 65536))) {
+            if (in.readInt() != SEGMENT_FORMAT) {
+                throw new IOException("Unsupported staging segment format in " + segment);
+            }
+            int columnCount = in.readInt();
+            String[] names = new String[columnCount];
+            int[] sqlTypes = new int[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                names[i] = readString(in);
+                sqlTypes[i] = in.readInt();
+            }
+            RowSchema segmentSchema = new RowSchema(names, sqlTypes);
+            // Reuse one schema so writers keep their cached column mapping
+            if (!segmentSchema.equals(schema)) {
+                schema = segmentSchema;
+            }
+            int rows = in.readInt();
+            List<TransferRow> batch = new ArrayList<>(rows);
+            for (int r = 0; r < rows; r++) {
+                Object[] values = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    values[i] = readValue(in);
+                }
+                batch.add(new TransferRow(schema, values));
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Writes a value with a tag of its type. Besides null, the types kept are String, the boxed primitives,
+     * BigDecimal, BigInteger, byte[], java.sql Timestamp, Date and Time, LocalDate, LocalDateTime, LocalTime,
+     * OffsetDateTime and UUID; values of other types, such as the driver's own, are written as their text.
+     */
+    static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String text) {
+            out.writeByte(STRING);
+            writeString(out, text);
+        } else if (value instanceof Long number) {
+            out.writeByte(LONG);
+            out.writeLong(number);
+        } else if (value instanceof Integer number) {
+            out.writeByte(INTEGER);
+            out.writeInt(number);
+        } else if (value instanceof Short number) {
+            out.writeByte(SHORT);
+            out.writeShort(number);
+        } else if (value instanceof Byte number) {
+            out.writeByte(BYTE);
+            out.writeByte(number);
+        } else if (value instanceof Double number) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(number);
+        } else if (value instanceof Float number) {
+            out.writeByte(FLOAT);
+            out.writeFloat(number);
+        } else if (value instanceof BigDecimal number) {
+            out.writeByte(BIG_DECIMAL);
+            writeString(out, number.toString());
+        } else if (value instanceof BigInteger number) {
+            out.writeByte(BIG_INTEGER);
+            writeString(out, number.toString());
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(bool);
+        } else if (value instanceof byte[] bytes) {
+            out.writeByte(BYTES);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (value instanceof Timestamp timestamp) {
+            // getTime() solo tiene milisegundos: los nanosegundos van aparte
+            out.writeByte(TIMESTAMP);
+            out.writeLong(timestamp.getTime());
+            out.writeInt(timestamp.getNanos());
+        } else if (value instanceof Date date) {
+            out.writeByte(DATE);
+            out.writeLong(date.getTime());
+        } else if (value instanceof Time time) {
+            out.writeByte(TIME);
+            out.writeLong(time.getTime());
+        } else if (value instanceof LocalDate date) {
+            out.writeByte(LOCAL_DATE);
+            writeString(out, date.toString());
+        } else if (value instanceof LocalDateTime dateTime) {
+            out.writeByte(LOCAL_DATE_TIME);
+            writeString(out, dateTime.toString());
+        } else if (value instanceof LocalTime time) {
+            out.writeByte(LOCAL_TIME);
+            writeString(out, time.toString());
+        } else if (value instanceof OffsetDateTime dateTime) {
+            out.writeByte(OFFSET_DATE_TIME);
+            writeString(out, dateTime.toString());
+        } else if (value instanceof UUID uuid) {
+            out.writeByte(UUID_VALUE);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        } else {
+            // Tipos propios del driver viajan como texto
+            out.writeByte(STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case STRING -> readString(in);
+            case LONG -> in.readLong();
+            case INTEGER -> in.readInt();
+            case SHORT -> in.readShort();
+            case BYTE -> in.readByte();
+            case DOUBLE -> in.readDouble();
+            case FLOAT -> in.readFloat();
+            case BIG_DECIMAL -> new BigDecimal(readString(in));
+            case BIG_INTEGER -> new BigInteger(readString(in));
+            case BOOLEAN -> in.readBoolean();
+            case BYTES -> readBytes(in, in.readInt());
+            case TIMESTAMP -> {
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                yield timestamp;
+            }
+            case DATE -> new Date(in.readLong());
+            case TIME -> new Time(in.readLong());
+            case LOCAL_DATE -> LocalDate.parse(readString(in));
+            case LOCAL_DATE_TIME -> LocalDateTime.parse(readString(in));
+            case LOCAL_TIME -> LocalTime.parse(readString(in));
+            case OFFSET_DATE_TIME -> OffsetDateTime.parse(readString(in));
+            case UUID_VALUE -> new UUID(in.readLong(), in.readLong());
+            default -> throw new IOException("Unknown value tag " + tag + " in staging segment");
+        };
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        // writeUTF no admite más de 64 KB
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in, in.readInt()), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(DataInputStream in, int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Negative length in staging segment");
+        }
+        // Se lee por bloques para que una longitud corrupta no reserve memoria de golpe
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new IOException("Truncated staging segment");
+        }
+        return bytes;
+    }
+
+    /**
+     * Creates the staging directories missing up to {@code directory} with owner-only permissions
+     * where the file system supports them.
+     */
+    private static void createPrivateDirectories(Path directory) throws IOException {
+        if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } else {
+            Files.createDirectories(directory);
+        }
+    }
+}
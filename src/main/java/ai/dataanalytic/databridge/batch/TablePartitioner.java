@@ -0,0 +1,197 @@
+package ai.dataanalytic.databridge.batch;
+
+import ai.dataanalytic.querybridge.service.SchemaDiscoveryService;
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a source table into disjoint partitions that worker steps read in parallel. Each partition is a
+ * predicate stored in its execution context under {@link #PREDICATE}; the strategy depends on the table:
+ * <ul>
+ *     <li>ranges of a single-column integer key (one index range scan per worker);</li>
+ *     <li>ranges of storage blocks where the engine supports it (PostgreSQL {@code ctid});</li>
+ *     <li>hash buckets of the key or of every column otherwise (each worker scans the table but ships only its share).</li>
+ * </ul>
+ * The key is the primary key, or a unique index without nullable columns, of the table in the connection's
+ * catalog and schema. When the table cannot be split a single partition without predicate is returned.
+ */
+@Slf4j
+public class TablePartitioner implements Partitioner {
+
+    public static final String PREDICATE = "partition.predicate";
+
+    public static final String STRATEGY = "partition.strategy";
+
+    private final SchemaDiscoveryService schemaDiscoveryService;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final SqlDialect dialect;
+
+    private final String tableName;
+
+    public TablePartitioner(SchemaDiscoveryService schemaDiscoveryService, JdbcTemplate jdbcTemplate, SqlDialect dialect,
+                            String tableName) {
+        this.schemaDiscoveryService = schemaDiscoveryService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = dialect;
+        this.tableName = tableName;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        if (gridSize <= 1) {
+            return single("none");
+        }
+        List<String> keyColumns = schemaDiscoveryService.findKeyColumns(tableName, jdbcTemplate).stream()
+                .map(SchemaDiscoveryService.KeyColumn::name)
+                .toList();
+
+        if (keyColumns.size() == 1) {
+            Map<String, ExecutionContext> ranges = keyRanges(keyColumns.get(0), gridSize);
+            if (ranges != null) {
+                return ranges;
+            }
+        }
+
+        Map<String, ExecutionContext> blocks = blockRanges(gridSize);
+        if (blocks != null) {
+            return blocks;
+        }
+
+        List<String> hashed = keyColumns.isEmpty() ? allColumns() : keyColumns;
+        if (dialect.hashPartitionPredicate(tableName, hashed, gridSize, 0) != null) {
+            Map<String, ExecutionContext> partitions = new HashMap<>();
+            for (int i = 0; i < gridSize; i++) {
+                partitions.put("partition" + i, context("hash", dialect.hashPartitionPredicate(tableName, hashed, gridSize, i)));
+            }
+            return partitions;
+        }
+
+        log.warn("Table {} cannot be partitioned with dialect {}; transferring it in a single partition", tableName, dialect.getName());
+        return single("none");
+    }
+
+    /**
+     * Splits the range {@code [MIN(key), MAX(key)]} into equal slices. The first and last slices are open-ended
+     * so rows outside the sampled bounds are not lost.
+     *
+     * @return the partitions, or null if the key is not an integer
+     */
+    private Map<String, ExecutionContext> keyRanges(String keyColumn, int gridSize) {
+        String key = dialect.quoteIdentifier(keyColumn);
+        Map<String, Object> bounds = jdbcTemplate.queryForMap(
+                "SELECT MIN(" + key + ") AS min_key, MAX(" + key + ") AS max_key FROM " + tableName);
+        Long min = toLong(bounds.get("min_key"));
+        Long max = toLong(bounds.get("max_key"));
+        if (min == null || max == null) {
+            // Non-integer key, or empty table
+            return null;
+        }
+        long span = max - min + 1;
+        if (span <= 0) {
+            // The key spans more than the long range
+            return null;
+        }
+        int slices = (int) Math.max(1, Math.min(gridSize, span));
+        long step = Math.max(1, span / slices);
+
+        Map<String, ExecutionContext> partitions = new HashMap<>();
+        for (int i = 0; i < slices; i++) {
+            long from = min + i * step;
+            long to = from + step;
+            String predicate;
+            if (slices == 1) {
+                predicate = null;
+            } else if (i == 0) {
+                predicate = key + " < " + to;
+            } else if (i == slices - 1) {
+                predicate = key + " >= " + from;
+            } else {
+                predicate = key + " >= " + from + " AND " + key + " < " + to;
+            }
+            partitions.put("partition" + i, context("key-range", predicate));
+        }
+        return partitions;
+    }
+
+    /**
+     * Splits the table by physical block ranges, when the dialect supports it.
+     *
+     * @return the partitions, or null if unsupported or the block count is unknown
+     */
+    private Map<String, ExecutionContext> blockRanges(int gridSize) {
+        String sql = dialect.blockCountSql();
+        if (sql == null) {
+            return null;
+        }
+        List<Long> counts = jdbcTemplate.queryForList(sql, Long.class, tableName);
+        long blocks = counts.isEmpty() || counts.get(0) == null ? 0 : counts.get(0);
+        if (blocks < gridSize) {
+            return null;
+        }
+        long step = blocks / gridSize;
+        Map<String, ExecutionContext> partitions = new HashMap<>();
+        for (int i = 0; i < gridSize; i++) {
+            Long from = i == 0 ? null : i * step;
+            Long to = i == gridSize - 1 ? null : (i + 1) * step;
+            partitions.put("partition" + i, context("block-range", dialect.blockRangePredicate(from, to)));
+        }
+        return partitions;
+    }
+
+    private List<String> allColumns() {
+        return jdbcTemplate.query("SELECT * FROM " + tableName + " WHERE 1=0", rs -> {
+            ResultSetMetaData metaData = rs.getMetaData();
+            List<String> columns = new ArrayList<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columns.add(metaData.getColumnName(i));
+            }
+            return columns;
+        });
+    }
+
+    private static Long toLong(Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigInteger bigInteger && bigInteger.bitLength() < 63) {
+            return bigInteger.longValue();
+        }
+        if (value instanceof BigDecimal decimal && decimal.stripTrailingZeros().scale() <= 0) {
+            // Oracle NUMBER keys come back as BigDecimal
+            try {
+                return decimal.longValueExact();
+            } catch (ArithmeticException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, ExecutionContext> single(String strategy) {
+        Map<String, ExecutionContext> partitions = new HashMap<>();
+        partitions.put("partition0", context(strategy, null));
+        return partitions;
+    }
+
+    private static ExecutionContext context(String strategy, String predicate) {
+        ExecutionContext context = new ExecutionContext();
+        context.putString(STRATEGY, strategy);
+        if (predicate != null) {
+            context.putString(PREDICATE, predicate);
+        }
+        return context;
+    }
+}
@@ -0,0 +1,47 @@
+package ai.dataanalytic.databridge.batch;
+
+/**
+ * One row moving through a transfer: a positional value array bound to the {@link RowSchema} of its reader,
+ * instead of a map keyed by column name per row.
+ */
+public final class TransferRow {
+
+    private final RowSchema schema;
+
+    private final Object[] values;
+
+    public TransferRow(RowSchema schema, Object[] values) {
+        this.schema = schema;
+        this.values = values;
+    }
+
+    public RowSchema getSchema() {
+        return schema;
+    }
+
+    public Object get(int index) {
+        return values[index];
+    }
+
+    public boolean isNull(int index) {
+        return values[index] == null;
+    }
+
+    /**
+     * Returns a numeric column as a long. The caller checks {@link #isNull(int)} first.
+     */
+    public long getLong(int index) {
+        return ((Number) values[index]).longValue();
+    }
+
+    /**
+     * Returns a numeric column as a double. The caller checks {@link #isNull(int)} first.
+     */
+    public double getDouble(int index) {
+        return ((Number) values[index]).doubleValue();
+    }
+
+    public int size() {
+        return values.length;
+    }
+}
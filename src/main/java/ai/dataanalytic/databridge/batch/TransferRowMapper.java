@@ -0,0 +1,29 @@
+package ai.dataanalytic.databridge.batch;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps result set rows to {@link TransferRow}s. The schema is read from the metadata on the first row only;
+ * after that each row costs one value array. One mapper serves one reader (one cursor).
+ */
+public class TransferRowMapper implements RowMapper<TransferRow> {
+
+    private RowSchema schema;
+
+    @Override
+    public TransferRow mapRow(ResultSet rs, int rowNum) throws SQLException {
+        if (schema == null) {
+            schema = RowSchema.of(rs.getMetaData());
+        }
+        int columnCount = schema.size();
+        Object[] values = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = JdbcUtils.getResultSetValue(rs, i + 1);
+        }
+        return new TransferRow(schema, values);
+    }
+}
@@ -0,0 +1,42 @@
+package ai.dataanalytic.databridge.batch;
+
+import org.springframework.batch.item.database.ItemPreparedStatementSetter;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Binds a {@link TransferRow} to a positional INSERT over the given destination columns.
+ * The column positions are resolved once per source schema instead of looking values up by name per row;
+ * the source and destination must have the same columns.
+ */
+public class TransferRowPreparedStatementSetter implements ItemPreparedStatementSetter<TransferRow> {
+
+    private record Mapping(RowSchema schema, int[] positions) {
+    }
+
+    private final List<String> columns;
+
+    private volatile Mapping mapping;
+
+    public TransferRowPreparedStatementSetter(List<String> columns) {
+        this.columns = columns;
+    }
+
+    @Override
+    public void setValues(TransferRow row, PreparedStatement ps) throws SQLException {
+        Mapping current = mapping;
+        // Cada partición trae su propio esquema; los iguales reutilizan la correspondencia
+        if (current == null || !current.schema().equals(row.getSchema())) {
+            current = new Mapping(row.getSchema(), row.getSchema().destinationPositionsOf(columns));
+            mapping = current;
+        }
+        int[] positions = current.positions();
+        for (int i = 0; i < positions.length; i++) {
+            StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, row.get(positions[i]));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ai.dataanalytic.databridge.batch;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Threads that run the partitions of data transfers. Its size is the node-wide limit of concurrent workers.
+ * The executor is kept out of the context on purpose: an {@code Executor} bean would replace the
+ * application task executor that Spring Boot configures for async MVC requests.
+ */
+@Component
+public class TransferWorkerPool {
+
+    private final ThreadPoolTaskExecutor executor;
+
+    public TransferWorkerPool(@Value("${databridge.max-parallelism:8}") int maxParallelism) {
+        this.executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxParallelism);
+        executor.setMaxPoolSize(maxParallelism);
+        executor.setThreadNamePrefix("data-transfer-");
+        executor.initialize();
+    }
+
+    public TaskExecutor getExecutor() {
+        return executor;
+    }
+
+    public int getMaxParallelism() {
+        return executor.getMaxPoolSize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,34 +1,67 @@
 package ai.dataanalytic.databridge.config;
 
+import ai.dataanalytic.databridge.batch.AdaptiveChunkCompletionPolicy;
+import ai.dataanalytic.databridge.batch.BuildDestinationIndexesTasklet;
+import ai.dataanalytic.databridge.batch.BulkItemWriters;
+import ai.dataanalytic.databridge.batch.CreateDestinationTableTasklet;
+import ai.dataanalytic.databridge.batch.KeysetTransferItemReader;
+import ai.dataanalytic.databridge.batch.MultiRowInsertItemWriter;
+import ai.dataanalytic.databridge.batch.StagingItemReader;
+import ai.dataanalytic.databridge.batch.TablePartitioner;
+import ai.dataanalytic.databridge.batch.TransferRow;
+import ai.dataanalytic.databridge.batch.TransferRowMapper;
+import ai.dataanalytic.databridge.batch.TransferRowPreparedStatementSetter;
+import ai.dataanalytic.databridge.batch.TransferWorkerPool;
+import ai.dataanalytic.databridge.service.ConnectionBudget;
 import ai.dataanalytic.databridge.service.ConnectionHolder;
+import ai.dataanalytic.databridge.service.WatermarkService;
 import ai.dataanalytic.querybridge.config.DynamicDataSourceManager;
+import ai.dataanalytic.querybridge.service.SchemaDiscoveryService;
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialects;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.JobRegistry;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.JobScope;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.configuration.support.DefaultBatchConfiguration;
+import org.springframework.batch.core.configuration.support.JobRegistryBeanPostProcessor;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.sql.DataSource;
 import java.sql.ResultSetMetaData;
 import java.util.*;
-import java.util.stream.Collectors;
 
+@Slf4j
 @Configuration
 @EnableBatchProcessing
 public class DatabaseConfiguration {
@@ -41,20 +74,143 @@ public class DatabaseConfiguration {
 
     @Bean
     @Qualifier("dataTransferJob")
-    public Job dataTransferJob(JobRepository jobRepository, @Qualifier("dataTransferStep") Step dataTransferStep) {
+    public Job dataTransferJob(JobRepository jobRepository,
+                               @Qualifier("dataTransferPrepareStep") Step dataTransferPrepareStep,
+                               @Qualifier("dataTransferStep") Step dataTransferStep,
+                               @Qualifier("dataTransferFinalizeStep") Step dataTransferFinalizeStep,
+                               WatermarkService watermarkService,
+                               ConnectionBudget connectionBudget) {
         return new JobBuilder("dataTransferJob", jobRepository)
                 .incrementer(new RunIdIncrementer())
-                .start(dataTransferStep)
+                .start(dataTransferPrepareStep)
+                .next(dataTransferStep)
+                .next(dataTransferFinalizeStep)
+                .listener(new JobExecutionListener() {
+                    @Override
+                    public void beforeJob(JobExecution jobExecution) {
+                        // Every job, restarts and schema tables included, waits for its share of the node connections
+                        connectionBudget.acquire(jobExecution);
+                    }
+
+                    @Override
+                    public void afterJob(JobExecution jobExecution) {
+                        connectionBudget.release(jobExecution);
+                        // Incremental runs move their watermark only once every partition is written
+                        watermarkService.save(jobExecution);
+                        // Release the references to the user connections; a restart stores them again
+                        ConnectionHolder.removeJob(jobExecution.getJobParameters().getString("jobId"));
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Registers the jobs so {@link org.springframework.batch.core.launch.JobOperator} can stop and restart them.
+     */
+    @Bean
+    public static JobRegistryBeanPostProcessor jobRegistryBeanPostProcessor(JobRegistry jobRegistry) {
+        JobRegistryBeanPostProcessor postProcessor = new JobRegistryBeanPostProcessor();
+        postProcessor.setJobRegistry(jobRegistry);
+        return postProcessor;
+    }
+
+    /**
+     * Launcher that runs transfers in the background on a bounded pool. When every thread is busy and the queue
+     * is full the launch fails right away instead of blocking the request. The pool is not exposed as an
+     * {@code Executor} bean so Spring Boot keeps its own application task executor.
+     */
+    @Bean
+    @Qualifier("asyncJobLauncher")
+    public JobLauncher asyncJobLauncher(JobRepository jobRepository,
+                                        @Value("${databridge.max-concurrent-transfers:4}") int maxConcurrentTransfers,
+                                        @Value("${databridge.transfer-queue-capacity:50}") int queueCapacity) throws Exception {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentTransfers);
+        executor.setMaxPoolSize(maxConcurrentTransfers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("transfer-job-");
+        executor.setDaemon(true);
+        executor.initialize();
+
+        TaskExecutorJobLauncher jobLauncher = new TaskExecutorJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.setTaskExecutor(executor);
+        jobLauncher.afterPropertiesSet();
+        return jobLauncher;
+    }
+
+    /**
+     * Creates the destination table from the source metadata when the transfer asks for it and the table is missing.
+     */
+    @Bean
+    @JobScope
+    @Qualifier("dataTransferPrepareStep")
+    public Step dataTransferPrepareStep(JobRepository jobRepository,
+                                        PlatformTransactionManager transactionManager,
+                                        SchemaDiscoveryService schemaDiscoveryService,
+                                        @Value("#{jobParameters['jobId']}") String jobId,
+                                        @Value("#{jobParameters['tableName']}") String tableName,
+                                        @Value("#{jobParameters['createTable'] ?: 'false'}") boolean createTable,
+                                        @Value("${databridge.create-table.unlogged:true}") boolean unlogged,
+                                        @Value("#{jobParameters['" + WatermarkService.COLUMN + "']}") String watermarkColumn,
+                                        @Value("#{jobParameters['upsert'] ?: 'false'}") boolean upsert) {
+        Tasklet tasklet = (contribution, chunkContext) -> RepeatStatus.FINISHED;
+        if (createTable) {
+            JdbcTemplate sourceJdbcTemplate = ConnectionHolder.getJdbcTemplate(jobId, "source");
+            JdbcTemplate destinationJdbcTemplate = ConnectionHolder.getJdbcTemplate(jobId, "destination");
+            if (sourceJdbcTemplate == null || destinationJdbcTemplate == null) {
+                throw new IllegalStateException("JdbcTemplates not found for jobId: " + jobId);
+            }
+            tasklet = new CreateDestinationTableTasklet(schemaDiscoveryService, sourceJdbcTemplate, destinationJdbcTemplate,
+                    SqlDialects.of(destinationJdbcTemplate.getDataSource()), tableName, unlogged, watermarkColumn != null || upsert);
+        }
+        return new StepBuilder("dataTransferPrepareStep", jobRepository)
+                .tasklet(tasklet, transactionManager)
+                .build();
+    }
+
+    /**
+     * Builds the keys and indexes of a destination table created by {@link #dataTransferPrepareStep}.
+     */
+    @Bean
+    @JobScope
+    @Qualifier("dataTransferFinalizeStep")
+    public Step dataTransferFinalizeStep(JobRepository jobRepository,
+                                         PlatformTransactionManager transactionManager,
+                                         SchemaDiscoveryService schemaDiscoveryService,
+                                         @Value("#{jobParameters['jobId']}") String jobId,
+                                         @Value("#{jobParameters['tableName']}") String tableName,
+                                         @Value("#{jobParameters['createTable'] ?: 'false'}") boolean createTable) {
+        Tasklet tasklet = (contribution, chunkContext) -> RepeatStatus.FINISHED;
+        if (createTable) {
+            JdbcTemplate sourceJdbcTemplate = ConnectionHolder.getJdbcTemplate(jobId, "source");
+            JdbcTemplate destinationJdbcTemplate = ConnectionHolder.getJdbcTemplate(jobId, "destination");
+            if (sourceJdbcTemplate == null || destinationJdbcTemplate == null) {
+                throw new IllegalStateException("JdbcTemplates not found for jobId: " + jobId);
+            }
+            tasklet = new BuildDestinationIndexesTasklet(schemaDiscoveryService, sourceJdbcTemplate, destinationJdbcTemplate,
+                    SqlDialects.of(destinationJdbcTemplate.getDataSource()), tableName);
+        }
+        return new StepBuilder("dataTransferFinalizeStep", jobRepository)
+                .tasklet(tasklet, transactionManager)
                 .build();
     }
 
+    /**
+     * Manager step: splits the source table with {@link TablePartitioner} and runs one worker step per partition
+     * in parallel. The degree of parallelism comes from the job parameters and is capped by the worker pool and by
+     * the size of the source and destination pools, so every worker holds its own pooled connection.
+     */
     @Bean
     @JobScope
     @Qualifier("dataTransferStep")
     public Step dataTransferStep(JobRepository jobRepository,
-                                 PlatformTransactionManager transactionManager,
+                                 @Qualifier("dataTransferWorkerStep") Step dataTransferWorkerStep,
+                                 TransferWorkerPool transferWorkerPool,
+                                 SchemaDiscoveryService schemaDiscoveryService,
                                  @Value("#{jobParameters['jobId']}") String jobId,
-                                 @Value("#{jobParameters['tableName']}") String tableName) {
+                                 @Value("#{jobParameters['tableName']}") String tableName,
+                                 @Value("#{jobParameters['parallelism'] ?: 1}") long parallelism) {
 
         JdbcTemplate sourceJdbcTemplate = ConnectionHolder.getJdbcTemplate(jobId, "source");
         JdbcTemplate destinationJdbcTemplate = ConnectionHolder.getJdbcTemplate(jobId, "destination");
@@ -63,48 +219,248 @@ public class DatabaseConfiguration {
             throw new IllegalStateException("JdbcTemplates not found for jobId: " + jobId);
         }
 
+        int gridSize = (int) Math.max(1, Math.min(parallelism, Math.min(transferWorkerPool.getMaxParallelism(),
+                Math.min(maxConnections(sourceJdbcTemplate.getDataSource()), maxConnections(destinationJdbcTemplate.getDataSource())))));
+
+        SqlDialect sourceDialect = SqlDialects.of(sourceJdbcTemplate.getDataSource());
+
         return new StepBuilder("dataTransferStep", jobRepository)
-                .<Map<String, Object>, Map<String, Object>>chunk(200, transactionManager)
-                .reader(jdbcCursorItemReader(sourceJdbcTemplate, tableName))
-                .writer(jdbcBatchItemWriter(destinationJdbcTemplate, tableName))
+                .partitioner("dataTransferWorkerStep", new TablePartitioner(schemaDiscoveryService, sourceJdbcTemplate, sourceDialect, tableName))
+                .step(dataTransferWorkerStep)
+                .gridSize(gridSize)
+                .taskExecutor(transferWorkerPool.getExecutor())
+                .build();
+    }
+
+    /**
+     * Worker step: copies the rows of one partition. The reader is step-scoped so every partition gets its own.
+     * The chunk size is fixed, or adaptive when the transfer asks for it: it then grows while chunks commit
+     * under the target latency.
+     */
+    @Bean
+    @JobScope
+    @Qualifier("dataTransferWorkerStep")
+    public Step dataTransferWorkerStep(JobRepository jobRepository,
+                                       PlatformTransactionManager transactionManager,
+                                       @Qualifier("dataTransferPartitionReader") ItemStreamReader<TransferRow> partitionReader,
+                                       @Value("#{jobParameters['jobId']}") String jobId,
+                                       @Value("#{jobParameters['tableName']}") String tableName,
+                                       @Value("#{jobParameters['writeMode'] ?: '${databridge.write-mode:bulk}'}") String writeMode,
+                                       @Value("${databridge.bulk-load.mysql-local-infile:false}") boolean mysqlLocalInfile,
+                                       @Value("#{jobParameters['chunkSize'] ?: ${databridge.chunk-size:1000}}") int chunkSize,
+                                       @Value("#{jobParameters['adaptiveChunkSize'] ?: '${databridge.adaptive-chunk.enabled:false}'}") boolean adaptiveChunkSize,
+                                       @Value("#{jobParameters['maxChunkSize'] ?: ${databridge.adaptive-chunk.max-chunk-size:20000}}") int maxChunkSize,
+                                       @Value("#{jobParameters['targetCommitMillis'] ?: ${databridge.adaptive-chunk.target-commit-ms:1000}}") long targetCommitMillis,
+                                       @Value("#{jobParameters['" + WatermarkService.COLUMN + "']}") String watermarkColumn,
+                                       @Value("#{jobParameters['keyColumns']}") String keyColumns,
+                                       @Value("#{jobParameters['upsert'] ?: 'false'}") boolean upsert,
+                                       SchemaDiscoveryService schemaDiscoveryService) {
+
+        JdbcTemplate destinationJdbcTemplate = ConnectionHolder.getJdbcTemplate(jobId, "destination");
+
+        if (destinationJdbcTemplate == null) {
+            throw new IllegalStateException("JdbcTemplates not found for jobId: " + jobId);
+        }
+
+        SqlDialect destinationDialect = SqlDialects.of(destinationJdbcTemplate.getDataSource());
+
+        // Incremental runs may read rows that are already in the destination, so they always upsert;
+        // checkpointed runs may ask for it so a chunk replayed after a restart is harmless.
+        // In bulk mode the destination dialect picks the native path (COPY, LOAD DATA, bulk copy or multi-row VALUES)
+        ItemWriter<TransferRow> writer;
+        if (watermarkColumn != null || upsert) {
+            writer = upsertItemWriter(schemaDiscoveryService, destinationJdbcTemplate, destinationDialect, tableName, keyColumns);
+        } else {
+            writer = switch (writeMode.toLowerCase()) {
+                case "bulk" -> BulkItemWriters.forDialect(destinationJdbcTemplate, destinationDialect, tableName,
+                        getColumnNames(destinationJdbcTemplate, tableName), mysqlLocalInfile);
+                case "multi-row" -> new MultiRowInsertItemWriter(destinationJdbcTemplate, destinationDialect, tableName,
+                        getColumnNames(destinationJdbcTemplate, tableName));
+                case "batch" -> jdbcBatchItemWriter(destinationJdbcTemplate, destinationDialect, tableName);
+                default -> throw new IllegalArgumentException("Unsupported write mode: " + writeMode);
+            };
+        }
+
+        if (adaptiveChunkSize) {
+            AdaptiveChunkCompletionPolicy policy = new AdaptiveChunkCompletionPolicy(chunkSize, Math.min(chunkSize, 100),
+                    maxChunkSize, targetCommitMillis);
+            return new StepBuilder("dataTransferWorkerStep", jobRepository)
+                    .<TransferRow, TransferRow>chunk(policy, transactionManager)
+                    .reader(partitionReader)
+                    .writer(writer)
+                    .listener((ChunkListener) policy)
+                    .build();
+        }
+
+        return new StepBuilder("dataTransferWorkerStep", jobRepository)
+                .<TransferRow, TransferRow>chunk(Math.max(1, chunkSize), transactionManager)
+                .reader(partitionReader)
+                .writer(writer)
                 .build();
     }
 
-    public JdbcCursorItemReader<Map<String, Object>> jdbcCursorItemReader(JdbcTemplate jdbcTemplate, String tableName) {
-        JdbcCursorItemReader<Map<String, Object>> reader = new JdbcCursorItemReader<>();
+    /**
+     * Reader of one partition. Checkpointed transfers read the partition in key order and resume after the last
+     * committed key on restart; the others stream it with a single cursor and start it over, so they can only be
+     * restarted when the partition wrote nothing yet, upserts, or was staged whole (see
+     * {@link ai.dataanalytic.databridge.service.DataTransferService#restart}). With staging the cursor is drained by
+     * a background thread into a buffer that spills to disk, so the writer never holds back the source.
+     */
+    @Bean
+    @StepScope
+    @Qualifier("dataTransferPartitionReader")
+    public ItemStreamReader<TransferRow> dataTransferPartitionReader(
+            SchemaDiscoveryService schemaDiscoveryService,
+            @Value("#{jobParameters['jobId']}") String jobId,
+            @Value("#{jobParameters['tableName']}") String tableName,
+            @Value("#{stepExecutionContext['" + TablePartitioner.PREDICATE + "']}") String predicate,
+            @Value("#{jobParameters['fetchSize'] ?: ${databridge.fetch-size:1000}}") int fetchSize,
+            @Value("#{jobParameters['streaming'] ?: 'true'}") boolean streaming,
+            @Value("#{jobParameters['" + WatermarkService.COLUMN + "']}") String watermarkColumn,
+            @Value("#{jobParameters['" + WatermarkService.FROM + "']}") Object watermarkFrom,
+            @Value("#{jobParameters['" + WatermarkService.TO + "']}") Object watermarkTo,
+            @Value("#{jobParameters['" + WatermarkService.TYPE + "']}") String watermarkType,
+            @Value("#{jobParameters['checkpointed'] ?: 'false'}") boolean checkpointed,
+            @Value("#{jobParameters['staging'] ?: 'false'}") boolean staging,
+            @Value("#{stepExecution.stepName}") String stepName,
+            @Value("${databridge.staging.directory:${java.io.tmpdir}/databridge-staging}") String stagingDirectory,
+            @Value("${databridge.staging.batch-rows:1000}") int stagingBatchRows,
+            @Value("${databridge.staging.buffer-rows:50000}") int stagingBufferRows) {
+
+        JdbcTemplate sourceJdbcTemplate = ConnectionHolder.getJdbcTemplate(jobId, "source");
+
+        if (sourceJdbcTemplate == null) {
+            throw new IllegalStateException("JdbcTemplates not found for jobId: " + jobId);
+        }
+
+        SqlDialect sourceDialect = SqlDialects.of(sourceJdbcTemplate.getDataSource());
+        List<String> conditions = new ArrayList<>();
+        if (predicate != null) {
+            conditions.add(predicate);
+        }
+        // Incremental runs read (watermarkFrom, watermarkTo]; the first run has no lower bound
+        List<Object> parameters = new ArrayList<>();
+        if (watermarkColumn != null) {
+            String column = sourceDialect.quoteIdentifier(watermarkColumn);
+            if (watermarkFrom != null) {
+                conditions.add(column + " > ?");
+                parameters.add(WatermarkService.parameterValue(watermarkFrom, watermarkType));
+            }
+            if (watermarkTo != null) {
+                conditions.add(column + " <= ?");
+                parameters.add(WatermarkService.parameterValue(watermarkTo, watermarkType));
+            }
+        }
+
+        if (checkpointed) {
+            List<String> keyColumns = schemaDiscoveryService.findKeyColumns(tableName, sourceJdbcTemplate).stream()
+                    .map(SchemaDiscoveryService.KeyColumn::name)
+                    .toList();
+            if (!keyColumns.isEmpty()) {
+                return new KeysetTransferItemReader(sourceJdbcTemplate, sourceDialect, tableName, keyColumns,
+                        conditions, parameters, fetchSize, KeysetTransferItemReader.DEFAULT_NAME);
+            }
+            log.warn("Table {} has no primary or unique key; it cannot be checkpointed and restarts from the beginning", tableName);
+        }
+
+        JdbcCursorItemReader<TransferRow> reader = jdbcCursorItemReader(
+                sourceJdbcTemplate, sourceDialect, tableName, fetchSize, streaming);
+        if (!conditions.isEmpty()) {
+            reader.setSql(reader.getSql() + " WHERE " + String.join(" AND ", conditions));
+        }
+        if (!parameters.isEmpty()) {
+            reader.setPreparedStatementSetter(new ArgumentPreparedStatementSetter(parameters.toArray()));
+        }
+        if (staging) {
+            return new StagingItemReader(reader, StagingItemReader.directory(stagingDirectory, jobId, stepName),
+                    stagingBatchRows, stagingBufferRows);
+        }
+        return reader;
+    }
+
+    private static int maxConnections(DataSource dataSource) {
+        return dataSource instanceof HikariDataSource hikariDataSource ? hikariDataSource.getMaximumPoolSize() : Integer.MAX_VALUE;
+    }
+
+    public JdbcCursorItemReader<TransferRow> jdbcCursorItemReader(JdbcTemplate jdbcTemplate, SqlDialect dialect,
+                                                                          String tableName, int fetchSize, boolean streaming) {
+        JdbcCursorItemReader<TransferRow> reader = new JdbcCursorItemReader<>();
         reader.setDataSource(jdbcTemplate.getDataSource());
         reader.setSql("SELECT * FROM " + tableName);
-        reader.setRowMapper((rs, rowNum) -> {
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
-            Map<String, Object> row = new HashMap<>();
-            for (int i = 1; i <= columnCount; i++) {
-                row.put(metaData.getColumnName(i), rs.getObject(i));
+        // An unordered scan cannot be resumed by row position, so no restart state is kept
+        reader.setName("cursorReader");
+        reader.setSaveState(false);
+        if (streaming) {
+            // Stream the source table instead of letting the driver buffer it whole
+            reader.setFetchSize(dialect.streamingFetchSize(fetchSize));
+            if (dialect.streamingRequiresTransaction()) {
+                reader.setConnectionAutoCommit(false);
             }
-            return row;
-        });
+        } else {
+            reader.setFetchSize(fetchSize);
+        }
+        // Column metadata is resolved once per reader; rows are positional arrays
+        reader.setRowMapper(new TransferRowMapper());
         return reader;
     }
 
-    private JdbcBatchItemWriter<Map<String, Object>> jdbcBatchItemWriter(JdbcTemplate jdbcTemplate, String tableName) {
-        NamedParameterJdbcTemplate namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
-
-        String sql = generateInsertSql(jdbcTemplate, tableName);
+    private JdbcBatchItemWriter<TransferRow> jdbcBatchItemWriter(JdbcTemplate jdbcTemplate, SqlDialect dialect, String tableName) {
+        // Retrieve columns from the destination table
+        List<String> columns = getColumnNames(jdbcTemplate, tableName);
 
-        JdbcBatchItemWriter<Map<String, Object>> writer = new JdbcBatchItemWriter<>();
-        writer.setItemSqlParameterSourceProvider(new MapSqlParameterSourceProvider());
-        writer.setSql(sql);
-        writer.setJdbcTemplate(namedParameterJdbcTemplate);
+        JdbcBatchItemWriter<TransferRow> writer = new JdbcBatchItemWriter<>();
+        writer.setSql(dialect.insertSql(tableName, columns, 1));
+        writer.setItemPreparedStatementSetter(new TransferRowPreparedStatementSetter(columns));
+        writer.setJdbcTemplate(new NamedParameterJdbcTemplate(jdbcTemplate));
         writer.afterPropertiesSet();
         return writer;
     }
 
-    private String generateInsertSql(JdbcTemplate jdbcTemplate, String tableName) {
-        // Retrieve columns from the destination table
+    /**
+     * Writer of incremental runs: one upsert per row, sent in JDBC batches. The key is the one given in the
+     * request, spelled as the destination spells its columns, or by default the primary key (or a unique index
+     * without nullable columns) of the destination table.
+     */
+    private JdbcBatchItemWriter<TransferRow> upsertItemWriter(SchemaDiscoveryService schemaDiscoveryService,
+                                                              JdbcTemplate jdbcTemplate, SqlDialect dialect,
+                                                              String tableName, String keyColumns) {
         List<String> columns = getColumnNames(jdbcTemplate, tableName);
-        String columnList = String.join(", ", columns);
-        String parameterList = columns.stream().map(col -> ":" + col).collect(Collectors.joining(", "));
-        return "INSERT INTO " + tableName + " (" + columnList + ") VALUES (" + parameterList + ")";
+        List<String> keys = keyColumns != null
+                ? destinationKeyColumns(columns, List.of(keyColumns.split(",")), tableName)
+                : schemaDiscoveryService.findKeyColumns(tableName, jdbcTemplate).stream()
+                    .map(SchemaDiscoveryService.KeyColumn::name)
+                    .toList();
+        if (keys.isEmpty()) {
+            throw new IllegalStateException("Table " + tableName + " has no primary key; set keyColumns for incremental transfers");
+        }
+
+        JdbcBatchItemWriter<TransferRow> writer = new JdbcBatchItemWriter<>();
+        writer.setSql(dialect.upsertSql(tableName, columns, keys));
+        writer.setItemPreparedStatementSetter(new TransferRowPreparedStatementSetter(columns));
+        writer.setJdbcTemplate(new NamedParameterJdbcTemplate(jdbcTemplate));
+        // An upsert that changes nothing reports 0 rows on some engines
+        writer.setAssertUpdates(false);
+        writer.afterPropertiesSet();
+        return writer;
+    }
+
+    /**
+     * Replaces each requested key column by the destination column of the same name, ignoring case, so the
+     * upsert quotes the key as the destination spells it and leaves it out of the updated columns.
+     *
+     * @throws IllegalStateException if a key is not a column of the destination table
+     */
+    static List<String> destinationKeyColumns(List<String> columns, List<String> keyColumns, String tableName) {
+        List<String> keys = new ArrayList<>();
+        for (String key : keyColumns) {
+            String name = key.trim();
+            String column = columns.stream().filter(name::equalsIgnoreCase).findFirst()
+                    .orElseThrow(() -> new IllegalStateException("Key column " + name + " is not a column of table " + tableName));
+            if (!keys.contains(column)) {
+                keys.add(column);
+            }
+        }
+        return keys;
     }
 
     private List<String> getColumnNames(JdbcTemplate jdbcTemplate, String tableName) {
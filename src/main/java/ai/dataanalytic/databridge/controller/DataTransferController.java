@@ -1,67 +1,149 @@
 package ai.dataanalytic.databridge.controller;
 
 import ai.dataanalytic.databridge.dto.DataTransferRequest;
-import ai.dataanalytic.databridge.service.ConnectionHolder;
+import ai.dataanalytic.databridge.dto.SchemaTransferStatus;
+import ai.dataanalytic.databridge.dto.TransferStatus;
+import ai.dataanalytic.databridge.service.DataTransferService;
+import ai.dataanalytic.databridge.service.SchemaTransferService;
+import ai.dataanalytic.querybridge.dto.SchemaSnapshot;
 import ai.dataanalytic.querybridge.service.DatabaseService;
 import jakarta.servlet.http.HttpSession;
-import org.springframework.batch.core.Job;
-import org.springframework.batch.core.JobParameters;
-import org.springframework.batch.core.JobParametersBuilder;
-import org.springframework.batch.core.launch.JobLauncher;
-import org.springframework.beans.factory.annotation.Autowired;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.launch.JobExecutionNotRunningException;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobRestartException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.UUID;
-
+@Slf4j
 @RestController
 @RequestMapping("/data/bridge")
 public class DataTransferController {
 
-    private final JobLauncher jobLauncher;
-
-    private final DatabaseService databaseService;
+    private final DataTransferService dataTransferService;
 
+    private final SchemaTransferService schemaTransferService;
 
-    private final Job dataTransferJob;
+    private final DatabaseService databaseService;
 
-    public DataTransferController(JobLauncher jobLauncher, DatabaseService databaseService, Job dataTransferJob) {
-        this.jobLauncher = jobLauncher;
+    public DataTransferController(DataTransferService dataTransferService, SchemaTransferService schemaTransferService,
+                                  DatabaseService databaseService) {
+        this.dataTransferService = dataTransferService;
+        this.schemaTransferService = schemaTransferService;
         this.databaseService = databaseService;
-        this.dataTransferJob = dataTransferJob;
     }
 
+    /**
+     * Queues a transfer and returns its execution id; the copy runs in the background.
+     */
     @PostMapping("/transfer")
-    public ResponseEntity<String> transferData(@RequestBody DataTransferRequest request, HttpSession session) {
+    public ResponseEntity<TransferStatus> transferData(@RequestBody DataTransferRequest request, HttpSession session) {
+        String userId = databaseService.getUserIdFromSession(session);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
         try {
-            // Retrieve JdbcTemplates
-            JdbcTemplate sourceJdbcTemplate = databaseService.getJdbcTemplateFromSession(session, request.getSourceConnectionId());
-            JdbcTemplate destinationJdbcTemplate = databaseService.getJdbcTemplateFromSession(session, request.getDestinationConnectionId());
-
-            if (sourceJdbcTemplate == null || destinationJdbcTemplate == null) {
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Database connections not found");
-            }
-
-            // Store JdbcTemplates in a shared context
-            String jobId = UUID.randomUUID().toString();
-            ConnectionHolder.storeJdbcTemplate(jobId, "source", sourceJdbcTemplate);
-            ConnectionHolder.storeJdbcTemplate(jobId, "destination", destinationJdbcTemplate);
+            TransferStatus status = dataTransferService.start(request, userId,
+                    databaseService.getConnectionHandle(session, request.getSourceConnectionId()),
+                    databaseService.getConnectionHandle(session, request.getDestinationConnectionId()));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorStatus(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorStatus(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error starting transfer", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorStatus("Error starting job: " + e.getMessage()));
+        }
+    }
 
-            JobParameters jobParameters = new JobParametersBuilder()
-                    .addString("jobId", jobId)
-                    .addString("tableName", request.getTableName())
-                    .toJobParameters();
+    /**
+     * Progress of a transfer: rows read and written, throughput, ETA and running partitions.
+     */
+    @GetMapping("/transfer/{executionId}")
+    public ResponseEntity<TransferStatus> getTransferStatus(@PathVariable long executionId, HttpSession session) {
+        TransferStatus status = dataTransferService.getStatus(executionId, databaseService.getUserIdFromSession(session));
+        return status == null ? ResponseEntity.status(HttpStatus.NOT_FOUND).build() : ResponseEntity.ok(status);
+    }
 
-            jobLauncher.run(dataTransferJob, jobParameters);
+    @PostMapping("/transfer/{executionId}/stop")
+    public ResponseEntity<TransferStatus> stopTransfer(@PathVariable long executionId, HttpSession session) {
+        try {
+            TransferStatus status = dataTransferService.stop(executionId, databaseService.getUserIdFromSession(session));
+            return status == null ? ResponseEntity.status(HttpStatus.NOT_FOUND).build() : ResponseEntity.ok(status);
+        } catch (JobExecutionNotRunningException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorStatus("Transfer is not running"));
+        } catch (Exception e) {
+            log.error("Error stopping transfer {}", executionId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorStatus("Error stopping job: " + e.getMessage()));
+        }
+    }
 
-            return ResponseEntity.ok("Job started successfully");
+    @PostMapping("/transfer/{executionId}/restart")
+    public ResponseEntity<TransferStatus> restartTransfer(@PathVariable long executionId, HttpSession session) {
+        String userId = databaseService.getUserIdFromSession(session);
+        String[] connectionIds = dataTransferService.getConnectionIds(executionId, userId);
+        if (connectionIds == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        try {
+            TransferStatus status = dataTransferService.restart(executionId, userId,
+                    databaseService.getConnectionHandle(session, connectionIds[0]),
+                    databaseService.getConnectionHandle(session, connectionIds[1]));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorStatus(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorStatus(e.getMessage()));
+        } catch (JobInstanceAlreadyCompleteException | JobExecutionAlreadyRunningException | JobRestartException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorStatus(e.getMessage()));
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error starting job: " + e.getMessage());
+            log.error("Error restarting transfer {}", executionId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorStatus("Error restarting job: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Copies a list of tables, or the whole source schema, in foreign key order.
+     */
+    @PostMapping("/transfer/schema")
+    public ResponseEntity<SchemaTransferStatus> transferSchema(@RequestBody DataTransferRequest request, HttpSession session) {
+        String userId = databaseService.getUserIdFromSession(session);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        SchemaSnapshot snapshot = databaseService.getSchemaSnapshot(session, request.getSourceConnectionId()).getBody();
+        if (snapshot == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
+        try {
+            SchemaTransferStatus status = schemaTransferService.start(request, userId, snapshot,
+                    databaseService.getConnectionHandle(session, request.getSourceConnectionId()),
+                    databaseService.getConnectionHandle(session, request.getDestinationConnectionId()));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid schema transfer request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    @GetMapping("/transfer/schema/{transferId}")
+    public ResponseEntity<SchemaTransferStatus> getSchemaTransferStatus(@PathVariable String transferId, HttpSession session) {
+        SchemaTransferStatus status = schemaTransferService.getStatus(transferId, databaseService.getUserIdFromSession(session));
+        return status == null ? ResponseEntity.status(HttpStatus.NOT_FOUND).build() : ResponseEntity.ok(status);
+    }
+
+    private static TransferStatus errorStatus(String message) {
+        TransferStatus status = new TransferStatus();
+        status.setMessage(message);
+        return status;
     }
 }
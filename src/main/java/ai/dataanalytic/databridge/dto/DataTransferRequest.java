@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -11,4 +13,36 @@ public class DataTransferRequest {
     private String sourceConnectionId;
     private String destinationConnectionId;
     private String tableName;
+    // Varias tablas en una sola transferencia, ordenadas según sus claves foráneas
+    private List<String> tableNames;
+    // Copia todas las tablas del esquema de origen
+    private Boolean wholeSchema;
+    // Crea la tabla de destino si no existe y construye sus índices al terminar la carga
+    private Boolean createTable;
+    // Número de particiones que se copian en paralelo; 1 o nulo copia la tabla en un solo hilo
+    private Integer parallelism;
+    // Filas por transacción; en modo adaptativo es el tamaño inicial
+    private Integer chunkSize;
+    // Fetch size del cursor de origen
+    private Integer fetchSize;
+    // Cursor en streaming según el dialecto (autocommit desactivado en PostgreSQL, fetch por filas en MySQL); por defecto true
+    private Boolean streaming;
+    // Cómo se escribe en destino: bulk (COPY, LOAD DATA, bulk copy), multi-row (INSERT con varias filas) o batch (lotes JDBC)
+    private String writeMode;
+    // Ajusta el tamaño del chunk mientras la latencia de cada commit se mantenga por debajo del objetivo
+    private Boolean adaptiveChunkSize;
+    private Integer maxChunkSize;
+    private Long targetCommitMillis;
+    // Lee cada partición por orden de clave y guarda la última clave confirmada para reanudar tras un fallo
+    private Boolean checkpointed;
+    // Desacopla lectura y escritura con un búfer en memoria que se vuelca a disco comprimido si el destino va más lento
+    private Boolean staging;
+    // Escribe con upsert por clave, de modo que repetir un chunk tras un reinicio no duplica filas
+    private Boolean upsert;
+    // Copia solo las filas nuevas o modificadas desde la última transferencia y las aplica con upsert
+    private Boolean incremental;
+    // Columna creciente que marca el avance: clave numérica o fecha de modificación (updated_at)
+    private String watermarkColumn;
+    // Columnas que identifican la fila en destino para el upsert; por defecto su clave primaria
+    private List<String> keyColumns;
 }
@@ -3,14 +3,57 @@ package ai.dataanalytic.databridge.dto;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Structured query over one table. It is compiled to parameterized SQL for the engine of the connection,
+ * so projection, filtering, grouping and aggregation run in the source database.
+ */
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class QueryRequest {
     private String tableName;
+    // Columnas devueltas; con groupBy deben ser columnas de agrupación. Vacío: todas, o las de agrupación
     private List<String> columns;
-    private Map<String, String> filters;
+    // Condiciones unidas con AND; las que nombran el alias de un agregado van al HAVING
+    private List<Filter> filters;
+    private List<String> groupBy;
+    private List<Aggregate> aggregates;
+    // Columnas o alias de agregados
+    private List<Order> orderBy;
+    // Máximo de filas; el servidor aplica su propio límite si este es mayor o nulo
+    private Integer limit;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Filter {
+        private String column;
+        // eq, ne, lt, le, gt, ge, in, not_in, between, like, is_null, is_not_null
+        private String operator;
+        // Un valor, o una lista para in, not_in y between
+        private Object value;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Aggregate {
+        // count, count_distinct, sum, avg, min, max
+        private String function;
+        // Nula solo en count, que cuenta las filas
+        private String column;
+        private String alias;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Order {
+        private String column;
+        // asc (por defecto) o desc
+        private String direction;
+    }
 }
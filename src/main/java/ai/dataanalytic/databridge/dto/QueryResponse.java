@@ -4,9 +4,18 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class QueryResponse {
+    // SQL generado, con parámetros posicionales en lugar de valores
     private String query;
+    private List<String> fields;
+    // Una fila por array, en el orden de fields
+    private List<Object[]> rows;
+    // Hay más filas que el límite aplicado
+    private boolean truncated;
+    private String error;
 }
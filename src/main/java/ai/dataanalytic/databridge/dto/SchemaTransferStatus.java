@@ -0,0 +1,37 @@
+package ai.dataanalytic.databridge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchemaTransferStatus {
+    private String transferId;
+    private String status;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private int totalTables;
+    private int completedTables;
+    private int failedTables;
+    private List<TableTransfer> tables = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TableTransfer {
+        private String tableName;
+        // Tablas referenciadas por claves foráneas que se cargan antes que esta
+        private List<String> dependsOn;
+        // PENDING, RUNNING, COMPLETED, FAILED o SKIPPED (falló una tabla de la que depende)
+        private String status;
+        // Ejecución del job de la tabla; se consulta en /data/bridge/transfer/{executionId}
+        private Long executionId;
+        private String message;
+    }
+}
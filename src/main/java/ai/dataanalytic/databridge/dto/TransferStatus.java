@@ -0,0 +1,34 @@
+package ai.dataanalytic.databridge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferStatus {
+    private Long executionId;
+    private String jobId;
+    private String tableName;
+    private String status;
+    private String exitStatus;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private long readCount;
+    private long writeCount;
+    private long skipCount;
+    // Filas escritas por segundo desde el inicio
+    private double rowsPerSecond;
+    // Filas estimadas en origen (estadísticas del motor); nulo si no se conocen
+    private Long estimatedTotalRows;
+    private Long etaSeconds;
+    private int partitions;
+    private int completedPartitions;
+    // Particiones en ejecución en este momento
+    private List<String> runningPartitions;
+    private String message;
+}
@@ -0,0 +1,28 @@
+package ai.dataanalytic.databridge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "transfer_watermarks")
+public class TransferWatermark {
+    @Id
+    private String id; // userId:sourceConnectionId:destinationConnectionId:tableName
+    private String userId;
+    private String sourceConnectionId;
+    private String destinationConnectionId;
+    private String tableName;
+    // Columna creciente (clave numérica o updated_at) que marca hasta dónde se ha copiado
+    private String column;
+    // Valor máximo de la columna en la última transferencia completada (Long, fecha o texto)
+    private Object value;
+    private Long lastExecutionId;
+    private LocalDateTime updatedAt;
+}
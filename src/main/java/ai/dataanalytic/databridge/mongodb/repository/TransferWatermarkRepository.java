@@ -0,0 +1,7 @@
+package ai.dataanalytic.databridge.mongodb.repository;
+
+import ai.dataanalytic.databridge.dto.TransferWatermark;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface TransferWatermarkRepository extends MongoRepository<TransferWatermark, String> {
+}
@@ -0,0 +1,63 @@
+package ai.dataanalytic.databridge.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Node-wide budget of partitions copied at the same time, shared by every data transfer job: single table
+ * transfers, restarts and the tables of schema transfers. A job takes as many permits as partitions it
+ * copies in parallel before its first step and gives them back when it ends, so the number of source and
+ * destination connections in use stays bounded however many jobs are running.
+ */
+@Slf4j
+@Service
+public class ConnectionBudget {
+
+    private final Semaphore permits;
+
+    private final int budget;
+
+    // Permisos tomados por cada ejecución, para devolver exactamente esos
+    private final Map<Long, Integer> held = new ConcurrentHashMap<>();
+
+    public ConnectionBudget(@Value("${databridge.connection-budget:16}") int budget) {
+        this.budget = budget;
+        this.permits = new Semaphore(budget, true);
+    }
+
+    /**
+     * Waits until the job can take one permit per partition it copies in parallel.
+     *
+     * @throws IllegalStateException if the thread is interrupted while waiting
+     */
+    public void acquire(JobExecution execution) {
+        Long parallelism = execution.getJobParameters().getLong("parallelism");
+        int wanted = (int) Math.max(1, Math.min(budget, parallelism == null ? 1 : parallelism));
+        if (!permits.tryAcquire(wanted)) {
+            log.info("Transfer {} waiting for {} connections of the node budget", execution.getId(), wanted);
+            try {
+                permits.acquire(wanted);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for connections", e);
+            }
+        }
+        held.put(execution.getId(), wanted);
+    }
+
+    /**
+     * Gives back the permits of the job, if it took any.
+     */
+    public void release(JobExecution execution) {
+        Integer taken = held.remove(execution.getId());
+        if (taken != null) {
+            permits.release(taken);
+        }
+    }
+}
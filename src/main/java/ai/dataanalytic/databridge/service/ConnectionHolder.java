@@ -8,21 +8,37 @@ import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ConnectionHolder {
-    private static final Map<String, Map<String, JdbcTemplate>> connections = new ConcurrentHashMap<>();
 
-    public static void storeJdbcTemplate(String jobId, String type, JdbcTemplate jdbcTemplate) {
-        connections.computeIfAbsent(jobId, k -> new ConcurrentHashMap<>()).put(type, jdbcTemplate);
+    // La plantilla y la liberación de la referencia al pool que el job mantiene mientras corre
+    private record Held(JdbcTemplate jdbcTemplate, Runnable release) {
+    }
+
+    private static final Map<String, Map<String, Held>> connections = new ConcurrentHashMap<>();
+
+    /**
+     * Stores a connection of a job. The release runs when the job is removed or the connection is replaced.
+     */
+    public static void storeJdbcTemplate(String jobId, String type, JdbcTemplate jdbcTemplate, Runnable release) {
+        Held previous = connections.computeIfAbsent(jobId, k -> new ConcurrentHashMap<>())
+                .put(type, new Held(jdbcTemplate, release));
+        if (previous != null) {
+            previous.release().run();
+        }
     }
 
     public static JdbcTemplate getJdbcTemplate(String jobId, String type) {
-        Map<String, JdbcTemplate> jobConnections = connections.get(jobId);
+        Map<String, Held> jobConnections = connections.get(jobId);
         if (jobConnections != null) {
-            return jobConnections.get(type);
+            Held held = jobConnections.get(type);
+            return held == null ? null : held.jdbcTemplate();
         }
         return null;
     }
 
     public static void removeJob(String jobId) {
-        connections.remove(jobId);
+        Map<String, Held> removed = connections.remove(jobId);
+        if (removed != null) {
+            removed.values().forEach(held -> held.release().run());
+        }
     }
 }
@@ -0,0 +1,423 @@
+package ai.dataanalytic.databridge.service;
+
+import ai.dataanalytic.databridge.batch.KeysetTransferItemReader;
+import ai.dataanalytic.databridge.batch.StagingItemReader;
+import ai.dataanalytic.databridge.dto.DataTransferRequest;
+import ai.dataanalytic.databridge.dto.TransferStatus;
+import ai.dataanalytic.querybridge.config.DataSourcePoolRegistry;
+import ai.dataanalytic.querybridge.service.ConnectionHandle;
+import ai.dataanalytic.querybridge.service.RowCountService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.launch.JobOperator;
+import org.springframework.batch.core.repository.JobRestartException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Launches data transfers in the background and reports their progress.
+ * Transfers and their restarts run on the bounded executor of the asynchronous job launcher; the HTTP request
+ * only waits for the job to be queued. Progress and stop go through {@link JobExplorer} and {@link JobOperator},
+ * and every operation checks that the job belongs to the calling user.
+ * A job holds a reference to the pools of its connections from the moment it is prepared until its
+ * {@code afterJob} listener runs, so evicting the user connection never closes a pool under a running transfer.
+ */
+@Slf4j
+@Service
+public class DataTransferService {
+
+    static final String WORKER_STEP_PREFIX = "dataTransferWorkerStep";
+
+    private final JobLauncher jobLauncher;
+
+    private final JobLauncher syncJobLauncher;
+
+    private final JobExplorer jobExplorer;
+
+    private final JobOperator jobOperator;
+
+    private final Job dataTransferJob;
+
+    private final RowCountService rowCountService;
+
+    private final WatermarkService watermarkService;
+
+    private final DataSourcePoolRegistry dataSourcePoolRegistry;
+
+    private final String stagingDirectory;
+
+    public DataTransferService(@Qualifier("asyncJobLauncher") JobLauncher jobLauncher,
+                               @Qualifier("jobLauncher") JobLauncher syncJobLauncher,
+                               JobExplorer jobExplorer,
+                               JobOperator jobOperator,
+                               @Qualifier("dataTransferJob") Job dataTransferJob,
+                               RowCountService rowCountService,
+                               WatermarkService watermarkService,
+                               DataSourcePoolRegistry dataSourcePoolRegistry,
+                               @Value("${databridge.staging.directory:${java.io.tmpdir}/databridge-staging}") String stagingDirectory) {
+        this.jobLauncher = jobLauncher;
+        this.syncJobLauncher = syncJobLauncher;
+        this.jobExplorer = jobExplorer;
+        this.jobOperator = jobOperator;
+        this.dataTransferJob = dataTransferJob;
+        this.rowCountService = rowCountService;
+        this.watermarkService = watermarkService;
+        this.dataSourcePoolRegistry = dataSourcePoolRegistry;
+        this.stagingDirectory = stagingDirectory;
+    }
+
+    /**
+     * Queues a transfer and returns right away with its execution id.
+     *
+     * @throws IllegalArgumentException if a connection is not found or the request is not valid
+     * @throws TaskRejectedException    if the transfer queue is full
+     */
+    public TransferStatus start(DataTransferRequest request, String userId, ConnectionHandle source, ConnectionHandle destination)
+            throws Exception {
+        if (source == null || destination == null) {
+            throw new IllegalArgumentException("Database connections not found");
+        }
+
+        String jobId = UUID.randomUUID().toString();
+        JobParameters jobParameters = prepareJob(request, request.getTableName(), jobId, userId, source, destination);
+        try {
+            JobExecution execution = jobLauncher.run(dataTransferJob, jobParameters);
+            if (isRejected(execution)) {
+                // The launcher marks the execution FAILED without rethrowing; no listener runs for it
+                throw new TaskRejectedException("Transfer queue is full, retry later");
+            }
+            return toStatus(execution);
+        } catch (Exception e) {
+            // El job no llegó a arrancar: su listener no liberará las conexiones
+            ConnectionHolder.removeJob(jobId);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the transfer of one table in the calling thread and returns when it ends.
+     * Used by the schema transfers, which schedule tables themselves.
+     */
+    public JobExecution runTable(DataTransferRequest request, String tableName, String jobId, String userId,
+                                 ConnectionHandle source, ConnectionHandle destination) throws Exception {
+        JobParameters jobParameters = prepareJob(request, tableName, jobId, userId, source, destination);
+        try {
+            return syncJobLauncher.run(dataTransferJob, jobParameters);
+        } catch (Exception e) {
+            ConnectionHolder.removeJob(jobId);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the execution id of the running transfer started with the given jobId, or null.
+     */
+    public Long findRunningExecutionId(String jobId) {
+        for (JobExecution execution : jobExplorer.findRunningJobExecutions(dataTransferJob.getName())) {
+            if (jobId.equals(execution.getJobParameters().getString("jobId"))) {
+                return execution.getId();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the progress of a transfer, or null if it does not exist or belongs to another user.
+     */
+    public TransferStatus getStatus(long executionId, String userId) {
+        JobExecution execution = findOwnedExecution(executionId, userId);
+        return execution == null ? null : toStatus(execution);
+    }
+
+    /**
+     * Asks a running transfer to stop. Workers stop at the next chunk boundary.
+     *
+     * @return the status after the request, or null if the transfer does not exist or belongs to another user
+     */
+    public TransferStatus stop(long executionId, String userId) throws Exception {
+        JobExecution execution = findOwnedExecution(executionId, userId);
+        if (execution == null) {
+            return null;
+        }
+        jobOperator.stop(executionId);
+        return toStatus(jobExplorer.getJobExecution(executionId));
+    }
+
+    /**
+     * Queues the restart of a stopped or failed transfer and returns right away with the new execution.
+     * Completed partitions are skipped; the others resume, which needs every unfinished partition that already
+     * committed rows to be able to continue without writing them twice (see {@link #checkResumable}). The restart is launched with the parameters of the
+     * execution on the asynchronous launcher, so it shares the limits of new transfers (the {@link JobOperator}
+     * of the batch configuration would run it on the calling thread).
+     *
+     * @return the status of the new execution, or null if the transfer does not exist or belongs to another user
+     * @throws JobRestartException   if the transfer is running, is not its latest execution or cannot resume
+     * @throws TaskRejectedException if the transfer queue is full
+     */
+    public TransferStatus restart(long executionId, String userId, ConnectionHandle source, ConnectionHandle destination)
+            throws Exception {
+        JobExecution execution = findOwnedExecution(executionId, userId);
+        if (execution == null) {
+            return null;
+        }
+        if (source == null || destination == null) {
+            throw new IllegalArgumentException("Database connections not found");
+        }
+        if (execution.isRunning()) {
+            // Its connections are still in use; replacing them would release the references it holds
+            throw new JobRestartException("Transfer is still running: " + executionId);
+        }
+        JobExecution last = jobExplorer.getLastJobExecution(execution.getJobInstance());
+        if (last != null && !last.getId().equals(execution.getId())) {
+            throw new JobRestartException("Transfer " + executionId + " was already restarted as " + last.getId());
+        }
+        checkResumable(execution);
+        // The restarted job looks its connections up by the same jobId
+        String jobId = execution.getJobParameters().getString("jobId");
+        try {
+            hold(jobId, "source", source);
+            hold(jobId, "destination", destination);
+            JobExecution restarted = jobLauncher.run(dataTransferJob, execution.getJobParameters());
+            if (isRejected(restarted)) {
+                throw new TaskRejectedException("Transfer queue is full, retry later");
+            }
+            return toStatus(restarted);
+        } catch (Exception e) {
+            ConnectionHolder.removeJob(jobId);
+            throw e;
+        }
+    }
+
+    /**
+     * Checks that restarting the transfer cannot write a row twice. A partition read with a plain cursor starts
+     * over on restart, so it may only have committed rows if the transfer upserts (incremental runs always do),
+     * if its reader checkpointed the last key, or if it staged its whole source and loads the rest from disk.
+     *
+     * @throws JobRestartException naming the first partition that would copy its committed rows again
+     */
+    private void checkResumable(JobExecution execution) throws JobRestartException {
+        JobParameters parameters = execution.getJobParameters();
+        if (Boolean.parseBoolean(parameters.getString("upsert")) || parameters.getString(WatermarkService.COLUMN) != null) {
+            return;
+        }
+        String jobId = parameters.getString("jobId");
+        for (StepExecution step : execution.getStepExecutions()) {
+            if (!step.getStepName().startsWith(WORKER_STEP_PREFIX) || step.getStatus() == BatchStatus.COMPLETED
+                    || step.getWriteCount() == 0) {
+                continue;
+            }
+            if (KeysetTransferItemReader.hasCheckpoint(step.getExecutionContext(), KeysetTransferItemReader.DEFAULT_NAME)
+                    || StagingItemReader.isStaged(StagingItemReader.directory(stagingDirectory, jobId, step.getStepName()))) {
+                continue;
+            }
+            throw new JobRestartException("Partition " + step.getStepName() + " already wrote " + step.getWriteCount()
+                    + " rows and would copy them again; start a new transfer with upsert or checkpointed");
+        }
+    }
+
+    /**
+     * Returns the connection ids a transfer was started with, as {@code [source, destination]}.
+     */
+    public String[] getConnectionIds(long executionId, String userId) {
+        JobExecution execution = findOwnedExecution(executionId, userId);
+        if (execution == null) {
+            return null;
+        }
+        JobParameters parameters = execution.getJobParameters();
+        return new String[]{parameters.getString("sourceConnectionId"), parameters.getString("destinationConnectionId")};
+    }
+
+    /**
+     * Stores the connections of a new job and builds its parameters from the request.
+     */
+    private JobParameters prepareJob(DataTransferRequest request, String tableName, String jobId, String userId,
+                                     ConnectionHandle source, ConnectionHandle destination) {
+        if (Boolean.TRUE.equals(request.getIncremental())
+                && (request.getWatermarkColumn() == null || request.getWatermarkColumn().isBlank())) {
+            throw new IllegalArgumentException("Incremental transfers need a watermark column");
+        }
+        if (Boolean.TRUE.equals(request.getStaging()) && Boolean.TRUE.equals(request.getCheckpointed())) {
+            // The staged rows are not read in key order, so there is no committed key to resume from
+            throw new IllegalArgumentException("Staged transfers cannot be checkpointed");
+        }
+
+        JobParametersBuilder builder = new JobParametersBuilder()
+                .addString("jobId", jobId)
+                .addString("tableName", tableName)
+                .addLong("parallelism", request.getParallelism() == null ? 1L : request.getParallelism().longValue())
+                // Needed to reopen the connections on restart and to check ownership
+                .addString("userId", userId, false)
+                .addString("sourceConnectionId", request.getSourceConnectionId(), false)
+                .addString("destinationConnectionId", request.getDestinationConnectionId(), false);
+        // Ajustes opcionales: si faltan se usan los valores por defecto de databridge.*
+        if (request.getChunkSize() != null) {
+            builder.addLong("chunkSize", request.getChunkSize().longValue());
+        }
+        if (request.getFetchSize() != null) {
+            builder.addLong("fetchSize", request.getFetchSize().longValue());
+        }
+        if (request.getStreaming() != null) {
+            builder.addString("streaming", request.getStreaming().toString());
+        }
+        if (request.getCreateTable() != null) {
+            builder.addString("createTable", request.getCreateTable().toString());
+        }
+        if (request.getCheckpointed() != null) {
+            builder.addString("checkpointed", request.getCheckpointed().toString());
+        }
+        if (request.getStaging() != null) {
+            builder.addString("staging", request.getStaging().toString());
+        }
+        if (request.getUpsert() != null) {
+            builder.addString("upsert", request.getUpsert().toString());
+        }
+        if (request.getWriteMode() != null) {
+            builder.addString("writeMode", request.getWriteMode());
+        }
+        if (request.getAdaptiveChunkSize() != null) {
+            builder.addString("adaptiveChunkSize", request.getAdaptiveChunkSize().toString());
+        }
+        if (request.getMaxChunkSize() != null) {
+            builder.addLong("maxChunkSize", request.getMaxChunkSize().longValue());
+        }
+        if (request.getTargetCommitMillis() != null) {
+            builder.addLong("targetCommitMillis", request.getTargetCommitMillis());
+        }
+        if (Boolean.TRUE.equals(request.getIncremental())) {
+            watermarkService.addParameters(builder, userId, request.getSourceConnectionId(),
+                    request.getDestinationConnectionId(), tableName, request.getWatermarkColumn(),
+                    source.getJdbcTemplate(), source.getDialect());
+        }
+        if (request.getKeyColumns() != null && !request.getKeyColumns().isEmpty()) {
+            builder.addString("keyColumns", String.join(",", request.getKeyColumns()));
+        }
+        Long estimatedRows = estimateRows(source, tableName);
+        if (estimatedRows != null) {
+            builder.addLong("estimatedRows", estimatedRows, false);
+        }
+
+        // Store JdbcTemplates in a shared context
+        hold(jobId, "source", source);
+        try {
+            hold(jobId, "destination", destination);
+        } catch (RuntimeException e) {
+            ConnectionHolder.removeJob(jobId);
+            throw e;
+        }
+        return builder.toJobParameters();
+    }
+
+    /**
+     * Stores a connection of the job together with a reference to its pool, released by
+     * {@link ConnectionHolder#removeJob(String)} in the job's {@code afterJob} listener.
+     *
+     * @throws IllegalStateException if the pool of the connection has been closed in the meantime
+     */
+    private void hold(String jobId, String type, ConnectionHandle handle) {
+        DataSource dataSource = handle.getDataSource();
+        if (!dataSourcePoolRegistry.acquire(dataSource)) {
+            throw new IllegalStateException("Connection " + handle.getConnectionId() + " was closed, retry the transfer");
+        }
+        ConnectionHolder.storeJdbcTemplate(jobId, type, handle.getJdbcTemplate(),
+                () -> dataSourcePoolRegistry.release(dataSource));
+    }
+
+    /**
+     * Tells whether the asynchronous launcher could not queue the job: it records the rejection in the exit
+     * description of an execution that never started.
+     */
+    private static boolean isRejected(JobExecution execution) {
+        return execution.getStatus() == BatchStatus.FAILED
+                && execution.getStartTime() == null
+                && execution.getExitStatus().getExitDescription().contains(TaskRejectedException.class.getName());
+    }
+
+    private JobExecution findOwnedExecution(long executionId, String userId) {
+        JobExecution execution = jobExplorer.getJobExecution(executionId);
+        if (execution == null || userId == null || !userId.equals(execution.getJobParameters().getString("userId"))) {
+            return null;
+        }
+        return execution;
+    }
+
+    private Long estimateRows(ConnectionHandle source, String tableName) {
+        try {
+            return rowCountService.countRows(source.getConnectionKey(), tableName, source.getJdbcTemplate(),
+                    source.getDialect(), RowCountService.Mode.ESTIMATED).value();
+        } catch (Exception e) {
+            log.warn("Could not estimate rows of table {}: {}", tableName, e.getMessage());
+            return null;
+        }
+    }
+
+    private TransferStatus toStatus(JobExecution execution) {
+        TransferStatus status = new TransferStatus();
+        JobParameters parameters = execution.getJobParameters();
+        status.setExecutionId(execution.getId());
+        status.setJobId(parameters.getString("jobId"));
+        status.setTableName(parameters.getString("tableName"));
+        status.setStatus(execution.getStatus().name());
+        status.setExitStatus(execution.getExitStatus().getExitCode());
+        status.setStartTime(execution.getStartTime());
+        status.setEndTime(execution.getEndTime());
+
+        // Counts come from the worker steps; the manager step only aggregates them at the end
+        long read = 0;
+        long written = 0;
+        long skipped = 0;
+        int partitions = 0;
+        int completed = 0;
+        List<String> running = new ArrayList<>();
+        for (StepExecution step : execution.getStepExecutions()) {
+            if (!step.getStepName().startsWith(WORKER_STEP_PREFIX)) {
+                continue;
+            }
+            partitions++;
+            read += step.getReadCount();
+            written += step.getWriteCount();
+            skipped += step.getSkipCount();
+            if (step.getStatus() == BatchStatus.COMPLETED) {
+                completed++;
+            } else if (step.getStatus().isRunning()) {
+                running.add(step.getStepName());
+            }
+        }
+        status.setReadCount(read);
+        status.setWriteCount(written);
+        status.setSkipCount(skipped);
+        status.setPartitions(partitions);
+        status.setCompletedPartitions(completed);
+        status.setRunningPartitions(running);
+
+        if (execution.getStartTime() != null) {
+            LocalDateTime end = execution.getEndTime() != null ? execution.getEndTime() : LocalDateTime.now();
+            double seconds = Math.max(0.001, Duration.between(execution.getStartTime(), end).toMillis() / 1000.0);
+            status.setRowsPerSecond(written / seconds);
+        }
+        Long estimated = parameters.getLong("estimatedRows");
+        status.setEstimatedTotalRows(estimated);
+        if (estimated != null && execution.getStatus().isRunning() && status.getRowsPerSecond() > 0) {
+            status.setEtaSeconds((long) Math.ceil(Math.max(0, estimated - written) / status.getRowsPerSecond()));
+        }
+        if (!execution.getAllFailureExceptions().isEmpty()) {
+            status.setMessage(execution.getAllFailureExceptions().get(0).getMessage());
+        }
+        return status;
+    }
+}
@@ -0,0 +1,419 @@
+package ai.dataanalytic.databridge.service;
+
+import ai.dataanalytic.databridge.dto.DataTransferRequest;
+import ai.dataanalytic.databridge.dto.SchemaTransferStatus;
+import ai.dataanalytic.querybridge.config.DataSourcePoolRegistry;
+import ai.dataanalytic.querybridge.dto.SchemaSnapshot;
+import ai.dataanalytic.querybridge.service.ConnectionHandle;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies several tables, or a whole schema, in one request.
+ * Tables are ordered by the foreign keys found in the source schema: a table starts once every table it
+ * references has been copied, and independent tables run at the same time. Each table is a data transfer job,
+ * so it waits for its share of the node-wide {@link ConnectionBudget} like any other transfer.
+ * Finished transfers can be queried for the configured retention time and are then forgotten.
+ * Tables in a foreign key cycle cannot be ordered; they are copied one after another at the end and the
+ * destination constraints between them must be deferred or disabled.
+ */
+@Slf4j
+@Service
+public class SchemaTransferService {
+
+    private static final class TableState {
+        private final String tableName;
+        private final List<String> dependsOn;
+        private final String jobId = UUID.randomUUID().toString();
+        private volatile String status = "PENDING";
+        private volatile Long executionId;
+        private volatile String message;
+
+        private TableState(String tableName, List<String> dependsOn) {
+            this.tableName = tableName;
+            this.dependsOn = dependsOn;
+        }
+    }
+
+    private static final class SchemaTransfer {
+        private final String transferId = UUID.randomUUID().toString();
+        private final String userId;
+        private final Map<String, TableState> tables = new LinkedHashMap<>();
+        private final LocalDateTime startTime = LocalDateTime.now();
+        private volatile LocalDateTime endTime;
+
+        private SchemaTransfer(String userId) {
+            this.userId = userId;
+        }
+    }
+
+    private final DataTransferService dataTransferService;
+
+    private final DataSourcePoolRegistry dataSourcePoolRegistry;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    // Transferencias de esquema de este nodo por transferId; las terminadas caducan tras la retención
+    private final Cache<String, SchemaTransfer> transfers;
+
+    public SchemaTransferService(DataTransferService dataTransferService,
+                                 DataSourcePoolRegistry dataSourcePoolRegistry,
+                                 @Value("${databridge.max-concurrent-tables:4}") int maxConcurrentTables,
+                                 @Value("${databridge.schema-transfer.retention-seconds:3600}") long retentionSeconds) {
+        this.dataTransferService = dataTransferService;
+        this.dataSourcePoolRegistry = dataSourcePoolRegistry;
+        long retentionNanos = TimeUnit.SECONDS.toNanos(retentionSeconds);
+        this.transfers = Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, SchemaTransfer>() {
+                    @Override
+                    public long expireAfterCreate(String key, SchemaTransfer transfer, long currentTime) {
+                        // En curso: no caduca
+                        return Long.MAX_VALUE;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, SchemaTransfer transfer, long currentTime,
+                                                  long currentDuration) {
+                        return transfer.endTime == null ? Long.MAX_VALUE : retentionNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, SchemaTransfer transfer, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        this.executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentTables);
+        executor.setMaxPoolSize(maxConcurrentTables);
+        executor.setThreadNamePrefix("schema-transfer-");
+        executor.setDaemon(true);
+        executor.initialize();
+    }
+
+    /**
+     * Schedules the tables of the request and returns right away.
+     *
+     * @param snapshot schema of the source connection, used to find the tables and their foreign keys
+     * @throws IllegalArgumentException if no table is selected or a table is not in the source schema
+     */
+    public SchemaTransferStatus start(DataTransferRequest request, String userId, SchemaSnapshot snapshot,
+                                      ConnectionHandle source, ConnectionHandle destination) {
+        if (source == null || destination == null) {
+            throw new IllegalArgumentException("Database connections not found");
+        }
+        List<SchemaSnapshot.Table> selected = selectTables(request, snapshot);
+        Map<String, List<String>> dependencies = dependencies(selected);
+
+        // Los pools se mantienen abiertos hasta la última tabla, aunque la conexión del usuario se desaloje antes
+        if (!dataSourcePoolRegistry.acquire(source.getDataSource())) {
+            throw new IllegalStateException("Source connection was closed, retry the transfer");
+        }
+        if (!dataSourcePoolRegistry.acquire(destination.getDataSource())) {
+            dataSourcePoolRegistry.release(source.getDataSource());
+            throw new IllegalStateException("Destination connection was closed, retry the transfer");
+        }
+
+        SchemaTransfer transfer = new SchemaTransfer(userId);
+        for (String tableName : order(dependencies)) {
+            transfer.tables.put(tableName, new TableState(tableName, dependencies.get(tableName)));
+        }
+        transfers.put(transfer.transferId, transfer);
+
+        // Las tablas se encadenan por sus dependencias; cada futuro indica si la tabla se copió entera
+        Map<String, CompletableFuture<Boolean>> done = new HashMap<>();
+        for (TableState table : transfer.tables.values()) {
+            CompletableFuture<?>[] parents = table.dependsOn.stream().map(done::get).toArray(CompletableFuture[]::new);
+            CompletableFuture<Boolean> future = CompletableFuture.allOf(parents).thenApplyAsync(v -> {
+                for (CompletableFuture<?> parent : parents) {
+                    if (!Boolean.TRUE.equals(parent.join())) {
+                        table.status = "SKIPPED";
+                        table.message = "A referenced table was not copied";
+                        return false;
+                    }
+                }
+                return copyTable(request, transfer, table, source, destination);
+            }, executor);
+            done.put(table.tableName, future);
+        }
+        CompletableFuture.allOf(done.values().toArray(CompletableFuture[]::new))
+                .whenComplete((v, e) -> {
+                    transfer.endTime = LocalDateTime.now();
+                    // Se vuelve a escribir para que empiece a contar la retención
+                    transfers.put(transfer.transferId, transfer);
+                    dataSourcePoolRegistry.release(source.getDataSource());
+                    dataSourcePoolRegistry.release(destination.getDataSource());
+                });
+
+        log.info("Schema transfer {} started with {} tables", transfer.transferId, transfer.tables.size());
+        return toStatus(transfer);
+    }
+
+    /**
+     * Returns the progress of a schema transfer, or null if it does not exist or belongs to another user.
+     */
+    public SchemaTransferStatus getStatus(String transferId, String userId) {
+        SchemaTransfer transfer = transfers.getIfPresent(transferId);
+        if (transfer == null || userId == null || !userId.equals(transfer.userId)) {
+            return null;
+        }
+        return toStatus(transfer);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private boolean copyTable(DataTransferRequest request, SchemaTransfer transfer, TableState table,
+                              ConnectionHandle source, ConnectionHandle destination) {
+        try {
+            table.status = "RUNNING";
+            JobExecution execution = dataTransferService.runTable(request, table.tableName, table.jobId,
+                    transfer.userId, source, destination);
+            table.executionId = execution.getId();
+            table.status = execution.getStatus().name();
+            if (!execution.getAllFailureExceptions().isEmpty()) {
+                table.message = execution.getAllFailureExceptions().get(0).getMessage();
+            }
+            return execution.getStatus() == BatchStatus.COMPLETED;
+        } catch (Exception e) {
+            log.error("Error copying table {} in schema transfer {}", table.tableName, transfer.transferId, e);
+            table.status = "FAILED";
+            table.message = e.getMessage();
+            return false;
+        }
+    }
+
+    private List<SchemaSnapshot.Table> selectTables(DataTransferRequest request, SchemaSnapshot snapshot) {
+        if (Boolean.TRUE.equals(request.getWholeSchema())) {
+            return snapshot.getTables();
+        }
+        if (request.getTableNames() == null || request.getTableNames().isEmpty()) {
+            throw new IllegalArgumentException("No tables selected");
+        }
+        Map<String, SchemaSnapshot.Table> byName = new HashMap<>();
+        for (SchemaSnapshot.Table table : snapshot.getTables()) {
+            byName.put(table.getName().toLowerCase(), table);
+        }
+        Set<SchemaSnapshot.Table> selected = new LinkedHashSet<>();
+        for (String tableName : request.getTableNames()) {
+            SchemaSnapshot.Table table = byName.get(tableName.toLowerCase());
+            if (table == null) {
+                throw new IllegalArgumentException("Table not found in source schema: " + tableName);
+            }
+            selected.add(table);
+        }
+        return new ArrayList<>(selected);
+    }
+
+    /**
+     * Tables each selected table references through its foreign keys, limited to the selection.
+     * Self references do not order anything and are left out.
+     */
+    private Map<String, List<String>> dependencies(List<SchemaSnapshot.Table> tables) {
+        Map<String, String> names = new HashMap<>();
+        for (SchemaSnapshot.Table table : tables) {
+            names.put(table.getName().toLowerCase(), table.getName());
+        }
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        for (SchemaSnapshot.Table table : tables) {
+            Set<String> referenced = new LinkedHashSet<>();
+            for (SchemaSnapshot.ForeignKey foreignKey : table.getForeignKeys()) {
+                String name = names.get(foreignKey.getReferencedTable().toLowerCase());
+                if (name != null && !name.equals(table.getName())) {
+                    referenced.add(name);
+                }
+            }
+            dependencies.put(table.getName(), new ArrayList<>(referenced));
+        }
+        return dependencies;
+    }
+
+    /**
+     * Orders the tables so every table comes after the ones it references. Foreign key cycles are found first
+     * as strongly connected components; the tables of a cycle are chained, each one depending on the previous,
+     * so they run one by one. The cycles and the rest of the tables are then ordered with Kahn's algorithm, so a
+     * table that references a cycle still waits for it. The entries in {@code dependencies} are rewritten to match,
+     * without duplicates or references to tables outside the map.
+     */
+    static List<String> order(Map<String, List<String>> dependencies) {
+        Map<String, Set<String>> referenced = new LinkedHashMap<>();
+        dependencies.forEach((table, parents) -> {
+            Set<String> known = new LinkedHashSet<>();
+            for (String parent : parents) {
+                if (dependencies.containsKey(parent)) {
+                    known.add(parent);
+                }
+            }
+            referenced.put(table, known);
+        });
+        Map<String, Integer> component = components(referenced);
+
+        // Tablas de cada componente en el orden del mapa, y componentes de las que depende cada una
+        Map<Integer, List<String>> members = new LinkedHashMap<>();
+        Map<Integer, Set<Integer>> parentComponents = new HashMap<>();
+        Map<Integer, Set<Integer>> childComponents = new HashMap<>();
+        referenced.forEach((table, parents) -> {
+            int id = component.get(table);
+            members.computeIfAbsent(id, k -> new ArrayList<>()).add(table);
+            for (String parent : parents) {
+                int parentId = component.get(parent);
+                if (parentId != id && parentComponents.computeIfAbsent(id, k -> new HashSet<>()).add(parentId)) {
+                    childComponents.computeIfAbsent(parentId, k -> new LinkedHashSet<>()).add(id);
+                }
+            }
+        });
+
+        Map<Integer, Integer> pending = new HashMap<>();
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (Integer id : members.keySet()) {
+            int count = parentComponents.getOrDefault(id, Set.of()).size();
+            pending.put(id, count);
+            if (count == 0) {
+                ready.add(id);
+            }
+        }
+        List<String> ordered = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            Integer id = ready.poll();
+            List<String> tables = members.get(id);
+            boolean cycle = tables.size() > 1 || referenced.get(tables.get(0)).contains(tables.get(0));
+            if (tables.size() > 1) {
+                log.warn("Tables {} form a foreign key cycle; they will be copied one by one", tables);
+            }
+            String previous = null;
+            for (String table : tables) {
+                List<String> parents = new ArrayList<>();
+                for (String parent : referenced.get(table)) {
+                    if (component.get(parent) != id) {
+                        parents.add(parent);
+                    }
+                }
+                if (cycle && previous != null) {
+                    parents.add(previous);
+                }
+                dependencies.put(table, parents);
+                ordered.add(table);
+                previous = table;
+            }
+            for (Integer child : childComponents.getOrDefault(id, Set.of())) {
+                if (pending.merge(child, -1, Integer::sum) == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Strongly connected components of the reference graph (Kosaraju's algorithm, without recursion so long
+     * chains of foreign keys cannot overflow the stack).
+     *
+     * @return the component of each table
+     */
+    private static Map<String, Integer> components(Map<String, Set<String>> referenced) {
+        // Primera pasada: tablas en orden de finalización del recorrido en profundidad
+        List<String> finished = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (String root : referenced.keySet()) {
+            if (!visited.add(root)) {
+                continue;
+            }
+            Deque<Map.Entry<String, Iterator<String>>> stack = new ArrayDeque<>();
+            stack.push(Map.entry(root, referenced.get(root).iterator()));
+            while (!stack.isEmpty()) {
+                Iterator<String> parents = stack.peek().getValue();
+                if (parents.hasNext()) {
+                    String parent = parents.next();
+                    if (visited.add(parent)) {
+                        stack.push(Map.entry(parent, referenced.get(parent).iterator()));
+                    }
+                } else {
+                    finished.add(stack.pop().getKey());
+                }
+            }
+        }
+
+        // Segunda pasada sobre el grafo inverso, en orden de finalización decreciente
+        Map<String, List<String>> referencedBy = new HashMap<>();
+        referenced.forEach((table, parents) -> parents.forEach(parent ->
+                referencedBy.computeIfAbsent(parent, k -> new ArrayList<>()).add(table)));
+        Map<String, Integer> component = new HashMap<>();
+        int next = 0;
+        for (int i = finished.size() - 1; i >= 0; i--) {
+            String root = finished.get(i);
+            if (component.containsKey(root)) {
+                continue;
+            }
+            int id = next++;
+            Deque<String> stack = new ArrayDeque<>();
+            stack.push(root);
+            component.put(root, id);
+            while (!stack.isEmpty()) {
+                for (String child : referencedBy.getOrDefault(stack.pop(), List.of())) {
+                    if (component.putIfAbsent(child, id) == null) {
+                        stack.push(child);
+                    }
+                }
+            }
+        }
+        return component;
+    }
+
+    private SchemaTransferStatus toStatus(SchemaTransfer transfer) {
+        SchemaTransferStatus status = new SchemaTransferStatus();
+        status.setTransferId(transfer.transferId);
+        status.setStartTime(transfer.startTime);
+        status.setEndTime(transfer.endTime);
+        int completed = 0;
+        int failed = 0;
+        for (TableState table : transfer.tables.values()) {
+            Long executionId = table.executionId;
+            if (executionId == null && "RUNNING".equals(table.status)) {
+                executionId = dataTransferService.findRunningExecutionId(table.jobId);
+            }
+            if (BatchStatus.COMPLETED.name().equals(table.status)) {
+                completed++;
+            } else if (!"PENDING".equals(table.status) && !"RUNNING".equals(table.status)) {
+                failed++;
+            }
+            status.getTables().add(new SchemaTransferStatus.TableTransfer(table.tableName, table.dependsOn,
+                    table.status, executionId, table.message));
+        }
+        status.setTotalTables(transfer.tables.size());
+        status.setCompletedTables(completed);
+        status.setFailedTables(failed);
+        if (transfer.endTime == null) {
+            status.setStatus(BatchStatus.STARTED.name());
+        } else {
+            status.setStatus(failed == 0 ? BatchStatus.COMPLETED.name() : BatchStatus.FAILED.name());
+        }
+        return status;
+    }
+}
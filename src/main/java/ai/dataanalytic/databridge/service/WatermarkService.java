@@ -0,0 +1,192 @@
+package ai.dataanalytic.databridge.service;
+
+import ai.dataanalytic.databridge.dto.TransferWatermark;
+import ai.dataanalytic.databridge.mongodb.repository.TransferWatermarkRepository;
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * High-water marks of incremental transfers, one per user, source, destination and table.
+ * A run copies the rows whose watermark column is above the stored mark and at most the maximum read when
+ * the run started; the mark moves to that maximum only when the run completes, so a failed or stopped run
+ * is simply repeated from the same point. Marks are kept in MongoDB next to the user connections.
+ * <p>
+ * Marks of columns with a time zone are kept as ISO-8601 instants and bound as {@link OffsetDateTime}, so
+ * they do not depend on the zone of the JVM; {@link #TYPE} tells the reader to parse them back.
+ */
+@Slf4j
+@Service
+public class WatermarkService {
+
+    public static final String COLUMN = "watermarkColumn";
+
+    public static final String FROM = "watermarkFrom";
+
+    public static final String TO = "watermarkTo";
+
+    public static final String TYPE = "watermarkType";
+
+    static final String INSTANT = "instant";
+
+    private final TransferWatermarkRepository transferWatermarkRepository;
+
+    public WatermarkService(TransferWatermarkRepository transferWatermarkRepository) {
+        this.transferWatermarkRepository = transferWatermarkRepository;
+    }
+
+    /**
+     * Adds the range of an incremental run to its job parameters: the stored mark (absent on the first run,
+     * which copies everything) and the current maximum of the column in the source table.
+     */
+    public void addParameters(JobParametersBuilder builder, String userId, String sourceConnectionId,
+                              String destinationConnectionId, String tableName, String column,
+                              JdbcTemplate sourceJdbcTemplate, SqlDialect sourceDialect) {
+        String id = id(userId, sourceConnectionId, destinationConnectionId, tableName);
+        // Si cambia la columna la marca guardada ya no sirve y se vuelve a copiar todo
+        Object from = transferWatermarkRepository.findById(id)
+                .filter(watermark -> column.equalsIgnoreCase(watermark.getColumn()))
+                .map(TransferWatermark::getValue)
+                .map(WatermarkService::normalize)
+                .orElse(null);
+        Object to = normalize(sourceJdbcTemplate.queryForObject(
+                "SELECT MAX(" + sourceDialect.quoteIdentifier(column) + ") FROM " + tableName, Object.class));
+
+        builder.addString(COLUMN, column);
+        if (to instanceof OffsetDateTime) {
+            // La marca guardada es texto en MongoDB: se vuelve a leer como instante
+            from = toOffsetDateTime(from, tableName);
+            builder.addString(TYPE, INSTANT);
+        }
+        addParameter(builder, FROM, from);
+        addParameter(builder, TO, to);
+    }
+
+    /**
+     * Returns the value to bind for a mark read from the job parameters: instants, stored as text,
+     * are parsed back to {@link OffsetDateTime}.
+     */
+    public static Object parameterValue(Object value, String type) {
+        if (INSTANT.equals(type) && value instanceof String text) {
+            return OffsetDateTime.parse(text);
+        }
+        return value;
+    }
+
+    /**
+     * Stores the upper bound of a completed incremental run as the new mark.
+     */
+    public void save(JobExecution jobExecution) {
+        JobParameters parameters = jobExecution.getJobParameters();
+        String column = parameters.getString(COLUMN);
+        Object to = parameters.getParameters().containsKey(TO) ? parameters.getParameter(TO).getValue() : null;
+        if (column == null || to == null || jobExecution.getStatus() != BatchStatus.COMPLETED) {
+            return;
+        }
+        String userId = parameters.getString("userId");
+        String sourceConnectionId = parameters.getString("sourceConnectionId");
+        String destinationConnectionId = parameters.getString("destinationConnectionId");
+        String tableName = parameters.getString("tableName");
+        transferWatermarkRepository.save(new TransferWatermark(
+                id(userId, sourceConnectionId, destinationConnectionId, tableName),
+                userId, sourceConnectionId, destinationConnectionId, tableName, column, to,
+                jobExecution.getId(), LocalDateTime.now()));
+        log.info("Watermark of table {} moved to {}", tableName, to);
+    }
+
+    /**
+     * Reduces a column value to a type that both MongoDB and the job repository keep as is:
+     * whole numbers become Long, dates and timestamps LocalDateTime, timestamps with a time zone an
+     * OffsetDateTime in UTC (stored as its ISO text), anything else its text.
+     */
+    static Object normalize(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+                || value instanceof BigInteger) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigDecimal decimal && decimal.stripTrailingZeros().scale() <= 0) {
+            return decimal.longValue();
+        }
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate().atStartOfDay();
+        }
+        if (value instanceof Date date) {
+            return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+        }
+        if (value instanceof LocalDateTime) {
+            return value;
+        }
+        if (value instanceof LocalDate date) {
+            return date.atStartOfDay();
+        }
+        if (value instanceof OffsetDateTime dateTime) {
+            return dateTime.withOffsetSameInstant(ZoneOffset.UTC);
+        }
+        if (value instanceof ZonedDateTime dateTime) {
+            return dateTime.toOffsetDateTime().withOffsetSameInstant(ZoneOffset.UTC);
+        }
+        if (value instanceof Instant instant) {
+            return instant.atOffset(ZoneOffset.UTC);
+        }
+        return value.toString();
+    }
+
+    /**
+     * Reads a stored mark of a column with a time zone. Marks saved before they were kept as instants are
+     * local times in the zone of the JVM that saved them.
+     */
+    private static OffsetDateTime toOffsetDateTime(Object value, String tableName) {
+        if (value == null || value instanceof OffsetDateTime) {
+            return (OffsetDateTime) value;
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return dateTime.atZone(ZoneId.systemDefault()).toOffsetDateTime().withOffsetSameInstant(ZoneOffset.UTC);
+        }
+        try {
+            return OffsetDateTime.parse(value.toString()).withOffsetSameInstant(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            log.warn("Ignoring watermark {} of table {}: it is not an instant", value, tableName);
+            return null;
+        }
+    }
+
+    private static void addParameter(JobParametersBuilder builder, String name, Object value) {
+        if (value instanceof Long number) {
+            builder.addLong(name, number);
+        } else if (value instanceof LocalDateTime dateTime) {
+            builder.addLocalDateTime(name, dateTime);
+        } else if (value instanceof OffsetDateTime dateTime) {
+            builder.addString(name, dateTime.toString());
+        } else if (value != null) {
+            builder.addString(name, value.toString());
+        }
+    }
+
+    private static String id(String userId, String sourceConnectionId, String destinationConnectionId, String tableName) {
+        return userId + ":" + sourceConnectionId + ":" + destinationConnectionId + ":" + tableName;
+    }
+}
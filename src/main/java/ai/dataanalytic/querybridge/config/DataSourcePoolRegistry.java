@@ -0,0 +1,308 @@
+package ai.dataanalytic.querybridge.config;
+
+import ai.dataanalytic.sharedlibrary.dto.DatabaseConnectionRequest;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of shared connection pools. Users that connect to the same database with the same
+ * credentials share one Hikari pool instead of opening one pool each; pools are reference-counted
+ * and closed once nobody has used them for the configured delay.
+ * <p>
+ * A pool is created outside any map lock, so a slow or unreachable database only delays the callers that
+ * asked for that same pool; concurrent callers for it wait for a single creation.
+ */
+@Slf4j
+@Service
+public class DataSourcePoolRegistry {
+
+    private static final class PoolEntry {
+        private final String fingerprint;
+        private final HikariDataSource dataSource;
+        // Se modifica dentro del compute del mapa; volatile para leerla fuera de él
+        private volatile int references;
+        private long lastReleasedAt;
+
+        private PoolEntry(String fingerprint, HikariDataSource dataSource) {
+            this.fingerprint = fingerprint;
+            this.dataSource = dataSource;
+        }
+    }
+
+    private final DynamicDataSourceManager dynamicDataSourceManager;
+
+    private final PoolProperties poolProperties;
+
+    // Clave HMAC de las huellas; es aleatoria por proceso porque las huellas nunca salen de este nodo
+    private final SecretKey fingerprintKey;
+
+    // Creaciones en curso por huella, para que las peticiones concurrentes esperen a una sola
+    private final Map<String, CompletableFuture<PoolEntry>> creating = new ConcurrentHashMap<>();
+
+    // Pools por huella (jdbcUrl, usuario, hash de credenciales)
+    private final Map<String, PoolEntry> pools = new ConcurrentHashMap<>();
+
+    // Huella de cada DataSource entregado, para poder liberarlo
+    private final Map<DataSource, String> fingerprints = new ConcurrentHashMap<>();
+
+    public DataSourcePoolRegistry(DynamicDataSourceManager dynamicDataSourceManager, PoolProperties poolProperties) {
+        this.dynamicDataSourceManager = dynamicDataSourceManager;
+        this.poolProperties = poolProperties;
+        try {
+            this.fingerprintKey = KeyGenerator.getInstance("HmacSHA256").generateKey();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    /**
+     * Returns the shared pool for the given credentials, creating it on first use, and adds a reference to it.
+     * Every call must be paired with a {@link #release(DataSource)}.
+     *
+     * @param credentials the database credentials
+     * @return the shared DataSource
+     * @throws IllegalArgumentException if the database type is missing or not supported
+     */
+    public DataSource acquire(DatabaseConnectionRequest credentials) {
+        if (credentials.getDatabaseType() == null || credentials.getDatabaseType().isBlank()) {
+            throw new IllegalArgumentException("Database type is required");
+        }
+        String fingerprint = fingerprint(credentials);
+        while (true) {
+            PoolEntry existing = reference(fingerprint);
+            if (existing != null) {
+                return existing.dataSource;
+            }
+            CompletableFuture<PoolEntry> created = new CompletableFuture<>();
+            CompletableFuture<PoolEntry> pending = creating.putIfAbsent(fingerprint, created);
+            if (pending != null) {
+                // Otra petición está creando el pool: se espera y se vuelve a tomar la referencia
+                await(pending);
+                continue;
+            }
+            try {
+                // Puede haberse creado entre la primera consulta y la reserva
+                existing = reference(fingerprint);
+                if (existing != null) {
+                    created.complete(existing);
+                    return existing.dataSource;
+                }
+                // El pool se crea fuera del mapa: su conexión inicial puede tardar hasta el connectionTimeout
+                HikariDataSource dataSource = (HikariDataSource) dynamicDataSourceManager.createDataSource(
+                        credentials, "querybridge-" + fingerprint.substring(0, 12));
+                PoolEntry entry = new PoolEntry(fingerprint, dataSource);
+                // La referencia de quien lo crea se cuenta antes de publicarlo, para que el barrido no lo cierre
+                entry.references = 1;
+                entry.lastReleasedAt = System.currentTimeMillis();
+                fingerprints.put(dataSource, fingerprint);
+                pools.put(fingerprint, entry);
+                log.info("Created shared pool {} for {}", dataSource.getPoolName(), dataSource.getJdbcUrl());
+                created.complete(entry);
+                return dataSource;
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+                throw e;
+            } finally {
+                creating.remove(fingerprint, created);
+            }
+        }
+    }
+
+    /**
+     * Adds a reference to an open pool, or returns null if there is none (or it was closed) for the fingerprint.
+     */
+    private PoolEntry reference(String fingerprint) {
+        return pools.computeIfPresent(fingerprint, (key, entry) -> {
+            if (entry.dataSource.isClosed()) {
+                fingerprints.remove(entry.dataSource);
+                return null;
+            }
+            entry.references++;
+            return entry;
+        });
+    }
+
+    /**
+     * Adds a reference to the pool behind a DataSource already handed out, e.g. for a transfer or a query that
+     * must keep the pool open after its user connection is evicted. Every successful call must be paired with
+     * a {@link #release(DataSource)}.
+     *
+     * @return false if the DataSource does not come from this registry or its pool has been closed
+     */
+    public boolean acquire(DataSource dataSource) {
+        String fingerprint = fingerprintOf(dataSource);
+        if (fingerprint == null) {
+            return false;
+        }
+        boolean[] acquired = new boolean[1];
+        pools.computeIfPresent(fingerprint, (key, entry) -> {
+            if (entry.dataSource == dataSource && !entry.dataSource.isClosed()) {
+                entry.references++;
+                acquired[0] = true;
+            }
+            return entry;
+        });
+        return acquired[0];
+    }
+
+    private static void await(CompletableFuture<PoolEntry> pending) {
+        try {
+            pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drops a reference to a shared pool. The pool stays open for reuse until the idle sweep closes it.
+     *
+     * @param dataSource a DataSource obtained from {@link #acquire(DatabaseConnectionRequest)}
+     */
+    public void release(DataSource dataSource) {
+        release(dataSource, false);
+    }
+
+    /**
+     * Drops a reference to a shared pool.
+     *
+     * @param dataSource     a DataSource obtained from {@link #acquire(DatabaseConnectionRequest)}
+     * @param closeIfUnused  close the pool right away if this was the last reference (e.g. the connection test failed)
+     */
+    public void release(DataSource dataSource, boolean closeIfUnused) {
+        String fingerprint = dataSource == null ? null : fingerprints.get(dataSource);
+        if (fingerprint == null) {
+            // No viene del registro: se cierra directamente
+            dynamicDataSourceManager.closeDataSource(dataSource);
+            return;
+        }
+        PoolEntry[] removed = new PoolEntry[1];
+        pools.computeIfPresent(fingerprint, (key, entry) -> {
+            entry.references = Math.max(0, entry.references - 1);
+            entry.lastReleasedAt = System.currentTimeMillis();
+            if (entry.references == 0 && closeIfUnused) {
+                removed[0] = entry;
+                return null;
+            }
+            return entry;
+        });
+        // Se cierra fuera del compute: cerrar el pool espera a sus conexiones y no debe bloquear el mapa
+        if (removed[0] != null) {
+            close(removed[0]);
+        }
+    }
+
+    /**
+     * Returns the fingerprint of a shared pool, or null if the DataSource does not come from this registry.
+     */
+    public String fingerprintOf(DataSource dataSource) {
+        return dataSource == null ? null : fingerprints.get(dataSource);
+    }
+
+    /**
+     * Returns the number of references held on the pool behind a DataSource, or 0 if it is not open.
+     */
+    public int getReferences(DataSource dataSource) {
+        String fingerprint = fingerprintOf(dataSource);
+        PoolEntry entry = fingerprint == null ? null : pools.get(fingerprint);
+        return entry == null || entry.dataSource != dataSource ? 0 : entry.references;
+    }
+
+    public int getPoolCount() {
+        return pools.size();
+    }
+
+    /**
+     * Tells whether a pool has connections checked out, e.g. by a running query or data transfer.
+     */
+    public boolean isInUse(DataSource dataSource) {
+        return dataSource instanceof HikariDataSource hikariDataSource && activeConnections(hikariDataSource) > 0;
+    }
+
+    /**
+     * Closes the pools that nobody references and that have no connection in use.
+     */
+    @Scheduled(fixedDelayString = "${querybridge.pool.sweep-interval-ms:60000}")
+    public void closeIdlePools() {
+        closeUnreferencedPools(System.currentTimeMillis() - poolProperties.getIdleCloseDelaySeconds() * 1000);
+    }
+
+    /**
+     * Closes every pool that nobody references, without waiting for the idle delay.
+     * Used when the node is over its pool limit.
+     */
+    public void closeUnreferencedPools() {
+        closeUnreferencedPools(Long.MAX_VALUE);
+    }
+
+    private void closeUnreferencedPools(long threshold) {
+        for (String fingerprint : pools.keySet()) {
+            // Se retira del mapa dentro del compute, para que nadie tome una referencia, y se cierra fuera
+            PoolEntry[] removed = new PoolEntry[1];
+            pools.computeIfPresent(fingerprint, (key, entry) -> {
+                if (entry.references == 0 && entry.lastReleasedAt < threshold && activeConnections(entry.dataSource) == 0) {
+                    removed[0] = entry;
+                    return null;
+                }
+                return entry;
+            });
+            if (removed[0] != null) {
+                close(removed[0]);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pools.values().forEach(this::close);
+        pools.clear();
+    }
+
+    private void close(PoolEntry entry) {
+        log.info("Closing shared pool {}", entry.dataSource.getPoolName());
+        fingerprints.remove(entry.dataSource);
+        entry.dataSource.close();
+    }
+
+    private static int activeConnections(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+
+    /**
+     * Identifies a pool by JDBC URL, user name and password, so the same database reached with different
+     * credentials never shares a pool. The fingerprint is an HMAC with a random key of this process: the
+     * password is never kept as a key, and a fingerprint cannot be checked against guessed passwords.
+     */
+    private String fingerprint(DatabaseConnectionRequest credentials) {
+        String jdbcUrl = dynamicDataSourceManager.resolveJdbcUrl(credentials);
+        String material = credentials.getDatabaseType().toLowerCase() + '\0' + jdbcUrl + '\0'
+                + credentials.getUserName() + '\0' + credentials.getPassword();
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(fingerprintKey);
+            return HexFormat.of().formatHex(mac.doFinal(material.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
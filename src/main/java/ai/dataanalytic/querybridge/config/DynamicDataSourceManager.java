@@ -28,6 +28,12 @@ public class DynamicDataSourceManager {
             "db2", "com.ibm.db2.jcc.DB2Driver"
     );
 
+    private final PoolProperties poolProperties;
+
+    public DynamicDataSourceManager(PoolProperties poolProperties) {
+        this.poolProperties = poolProperties;
+    }
+
     /**
      * Creates and tests a new database connection using the provided credentials.
      *
@@ -85,6 +91,18 @@ public class DynamicDataSourceManager {
      * @return the created DataSource
      */
     public DataSource createDataSource(DatabaseConnectionRequest credentials) {
+        return createDataSource(credentials, null);
+    }
+
+    /**
+     * Creates a DataSource using the provided credentials and pool name.
+     * The pool size comes from {@link PoolProperties} for the database type.
+     *
+     * @param credentials the database credentials
+     * @param poolName    the Hikari pool name, or null for a generated one
+     * @return the created DataSource
+     */
+    public DataSource createDataSource(DatabaseConnectionRequest credentials, String poolName) {
         HikariConfig hikariConfig = new HikariConfig();
 
         // Set the driver class name based on the database type
@@ -95,26 +113,38 @@ public class DynamicDataSourceManager {
         hikariConfig.setDriverClassName(driverClassName);
 
         // Build the JDBC URL based on the database type
-        String jdbcUrl;
-        if (credentials.getJdbcUrl() != null && !credentials.getJdbcUrl().isEmpty()) {
-            jdbcUrl = credentials.getJdbcUrl();
-        } else {
-            jdbcUrl = buildJdbcUrl(credentials);
-        }
-
-        hikariConfig.setJdbcUrl(jdbcUrl);
+        hikariConfig.setJdbcUrl(resolveJdbcUrl(credentials));
 
         hikariConfig.setUsername(credentials.getUserName());
         hikariConfig.setPassword(credentials.getPassword());
+        if (poolName != null) {
+            hikariConfig.setPoolName(poolName);
+        }
 
-        // Optional: Configure pool settings
-        hikariConfig.setMaximumPoolSize(10);
-        hikariConfig.setConnectionTimeout(30000);
-        hikariConfig.setIdleTimeout(30000);
+        // Pool settings per database type
+        hikariConfig.setMaximumPoolSize(poolProperties.maximumPoolSizeFor(credentials.getDatabaseType()));
+        hikariConfig.setMinimumIdle(Math.min(poolProperties.getMinimumIdle(), hikariConfig.getMaximumPoolSize()));
+        hikariConfig.setConnectionTimeout(poolProperties.getConnectionTimeoutMs());
+        hikariConfig.setIdleTimeout(poolProperties.getIdleTimeoutMs());
+        // Driver tuning, e.g. batch rewriting for the data bridge writers
+        poolProperties.dataSourcePropertiesFor(credentials.getDatabaseType()).forEach(hikariConfig::addDataSourceProperty);
 
         return new HikariDataSource(hikariConfig);
     }
 
+    /**
+     * Returns the JDBC URL provided in the credentials, or builds it from the granular fields.
+     *
+     * @param credentials the database credentials
+     * @return the JDBC URL
+     */
+    public String resolveJdbcUrl(DatabaseConnectionRequest credentials) {
+        if (credentials.getJdbcUrl() != null && !credentials.getJdbcUrl().isEmpty()) {
+            return credentials.getJdbcUrl();
+        }
+        return buildJdbcUrl(credentials);
+    }
+
     /**
      * Builds the JDBC URL based on the database type and credentials.
      *
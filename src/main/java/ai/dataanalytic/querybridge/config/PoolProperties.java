@@ -0,0 +1,53 @@
+package ai.dataanalytic.querybridge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connection pool settings for the user data sources, configurable per database type.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "querybridge.pool")
+public class PoolProperties {
+
+    /** Maximum pool size used when the database type has no specific value. */
+    private int defaultMaximumPoolSize = 10;
+
+    /** Maximum pool size per database type, e.g. {@code postgresql: 20}. */
+    private Map<String, Integer> maximumPoolSize = new HashMap<>();
+
+    /** Connections kept open while a pool is idle. */
+    private int minimumIdle = 1;
+
+    private long connectionTimeoutMs = 30000;
+
+    private long idleTimeoutMs = 30000;
+
+    /** How long a pool that no user references any more is kept before it is closed. */
+    private long idleCloseDelaySeconds = 300;
+
+    /**
+     * Driver properties per database type, e.g. {@code mysql.rewriteBatchedStatements: true}
+     * or {@code postgresql.reWriteBatchedInserts: true}.
+     */
+    private Map<String, Map<String, String>> dataSourceProperties = new HashMap<>();
+
+    public int maximumPoolSizeFor(String databaseType) {
+        if (databaseType == null) {
+            return defaultMaximumPoolSize;
+        }
+        return maximumPoolSize.getOrDefault(databaseType.toLowerCase(), defaultMaximumPoolSize);
+    }
+
+    public Map<String, String> dataSourcePropertiesFor(String databaseType) {
+        if (databaseType == null) {
+            return Map.of();
+        }
+        return dataSourceProperties.getOrDefault(databaseType.toLowerCase(), Map.of());
+    }
+}
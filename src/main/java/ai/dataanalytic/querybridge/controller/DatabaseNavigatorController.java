@@ -1,6 +1,10 @@
 package ai.dataanalytic.querybridge.controller;
 
+import ai.dataanalytic.databridge.dto.QueryResponse;
 import ai.dataanalytic.querybridge.dto.ConnectionEntity;
+import ai.dataanalytic.querybridge.dto.QueryRequest;
+import ai.dataanalytic.querybridge.dto.RunningQuery;
+import ai.dataanalytic.querybridge.dto.SchemaSnapshot;
 import ai.dataanalytic.querybridge.mongodb.repository.ConnectionRepository;
 import ai.dataanalytic.querybridge.service.DatabaseService;
 import ai.dataanalytic.sharedlibrary.dto.DatabaseConnectionRequest;
@@ -10,6 +14,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -85,11 +90,24 @@ public class DatabaseNavigatorController {
 
     /**
      * Gets the data of a table with pagination.
+     * With {@code pagination=keyset} the page is read with {@code WHERE key > ?} on the primary key
+     * (or a unique index) and the response carries a {@code nextCursor} to pass back as {@code cursor}.
      *
-     * @param tableName The name of the table.
-     * @param page      The page number.
-     * @param size      The number of rows per page.
-     * @param session   The HTTP session.
+     * @param tableName  The name of the table.
+     * @param page       The page number (offset pagination only).
+     * @param size       The number of rows per page.
+     * @param pagination The pagination mode: {@code offset} (default) or {@code keyset}.
+     * @param cursor     The continuation cursor returned by the previous keyset page.
+     * @param count      How totalRows is resolved: {@code exact}, {@code estimated}, {@code auto} or {@code none}.
+     * @param format     Shape of the rows: {@code rows} (objects, default), {@code compact} (one array per row)
+     *                   or {@code columnar} (one typed array per column).
+     * @param encoding   {@code json} (default) or {@code cbor} for a binary body; {@code Accept: application/cbor} works too.
+     * @param columns    Comma-separated columns to return instead of all of them; keyset pages add the key columns.
+     * @param filter     JSON array of {@code {"column", "operator", "value"}} conditions, joined with AND, with the
+     *                   operators of the structured query API.
+     * @param sort       Comma-separated columns with an optional direction, e.g. {@code name,created_at:desc}
+     *                   (offset pagination only).
+     * @param session    The HTTP session.
      * @return ResponseEntity with the table data.
      */
     @GetMapping("/data/{connectionId}/{tableName}")
@@ -97,10 +115,146 @@ public class DatabaseNavigatorController {
             @PathVariable("tableName") String tableName,
             @RequestParam(name = "page", defaultValue = "0") int page,
             @RequestParam(name = "size", defaultValue = "10") int size,
+            @RequestParam(name = "pagination", defaultValue = "offset") String pagination,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "count", required = false) String count,
+            @RequestParam(name = "format", defaultValue = "rows") String format,
+            @RequestParam(name = "encoding", required = false) String encoding,
+            @RequestParam(name = "columns", required = false) String columns,
+            @RequestParam(name = "filter", required = false) String filter,
+            @RequestParam(name = "sort", required = false) String sort,
             @PathVariable("connectionId") String connectionId,
             HttpSession session
             ) {
-        return databaseService.getTableData(tableName, page, size, session, connectionId);
+        return databaseService.getTableData(tableName, page, size, pagination, cursor, count, format, encoding,
+                columns, filter, sort, session, connectionId);
+    }
+
+    /**
+     * Gets the whole schema of the database (tables, columns, primary keys, foreign keys and indexes)
+     * in a single call, instead of one call per table.
+     *
+     * @param connectionId The connection to describe.
+     * @param session      The HTTP session.
+     * @return ResponseEntity with the schema snapshot.
+     */
+    @GetMapping("/schema/{connectionId}")
+    public ResponseEntity<SchemaSnapshot> getSchemaSnapshot(
+            @PathVariable("connectionId") String connectionId,
+            HttpSession session) {
+        return databaseService.getSchemaSnapshot(session, connectionId);
+    }
+
+    /**
+     * Invalidates the cached schema metadata of a connection, or of a single table when {@code tableName} is given.
+     *
+     * @param connectionId The connection whose metadata is dropped.
+     * @param tableName    Optional table to invalidate.
+     * @param session      The HTTP session.
+     * @return ResponseEntity with the invalidation status.
+     */
+    @PostMapping("/schema/invalidate/{connectionId}")
+    public ResponseEntity<String> invalidateSchemaCache(
+            @PathVariable("connectionId") String connectionId,
+            @RequestParam(name = "tableName", required = false) String tableName,
+            HttpSession session) {
+        String userId = databaseService.getUserIdFromSession(session);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User not authenticated");
+        }
+        return databaseService.invalidateSchemaCache(userId, connectionId, tableName);
+    }
+
+    /**
+     * Streams the rows of a table as they are read from the database, without building the whole
+     * result in memory. It runs like an ad-hoc query: with the server statement timeout, row limit and
+     * byte limit, which the request can only lower, and with its id in the {@code X-Query-Id} header.
+     *
+     * @param tableName The name of the table.
+     * @param format    {@code ndjson} (default, one object per line) or {@code json} (a single object with the rows).
+     * @param fetchSize The JDBC fetch size; 0 uses the configured default.
+     * @param limit     The maximum number of rows; 0 keeps the server row limit.
+     * @param session   The HTTP session.
+     * @return ResponseEntity whose body writes the rows.
+     */
+    @GetMapping("/data/{connectionId}/{tableName}/stream")
+    public ResponseEntity<StreamingResponseBody> streamTableData(
+            @PathVariable("tableName") String tableName,
+            @RequestParam(name = "format", defaultValue = "ndjson") String format,
+            @RequestParam(name = "fetchSize", defaultValue = "0") int fetchSize,
+            @RequestParam(name = "limit", defaultValue = "0") int limit,
+            @PathVariable("connectionId") String connectionId,
+            HttpSession session) {
+        return databaseService.streamTableData(tableName, format, fetchSize, limit, session, connectionId);
+    }
+
+    /**
+     * Runs an ad-hoc query and streams its rows as they are read. The query runs with the server statement
+     * timeout, row limit and byte limit, which the request can only lower; its id is returned in the
+     * {@code X-Query-Id} header, or can be chosen by the client in {@code queryId}.
+     *
+     * @param request      The query, its positional parameters, the format and optional limits.
+     * @param connectionId The connection to query.
+     * @param session      The HTTP session.
+     * @return ResponseEntity whose body writes the rows.
+     */
+    @PostMapping("/query/{connectionId}")
+    public ResponseEntity<StreamingResponseBody> executeQuery(
+            @RequestBody QueryRequest request,
+            @PathVariable("connectionId") String connectionId,
+            HttpSession session) {
+        return databaseService.executeQuery(request, session, connectionId);
+    }
+
+    /**
+     * Runs a structured query on one table: projection, typed filters, group-by, aggregates, order-by and limit.
+     * It is compiled to parameterized SQL for the engine of the connection, so the aggregation runs in the
+     * database and only its result is returned; {@code truncated} tells whether the row limit cut it.
+     *
+     * @param request      The table, columns, filters, grouping, aggregates, order and limit.
+     * @param connectionId The connection to query.
+     * @param session      The HTTP session.
+     * @return ResponseEntity with the fields and rows, or the reason the request was rejected.
+     */
+    @PostMapping("/aggregate/{connectionId}")
+    public ResponseEntity<QueryResponse> runStructuredQuery(
+            @RequestBody ai.dataanalytic.databridge.dto.QueryRequest request,
+            @PathVariable("connectionId") String connectionId,
+            HttpSession session) {
+        return databaseService.runStructuredQuery(request, session, connectionId);
+    }
+
+    /**
+     * Cancels a running ad-hoc query of the user.
+     *
+     * @param queryId The id of the query.
+     * @param session The HTTP session.
+     * @return ResponseEntity with the cancellation status.
+     */
+    @PostMapping("/query/cancel/{queryId}")
+    public ResponseEntity<String> cancelQuery(
+            @PathVariable("queryId") String queryId,
+            HttpSession session) {
+        String userId = databaseService.getUserIdFromSession(session);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User not authenticated");
+        }
+        return databaseService.cancelQuery(userId, queryId);
+    }
+
+    /**
+     * Lists the ad-hoc queries of the user that are still running.
+     *
+     * @param session The HTTP session.
+     * @return ResponseEntity with the running queries.
+     */
+    @GetMapping("/query/running")
+    public ResponseEntity<List<RunningQuery>> getRunningQueries(HttpSession session) {
+        String userId = databaseService.getUserIdFromSession(session);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(null);
+        }
+        return databaseService.getRunningQueries(userId);
     }
 
     @GetMapping("/connections")
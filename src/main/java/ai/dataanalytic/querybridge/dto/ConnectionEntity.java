@@ -24,4 +24,5 @@ public class ConnectionEntity {
     private String sid;
     private String instance;
     private String jdbcUrl;
+    private Integer resultCacheTtlSeconds;
 }
@@ -16,10 +16,19 @@ import java.util.Map;
 public class DynamicTableData {
     private String tableName;
     private List<Map<String, Object>> rows;
-    private int totalRows;
+    private Long totalRows;
+    private Boolean totalRowsExact;
     private List<Map<String, Object>> columns;
     private String credentialsKeys;
     private String credentials;
     private int currentPage;
     private int pageSize;
+    private String pagination;
+    private List<String> keyColumns;
+    private String nextCursor;
+    private boolean hasNext;
+    private TableDataFormat format;
+    private List<String> fields;
+    private List<Object[]> rowArrays;
+    private List<Object> columnData;
 }
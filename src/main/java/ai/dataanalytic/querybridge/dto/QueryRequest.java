@@ -0,0 +1,24 @@
+package ai.dataanalytic.querybridge.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO class for an ad-hoc query.
+ * The limits can only lower the ones configured on the server; 0 or absent keeps the configured value.
+ */
+@Data
+public class QueryRequest {
+    private String query;
+    private List<Object> parameters;
+    private String format;
+    private Integer fetchSize;
+    private Integer maxRows;
+    private Long maxBytes;
+    private Integer timeoutSeconds;
+    // false: se ignora la caché de resultados y se lee siempre de la base de datos
+    private Boolean cache;
+    // Opcional: permite cancelarla sin esperar la cabecera X-Query-Id; único entre las consultas en curso del usuario
+    private String queryId;
+}
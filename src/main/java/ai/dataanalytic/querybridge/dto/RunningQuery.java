@@ -0,0 +1,22 @@
+package ai.dataanalytic.querybridge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO class describing an ad-hoc query that is still running.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RunningQuery {
+    private String queryId;
+    private String connectionId;
+    private String query;
+    private String fingerprintId;
+    private LocalDateTime startTime;
+    private boolean cancelled;
+}
@@ -0,0 +1,65 @@
+package ai.dataanalytic.querybridge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO class to hold the whole schema of a connection: tables, columns, keys and indexes.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchemaSnapshot {
+    private String catalog;
+    private String schema;
+    private List<Table> tables;
+
+    @Data
+    @NoArgsConstructor
+    public static class Table {
+        private String name;
+        private List<Column> columns = new ArrayList<>();
+        private List<String> primaryKey = new ArrayList<>();
+        private List<ForeignKey> foreignKeys = new ArrayList<>();
+        private List<Index> indexes = new ArrayList<>();
+
+        public Table(String name) {
+            this.name = name;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Column {
+        private String name;
+        private String type;
+        private int sqlType;
+        private int size;
+        private int decimalDigits;
+        private boolean nullable;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ForeignKey {
+        private String name;
+        private List<String> columns;
+        private String referencedTable;
+        private List<String> referencedColumns;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Index {
+        private String name;
+        private boolean unique;
+        private List<String> columns;
+    }
+}
@@ -0,0 +1,24 @@
+package ai.dataanalytic.querybridge.dto;
+
+/**
+ * Shape of the rows returned by the table data endpoint.
+ */
+public enum TableDataFormat {
+    /** One object per row, keyed by column name. */
+    ROWS,
+    /** Column names sent once, then one array of values per row. */
+    COMPACT,
+    /** Column names sent once, then one typed array of values per column. */
+    COLUMNAR;
+
+    public static TableDataFormat from(String value) {
+        if (value == null || value.isEmpty()) {
+            return ROWS;
+        }
+        try {
+            return TableDataFormat.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported table data format: " + value);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialects;
+import lombok.Getter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+
+/**
+ * Everything the query bridge needs to work with one user connection: the pooled DataSource,
+ * reusable JdbcTemplates and the database metadata and SQL dialect detected on first use.
+ * A handle is created once per user connection and shared by every request.
+ */
+@Getter
+public class ConnectionHandle {
+
+    /**
+     * Database metadata that does not change for the life of the connection.
+     */
+    public record DatabaseInfo(String productName, int majorVersion, int minorVersion, String identifierQuoteString) {
+    }
+
+    private final String userId;
+
+    private final String connectionId;
+
+    private final String databaseType;
+
+    private final DataSource dataSource;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    // TTL de la caché de resultados de esta conexión; null usa el valor por defecto
+    private final Integer resultCacheTtlSeconds;
+
+    private volatile DatabaseInfo databaseInfo;
+
+    public ConnectionHandle(String userId, String connectionId, String databaseType, DataSource dataSource) {
+        this(userId, connectionId, databaseType, dataSource, null);
+    }
+
+    public ConnectionHandle(String userId, String connectionId, String databaseType, DataSource dataSource,
+                            Integer resultCacheTtlSeconds) {
+        this.userId = userId;
+        this.connectionId = connectionId;
+        this.databaseType = databaseType;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.resultCacheTtlSeconds = resultCacheTtlSeconds;
+    }
+
+    /**
+     * Key that identifies the user connection in the per-connection caches.
+     */
+    public String getConnectionKey() {
+        return userId + ":" + connectionId;
+    }
+
+    /**
+     * Returns the database metadata, reading it from a pooled connection the first time.
+     */
+    public DatabaseInfo getDatabaseInfo() {
+        DatabaseInfo info = databaseInfo;
+        if (info == null) {
+            synchronized (this) {
+                info = databaseInfo;
+                if (info == null) {
+                    info = jdbcTemplate.execute((Connection con) -> {
+                        DatabaseMetaData metaData = con.getMetaData();
+                        return new DatabaseInfo(metaData.getDatabaseProductName(),
+                                metaData.getDatabaseMajorVersion(),
+                                metaData.getDatabaseMinorVersion(),
+                                metaData.getIdentifierQuoteString());
+                    });
+                    databaseInfo = info;
+                }
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Returns the SQL dialect of the database, detected from its metadata.
+     */
+    public SqlDialect getDialect() {
+        DatabaseInfo info = getDatabaseInfo();
+        return SqlDialects.forProduct(info.productName(), info.majorVersion());
+    }
+}
@@ -1,11 +1,16 @@
 package ai.dataanalytic.querybridge.service;
 
 
+import ai.dataanalytic.databridge.dto.QueryResponse;
+import ai.dataanalytic.querybridge.dto.QueryRequest;
+import ai.dataanalytic.querybridge.dto.RunningQuery;
+import ai.dataanalytic.querybridge.dto.SchemaSnapshot;
 import ai.dataanalytic.sharedlibrary.dto.DatabaseConnectionRequest;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -19,8 +24,16 @@ public interface DatabaseService {
     ResponseEntity<String> setDatabaseConnection(DatabaseConnectionRequest databaseConnectionRequest, HttpSession session);
     ResponseEntity<List<String>> listTables(HttpSession session, String connectionId);
     ResponseEntity<List<Map<String, Object>>> listColumns(String tableName, HttpSession session, String connectionId);
-    ResponseEntity<Map<String, Object>> getTableData(String tableName, int page, int size, HttpSession session, String connectionId);
-    ResponseEntity<List<Map<String, Object>>> executeQuery(String query, HttpSession session, String connectionId);
+    ResponseEntity<Map<String, Object>> getTableData(String tableName, int page, int size, String pagination, String cursor, String countMode, String format, String encoding, String columns, String filter, String sort, HttpSession session, String connectionId);
+    ResponseEntity<SchemaSnapshot> getSchemaSnapshot(HttpSession session, String connectionId);
+    ResponseEntity<String> invalidateSchemaCache(String userId, String connectionId, String tableName);
+    ResponseEntity<StreamingResponseBody> executeQuery(QueryRequest request, HttpSession session, String connectionId);
+    ResponseEntity<QueryResponse> runStructuredQuery(ai.dataanalytic.databridge.dto.QueryRequest request, HttpSession session, String connectionId);
+    ResponseEntity<String> cancelQuery(String userId, String queryId);
+    ResponseEntity<List<RunningQuery>> getRunningQueries(String userId);
+    ResponseEntity<StreamingResponseBody> streamTableData(String tableName, String format, int fetchSize, int limit, HttpSession session, String connectionId);
+    ResponseEntity<StreamingResponseBody> streamQuery(String query, String format, int fetchSize, int limit, HttpSession session, String connectionId);
+    ConnectionHandle getConnectionHandle(HttpSession session, String connectionId);
     JdbcTemplate getJdbcTemplateFromSession(HttpSession session, String connectionId);
     String getUserIdFromSession(HttpSession session);
 }
@@ -1,25 +1,43 @@
 package ai.dataanalytic.querybridge.service;
 
+import ai.dataanalytic.databridge.dto.QueryResponse;
+import ai.dataanalytic.querybridge.config.DataSourcePoolRegistry;
 import ai.dataanalytic.querybridge.config.DynamicDataSourceManager;
 import ai.dataanalytic.querybridge.dto.ConnectionEntity;
 import ai.dataanalytic.querybridge.dto.DynamicTableData;
+import ai.dataanalytic.querybridge.dto.QueryRequest;
+import ai.dataanalytic.querybridge.dto.RunningQuery;
+import ai.dataanalytic.querybridge.dto.SchemaSnapshot;
+import ai.dataanalytic.querybridge.dto.TableDataFormat;
 import ai.dataanalytic.querybridge.mongodb.repository.ConnectionRepository;
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
 import ai.dataanalytic.sharedlibrary.dto.DatabaseConnectionRequest;
 import ai.dataanalytic.sharedlibrary.util.StringUtils;
 import jakarta.servlet.http.HttpSession;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.dao.PermissionDeniedDataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 /**
@@ -33,6 +51,12 @@ public class DatabaseServiceImpl implements DatabaseService {
     @Autowired
     private DynamicDataSourceManager dynamicDataSourceManager;
 
+    @Autowired
+    private DataSourcePoolRegistry dataSourcePoolRegistry;
+
+    @Autowired
+    private UserDataSourceRegistry userDataSourceRegistry;
+
     @Autowired
     private SchemaDiscoveryService schemaDiscoveryService;
 
@@ -42,8 +66,29 @@ public class DatabaseServiceImpl implements DatabaseService {
     @Autowired
     private ConnectionRepository connectionRepository;
 
-    // Mapa para almacenar las conexiones por userId
-    private final Map<String, Map<String, DataSource>> userDataSources = new ConcurrentHashMap<>();
+    @Autowired
+    private RowCountService rowCountService;
+
+    @Autowired
+    private SchemaMetadataCache schemaMetadataCache;
+
+    @Autowired
+    private QueryExecutionService queryExecutionService;
+
+    @Autowired
+    private QueryValidationService queryValidationService;
+
+    @Autowired
+    private QueryResultCache queryResultCache;
+
+    @Autowired
+    private StructuredQueryService structuredQueryService;
+
+    private static final String QUERY_ID_HEADER = "X-Query-Id";
+
+    private static final Pattern IDENTIFIER = Pattern.compile("^[a-zA-Z0-9_]+$");
+
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
 
 
     @Override
@@ -65,18 +110,26 @@ public class DatabaseServiceImpl implements DatabaseService {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Connection ID is required");
             }
 
-            // Crear el DataSource
-            DataSource dataSource = dynamicDataSourceManager.createDataSource(databaseConnectionRequest);
+            // Obtener el pool compartido para estas credenciales
+            DataSource dataSource = dataSourcePoolRegistry.acquire(databaseConnectionRequest);
 
             // Probar la conexión
             if (!dynamicDataSourceManager.testConnection(dataSource)) {
-                dynamicDataSourceManager.closeDataSource(dataSource);
+                dataSourcePoolRegistry.release(dataSource, true);
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to connect to database");
             }
 
-            // Almacenar el DataSource
-            Map<String, DataSource> dataSources = userDataSources.computeIfAbsent(userId, k -> new ConcurrentHashMap<>());
-            dataSources.put(connectionId, dataSource);
+            // Almacenar la conexión, liberando la referencia anterior si se reemplaza
+            ConnectionHandle handle = new ConnectionHandle(userId, connectionId, databaseConnectionRequest.getDatabaseType(),
+                    dataSource, databaseConnectionRequest.getResultCacheTtlSeconds());
+            ConnectionHandle previous = userDataSourceRegistry.put(handle);
+            if (previous != null) {
+                queryResultCache.invalidate(previous);
+                dataSourcePoolRegistry.release(previous.getDataSource());
+            }
+            rowCountService.invalidate(connectionKey(userId, connectionId));
+            schemaMetadataCache.invalidate(connectionKey(userId, connectionId));
+            queryResultCache.invalidate(handle);
 
             // Guardar los detalles de la conexión en MongoDB
             ConnectionEntity connectionEntity = connectionRepository.findByUserIdAndConnectionId(userId, connectionId);
@@ -96,10 +149,15 @@ public class DatabaseServiceImpl implements DatabaseService {
             connectionEntity.setSid(databaseConnectionRequest.getSid());
             connectionEntity.setInstance(databaseConnectionRequest.getInstance());
             connectionEntity.setJdbcUrl(databaseConnectionRequest.getJdbcUrl());
+            connectionEntity.setResultCacheTtlSeconds(databaseConnectionRequest.getResultCacheTtlSeconds());
 
             connectionRepository.save(connectionEntity);
 
             return ResponseEntity.ok("Connected successfully to database: " + databaseConnectionRequest.getDatabaseName());
+        } catch (IllegalArgumentException e) {
+            // Tipo de base de datos ausente o no soportado
+            log.error("Invalid connection request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             log.error("Error connecting to the database", e);
             return handleException(e);
@@ -108,27 +166,29 @@ public class DatabaseServiceImpl implements DatabaseService {
 
     @Override
     public ResponseEntity<List<String>> listTables(HttpSession session, String connectionId) {
-        JdbcTemplate jdbcTemplate = getJdbcTemplateFromSession(session, connectionId);
+        ConnectionHandle handle = acquireConnectionHandle(session, connectionId);
 
-        if (jdbcTemplate == null) {
+        if (handle == null) {
             return handleMissingCredentialsForList();
         }
 
         try {
             // Get the list of tables in the database
-            List<String> tables = schemaDiscoveryService.listTables(jdbcTemplate);
+            List<String> tables = schemaMetadataCache.get(handle, "tables", this::loadTables);
             return ResponseEntity.ok(tables);
         } catch (Exception e) {
             log.error("Error listing tables", e);
             return handleListingTablesExceptionAsListString(e);
+        } finally {
+            releaseConnectionHandle(handle);
         }
     }
 
     @Override
     public ResponseEntity<List<Map<String, Object>>> listColumns(String tableName, HttpSession session, String connectionId) {
-        JdbcTemplate jdbcTemplate = getJdbcTemplateFromSession(session, connectionId);
+        ConnectionHandle handle = acquireConnectionHandle(session, connectionId);
 
-        if (jdbcTemplate == null) {
+        if (handle == null) {
             return handleMissingCredentialsForListMap();
         }
 
@@ -139,24 +199,30 @@ public class DatabaseServiceImpl implements DatabaseService {
             }
 
             // Get the list of columns in the specified table
-            List<Map<String, Object>> columns = schemaDiscoveryService.listColumns(tableName, jdbcTemplate);
+            List<Map<String, Object>> columns = cachedColumns(handle, tableName);
             return ResponseEntity.ok(columns);
         } catch (SQLException e) {
             return handleExceptionAsListMap(e, "SQL error listing columns for table: " + tableName);
         } catch (Exception e) {
             log.error("Error listing columns for table: {}", tableName, e);
             return handleExceptionAsListMap(e, "Error listing columns for table: " + tableName);
+        } finally {
+            releaseConnectionHandle(handle);
         }
     }
 
 
     @Override
-    public ResponseEntity<Map<String, Object>> getTableData(String tableName, int page, int size, HttpSession session, String connectionId) {
-        JdbcTemplate jdbcTemplate = getJdbcTemplateFromSession(session, connectionId);
+    public ResponseEntity<Map<String, Object>> getTableData(String tableName, int page, int size, String pagination, String cursor,
+                                                            String countMode, String format, String encoding,
+                                                            String columns, String filter, String sort,
+                                                            HttpSession session, String connectionId) {
+        ConnectionHandle handle = acquireConnectionHandle(session, connectionId);
 
-        if (jdbcTemplate == null) {
+        if (handle == null) {
             return handleMissingCredentialsForMap();
         }
+        JdbcTemplate jdbcTemplate = handle.getJdbcTemplate();
 
         try {
             // Validate table name
@@ -164,52 +230,378 @@ public class DatabaseServiceImpl implements DatabaseService {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
             }
 
-            // Retrieve table data with pagination
-            DynamicTableData tableData = schemaDiscoveryService.getTableDataWithPagination(tableName, jdbcTemplate, page, size).getBody();
+            RowCountService.Mode mode;
+            TableDataFormat dataFormat;
+            try {
+                mode = RowCountService.Mode.from(countMode, rowCountService.getDefaultMode());
+                dataFormat = TableDataFormat.from(format);
+            } catch (IllegalArgumentException e) {
+                log.error(e.getMessage());
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+            }
+
+            String connectionKey = handle.getConnectionKey();
+            SqlDialect dialect = handle.getDialect();
+
+            // Keyset pagination is requested explicitly or implied by a continuation cursor
+            boolean keyset = "keyset".equalsIgnoreCase(pagination) || (cursor != null && !cursor.isEmpty());
+            List<SchemaDiscoveryService.KeyColumn> keyColumns = keyset
+                    ? schemaMetadataCache.get(handle, "table/" + tableName + "/keys",
+                        current -> schemaDiscoveryService.findKeyColumns(tableName, current.getJdbcTemplate()))
+                    : Collections.emptyList();
+            if (!keyColumns.stream().allMatch(SchemaDiscoveryService.KeyColumn::supportsKeyset)) {
+                // Claves que no pueden ir en un cursor y volver a leerse: se pagina por offset
+                log.warn("Key of table {} has types that cannot be used in a keyset cursor", tableName);
+                keyColumns = Collections.emptyList();
+            }
+
+            if (keyColumns.isEmpty() && cursor != null && !cursor.isEmpty()) {
+                log.error("Table {} has no primary key or unique index usable for keyset; the cursor cannot be used", tableName);
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+            }
+
+            // Proyección, filtro y orden validados contra las columnas cacheadas y ejecutados en la base de datos
+            StructuredQueryService.TableQuery query;
+            try {
+                List<String> projection = structuredQueryService.parseColumns(columns);
+                List<ai.dataanalytic.databridge.dto.QueryRequest.Filter> filters = structuredQueryService.parseFilters(filter);
+                List<ai.dataanalytic.databridge.dto.QueryRequest.Order> orders = structuredQueryService.parseSort(sort);
+                if (!keyColumns.isEmpty() && !orders.isEmpty()) {
+                    throw new IllegalArgumentException("sort cannot be combined with keyset pagination");
+                }
+                List<Map<String, Object>> columnMetadata = projection.isEmpty() && filters.isEmpty() && orders.isEmpty()
+                        ? List.of()
+                        : cachedColumns(handle, tableName);
+                query = structuredQueryService.compileTableQuery(tableName, projection, filters, orders,
+                        keyColumns.stream().map(SchemaDiscoveryService.KeyColumn::name).toList(), columnMetadata, dialect);
+            } catch (IllegalArgumentException e) {
+                log.error("Invalid columns, filter or sort for table {}: {}", tableName, e.getMessage());
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+            }
+            ResponseEntity<DynamicTableData> tableResponse = readTablePage(handle, tableName, query, keyColumns, cursor, page, size, dataFormat);
 
+            DynamicTableData tableData = tableResponse.getBody();
             if (tableData == null) {
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+                return ResponseEntity.status(tableResponse.getStatusCode()).body(null);
             }
 
+            // Resolve the total rows from statistics or the count cache instead of COUNT(*) on every page
+            RowCountService.RowCount rowCount = rowCountService.countRows(connectionKey, tableName, query.where(), query.parameters(),
+                    jdbcTemplate, dialect, mode);
+
             // Create a response map that includes the data and pagination information
             Map<String, Object> response = new HashMap<>();
-            response.put("rows", tableData.getRows());
-            response.put("columns", tableData.getColumns());
+            response.put("format", dataFormat.name().toLowerCase());
+            switch (dataFormat) {
+                case ROWS -> response.put("rows", tableData.getRows());
+                case COMPACT -> {
+                    response.put("fields", tableData.getFields());
+                    response.put("rows", tableData.getRowArrays());
+                }
+                case COLUMNAR -> {
+                    response.put("fields", tableData.getFields());
+                    response.put("data", tableData.getColumnData());
+                }
+            }
+            response.put("columns", cachedColumns(handle, tableName));
             response.put("currentPage", page);
             response.put("pageSize", size);
-            response.put("totalRows", tableData.getTotalRows());
+            response.put("totalRows", rowCount.value());
+            response.put("totalRowsExact", rowCount.exact());
             response.put("tableName", tableName);
+            response.put("pagination", tableData.getPagination());
+            response.put("hasNext", tableData.isHasNext());
+            if (tableData.getKeyColumns() != null) {
+                response.put("keyColumns", tableData.getKeyColumns());
+                response.put("nextCursor", tableData.getNextCursor());
+            }
 
+            // Binary encoding for wide tables; the Accept header can request it as well
+            if ("cbor".equalsIgnoreCase(encoding)) {
+                return ResponseEntity.ok().contentType(CBOR).body(response);
+            }
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             log.error("Error obtaining data from table: {}", tableName, e);
             return handleExceptionAsMap(e);
+        } finally {
+            releaseConnectionHandle(handle);
+        }
+    }
+
+
+    /**
+     * Reads one page of a table (keyset when there are key columns, offset otherwise) through the result cache,
+     * so dashboards asking for the same page again are served without going to the database.
+     */
+    private ResponseEntity<DynamicTableData> readTablePage(ConnectionHandle handle, String tableName, StructuredQueryService.TableQuery query,
+                                                           List<SchemaDiscoveryService.KeyColumn> keyColumns, String cursor,
+                                                           int page, int size, TableDataFormat dataFormat) {
+        Supplier<ResponseEntity<DynamicTableData>> read = () -> keyColumns.isEmpty()
+                ? schemaDiscoveryService.getTableDataWithPagination(tableName, query, handle.getJdbcTemplate(), handle.getDialect(), page, size, dataFormat)
+                : schemaDiscoveryService.getTableDataWithKeyset(tableName, query, handle.getJdbcTemplate(), handle.getDialect(), keyColumns, cursor, size, dataFormat);
+        if (!queryResultCache.isEnabled(handle)) {
+            return read.get();
+        }
+
+        String key = queryResultCache.key(handle, "table", tableName, query.select(), query.where(), query.parameters(), query.orderBy(),
+                keyColumns.isEmpty() ? "offset:" + page : "keyset:" + (cursor == null ? "" : cursor), size, dataFormat);
+        // Solo la petición que lee de la base de datos tiene su propia respuesta; las demás reciben la cacheada
+        AtomicReference<ResponseEntity<DynamicTableData>> ownResponse = new AtomicReference<>();
+        DynamicTableData tableData = queryResultCache.getOrLoad(key, queryResultCache.ttlSeconds(handle), DynamicTableData.class, () -> {
+            ResponseEntity<DynamicTableData> response = read.get();
+            ownResponse.set(response);
+            return response.getStatusCode().is2xxSuccessful() ? response.getBody() : null;
+        });
+        if (ownResponse.get() != null) {
+            return ownResponse.get();
         }
+        return ResponseEntity.ok(tableData);
     }
 
+    @Override
+    public ResponseEntity<StreamingResponseBody> executeQuery(QueryRequest request, HttpSession session, String connectionId) {
+        ConnectionHandle handle = acquireConnectionHandle(session, connectionId);
+        if (handle == null) {
+            log.error("Credentials must be set before calling this method.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        // La referencia al pool pasa a la consulta en cuanto se arranca
+        boolean handedOver = false;
+        try {
+            QueryValidationService.ParsedQuery parsedQuery;
+            try {
+                parsedQuery = queryValidationService.validate(request.getQuery(), handle.getDialect());
+            } catch (IllegalArgumentException e) {
+                log.error("Invalid SQL query: {} ({})", request.getQuery(), e.getMessage());
+                return textResponse(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+
+            ResultSetStreamer.Format streamFormat;
+            try {
+                streamFormat = ResultSetStreamer.Format.from(request.getFormat());
+            } catch (IllegalArgumentException e) {
+                log.error(e.getMessage());
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            }
+
+            // La consulta se ejecuta antes de enviar el 200, así los errores de SQL o de conexión tienen su propio estado
+            QueryExecutionService.StartedQuery started;
+            try {
+                String queryId = queryExecutionService.newQueryId(handle.getUserId(), request.getQueryId());
+                handedOver = true;
+                started = queryExecutionService.start(connectionId, queryId, parsedQuery, handle, request, streamFormat);
+            } catch (IllegalStateException e) {
+                log.error(e.getMessage());
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            } catch (DataAccessException e) {
+                HttpStatus status = queryErrorStatus(e);
+                log.error("Query failed before streaming ({}): {}", status.value(), parsedQuery.sql(), e);
+                return status.is4xxClientError() ? textResponse(status, e.getMostSpecificCause().getMessage())
+                        : ResponseEntity.status(status).build();
+            }
+
+            return ResponseEntity.ok()
+                    .header(QUERY_ID_HEADER, started.getQueryId())
+                    .contentType(streamFormat.getMediaType())
+                    .body(started::writeTo);
+        } finally {
+            if (!handedOver) {
+                releaseConnectionHandle(handle);
+            }
+        }
+    }
+
+    /**
+     * Status of a query that failed before its response was committed: bad SQL, values or permissions are the
+     * client's fault; timeouts and unreachable databases get their own status.
+     */
+    static HttpStatus queryErrorStatus(DataAccessException e) {
+        if (e instanceof PermissionDeniedDataAccessException) {
+            return HttpStatus.FORBIDDEN;
+        }
+        if (e instanceof InvalidDataAccessResourceUsageException || e instanceof DataIntegrityViolationException
+                || e instanceof InvalidDataAccessApiUsageException) {
+            return HttpStatus.BAD_REQUEST;
+        }
+        if (e instanceof QueryTimeoutException) {
+            return HttpStatus.GATEWAY_TIMEOUT;
+        }
+        if (e instanceof DataAccessResourceFailureException || e instanceof TransientDataAccessResourceException) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    private static ResponseEntity<StreamingResponseBody> textResponse(HttpStatus status, String message) {
+        StreamingResponseBody reason = out -> out.write(String.valueOf(message).getBytes(StandardCharsets.UTF_8));
+        return ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN).body(reason);
+    }
 
     @Override
-    public ResponseEntity<List<Map<String, Object>>> executeQuery(String query, HttpSession session , String connectionId) {
-        JdbcTemplate jdbcTemplate = getJdbcTemplateFromSession(session, connectionId);
+    public ResponseEntity<QueryResponse> runStructuredQuery(ai.dataanalytic.databridge.dto.QueryRequest request,
+                                                            HttpSession session, String connectionId) {
+        ConnectionHandle handle = acquireConnectionHandle(session, connectionId);
+        if (handle == null) {
+            log.error("Credentials must be set before calling this method.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(null);
+        }
 
-        if (jdbcTemplate == null) {
-            return handleMissingCredentialsForListMap();
+        try {
+            StructuredQueryService.CompiledQuery compiled;
+            try {
+                if (!isValidIdentifier(request.getTableName())) {
+                    throw new IllegalArgumentException("Invalid table name");
+                }
+                // Los nombres se comprueban contra las columnas cacheadas antes de llegar al SQL
+                List<Map<String, Object>> columns = cachedColumns(handle, request.getTableName());
+                compiled = structuredQueryService.compile(request, columns, handle.getDialect());
+            } catch (IllegalArgumentException e) {
+                log.error("Invalid structured query on table {}: {}", request.getTableName(), e.getMessage());
+                QueryResponse error = new QueryResponse();
+                error.setError(e.getMessage());
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+            } catch (Exception e) {
+                return handleException(e);
+            }
+
+            int limit = structuredQueryService.rowLimit(request);
+            Supplier<QueryResponse> read = () -> structuredQueryService.run(handle.getJdbcTemplate(), handle.getDialect(), compiled, limit);
+            try {
+                if (!queryResultCache.isEnabled(handle)) {
+                    return ResponseEntity.ok(read.get());
+                }
+                String key = queryResultCache.key(handle, "structured", compiled.sql(), compiled.parameters(), limit);
+                return ResponseEntity.ok(queryResultCache.getOrLoad(key, queryResultCache.ttlSeconds(handle), QueryResponse.class, read));
+            } catch (Exception e) {
+                log.error("Error running structured query: {}", compiled.sql(), e);
+                return handleException(e);
+            }
+        } finally {
+            releaseConnectionHandle(handle);
         }
+    }
+
+    @Override
+    public ResponseEntity<String> cancelQuery(String userId, String queryId) {
+        if (!queryExecutionService.cancel(queryId, userId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Query not found: " + queryId);
+        }
+        return ResponseEntity.ok("Query cancelled: " + queryId);
+    }
+
+    @Override
+    public ResponseEntity<List<RunningQuery>> getRunningQueries(String userId) {
+        return ResponseEntity.ok(queryExecutionService.getRunningQueries(userId));
+    }
+
+    @Override
+    public ResponseEntity<SchemaSnapshot> getSchemaSnapshot(HttpSession session, String connectionId) {
+        ConnectionHandle handle = acquireConnectionHandle(session, connectionId);
 
-        if (!isValidQuery(query)) {
-            log.error("Invalid SQL query: {}", query);
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        if (handle == null) {
+            log.error("Credentials must be set before calling this method.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(null);
         }
 
         try {
-            // Execute the query
-            List<Map<String, Object>> result = jdbcTemplate.query(query, new ColumnMapRowMapper());
-            return ResponseEntity.ok(result);
+            SchemaSnapshot snapshot = schemaMetadataCache.get(handle, "snapshot", current -> {
+                SchemaSnapshot loaded = schemaDiscoveryService.getSchemaSnapshot(current.getJdbcTemplate());
+                primeSchemaCache(current, loaded);
+                return loaded;
+            });
+            return ResponseEntity.ok(snapshot);
         } catch (Exception e) {
-            return handleExceptionAsListMap(e, "Error executing query: " + query);
+            log.error("Error reading schema snapshot", e);
+            return handleException(e);
+        } finally {
+            releaseConnectionHandle(handle);
         }
     }
 
+    /**
+     * Fills the table and column entries of the schema cache from a snapshot, so the per-table
+     * endpoints do not go back to the database after the UI has loaded the whole schema.
+     */
+    private void primeSchemaCache(ConnectionHandle handle, SchemaSnapshot snapshot) {
+        List<String> tableNames = new ArrayList<>();
+        for (SchemaSnapshot.Table table : snapshot.getTables()) {
+            tableNames.add(table.getName());
+            List<Map<String, Object>> columns = new ArrayList<>();
+            for (SchemaSnapshot.Column column : table.getColumns()) {
+                Map<String, Object> columnMap = new HashMap<>();
+                columnMap.put("COLUMN_NAME", column.getName());
+                columnMap.put("TYPE_NAME", column.getType());
+                columnMap.put("COLUMN_SIZE", column.getSize());
+                columnMap.put("DATA_TYPE", column.getSqlType());
+                columns.add(columnMap);
+            }
+            schemaMetadataCache.put(handle, "table/" + table.getName() + "/columns", Collections.unmodifiableList(columns),
+                    columnsLoader(table.getName()));
+        }
+        schemaMetadataCache.put(handle, "tables", Collections.unmodifiableList(tableNames), this::loadTables);
+    }
+
+    @Override
+    public ResponseEntity<String> invalidateSchemaCache(String userId, String connectionId, String tableName) {
+        if (tableName == null || tableName.isEmpty()) {
+            schemaMetadataCache.invalidate(connectionKey(userId, connectionId));
+        } else {
+            if (!isValidIdentifier(tableName)) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid table name");
+            }
+            schemaMetadataCache.invalidate(connectionKey(userId, connectionId), "table/" + tableName + "/");
+            // The table list and the snapshot may have changed too (e.g. the table was created or dropped)
+            schemaMetadataCache.invalidate(connectionKey(userId, connectionId), "tables");
+            schemaMetadataCache.invalidate(connectionKey(userId, connectionId), "snapshot");
+        }
+        return ResponseEntity.ok("Schema cache invalidated");
+    }
+
+    /**
+     * Returns the columns of a table from the schema cache, reading them from the database on a miss.
+     */
+    private List<Map<String, Object>> cachedColumns(ConnectionHandle handle, String tableName) throws Exception {
+        return schemaMetadataCache.get(handle, "table/" + tableName + "/columns", columnsLoader(tableName));
+    }
+
+    // Los cargadores de la caché de esquema reciben la conexión vigente; no capturan la de la petición
+    private SchemaMetadataCache.MetadataLoader<List<Map<String, Object>>> columnsLoader(String tableName) {
+        return current -> Collections.unmodifiableList(schemaDiscoveryService.listColumns(tableName, current.getJdbcTemplate()));
+    }
+
+    private List<String> loadTables(ConnectionHandle current) throws SQLException {
+        return Collections.unmodifiableList(schemaDiscoveryService.listTables(current.getJdbcTemplate()));
+    }
+
+    @Override
+    public ResponseEntity<StreamingResponseBody> streamTableData(String tableName, String format, int fetchSize, int limit,
+                                                                HttpSession session, String connectionId) {
+        if (!isValidIdentifier(tableName)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        // Misma ruta que las consultas libres: límites del servidor, cancelación y X-Query-Id
+        QueryRequest request = new QueryRequest();
+        request.setQuery("SELECT * FROM " + tableName);
+        request.setFormat(format);
+        request.setFetchSize(fetchSize);
+        request.setMaxRows(limit);
+        return executeQuery(request, session, connectionId);
+    }
+
+    @Override
+    public ResponseEntity<StreamingResponseBody> streamQuery(String query, String format, int fetchSize, int limit,
+                                                             HttpSession session, String connectionId) {
+        // Las consultas libres pasan siempre por los límites y la cancelación del motor de consultas
+        QueryRequest request = new QueryRequest();
+        request.setQuery(query);
+        request.setFormat(format);
+        request.setFetchSize(fetchSize);
+        request.setMaxRows(limit);
+        return executeQuery(request, session, connectionId);
+    }
+
     private DataSource createDataSourceFromConnectionEntity(ConnectionEntity connectionEntity) {
         // Reconstruir DatabaseConnectionRequest
         DatabaseConnectionRequest dbRequest = new DatabaseConnectionRequest();
@@ -224,44 +616,77 @@ public class DatabaseServiceImpl implements DatabaseService {
         dbRequest.setJdbcUrl(connectionEntity.getJdbcUrl());
         dbRequest.setConnectionId(connectionEntity.getConnectionId());
 
-        // Crear y probar la conexión
-        return dynamicDataSourceManager.createDataSource(dbRequest);
+        // Obtener el pool compartido
+        return dataSourcePoolRegistry.acquire(dbRequest);
     }
 
 
-    // Helper method to get JdbcTemplate from session
-    public JdbcTemplate getJdbcTemplateFromSession(HttpSession session, String connectionId) {
+    @Override
+    public ConnectionHandle getConnectionHandle(HttpSession session, String connectionId) {
         String userId = getUserIdFromSession(session);
         if (userId == null) {
             return null;
         }
-        Map<String, DataSource> dataSources = userDataSources.computeIfAbsent(userId, k -> new ConcurrentHashMap<>());
-        DataSource dataSource = dataSources.get(connectionId);
-        if (dataSource == null) {
-            // Intentar recuperar la conexión desde MongoDB
-            ConnectionEntity connectionEntity = connectionRepository.findByUserIdAndConnectionId(userId, connectionId);
-            if (connectionEntity != null) {
-                dataSource = createDataSourceFromConnectionEntity(connectionEntity);
-                if (dataSource != null) {
-                    dataSources.put(connectionId, dataSource);
-                }
+        return getConnectionHandle(userId, connectionId);
+    }
+
+    /**
+     * Resolves the user connection and takes a reference to its pool, so the registry does not evict the
+     * connection and close the pool while the request is using it. Release it with {@link #releaseConnectionHandle}.
+     *
+     * @return the handle, or null if the user has no such connection
+     */
+    private ConnectionHandle acquireConnectionHandle(HttpSession session, String connectionId) {
+        String userId = getUserIdFromSession(session);
+        if (userId == null) {
+            return null;
+        }
+        for (int attempt = 0; attempt < 2; attempt++) {
+            ConnectionHandle handle = getConnectionHandle(userId, connectionId);
+            if (handle == null) {
+                return null;
+            }
+            // Si el pool se cerró entre ambos pasos, la conexión desalojada se reconstruye una vez más
+            if (dataSourcePoolRegistry.acquire(handle.getDataSource())) {
+                return handle;
             }
         }
-        if (dataSource != null) {
-            return new JdbcTemplate(dataSource);
-        } else {
-            return null;
+        log.warn("Connection {} of user {} was closed while the request was opening it", connectionId, userId);
+        return null;
+    }
+
+    private void releaseConnectionHandle(ConnectionHandle handle) {
+        if (handle != null) {
+            dataSourcePoolRegistry.release(handle.getDataSource());
         }
     }
 
-    public ResponseEntity<String> disconnectDatabase(String userId, String connectionId) {
-        Map<String, DataSource> dataSources = userDataSources.get(userId);
-        if (dataSources != null) {
-            DataSource dataSource = dataSources.remove(connectionId);
-            if (dataSource != null) {
-                dynamicDataSourceManager.closeDataSource(dataSource);
-                return ResponseEntity.ok("Disconnected successfully");
+    private ConnectionHandle getConnectionHandle(String userId, String connectionId) {
+        // Conexión nunca abierta en este nodo o desalojada: se reconstruye una sola vez desde MongoDB
+        return userDataSourceRegistry.getOrCreate(userId, connectionId, () -> {
+            ConnectionEntity connectionEntity = connectionRepository.findByUserIdAndConnectionId(userId, connectionId);
+            if (connectionEntity == null) {
+                return null;
             }
+            return new ConnectionHandle(userId, connectionId, connectionEntity.getDatabaseType(),
+                    createDataSourceFromConnectionEntity(connectionEntity), connectionEntity.getResultCacheTtlSeconds());
+        });
+    }
+
+    // Helper method to get JdbcTemplate from session
+    public JdbcTemplate getJdbcTemplateFromSession(HttpSession session, String connectionId) {
+        ConnectionHandle handle = getConnectionHandle(session, connectionId);
+        return handle == null ? null : handle.getJdbcTemplate();
+    }
+
+    public ResponseEntity<String> disconnectDatabase(String userId, String connectionId) {
+        rowCountService.invalidate(connectionKey(userId, connectionId));
+        schemaMetadataCache.invalidate(connectionKey(userId, connectionId));
+        ConnectionHandle handle = userDataSourceRegistry.remove(userId, connectionId);
+        if (handle != null) {
+            queryResultCache.invalidate(handle);
+            dataSourcePoolRegistry.release(handle.getDataSource());
+            return ResponseEntity.ok("Disconnected successfully");
         }
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Connection not found");
     }
@@ -271,6 +696,13 @@ public class DatabaseServiceImpl implements DatabaseService {
         return (String) session.getAttribute("userId");
     }
 
+    /**
+     * Builds the key that identifies a user connection in the per-connection caches.
+     */
+    private String connectionKey(String userId, String connectionId) {
+        return userId + ":" + connectionId;
+    }
+
     /**
      * Validates the provided database credentials.
      *
@@ -307,12 +739,7 @@ public class DatabaseServiceImpl implements DatabaseService {
      * @return True if the identifier is valid, false otherwise.
      */
     private boolean isValidIdentifier(String identifier) {
-        return identifier != null && identifier.matches("^[a-zA-Z0-9_]+$");
-    }
-
-    private boolean isValidQuery(String query) {
-        String sqlPattern = "^[a-zA-Z0-9_\\s,=*'();]*$";
-        return Pattern.matches(sqlPattern, query);
+        return identifier != null && IDENTIFIER.matcher(identifier).matches();
     }
 
     private <T> ResponseEntity<T> handleException(Exception e) {
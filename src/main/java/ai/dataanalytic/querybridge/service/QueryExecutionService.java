@@ -0,0 +1,406 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.querybridge.config.DataSourcePoolRegistry;
+import ai.dataanalytic.querybridge.dto.QueryRequest;
+import ai.dataanalytic.querybridge.dto.RunningQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs ad-hoc queries within server-side limits and keeps track of the running ones so their owner can
+ * cancel them. Every query gets a statement timeout, a row limit and a byte limit; its rows are streamed
+ * to the client, so neither a pooled connection nor the heap is held by a single runaway query.
+ * Cancelling calls {@link Statement#cancel()} on the running statement and stops reading the rows the
+ * driver has already fetched.
+ * A query is registered and executed before its response is committed, so errors such as bad SQL can still
+ * get their own status, and removed when its response body ends; while registered it holds a reference to the
+ * pool of its connection, so evicting the user connection does not close the pool under it. Query ids are
+ * scoped by user.
+ */
+@Slf4j
+@Service
+public class QueryExecutionService {
+
+    private static final class Execution implements ResultSetStreamer.QueryControl {
+        private final String queryId;
+        private final String userId;
+        private final String connectionId;
+        private final String sql;
+        private final String normalizedSql;
+        private final String fingerprintId;
+        private final DataSource dataSource;
+        private final LocalDateTime startTime = LocalDateTime.now();
+        private Statement statement;
+        private volatile boolean cancelled;
+
+        private Execution(String queryId, String userId, String connectionId, QueryValidationService.ParsedQuery query,
+                          DataSource dataSource) {
+            this.queryId = queryId;
+            this.userId = userId;
+            this.connectionId = connectionId;
+            this.sql = query.sql();
+            this.normalizedSql = query.normalizedSql();
+            this.fingerprintId = query.fingerprintId();
+            this.dataSource = dataSource;
+        }
+
+        @Override
+        public synchronized void started(Statement statement) throws SQLException {
+            if (cancelled) {
+                // Cancelada antes de llegar a la base de datos: no se ejecuta
+                throw new SQLException("Query cancelled", ResultSetStreamer.QUERY_CANCELED);
+            }
+            this.statement = statement;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+            if (statement != null) {
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    log.warn("Error cancelling query {}: {}", queryId, e.getMessage());
+                }
+            }
+        }
+
+        private synchronized void finished() {
+            statement = null;
+        }
+    }
+
+    private final ResultSetStreamer resultSetStreamer;
+
+    private final QueryResultCache queryResultCache;
+
+    private final DataSourcePoolRegistry dataSourcePoolRegistry;
+
+    private final int timeoutSeconds;
+
+    private final int maxRows;
+
+    private final long maxBytes;
+
+    /**
+     * Time a started query waits for its response body to write it before giving its connection back.
+     */
+    static final long UNCLAIMED_SECONDS = 60;
+
+    // Consultas en curso en este nodo por userId:queryId
+    private final Map<String, Execution> executions = new ConcurrentHashMap<>();
+
+    public QueryExecutionService(ResultSetStreamer resultSetStreamer,
+                                 QueryResultCache queryResultCache,
+                                 DataSourcePoolRegistry dataSourcePoolRegistry,
+                                 @Value("${querybridge.query.timeout-seconds:30}") int timeoutSeconds,
+                                 @Value("${querybridge.query.max-rows:100000}") int maxRows,
+                                 @Value("${querybridge.query.max-bytes:104857600}") long maxBytes) {
+        this.resultSetStreamer = resultSetStreamer;
+        this.queryResultCache = queryResultCache;
+        this.dataSourcePoolRegistry = dataSourcePoolRegistry;
+        this.timeoutSeconds = timeoutSeconds;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Chooses the id of a new query, so it can be sent in the response headers before the query starts.
+     *
+     * @param queryId id chosen by the client, or null to generate one
+     * @return the id of the query
+     * @throws IllegalStateException if a query of the user with that id is already running
+     */
+    public String newQueryId(String userId, String queryId) {
+        if (queryId == null || queryId.isBlank()) {
+            return UUID.randomUUID().toString();
+        }
+        if (executions.containsKey(key(userId, queryId))) {
+            throw new IllegalStateException("Query already running: " + queryId);
+        }
+        return queryId;
+    }
+
+    /**
+     * A query that is registered and ready to write its result: its statement has already run on the database,
+     * or its result comes from the result cache, so what is left can only fail while the rows are streamed.
+     * It holds a reference to the pool of its connection until {@link #writeTo} ends or it is closed; if nobody
+     * writes it within {@link #UNCLAIMED_SECONDS}, it closes itself.
+     */
+    public final class StartedQuery implements AutoCloseable {
+
+        private final Execution execution;
+        private final ConnectionHandle handle;
+        private final Object[] parameters;
+        private final ResultSetStreamer.Limits limits;
+        private final ResultSetStreamer.Format format;
+        private String cacheKey;
+        private byte[] cached;
+        private CompletableFuture<byte[]> running;
+        private boolean loading;
+        private ResultSetStreamer.OpenQuery open;
+        private boolean writing;
+        private boolean closed;
+
+        private StartedQuery(Execution execution, ConnectionHandle handle, Object[] parameters,
+                             ResultSetStreamer.Limits limits, ResultSetStreamer.Format format) {
+            this.execution = execution;
+            this.handle = handle;
+            this.parameters = parameters;
+            this.limits = limits;
+            this.format = format;
+        }
+
+        public String getQueryId() {
+            return execution.queryId;
+        }
+
+        /**
+         * Writes the result to the output stream and closes the query. Meant to be called from the response body.
+         * A query cancelled by its owner ends the output without an error.
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            synchronized (this) {
+                if (closed && execution.isCancelled()) {
+                    return;
+                }
+                if (closed) {
+                    throw new IllegalStateException("Query " + execution.queryId + " was abandoned before its result was written");
+                }
+                writing = true;
+            }
+            try {
+                if (running != null) {
+                    cached = waitFor(execution, running);
+                    if (execution.isCancelled()) {
+                        return;
+                    }
+                    if (cached == null) {
+                        // La lectura compartida falló: esta petición lee por su cuenta
+                        try {
+                            open = openQuery(execution, handle, parameters, limits);
+                        } catch (DataAccessException e) {
+                            if (execution.isCancelled()) {
+                                return;
+                            }
+                            throw e;
+                        }
+                    }
+                }
+                if (cached != null) {
+                    out.write(cached);
+                    out.flush();
+                    log.debug("Query {} ({}) served from the result cache", execution.queryId, execution.fingerprintId);
+                } else if (open != null && loading) {
+                    QueryResultCache.Capture capture = queryResultCache.capture(out);
+                    byte[] result = null;
+                    try {
+                        if (write(execution, open, format, capture)) {
+                            result = capture.toByteArray();
+                        }
+                    } finally {
+                        loading = false;
+                        queryResultCache.finishLoad(cacheKey, result, queryResultCache.ttlSeconds(handle));
+                    }
+                } else if (open != null) {
+                    write(execution, open, format, out);
+                }
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Releases the connection and unregisters the query; does nothing once done.
+         */
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (open != null) {
+                    open.close();
+                }
+            } finally {
+                if (loading) {
+                    // Los que esperaban esta lectura leen por su cuenta
+                    queryResultCache.finishLoad(cacheKey, null, 0);
+                }
+                execution.finished();
+                executions.remove(key(execution.userId, execution.queryId), execution);
+                dataSourcePoolRegistry.release(execution.dataSource);
+            }
+        }
+
+        private synchronized void closeIfUnclaimed() {
+            if (!writing && !closed) {
+                log.warn("Query {} was not written within {} seconds; closing it", execution.queryId, UNCLAIMED_SECONDS);
+                close();
+            }
+        }
+    }
+
+    /**
+     * Registers a query and executes it, so a query that cannot run is reported before the response is committed.
+     * Results are served from the result cache when the connection allows it, and identical queries running at
+     * the same time share one execution; those do not touch the database here. A query cancelled before it
+     * reaches the database starts with nothing to write.
+     *
+     * @param handle the connection, with a pool reference the started query takes over (it is released on failure as well)
+     * @return the query, to be written with {@link StartedQuery#writeTo}
+     * @throws IllegalStateException if a query of the user with that id is already running
+     * @throws DataAccessException   if the query cannot be executed
+     */
+    public StartedQuery start(String connectionId, String queryId, QueryValidationService.ParsedQuery query,
+                              ConnectionHandle handle, QueryRequest request, ResultSetStreamer.Format format) {
+        Execution execution = new Execution(queryId, handle.getUserId(), connectionId, query, handle.getDataSource());
+        if (executions.putIfAbsent(key(handle.getUserId(), queryId), execution) != null) {
+            dataSourcePoolRegistry.release(handle.getDataSource());
+            throw new IllegalStateException("Query already running: " + queryId);
+        }
+        ResultSetStreamer.Limits limits = new ResultSetStreamer.Limits(
+                request.getFetchSize() == null ? 0 : request.getFetchSize(),
+                (int) bound(request.getMaxRows(), maxRows),
+                bound(request.getMaxBytes(), maxBytes),
+                (int) bound(request.getTimeoutSeconds(), timeoutSeconds));
+        Object[] parameters = request.getParameters() == null ? null : request.getParameters().toArray();
+        StartedQuery started = new StartedQuery(execution, handle, parameters, limits, format);
+        try {
+            if (!Boolean.FALSE.equals(request.getCache()) && queryResultCache.isEnabled(handle)) {
+                // El resultado depende del texto, los parámetros, el formato y los límites que lo recortan
+                started.cacheKey = queryResultCache.key(handle, "query", execution.normalizedSql,
+                        parameters == null ? null : Arrays.asList(parameters), format, limits.maxRows(), limits.maxBytes());
+                started.cached = queryResultCache.get(started.cacheKey);
+                if (started.cached == null) {
+                    started.running = queryResultCache.joinLoad(started.cacheKey);
+                    started.loading = started.running == null;
+                }
+            }
+            if (started.cached == null && started.running == null) {
+                started.open = openQuery(execution, handle, parameters, limits);
+            }
+        } catch (DataAccessException e) {
+            started.close();
+            if (!execution.isCancelled()) {
+                throw e;
+            }
+            log.info("Query {} cancelled before it started", queryId);
+        } catch (RuntimeException e) {
+            started.close();
+            throw e;
+        }
+        CompletableFuture.delayedExecutor(UNCLAIMED_SECONDS, TimeUnit.SECONDS).execute(started::closeIfUnclaimed);
+        return started;
+    }
+
+    /**
+     * Cancels a running query of the user.
+     *
+     * @return false if no query of the user has that id
+     */
+    public boolean cancel(String queryId, String userId) {
+        Execution execution = userId == null ? null : executions.get(key(userId, queryId));
+        if (execution == null) {
+            return false;
+        }
+        execution.cancel();
+        log.info("Cancel requested for query {}", queryId);
+        return true;
+    }
+
+    /**
+     * Returns the queries of the user that are still running on this node, oldest first.
+     */
+    public List<RunningQuery> getRunningQueries(String userId) {
+        return executions.values().stream()
+                .filter(execution -> execution.userId.equals(userId))
+                .sorted(Comparator.comparing((Execution execution) -> execution.startTime))
+                .map(execution -> new RunningQuery(execution.queryId, execution.connectionId, execution.sql,
+                        execution.fingerprintId, execution.startTime, execution.cancelled))
+                .toList();
+    }
+
+    private ResultSetStreamer.OpenQuery openQuery(Execution execution, ConnectionHandle handle, Object[] parameters,
+                                                  ResultSetStreamer.Limits limits) {
+        return resultSetStreamer.open(handle.getJdbcTemplate(), handle.getDialect(), execution.sql, parameters, limits, execution);
+    }
+
+    /**
+     * Writes the rows of an executed query.
+     *
+     * @return false if the query was cancelled
+     */
+    private boolean write(Execution execution, ResultSetStreamer.OpenQuery open, ResultSetStreamer.Format format,
+                          OutputStream out) {
+        try {
+            long rows = resultSetStreamer.write(open, format, out);
+            log.debug("Query {} ({}) returned {} rows", execution.queryId, execution.fingerprintId, rows);
+            return true;
+        } catch (DataAccessException e) {
+            if (execution.isCancelled()) {
+                log.info("Query {} cancelled", execution.queryId);
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the identical query another request is running, checking now and then for a cancellation.
+     */
+    private byte[] waitFor(Execution execution, CompletableFuture<byte[]> running) {
+        while (!execution.isCancelled()) {
+            try {
+                return running.get(1, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                // Sigue esperando
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static String key(String userId, String queryId) {
+        return userId + ":" + queryId;
+    }
+
+    /**
+     * A limit asked by the client can lower the configured one but never raise it; 0 means no limit.
+     */
+    private static long bound(Number requested, long configured) {
+        long value = requested == null ? 0 : requested.longValue();
+        if (value <= 0) {
+            return configured;
+        }
+        return configured <= 0 ? value : Math.min(value, configured);
+    }
+}
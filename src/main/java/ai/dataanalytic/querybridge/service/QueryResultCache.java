@@ -0,0 +1,434 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.querybridge.config.DataSourcePoolRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cache of query results and table pages, shared by every user of the same pool: entries are keyed by the
+ * fingerprint of the pool (database and credentials) plus what was asked, so two users with the same
+ * credentials reuse each other's results. The cache is bounded in bytes, each entry expires after the TTL of
+ * the connection that stored it, and entries above a threshold are kept compressed.
+ * <p>
+ * Sharing by pool is safe as long as what a query returns depends only on the database login, which is part
+ * of the fingerprint: row-level security or grants tied to the login give each login its own entries. When the
+ * visible rows depend on something else (e.g. a per-user session setting applied by the database), set
+ * {@code querybridge.result-cache.scope=user} so entries are also keyed by the application user.
+ * <p>
+ * Entries live on the heap by default. With {@code querybridge.result-cache.off-heap=true} their bytes are kept in
+ * direct buffers instead, so a large cache does not add to the heap the garbage collector scans; direct memory
+ * is bounded by {@code max-bytes} here and by {@code -XX:MaxDirectMemorySize} in the JVM, and a buffer is freed
+ * once its entry is evicted and collected.
+ * <p>
+ * Identical requests that arrive while the result is being read wait for that single read instead of sending
+ * the same query to the database again. Entries of a pool are dropped when a user connects or disconnects it.
+ */
+@Slf4j
+@Service
+public class QueryResultCache {
+
+    // Bytes de la entrada en un buffer de heap o directo; length es el tamaño sin comprimir
+    private record Entry(ByteBuffer data, int length, boolean compressed, long ttlNanos) {
+    }
+
+    // Lectura en curso y la época de su pool cuando empezó
+    private record Load(CompletableFuture<byte[]> result, long epoch) {
+    }
+
+    /**
+     * Copy of everything written to a stream, given up once it grows past the largest cacheable entry.
+     */
+    public static final class Capture extends FilterOutputStream {
+
+        private final int maxBytes;
+
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        private Capture(OutputStream out, int maxBytes) {
+            super(out);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkSize();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkSize();
+            }
+        }
+
+        /**
+         * Returns what was written, or null if it was too large to cache.
+         */
+        public byte[] toByteArray() {
+            return copy == null ? null : copy.toByteArray();
+        }
+
+        private void checkSize() {
+            if (copy.size() > maxBytes) {
+                copy = null;
+            }
+        }
+    }
+
+    private final DataSourcePoolRegistry dataSourcePoolRegistry;
+
+    private final ObjectMapper cborMapper;
+
+    private final Cache<String, Entry> cache;
+
+    // Lecturas en curso, para que las peticiones idénticas esperen a una sola
+    private final Map<String, Load> inFlight = new ConcurrentHashMap<>();
+
+    // Invalidaciones por prefijo de pool: una lectura que empezó antes de la última no se guarda
+    private final Map<String, AtomicLong> epochs = new ConcurrentHashMap<>();
+
+    private final long maxBytes;
+
+    private final long defaultTtlSeconds;
+
+    private final int maxEntryBytes;
+
+    private final int compressThresholdBytes;
+
+    private final boolean offHeap;
+
+    private final boolean userScoped;
+
+    public QueryResultCache(DataSourcePoolRegistry dataSourcePoolRegistry,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${querybridge.result-cache.max-bytes:268435456}") long maxBytes,
+                            @Value("${querybridge.result-cache.ttl-seconds:60}") long defaultTtlSeconds,
+                            @Value("${querybridge.result-cache.max-entry-bytes:8388608}") int maxEntryBytes,
+                            @Value("${querybridge.result-cache.compress-threshold-bytes:65536}") int compressThresholdBytes,
+                            @Value("${querybridge.result-cache.off-heap:false}") boolean offHeap,
+                            @Value("${querybridge.result-cache.scope:pool}") String scope) {
+        this.dataSourcePoolRegistry = dataSourcePoolRegistry;
+        // CBOR conserva BigDecimal, BigInteger y byte[] al volver a leer las páginas cacheadas
+        this.cborMapper = objectMapper.copyWith(new CBORFactory());
+        this.maxBytes = maxBytes;
+        this.defaultTtlSeconds = defaultTtlSeconds;
+        this.maxEntryBytes = maxEntryBytes;
+        this.compressThresholdBytes = compressThresholdBytes;
+        this.offHeap = offHeap;
+        if (!"pool".equalsIgnoreCase(scope) && !"user".equalsIgnoreCase(scope)) {
+            throw new IllegalArgumentException("querybridge.result-cache.scope must be pool or user: " + scope);
+        }
+        this.userScoped = "user".equalsIgnoreCase(scope);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(Math.max(0, maxBytes))
+                .weigher((String key, Entry entry) -> key.length() * 2 + entry.data().capacity())
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "querybridge.result-cache");
+    }
+
+    /**
+     * Whether results of the connection are cached: the cache has room and the connection TTL is not 0.
+     */
+    public boolean isEnabled(ConnectionHandle handle) {
+        return maxBytes > 0 && ttlSeconds(handle) > 0;
+    }
+
+    /**
+     * TTL of the cached results of a connection, from the connection settings or the configured default.
+     */
+    public long ttlSeconds(ConnectionHandle handle) {
+        Integer ttl = handle.getResultCacheTtlSeconds();
+        return ttl == null ? defaultTtlSeconds : ttl;
+    }
+
+    /**
+     * Builds the key of a result: the pool of the connection (and the user, with the user scope) followed by
+     * every part of the request. Each part is prefixed with its length so different splits of the same text
+     * never collide.
+     */
+    public String key(ConnectionHandle handle, Object... parts) {
+        StringBuilder key = new StringBuilder();
+        appendPart(key, poolOf(handle));
+        if (userScoped) {
+            appendPart(key, "user:" + handle.getUserId());
+        }
+        for (Object part : parts) {
+            if (part instanceof Collection<?> values) {
+                // Cada valor lleva su tipo: el parámetro 1 y el parámetro '1' no dan el mismo resultado
+                appendPart(key, "values:" + values.size());
+                values.forEach(value -> appendPart(key, typed(value)));
+            } else {
+                appendPart(key, typed(part));
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the cached bytes of a key, or null on a miss.
+     */
+    public byte[] get(String key) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return decode(entry);
+        } catch (DataFormatException e) {
+            log.warn("Dropping corrupt cached result: {}", e.getMessage());
+            cache.invalidate(key);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the read of the key already running on this node, or null if the caller must read it and
+     * then call {@link #finishLoad(String, byte[], long)}, whatever the outcome.
+     */
+    public CompletableFuture<byte[]> joinLoad(String key) {
+        Load running = inFlight.putIfAbsent(key, new Load(new CompletableFuture<>(), epochOf(poolPrefix(key))));
+        return running == null ? null : running.result();
+    }
+
+    /**
+     * Ends a read started with {@link #joinLoad(String)}: stores the result, unless it is null or too large,
+     * and hands it to the requests that were waiting for it. A null result makes them read on their own.
+     * If the pool was invalidated while the read ran, the result may predate the change and is neither stored
+     * nor handed to the waiting requests.
+     */
+    public void finishLoad(String key, byte[] data, long ttlSeconds) {
+        Load load = inFlight.remove(key);
+        if (load == null) {
+            return;
+        }
+        String prefix = poolPrefix(key);
+        if (data != null && load.epoch() != epochOf(prefix)) {
+            log.debug("Discarding a result read before its pool was invalidated");
+            data = null;
+        }
+        if (data != null && data.length <= maxEntryBytes && ttlSeconds > 0) {
+            cache.put(key, encode(data, ttlSeconds));
+            // Una invalidación entre la comprobación y el put ya no vería esta entrada
+            if (load.epoch() != epochOf(prefix)) {
+                cache.invalidate(key);
+                data = null;
+            }
+        }
+        load.result().complete(data);
+    }
+
+    /**
+     * Waits for a read started by another request.
+     *
+     * @return its result, or null if it failed or was not cacheable
+     */
+    public byte[] await(CompletableFuture<byte[]> load) {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a cached object, reading it with the loader on a miss. Concurrent requests for the same key share
+     * one call to the loader; the one that ran it gets the loader's own object back.
+     *
+     * @param loader reads the value; a null value is not cached and makes waiting requests call their own loader
+     */
+    public <T> T getOrLoad(String key, long ttlSeconds, Class<T> type, Supplier<T> loader) {
+        byte[] cached = get(key);
+        if (cached == null) {
+            CompletableFuture<byte[]> running = joinLoad(key);
+            if (running == null) {
+                byte[] data = null;
+                try {
+                    T value = loader.get();
+                    data = value == null ? null : serialize(value);
+                    return value;
+                } finally {
+                    finishLoad(key, data, ttlSeconds);
+                }
+            }
+            cached = await(running);
+            if (cached == null) {
+                return loader.get();
+            }
+        }
+        try {
+            return cborMapper.readValue(cached, type);
+        } catch (IOException e) {
+            log.warn("Cannot read cached {}: {}", type.getSimpleName(), e.getMessage());
+            cache.invalidate(key);
+            return loader.get();
+        }
+    }
+
+    /**
+     * Wraps a response stream so what is written to it can be stored once the query completes.
+     */
+    public Capture capture(OutputStream out) {
+        return new Capture(out, maxEntryBytes);
+    }
+
+    /**
+     * Drops every cached result of the pool behind a connection.
+     */
+    public void invalidate(ConnectionHandle handle) {
+        if (handle == null) {
+            return;
+        }
+        StringBuilder prefix = new StringBuilder();
+        appendPart(prefix, poolOf(handle));
+        String start = prefix.toString();
+        // La época sube antes de borrar, así las lecturas en curso no pueden volver a guardar lo borrado
+        epochs.computeIfAbsent(start, p -> new AtomicLong()).incrementAndGet();
+        cache.asMap().keySet().removeIf(key -> key.startsWith(start));
+    }
+
+    private long epochOf(String prefix) {
+        AtomicLong epoch = epochs.get(prefix);
+        return epoch == null ? 0 : epoch.get();
+    }
+
+    /**
+     * Returns the first part of a key, the pool it belongs to, as {@link #invalidate} matches it.
+     */
+    private static String poolPrefix(String key) {
+        int colon = key.indexOf(':');
+        int end = colon + 1 + Integer.parseInt(key.substring(0, colon)) + 1;
+        return key.substring(0, end);
+    }
+
+    private String poolOf(ConnectionHandle handle) {
+        String fingerprint = dataSourcePoolRegistry.fingerprintOf(handle.getDataSource());
+        return fingerprint != null ? fingerprint : "connection/" + handle.getConnectionKey();
+    }
+
+    private static String typed(Object value) {
+        return value == null ? "null" : value.getClass().getSimpleName() + ":" + value;
+    }
+
+    private static void appendPart(StringBuilder key, String part) {
+        key.append(part.length()).append(':').append(part).append('|');
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return cborMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            log.warn("Cannot cache {}: {}", value.getClass().getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private Entry encode(byte[] data, long ttlSeconds) {
+        long ttlNanos = ttlSeconds * 1_000_000_000L;
+        if (data.length < compressThresholdBytes) {
+            return new Entry(store(data), data.length, false, ttlNanos);
+        }
+        // Compresión rápida: los resultados grandes se guardan comprimidos y caben más en el mismo límite
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4);
+            byte[] buffer = new byte[65536];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return new Entry(store(compressed.toByteArray()), data.length, true, ttlNanos);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private ByteBuffer store(byte[] data) {
+        if (!offHeap) {
+            return ByteBuffer.wrap(data);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data).flip();
+        return buffer;
+    }
+
+    private static byte[] decode(Entry entry) throws DataFormatException {
+        // Cada lectura usa su propia vista: la posición del buffer compartido no se toca
+        ByteBuffer stored = entry.data().duplicate();
+        if (!entry.compressed()) {
+            if (stored.hasArray()) {
+                return stored.array();
+            }
+            byte[] data = new byte[entry.length()];
+            stored.get(data);
+            return data;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            byte[] data = new byte[entry.length()];
+            int read = 0;
+            while (read < data.length && !inflater.finished()) {
+                int n = inflater.inflate(data, read, data.length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated cache entry");
+                }
+                read += n;
+            }
+            return data;
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.Statements;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.select.WithItem;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * Parses and validates ad-hoc queries before they reach the database.
+ * Only a single read-only SELECT is accepted (including WITH and set operations); {@code SELECT ... INTO},
+ * locking reads and MySQL executable comments are rejected, in subqueries too.
+ * <p>
+ * Every query is reduced to a fingerprint: literals become {@code ?}, comments and redundant whitespace go
+ * and keywords are lower-cased, following the lexical rules of the connection dialect. Queries that only
+ * differ in their literals share a fingerprint, so the verdict of the parser is cached by fingerprint and
+ * each query shape is parsed once. Queries whose literals this pass cannot delimit exactly (dollar quoting,
+ * backslashes, nested comments) are parsed every time.
+ */
+@Slf4j
+@Service
+public class QueryValidationService {
+
+    /**
+     * A query accepted for execution.
+     *
+     * @param sql           the query as it must be sent to the database, without trailing semicolons
+     * @param fingerprint   the normalized text of the query
+     * @param fingerprintId short stable id of the fingerprint, for logs and metrics
+     * @param normalizedSql the query without comments and redundant whitespace, with its literals and the case of
+     *                      its words kept: queries with the same normalized SQL return the same rows
+     * @param tables        the tables the query reads, as written in it
+     */
+    public record ParsedQuery(String sql, String fingerprint, String fingerprintId, String normalizedSql, Set<String> tables) {
+    }
+
+    /**
+     * Outcome of parsing one query shape: the tables it reads, or why it was rejected.
+     */
+    private record Verdict(Set<String> tables, String rejection) {
+        static Verdict rejected(String reason) {
+            return new Verdict(Set.of(), reason);
+        }
+    }
+
+    private record Fingerprint(String text, String normalized, int end, boolean cacheable) {
+    }
+
+    private final Cache<String, Verdict> verdicts;
+
+    private final long parseTimeoutMs;
+
+    private final ThreadPoolTaskExecutor parserExecutor;
+
+    public QueryValidationService(@Value("${querybridge.query.parse-cache.max-entries:10000}") long cacheMaxEntries,
+                                  @Value("${querybridge.query.parse-timeout-ms:2000}") long parseTimeoutMs,
+                                  @Value("${querybridge.query.parser-threads:2}") int parserThreads) {
+        this.verdicts = Caffeine.newBuilder()
+                .maximumSize(cacheMaxEntries)
+                .build();
+        this.parseTimeoutMs = parseTimeoutMs;
+        // El parser corre en otro hilo para poder cortarlo por tiempo; se reutiliza en lugar de crear uno por consulta
+        this.parserExecutor = new ThreadPoolTaskExecutor();
+        parserExecutor.setCorePoolSize(parserThreads);
+        parserExecutor.setMaxPoolSize(parserThreads);
+        parserExecutor.setThreadNamePrefix("sql-parser-");
+        parserExecutor.setDaemon(true);
+        parserExecutor.initialize();
+    }
+
+    /**
+     * Validates a query for the given dialect.
+     *
+     * @return the query to run and its fingerprint
+     * @throws IllegalArgumentException if the query is empty, cannot be parsed or is not a single read-only query
+     */
+    public ParsedQuery validate(String sql, SqlDialect dialect) {
+        if (sql == null || sql.isBlank()) {
+            throw new IllegalArgumentException("Empty query");
+        }
+        Fingerprint fingerprint = fingerprint(sql, dialect);
+        String statement = sql.substring(0, fingerprint.end());
+        Verdict verdict = fingerprint.cacheable()
+                ? verdicts.get(dialect.getName() + ":" + fingerprint.text(), key -> analyze(statement, dialect))
+                : analyze(statement, dialect);
+        if (verdict.rejection() != null) {
+            throw new IllegalArgumentException(verdict.rejection());
+        }
+        return new ParsedQuery(statement, fingerprint.text(), fingerprintId(fingerprint.text()), fingerprint.normalized(),
+                verdict.tables());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parserExecutor.shutdown();
+    }
+
+    private Verdict analyze(String sql, SqlDialect dialect) {
+        Statements statements;
+        try {
+            statements = CCJSqlParserUtil.parseStatements(sql, parserExecutor.getThreadPoolExecutor(), parser -> parser
+                    .withTimeOut(parseTimeoutMs)
+                    .withBackslashEscapeCharacter(dialect.backslashEscapesStrings())
+                    .withSquareBracketQuotation(dialect.squareBracketQuotes()));
+        } catch (JSQLParserException e) {
+            String message = e.getMessage() == null ? "syntax error" : e.getMessage().lines().findFirst().orElse("syntax error");
+            return Verdict.rejected("Cannot parse query: " + message);
+        }
+        if (statements == null || statements.size() != 1) {
+            return Verdict.rejected("Only one statement is allowed");
+        }
+        Statement statement = statements.get(0);
+        if (!(statement instanceof Select select)) {
+            return Verdict.rejected("Only SELECT queries are allowed");
+        }
+        ReadOnlyChecker checker = new ReadOnlyChecker();
+        Set<String> tables;
+        try {
+            tables = Set.copyOf(checker.getTables(statement));
+        } catch (RuntimeException e) {
+            // Construcciones que el buscador de tablas no soporta: se comprueba al menos la estructura de la consulta
+            log.debug("Cannot walk query: {}", e.getMessage());
+            checker.problem = checkReadOnly(select);
+            tables = Set.of();
+        }
+        if (checker.problem != null) {
+            return Verdict.rejected(checker.problem);
+        }
+        return new Verdict(tables, null);
+    }
+
+    /**
+     * Walks the whole statement, subqueries in expressions and FROM items included, listing the tables it reads
+     * and finding the first clause that would make any of its selects write or lock. Writes hidden in functions
+     * are left to the read-only connection the query runs on.
+     */
+    private static class ReadOnlyChecker extends TablesNamesFinder {
+
+        private String problem;
+
+        @Override
+        public void visit(PlainSelect plainSelect) {
+            if (problem == null) {
+                problem = checkClauses(plainSelect);
+            }
+            super.visit(plainSelect);
+        }
+    }
+
+    /**
+     * Checks the statement structure only (WITH items, set operations and parenthesized selects), for the
+     * queries the full walk does not support.
+     */
+    private static String checkReadOnly(Select select) {
+        if (select.getWithItemsList() != null) {
+            for (WithItem item : select.getWithItemsList()) {
+                String problem = checkReadOnly(item);
+                if (problem != null) {
+                    return problem;
+                }
+            }
+        }
+        if (select instanceof PlainSelect plain) {
+            return checkClauses(plain);
+        } else if (select instanceof SetOperationList setOperation) {
+            for (Select part : setOperation.getSelects()) {
+                String problem = checkReadOnly(part);
+                if (problem != null) {
+                    return problem;
+                }
+            }
+        } else if (select instanceof ParenthesedSelect parenthesed && parenthesed.getSelect() != null) {
+            return checkReadOnly(parenthesed.getSelect());
+        }
+        return null;
+    }
+
+    private static String checkClauses(PlainSelect plain) {
+        if ((plain.getIntoTables() != null && !plain.getIntoTables().isEmpty()) || plain.getIntoTempTable() != null) {
+            return "SELECT INTO is not allowed";
+        }
+        if (plain.getForMode() != null) {
+            return "Locking reads (FOR " + plain.getForMode().getValue() + ") are not allowed";
+        }
+        return null;
+    }
+
+    /**
+     * Single lexical pass that builds the fingerprint and the normalized SQL and finds where the statement ends,
+     * before any trailing semicolons and comments.
+     */
+    private static Fingerprint fingerprint(String sql, SqlDialect dialect) {
+        boolean backslashes = dialect.backslashEscapesStrings();
+        boolean brackets = dialect.squareBracketQuotes();
+        boolean hashComments = "mysql".equals(dialect.getName());
+        StringBuilder out = new StringBuilder(sql.length());
+        StringBuilder normalized = new StringBuilder(sql.length());
+        boolean cacheable = true;
+        boolean space = false;
+        int end = 0;
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            char next = i + 1 < n ? sql.charAt(i + 1) : 0;
+            if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+                continue;
+            }
+            if ((c == '-' && next == '-') || (c == '#' && hashComments)) {
+                int newline = sql.indexOf('\n', i);
+                i = newline < 0 ? n : newline + 1;
+                space = true;
+                continue;
+            }
+            if (c == '/' && next == '*') {
+                if (i + 2 < n && sql.charAt(i + 2) == '!') {
+                    throw new IllegalArgumentException("Executable comments are not allowed");
+                }
+                int close = sql.indexOf("*/", i + 2);
+                if (close < 0 || sql.substring(i + 2, close).contains("/*")) {
+                    // Sin cerrar o anidado: el motor puede no verlo igual que este análisis
+                    cacheable = false;
+                }
+                i = close < 0 ? n : close + 2;
+                space = true;
+                continue;
+            }
+
+            int start = i;
+            String token;
+            if (c == '\'') {
+                int j = i + 1;
+                boolean closed = false;
+                while (j < n) {
+                    char ch = sql.charAt(j);
+                    if (ch == '\\') {
+                        if (!backslashes) {
+                            // E'...' de PostgreSQL y similares: no se sabe con certeza dónde acaba
+                            cacheable = false;
+                            j++;
+                        } else {
+                            j += 2;
+                        }
+                        continue;
+                    }
+                    if (ch == '\'') {
+                        if (j + 1 < n && sql.charAt(j + 1) == '\'') {
+                            j += 2;
+                            continue;
+                        }
+                        closed = true;
+                        break;
+                    }
+                    j++;
+                }
+                if (!closed) {
+                    cacheable = false;
+                }
+                i = Math.min(j + 1, n);
+                token = "?";
+            } else if (c == '"' || c == '`' || (c == '[' && brackets)) {
+                char close = c == '[' ? ']' : c;
+                int j = i + 1;
+                while (j < n && !(sql.charAt(j) == close && (j + 1 >= n || sql.charAt(j + 1) != close))) {
+                    j += sql.charAt(j) == close ? 2 : 1;
+                }
+                if (j >= n) {
+                    cacheable = false;
+                }
+                i = Math.min(j + 1, n);
+                token = sql.substring(start, i);
+            } else if (Character.isDigit(c) || (c == '.' && Character.isDigit(next))) {
+                int j = i;
+                if (c == '0' && (next == 'x' || next == 'X')) {
+                    j += 2;
+                    while (j < n && Character.digit(sql.charAt(j), 16) >= 0) {
+                        j++;
+                    }
+                } else {
+                    while (j < n && (Character.isDigit(sql.charAt(j)) || sql.charAt(j) == '.')) {
+                        j++;
+                    }
+                    // Exponente solo si le siguen dígitos: en "1and" la palabra clave no forma parte del número
+                    if (j < n && (sql.charAt(j) == 'e' || sql.charAt(j) == 'E')) {
+                        int k = j + 1;
+                        if (k < n && (sql.charAt(k) == '+' || sql.charAt(k) == '-')) {
+                            k++;
+                        }
+                        if (k < n && Character.isDigit(sql.charAt(k))) {
+                            j = k;
+                            while (j < n && Character.isDigit(sql.charAt(j))) {
+                                j++;
+                            }
+                        }
+                    }
+                }
+                i = j;
+                token = "?";
+            } else if (Character.isLetter(c) || c == '_') {
+                int j = i + 1;
+                while (j < n && (Character.isLetterOrDigit(sql.charAt(j)) || sql.charAt(j) == '_' || sql.charAt(j) == '$')) {
+                    j++;
+                }
+                i = j;
+                token = sql.substring(start, j).toLowerCase();
+            } else {
+                if (c == '$') {
+                    // Parámetros $1 o cadenas $tag$...$tag$ de PostgreSQL
+                    cacheable = false;
+                }
+                i++;
+                token = String.valueOf(c);
+            }
+
+            if (space && !out.isEmpty() && isWordChar(out.charAt(out.length() - 1)) && isWordChar(token.charAt(0))) {
+                out.append(' ');
+                normalized.append(' ');
+            }
+            space = false;
+            out.append(token);
+            normalized.append(sql, start, i);
+            if (!token.equals(";")) {
+                end = i;
+            }
+        }
+        // Quita los ';' finales que quedaron en la huella
+        trimSemicolons(out);
+        trimSemicolons(normalized);
+        return new Fingerprint(out.toString(), normalized.toString(), end, cacheable);
+    }
+
+    private static void trimSemicolons(StringBuilder text) {
+        int length = text.length();
+        while (length > 0 && text.charAt(length - 1) == ';') {
+            length--;
+        }
+        text.setLength(length);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '?' || c == '"' || c == '`' || c == '[' || c == ']' || c == '$';
+    }
+
+    private static String fingerprintId(String fingerprint) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fingerprint.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+/**
+ * Service that writes query results to an output stream as they come off the {@link ResultSet},
+ * so the memory used per request does not depend on the size of the result.
+ * <p>
+ * A result cut by the row or byte limit says so at its end. A query that fails while streaming (timeout,
+ * cancellation, database error) leaves the body unterminated, so the client cannot take a partial result
+ * for a complete one.
+ */
+@Slf4j
+@Service
+public class ResultSetStreamer {
+
+    /**
+     * Wire format of a streamed result.
+     */
+    public enum Format {
+        /** One JSON object per line; a truncated result ends with a {@code {"truncated":true,...}} line. */
+        NDJSON(new MediaType("application", "x-ndjson")),
+        /** A single JSON object {@code {"rows":[...],"truncated":...}}, written incrementally. */
+        JSON(MediaType.APPLICATION_JSON);
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public static Format from(String value) {
+            if (value == null || value.isEmpty()) {
+                return NDJSON;
+            }
+            try {
+                return Format.valueOf(value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported stream format: " + value);
+            }
+        }
+    }
+
+    /**
+     * Bounds of one streamed query; 0 means no bound.
+     *
+     * @param fetchSize      JDBC fetch size, or 0 to use the configured default
+     * @param maxRows        maximum number of rows to return
+     * @param maxBytes       the stream stops after the first row that takes the output past this size
+     * @param timeoutSeconds statement timeout, also applied as a deadline to the whole stream so a slow
+     *                       client cannot keep the connection busy
+     */
+    public record Limits(int fetchSize, int maxRows, long maxBytes, int timeoutSeconds) {
+    }
+
+    /**
+     * Lets a caller follow a running query and stop it from another thread.
+     */
+    public interface QueryControl {
+
+        /**
+         * Called with the statement right before it is executed.
+         */
+        void started(Statement statement) throws SQLException;
+
+        /**
+         * Checked between rows: rows already fetched by the driver are not read once the query is cancelled.
+         */
+        boolean isCancelled();
+    }
+
+    /**
+     * SQLState of a query cancelled on request.
+     */
+    public static final String QUERY_CANCELED = "57014";
+
+    private final ObjectMapper objectMapper;
+
+    private final int defaultFetchSize;
+
+    public ResultSetStreamer(ObjectMapper objectMapper,
+                             @Value("${querybridge.streaming.fetch-size:1000}") int defaultFetchSize) {
+        this.objectMapper = objectMapper;
+        this.defaultFetchSize = defaultFetchSize;
+    }
+
+    /**
+     * Runs the query and writes every row to the output stream.
+     *
+     * @param jdbcTemplate the JdbcTemplate of the connection
+     * @param dialect      the SQL dialect of the connection, which decides how the driver is made to stream
+     * @param sql          the query to run
+     * @param parameters   positional parameters of the query
+     * @param fetchSize    JDBC fetch size, or 0 to use the configured default
+     * @param maxRows      maximum number of rows to return, or 0 for no limit
+     * @param format       the wire format
+     * @param out          where the rows are written
+     * @return the number of rows written
+     */
+    public long stream(JdbcTemplate jdbcTemplate, SqlDialect dialect, String sql, Object[] parameters, int fetchSize, int maxRows,
+                       Format format, OutputStream out) {
+        return stream(jdbcTemplate, dialect, sql, parameters, new Limits(fetchSize, maxRows, 0, 0), format, out, null);
+    }
+
+    /**
+     * Runs the query within the given limits and writes its rows to the output stream.
+     * Reaching the row or byte limit ends the output with a truncation marker; a timeout or a cancellation fails
+     * the query and leaves the output unterminated.
+     *
+     * @param control optional hooks to cancel the query while it runs
+     * @return the number of rows written
+     */
+    public long stream(JdbcTemplate jdbcTemplate, SqlDialect dialect, String sql, Object[] parameters, Limits limits,
+                       Format format, OutputStream out, QueryControl control) {
+        try (OpenQuery query = open(jdbcTemplate, dialect, sql, parameters, limits, control)) {
+            return write(query, format, out);
+        }
+    }
+
+    /**
+     * Takes a connection and executes the query, without reading any row yet. Lets a caller report a query that
+     * cannot run (bad SQL, missing permission, no connection) before it commits to a response.
+     * The returned query holds its connection until it is closed.
+     *
+     * @param control optional hooks to cancel the query while it runs
+     * @throws DataAccessException if the query cannot be executed
+     */
+    public OpenQuery open(JdbcTemplate jdbcTemplate, SqlDialect dialect, String sql, Object[] parameters, Limits limits,
+                          QueryControl control) {
+        int effectiveFetchSize = limits.fetchSize() > 0 ? limits.fetchSize() : defaultFetchSize;
+        long deadline = limits.timeoutSeconds() > 0 ? System.nanoTime() + limits.timeoutSeconds() * 1_000_000_000L : 0;
+        DataSource dataSource = jdbcTemplate.getDataSource();
+        Connection con = DataSourceUtils.getConnection(dataSource);
+        OpenQuery query = new OpenQuery(jdbcTemplate, dataSource, con, sql, effectiveFetchSize, limits, deadline, control);
+        try {
+            // Los motores que lo soportan rechazan cualquier escritura que se cuele en la consulta
+            if (!con.isReadOnly()) {
+                con.setReadOnly(true);
+                query.restoreReadOnly = true;
+            }
+            // Some drivers (PostgreSQL) only honour the fetch size inside a transaction; otherwise they buffer the whole result
+            if (dialect.streamingRequiresTransaction() && con.getAutoCommit()) {
+                con.setAutoCommit(false);
+                query.restoreAutoCommit = true;
+            }
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            query.statement = ps;
+            ps.setFetchSize(dialect.streamingFetchSize(effectiveFetchSize));
+            if (limits.maxRows() > 0) {
+                // Una fila de más para saber si el límite recortó el resultado
+                ps.setMaxRows(limits.maxRows() == Integer.MAX_VALUE ? 0 : limits.maxRows() + 1);
+            }
+            if (limits.timeoutSeconds() > 0) {
+                ps.setQueryTimeout(limits.timeoutSeconds());
+            }
+            for (int i = 0; parameters != null && i < parameters.length; i++) {
+                ps.setObject(i + 1, parameters[i]);
+            }
+            if (control != null) {
+                control.started(ps);
+            }
+            query.resultSet = ps.executeQuery();
+            return query;
+        } catch (SQLException e) {
+            query.close();
+            throw translate(jdbcTemplate, sql, e);
+        } catch (RuntimeException e) {
+            query.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the rows of a query opened with {@link #open}. The query is left open; the caller closes it.
+     *
+     * @return the number of rows written
+     * @throws DataAccessException if the query fails, times out or is cancelled while its rows are read
+     */
+    public long write(OpenQuery query, Format format, OutputStream out) {
+        try {
+            return writeRows(query.resultSet, format, query.fetchSize, query.limits.maxRows(), query.limits.maxBytes(),
+                    query.deadline, query.control, out);
+        } catch (SQLException e) {
+            throw translate(query.jdbcTemplate, query.sql, e);
+        }
+    }
+
+    private static DataAccessException translate(JdbcTemplate jdbcTemplate, String sql, SQLException e) {
+        DataAccessException translated = jdbcTemplate.getExceptionTranslator().translate("StreamingQuery", sql, e);
+        return translated != null ? translated : new UncategorizedSQLException("StreamingQuery", sql, e);
+    }
+
+    private long writeRows(ResultSet rs, Format format, int flushEvery, int maxRows, long maxBytes, long deadline,
+                           QueryControl control, OutputStream out) throws SQLException {
+        CountingOutputStream counting = new CountingOutputStream(out);
+        try (JsonGenerator generator = objectMapper.createGenerator(counting)) {
+            // Si la consulta falla, cerrar el generador no debe cerrar el array: el cuerpo queda incompleto
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            String[] labels = new String[columnCount];
+            for (int i = 1; i <= columnCount; i++) {
+                labels[i - 1] = JdbcUtils.lookupColumnName(metaData, i);
+            }
+
+            if (format == Format.JSON) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("rows");
+            }
+            long rows = 0;
+            String truncatedBy = null;
+            while (rs.next()) {
+                if (maxRows > 0 && rows == maxRows) {
+                    truncatedBy = "max_rows";
+                    break;
+                }
+                generator.writeStartObject();
+                for (int i = 1; i <= columnCount; i++) {
+                    generator.writeFieldName(labels[i - 1]);
+                    generator.writeObject(JdbcUtils.getResultSetValue(rs, i));
+                }
+                generator.writeEndObject();
+                if (format == Format.NDJSON) {
+                    generator.writeRaw('\n');
+                }
+                if (++rows % flushEvery == 0) {
+                    generator.flush();
+                }
+                if (maxBytes > 0 && counting.count + Math.max(0, generator.getOutputBuffered()) >= maxBytes) {
+                    log.info("Result truncated at {} rows: reached {} bytes", rows, maxBytes);
+                    truncatedBy = "max_bytes";
+                    break;
+                }
+                if (control != null && control.isCancelled()) {
+                    throw new SQLException("Query cancelled", QUERY_CANCELED);
+                }
+                if (deadline != 0 && System.nanoTime() - deadline > 0) {
+                    throw new SQLTimeoutException("Query did not finish within its timeout");
+                }
+            }
+            if (format == Format.JSON) {
+                generator.writeEndArray();
+                // El número de filas ya es la longitud del array; un segundo campo "rows" lo pisaría
+                writeTruncation(generator, truncatedBy, -1);
+                generator.writeEndObject();
+            } else if (truncatedBy != null) {
+                generator.writeStartObject();
+                writeTruncation(generator, truncatedBy, rows);
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+            return rows;
+        } catch (IOException e) {
+            // The client went away; stop reading from the database
+            throw new UncheckedIOException("Error writing streamed result", e);
+        }
+    }
+
+    /**
+     * Writes the truncation fields; {@code rows} is left out when negative.
+     */
+    private static void writeTruncation(JsonGenerator generator, String truncatedBy, long rows) throws IOException {
+        generator.writeBooleanField("truncated", truncatedBy != null);
+        if (truncatedBy != null) {
+            generator.writeStringField("reason", truncatedBy);
+            if (rows >= 0) {
+                generator.writeNumberField("rows", rows);
+            }
+        }
+    }
+
+    /**
+     * A query that has been executed and whose rows have not been written yet. It holds a connection of the
+     * pool until it is closed; closing it ends the read-only transaction and gives the connection back.
+     */
+    public static final class OpenQuery implements AutoCloseable {
+
+        private final JdbcTemplate jdbcTemplate;
+        private final DataSource dataSource;
+        private final Connection connection;
+        private final String sql;
+        private final int fetchSize;
+        private final Limits limits;
+        private final long deadline;
+        private final QueryControl control;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
+        private boolean restoreReadOnly;
+        private boolean restoreAutoCommit;
+        private boolean closed;
+
+        private OpenQuery(JdbcTemplate jdbcTemplate, DataSource dataSource, Connection connection, String sql, int fetchSize,
+                          Limits limits, long deadline, QueryControl control) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.dataSource = dataSource;
+            this.connection = connection;
+            this.sql = sql;
+            this.fetchSize = fetchSize;
+            this.limits = limits;
+            this.deadline = deadline;
+            this.control = control;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            JdbcUtils.closeResultSet(resultSet);
+            JdbcUtils.closeStatement(statement);
+            try {
+                if (restoreAutoCommit) {
+                    // Read-only work: nothing to commit
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                if (restoreReadOnly) {
+                    connection.setReadOnly(false);
+                }
+            } catch (SQLException e) {
+                log.warn("Error resetting a streaming connection: {}", e.getMessage());
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes handed to the response, so the byte limit does not depend on the client reading them.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
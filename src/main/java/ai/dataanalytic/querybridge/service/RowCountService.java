@@ -0,0 +1,186 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Service that resolves the row count of a table without running {@code COUNT(*)} on every page request.
+ * Estimates are read from the engine statistics; exact counts are cached per connection and table.
+ */
+@Slf4j
+@Service
+public class RowCountService {
+
+    /**
+     * How the total number of rows should be obtained.
+     */
+    public enum Mode {
+        /** Exact {@code COUNT(*)}, cached for the configured TTL. */
+        EXACT,
+        /** Engine statistics only; falls back to an exact count when no statistics are available. */
+        ESTIMATED,
+        /** Statistics for large tables, exact (cached) count for small ones. */
+        AUTO,
+        /** No count at all; the caller relies on {@code hasNext}. */
+        NONE;
+
+        public static Mode from(String value, Mode defaultMode) {
+            if (value == null || value.isEmpty()) {
+                return defaultMode;
+            }
+            try {
+                return Mode.valueOf(value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported count mode: " + value);
+            }
+        }
+    }
+
+    /**
+     * Row count of a table. {@code value} is null when the count was skipped.
+     */
+    public record RowCount(Long value, boolean exact) {
+        static final RowCount NONE = new RowCount(null, false);
+    }
+
+    private final Cache<String, Long> exactCounts;
+
+    private final long estimateThreshold;
+
+    private final Mode defaultMode;
+
+    public RowCountService(@Value("${querybridge.row-count.cache-ttl-seconds:300}") long cacheTtlSeconds,
+                           @Value("${querybridge.row-count.cache-max-entries:10000}") long cacheMaxEntries,
+                           @Value("${querybridge.row-count.estimate-threshold:100000}") long estimateThreshold,
+                           @Value("${querybridge.row-count.default-mode:auto}") String defaultMode) {
+        this.exactCounts = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .maximumSize(cacheMaxEntries)
+                .build();
+        this.estimateThreshold = estimateThreshold;
+        this.defaultMode = Mode.from(defaultMode, Mode.AUTO);
+    }
+
+    public Mode getDefaultMode() {
+        return defaultMode;
+    }
+
+    /**
+     * Counts the rows of a table following the given mode.
+     *
+     * @param connectionKey key that identifies the user connection, used for caching
+     * @param tableName     the (already validated) table name
+     * @param jdbcTemplate  the JdbcTemplate of the connection
+     * @param dialect       the SQL dialect of the connection
+     * @param mode          the count mode
+     * @return the row count and whether it is exact
+     */
+    public RowCount countRows(String connectionKey, String tableName, JdbcTemplate jdbcTemplate, SqlDialect dialect, Mode mode) {
+        if (mode == Mode.NONE) {
+            return RowCount.NONE;
+        }
+        if (mode == Mode.EXACT) {
+            return new RowCount(exactCount(connectionKey, tableName, jdbcTemplate), true);
+        }
+
+        Long estimate = estimatedCount(tableName, jdbcTemplate, dialect);
+        if (estimate != null && (mode == Mode.ESTIMATED || estimate >= estimateThreshold)) {
+            return new RowCount(estimate, false);
+        }
+        return new RowCount(exactCount(connectionKey, tableName, jdbcTemplate), true);
+    }
+
+    /**
+     * Counts the rows of a table that match a filter. Statistics say nothing about a predicate, so {@code ESTIMATED}
+     * skips the count and {@code AUTO} only counts tables whose estimate is under the threshold; {@code EXACT}
+     * always counts. Exact counts are cached per filter and values.
+     *
+     * @param where      the compiled filter, or null to count the whole table
+     * @param parameters the values of the filter
+     */
+    public RowCount countRows(String connectionKey, String tableName, String where, List<Object> parameters,
+                              JdbcTemplate jdbcTemplate, SqlDialect dialect, Mode mode) {
+        if (where == null) {
+            return countRows(connectionKey, tableName, jdbcTemplate, dialect, mode);
+        }
+        if (mode == Mode.NONE || mode == Mode.ESTIMATED) {
+            return RowCount.NONE;
+        }
+        if (mode == Mode.AUTO) {
+            Long estimate = estimatedCount(tableName, jdbcTemplate, dialect);
+            if (estimate != null && estimate >= estimateThreshold) {
+                return RowCount.NONE;
+            }
+        }
+        long count = exactCounts.get(filteredKey(connectionKey, tableName, where, parameters), key -> {
+            Long value = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + tableName + " WHERE " + where,
+                    Long.class, parameters.toArray());
+            return value == null ? 0L : value;
+        });
+        return new RowCount(count, true);
+    }
+
+    /**
+     * Drops the cached counts of a connection, e.g. when it is replaced or disconnected.
+     */
+    public void invalidate(String connectionKey) {
+        String prefix = connectionKey + "/";
+        exactCounts.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Cache key of a filtered count. The filter and every value are length-prefixed and the values carry
+     * their type, as in {@link QueryResultCache#key}, so {@code List.toString()} ambiguities such as
+     * {@code ["a, b"]} versus {@code ["a", "b"]} or {@code 1} versus {@code "1"} cannot share a count.
+     */
+    static String filteredKey(String connectionKey, String tableName, String where, List<Object> parameters) {
+        StringBuilder key = new StringBuilder(connectionKey).append('/');
+        appendPart(key, tableName);
+        appendPart(key, where);
+        appendPart(key, "values:" + parameters.size());
+        for (Object parameter : parameters) {
+            appendPart(key, parameter == null ? "null" : parameter.getClass().getSimpleName() + ":" + parameter);
+        }
+        return key.toString();
+    }
+
+    private static void appendPart(StringBuilder key, String part) {
+        key.append(part.length()).append(':').append(part).append('|');
+    }
+
+    private long exactCount(String connectionKey, String tableName, JdbcTemplate jdbcTemplate) {
+        return exactCounts.get(connectionKey + "/" + tableName, key -> {
+            Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + tableName, Long.class);
+            return count == null ? 0L : count;
+        });
+    }
+
+    /**
+     * Reads the row estimate kept by the engine statistics.
+     *
+     * @return the estimate, or null if the engine is not supported or has no statistics for the table
+     */
+    private Long estimatedCount(String tableName, JdbcTemplate jdbcTemplate, SqlDialect dialect) {
+        try {
+            String sql = dialect.estimatedRowCountSql();
+            if (sql == null) {
+                return null;
+            }
+            List<Long> estimates = jdbcTemplate.queryForList(sql, Long.class, tableName);
+            Long estimate = estimates.isEmpty() ? null : estimates.get(0);
+            // PostgreSQL reports -1 and DB2 reports -1 when the table was never analyzed
+            return estimate == null || estimate < 0 ? null : estimate;
+        } catch (Exception e) {
+            log.warn("Could not read row estimate for table {}: {}", tableName, e.getMessage());
+            return null;
+        }
+    }
+}
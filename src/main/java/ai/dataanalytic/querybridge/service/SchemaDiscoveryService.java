@@ -2,27 +2,93 @@ package ai.dataanalytic.querybridge.service;
 
 import ai.dataanalytic.querybridge.config.DynamicDataSourceManager;
 import ai.dataanalytic.querybridge.dto.DynamicTableData;
+import ai.dataanalytic.querybridge.dto.SchemaSnapshot;
+import ai.dataanalytic.querybridge.dto.TableDataFormat;
 import ai.dataanalytic.sharedlibrary.dto.DatabaseConnectionRequest;
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedCaseInsensitiveMap;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.Date;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Service
 public class SchemaDiscoveryService {
 
+    private static final ObjectMapper CURSOR_MAPPER = new ObjectMapper();
+
+    private static final Pattern IDENTIFIER = Pattern.compile("^[a-zA-Z0-9_]+$");
+
+    // Timestamps con zona en texto: ISO-8601 o con espacio, y offsets +01, +0100 o +01:00
+    private static final DateTimeFormatter TIMESTAMP_WITH_OFFSET = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE)
+            .optionalStart().appendLiteral('T').optionalEnd()
+            .optionalStart().appendLiteral(' ').optionalEnd()
+            .append(DateTimeFormatter.ISO_LOCAL_TIME)
+            .parseLenient()
+            .appendOffset("+HH:MM", "Z")
+            .toFormatter();
+
+    /**
+     * Columna que forma parte de la clave usada para la paginación por keyset.
+     */
+    public record KeyColumn(String name, int sqlType, String typeName) {
+
+        /**
+         * Indica si los valores de la columna pueden ir en un cursor y volver a leerse con el mismo tipo.
+         * Las claves con otros tipos (arrays, LOBs, tipos propios del motor) no admiten paginación por keyset.
+         */
+        public boolean supportsKeyset() {
+            return switch (sqlType) {
+                case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT, Types.NUMERIC, Types.DECIMAL,
+                     Types.REAL, Types.FLOAT, Types.DOUBLE, Types.BIT, Types.BOOLEAN,
+                     Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR,
+                     Types.DATE, Types.TIME, Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE,
+                     Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY -> true;
+                default -> "uuid".equalsIgnoreCase(typeName);
+            };
+        }
+    }
+
     /**
      * Obtiene la lista de tablas de la base de datos y la devuelve como una lista de cadenas de texto
      * con el nombre de las tablas encontradas en la base de datos.
@@ -43,18 +109,20 @@ public class SchemaDiscoveryService {
 
     /**
      * Obtiene la lista de columnas de una tabla en la base de datos y la devuelve como una lista de mapas
-     * con el nombre de la columna, el tipo de dato y el tamaño de la columna.
+     * con el nombre de la columna, el tipo de dato (nombre y código JDBC) y el tamaño de la columna.
      */
     public List<Map<String, Object>> listColumns(String tableName, JdbcTemplate jdbcTemplate) throws SQLException {
         return jdbcTemplate.execute((Connection con) -> {
             List<Map<String, Object>> columnList = new ArrayList<>();
             DatabaseMetaData metaData = con.getMetaData();
-            try (ResultSet rs = metaData.getColumns(null, null, tableName, "%")) {
+            // Restringido al catálogo y esquema de la conexión: una tabla homónima en otro esquema no se mezcla
+            try (ResultSet rs = metaData.getColumns(con.getCatalog(), currentSchema(con), tableName, "%")) {
                 while (rs.next()) {
                     Map<String, Object> column = new HashMap<>();
                     column.put("COLUMN_NAME", rs.getString("COLUMN_NAME"));
                     column.put("TYPE_NAME", rs.getString("TYPE_NAME"));
                     column.put("COLUMN_SIZE", rs.getInt("COLUMN_SIZE"));
+                    column.put("DATA_TYPE", rs.getInt("DATA_TYPE"));
                     columnList.add(column);
                 }
             }
@@ -63,41 +131,682 @@ public class SchemaDiscoveryService {
     }
 
     /**
-     * Obtiene los datos de una tabla con paginación y el conteo total de filas.
+     * Obtiene en una sola conexión el esquema completo: tablas, columnas, claves primarias, claves foráneas
+     * e índices. Las columnas se leen con una única llamada {@code getColumns(catalog, schema, "%", "%")};
+     * para claves e índices se intenta también una llamada global y solo si el driver no la admite
+     * se recorre tabla por tabla.
+     */
+    public SchemaSnapshot getSchemaSnapshot(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.execute((Connection con) -> {
+            DatabaseMetaData metaData = con.getMetaData();
+            String catalog = con.getCatalog();
+            String schema = currentSchema(con);
+
+            // Tablas del catálogo/esquema actual
+            Map<String, SchemaSnapshot.Table> tables = new LinkedHashMap<>();
+            try (ResultSet rs = metaData.getTables(catalog, schema, "%", new String[]{"TABLE"})) {
+                while (rs.next()) {
+                    String name = rs.getString("TABLE_NAME");
+                    tables.put(name, new SchemaSnapshot.Table(name));
+                }
+            }
+
+            // Columnas de todas las tablas en una sola pasada
+            try (ResultSet rs = metaData.getColumns(catalog, schema, "%", "%")) {
+                while (rs.next()) {
+                    SchemaSnapshot.Table table = tables.get(rs.getString("TABLE_NAME"));
+                    if (table != null) {
+                        table.getColumns().add(new SchemaSnapshot.Column(
+                                rs.getString("COLUMN_NAME"),
+                                rs.getString("TYPE_NAME"),
+                                rs.getInt("DATA_TYPE"),
+                                rs.getInt("COLUMN_SIZE"),
+                                rs.getInt("DECIMAL_DIGITS"),
+                                rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls));
+                    }
+                }
+            }
+
+            // Claves primarias
+            Map<String, Map<Short, String>> primaryKeys = new HashMap<>();
+            readMetadata(tables.keySet(), table -> metaData.getPrimaryKeys(catalog, schema, table), rs ->
+                    primaryKeys.computeIfAbsent(rs.getString("TABLE_NAME"), k -> new TreeMap<>())
+                            .put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME")));
+            primaryKeys.forEach((tableName, columns) -> {
+                SchemaSnapshot.Table table = tables.get(tableName);
+                if (table != null) {
+                    table.getPrimaryKey().addAll(columns.values());
+                }
+            });
+
+            // Claves foráneas, agrupadas por tabla y nombre de la restricción
+            Map<String, SchemaSnapshot.ForeignKey> foreignKeys = new LinkedHashMap<>();
+            readMetadata(tables.keySet(), table -> metaData.getImportedKeys(catalog, schema, table), rs -> {
+                String tableName = rs.getString("FKTABLE_NAME");
+                SchemaSnapshot.Table table = tables.get(tableName);
+                if (table == null) {
+                    return;
+                }
+                String fkName = rs.getString("FK_NAME");
+                String referencedTable = rs.getString("PKTABLE_NAME");
+                String key = tableName + "/" + (fkName != null ? fkName : referencedTable);
+                SchemaSnapshot.ForeignKey foreignKey = foreignKeys.computeIfAbsent(key, k -> {
+                    SchemaSnapshot.ForeignKey fk = new SchemaSnapshot.ForeignKey(fkName, new ArrayList<>(), referencedTable, new ArrayList<>());
+                    table.getForeignKeys().add(fk);
+                    return fk;
+                });
+                foreignKey.getColumns().add(rs.getString("FKCOLUMN_NAME"));
+                foreignKey.getReferencedColumns().add(rs.getString("PKCOLUMN_NAME"));
+            });
+
+            // Índices (sin estadísticas de tabla)
+            Map<String, SchemaSnapshot.Index> indexes = new LinkedHashMap<>();
+            readMetadata(tables.keySet(), table -> metaData.getIndexInfo(catalog, schema, table, false, true), rs -> {
+                String indexName = rs.getString("INDEX_NAME");
+                SchemaSnapshot.Table table = tables.get(rs.getString("TABLE_NAME"));
+                if (table == null || indexName == null || rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+                    return;
+                }
+                boolean unique = !rs.getBoolean("NON_UNIQUE");
+                SchemaSnapshot.Index index = indexes.computeIfAbsent(table.getName() + "/" + indexName, k -> {
+                    SchemaSnapshot.Index idx = new SchemaSnapshot.Index(indexName, unique, new ArrayList<>());
+                    table.getIndexes().add(idx);
+                    return idx;
+                });
+                index.getColumns().add(rs.getString("COLUMN_NAME"));
+            });
+
+            return new SchemaSnapshot(catalog, schema, new ArrayList<>(tables.values()));
+        });
+    }
+
+    /**
+     * Obtiene las columnas, la clave primaria, las claves foráneas y los índices de una sola tabla.
+     * El nombre se busca tal cual y, si no aparece, en mayúsculas y en minúsculas.
+     *
+     * @return la tabla, o null si no existe en el catálogo/esquema actual
+     */
+    public SchemaSnapshot.Table getTableSnapshot(String tableName, JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.execute((Connection con) -> {
+            DatabaseMetaData metaData = con.getMetaData();
+            String catalog = con.getCatalog();
+            String schema = currentSchema(con);
+
+            String name = null;
+            for (String candidate : new LinkedHashSet<>(List.of(tableName, tableName.toUpperCase(), tableName.toLowerCase()))) {
+                try (ResultSet rs = metaData.getTables(catalog, schema, candidate, new String[]{"TABLE"})) {
+                    if (rs.next()) {
+                        name = rs.getString("TABLE_NAME");
+                        break;
+                    }
+                }
+            }
+            if (name == null) {
+                return null;
+            }
+            SchemaSnapshot.Table table = new SchemaSnapshot.Table(name);
+
+            try (ResultSet rs = metaData.getColumns(catalog, schema, name, "%")) {
+                while (rs.next()) {
+                    table.getColumns().add(new SchemaSnapshot.Column(
+                            rs.getString("COLUMN_NAME"),
+                            rs.getString("TYPE_NAME"),
+                            rs.getInt("DATA_TYPE"),
+                            rs.getInt("COLUMN_SIZE"),
+                            rs.getInt("DECIMAL_DIGITS"),
+                            rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls));
+                }
+            }
+
+            Map<Short, String> primaryKey = new TreeMap<>();
+            try (ResultSet rs = metaData.getPrimaryKeys(catalog, schema, name)) {
+                while (rs.next()) {
+                    primaryKey.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+                }
+            }
+            table.getPrimaryKey().addAll(primaryKey.values());
+
+            Map<String, SchemaSnapshot.ForeignKey> foreignKeys = new LinkedHashMap<>();
+            try (ResultSet rs = metaData.getImportedKeys(catalog, schema, name)) {
+                while (rs.next()) {
+                    String fkName = rs.getString("FK_NAME");
+                    String referencedTable = rs.getString("PKTABLE_NAME");
+                    SchemaSnapshot.ForeignKey foreignKey = foreignKeys.computeIfAbsent(fkName != null ? fkName : referencedTable, k -> {
+                        SchemaSnapshot.ForeignKey fk = new SchemaSnapshot.ForeignKey(fkName, new ArrayList<>(), referencedTable, new ArrayList<>());
+                        table.getForeignKeys().add(fk);
+                        return fk;
+                    });
+                    foreignKey.getColumns().add(rs.getString("FKCOLUMN_NAME"));
+                    foreignKey.getReferencedColumns().add(rs.getString("PKCOLUMN_NAME"));
+                }
+            }
+
+            Map<String, SchemaSnapshot.Index> indexes = new LinkedHashMap<>();
+            try (ResultSet rs = metaData.getIndexInfo(catalog, schema, name, false, true)) {
+                while (rs.next()) {
+                    String indexName = rs.getString("INDEX_NAME");
+                    if (indexName == null || rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+                        continue;
+                    }
+                    boolean unique = !rs.getBoolean("NON_UNIQUE");
+                    indexes.computeIfAbsent(indexName, k -> {
+                        SchemaSnapshot.Index idx = new SchemaSnapshot.Index(indexName, unique, new ArrayList<>());
+                        table.getIndexes().add(idx);
+                        return idx;
+                    }).getColumns().add(rs.getString("COLUMN_NAME"));
+                }
+            }
+            return table;
+        });
+    }
+
+    /**
+     * Lectura de metadatos por tabla; con {@code null} se piden los de todas las tablas.
+     */
+    @FunctionalInterface
+    private interface MetadataQuery {
+        ResultSet open(String tableName) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface MetadataRowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Intenta leer los metadatos de todas las tablas con una sola llamada ({@code table = null}). Solo si el driver
+     * no lo admite y lanza una excepción se recorre tabla por tabla; una llamada global sin filas es un resultado
+     * válido (p. ej. un esquema sin claves foráneas) y no provoca una consulta por tabla.
+     */
+    private void readMetadata(Iterable<String> tableNames, MetadataQuery query, MetadataRowHandler handler) throws SQLException {
+        boolean rowsRead = false;
+        try (ResultSet rs = query.open(null)) {
+            while (rs.next()) {
+                rowsRead = true;
+                handler.handle(rs);
+            }
+            return;
+        } catch (SQLException | RuntimeException e) {
+            if (rowsRead) {
+                // La llamada global funcionaba y falló a mitad: repetirla tabla por tabla duplicaría filas
+                throw e;
+            }
+            log.debug("Driver does not support schema-wide metadata call, falling back to per-table calls: {}", e.getMessage());
+        }
+        for (String tableName : tableNames) {
+            try (ResultSet rs = query.open(tableName)) {
+                while (rs.next()) {
+                    handler.handle(rs);
+                }
+            }
+        }
+    }
+
+    private String currentSchema(Connection con) {
+        try {
+            return con.getSchema();
+        } catch (SQLException | AbstractMethodError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Obtiene las columnas de la clave primaria de la tabla o, si no existe, las de un índice único
+     * cuyas columnas no admitan nulos. Devuelve una lista vacía si la tabla no tiene ninguna de las dos.
+     */
+    public List<KeyColumn> findKeyColumns(String tableName, JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.execute((Connection con) -> {
+            DatabaseMetaData metaData = con.getMetaData();
+            // Mismo catálogo y esquema que readMetadata, para no tomar la clave de una tabla homónima de otro esquema
+            String catalog = con.getCatalog();
+            String schema = currentSchema(con);
+
+            // Tipos y nulabilidad de todas las columnas de la tabla
+            Map<String, KeyColumn> columnTypes = new HashMap<>();
+            Map<String, Boolean> nullable = new HashMap<>();
+            try (ResultSet rs = metaData.getColumns(catalog, schema, tableName, "%")) {
+                while (rs.next()) {
+                    String name = rs.getString("COLUMN_NAME");
+                    columnTypes.put(name, new KeyColumn(name, rs.getInt("DATA_TYPE"), rs.getString("TYPE_NAME")));
+                    nullable.put(name, rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls);
+                }
+            }
+
+            // Clave primaria ordenada por KEY_SEQ
+            Map<Short, String> primaryKey = new TreeMap<>();
+            try (ResultSet rs = metaData.getPrimaryKeys(catalog, schema, tableName)) {
+                while (rs.next()) {
+                    primaryKey.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+                }
+            }
+            if (!primaryKey.isEmpty()) {
+                return toKeyColumns(primaryKey.values(), columnTypes);
+            }
+
+            // Índices únicos: nos quedamos con el más corto que no tenga columnas nulas
+            Map<String, Map<Short, String>> uniqueIndexes = new LinkedHashMap<>();
+            try (ResultSet rs = metaData.getIndexInfo(catalog, schema, tableName, true, true)) {
+                while (rs.next()) {
+                    String indexName = rs.getString("INDEX_NAME");
+                    String columnName = rs.getString("COLUMN_NAME");
+                    if (indexName == null || columnName == null
+                            || rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+                        continue;
+                    }
+                    uniqueIndexes.computeIfAbsent(indexName, k -> new TreeMap<>())
+                            .put(rs.getShort("ORDINAL_POSITION"), columnName);
+                }
+            }
+            List<String> best = null;
+            for (Map<Short, String> index : uniqueIndexes.values()) {
+                boolean usable = index.values().stream()
+                        .allMatch(col -> columnTypes.containsKey(col) && !nullable.getOrDefault(col, true));
+                if (usable && (best == null || index.size() < best.size())) {
+                    best = new ArrayList<>(index.values());
+                }
+            }
+            return best == null ? List.<KeyColumn>of() : toKeyColumns(best, columnTypes);
+        });
+    }
+
+    /**
+     * Obtiene los datos de una tabla con paginación. El conteo total de filas lo resuelve {@link RowCountService}
+     * y las columnas se sirven desde {@link SchemaMetadataCache}; aquí solo se averigua si existe una página
+     * siguiente pidiendo una fila de más. La proyección, el filtro y el orden vienen ya compilados en {@code query}.
      */
-    public ResponseEntity<DynamicTableData> getTableDataWithPagination(String tableName, JdbcTemplate jdbcTemplate, int page, int size) {
+    public ResponseEntity<DynamicTableData> getTableDataWithPagination(String tableName, StructuredQueryService.TableQuery query,
+                                                                       JdbcTemplate jdbcTemplate, SqlDialect dialect,
+                                                                       int page, int size, TableDataFormat format) {
         try {
             // Validar y sanitizar el nombre de la tabla
-            if (!isValidIdentifier(tableName)) {
+            if (!isValidIdentifier(tableName) || size < 1 || page < 0) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
             }
 
-            // Obtener el total de filas
-            String countSql = "SELECT COUNT(*) FROM " + tableName;
-            int totalRows = jdbcTemplate.queryForObject(countSql, Integer.class);
+            StringBuilder dataSql = new StringBuilder(query.select());
+            if (query.where() != null) {
+                dataSql.append(" WHERE ").append(query.where());
+            }
+            if (query.orderBy() != null) {
+                dataSql.append(" ORDER BY ").append(query.orderBy());
+            }
+            // Obtener las filas con la paginación nativa del motor (una de más para calcular hasNext)
+            List<Object> parameters = new ArrayList<>(query.parameters());
+            parameters.addAll(List.of(dialect.paginationParameters(size + 1, (long) page * size)));
+            RowPage rows = fetchPage(jdbcTemplate, dialect.paginate(dataSql.toString(), query.orderBy() != null),
+                    parameters.toArray(), size);
+
+            DynamicTableData response = new DynamicTableData();
+            setRows(response, rows, format);
+            response.setTableName(tableName);
+            response.setPageSize(size);
+            response.setCurrentPage(page);
+            response.setPagination("offset");
+            response.setHasNext(rows.hasNext());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error obtaining data from table: " + tableName, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+    }
+
+    /**
+     * Obtiene una página de datos usando paginación por keyset ({@code WHERE pk > ? ORDER BY pk}).
+     * El cursor es opaco para el cliente: codifica los valores de la clave de la última fila devuelta.
+     * Si {@code cursor} es nulo o vacío se devuelve la primera página. El filtro de {@code query} se combina con
+     * el predicado de la clave; el orden es siempre el de la clave.
+     */
+    public ResponseEntity<DynamicTableData> getTableDataWithKeyset(String tableName, StructuredQueryService.TableQuery query,
+                                                                   JdbcTemplate jdbcTemplate, SqlDialect dialect,
+                                                                   List<KeyColumn> keyColumns, String cursor, int size,
+                                                                   TableDataFormat format) {
+        try {
+            if (!isValidIdentifier(tableName)
+                    || size < 1
+                    || keyColumns.isEmpty()
+                    || !keyColumns.stream().allMatch(key -> isValidIdentifier(key.name()))) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+            }
 
-            // Obtener las filas con paginación
-            String dataSql = "SELECT * FROM " + tableName + " LIMIT ? OFFSET ?";
-            List<Map<String, Object>> rows = jdbcTemplate.queryForList(dataSql, size, page * size);
+            // Decodificar el cursor y construir el predicado de la clave
+            List<Object> parameters = new ArrayList<>(query.parameters());
+            List<String> conditions = new ArrayList<>();
+            if (query.where() != null) {
+                conditions.add("(" + query.where() + ")");
+            }
+            if (cursor != null && !cursor.isEmpty()) {
+                List<Object> lastKey = decodeCursor(cursor, tableName, keyColumns);
+                conditions.add("(" + dialect.keysetPredicate(keyColumns.stream().map(KeyColumn::name).toList()) + ")");
+                parameters.addAll(dialect.keysetParameters(lastKey));
+            }
+            StringBuilder dataSql = new StringBuilder(query.select());
+            if (!conditions.isEmpty()) {
+                dataSql.append(" WHERE ").append(String.join(" AND ", conditions));
+            }
+            dataSql.append(" ORDER BY ")
+                    .append(String.join(", ", keyColumns.stream().map(key -> dialect.quoteIdentifier(key.name())).toList()));
+            // Se pide una fila de más para saber si hay página siguiente
+            parameters.add(size + 1);
 
-            // Obtener las columnas
-            List<Map<String, Object>> columns = listColumns(tableName, jdbcTemplate);
+            RowPage rows = fetchPage(jdbcTemplate, dialect.limit(dataSql.toString(), true), parameters.toArray(), size);
 
             DynamicTableData response = new DynamicTableData();
-            response.setRows(rows);
-            response.setColumns(columns);
-            response.setTotalRows(totalRows);
             response.setTableName(tableName);
             response.setPageSize(size);
-            response.setCurrentPage(page);
+            response.setPagination("keyset");
+            response.setKeyColumns(keyColumns.stream().map(KeyColumn::name).toList());
+            response.setHasNext(rows.hasNext());
+            if (rows.hasNext()) {
+                response.setNextCursor(encodeCursor(tableName, keyColumns, rows, rows.rows().get(rows.rows().size() - 1)));
+            }
+            setRows(response, rows, format);
 
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid keyset cursor for table {}: {}", tableName, e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
         } catch (Exception e) {
             log.error("Error obtaining data from table: " + tableName, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
 
+    /**
+     * Página leída como arrays posicionales: los nombres y tipos de columna se guardan una sola vez.
+     */
+    record RowPage(List<String> fields, int[] sqlTypes, List<Object[]> rows, boolean hasNext) {
+
+        int indexOf(String column) {
+            for (int i = 0; i < fields.size(); i++) {
+                if (fields.get(i).equalsIgnoreCase(column)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Ejecuta la consulta de una página (que pide {@code size + 1} filas) y la lee como arrays,
+     * sin crear un mapa por fila. La columna de número de fila que añaden algunos dialectos se descarta.
+     */
+    private RowPage fetchPage(JdbcTemplate jdbcTemplate, String sql, Object[] parameters, int size) {
+        return jdbcTemplate.query(sql, (ResultSet rs) -> {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            if (columnCount > 1 && SqlDialect.ROW_NUMBER_ALIAS.equalsIgnoreCase(JdbcUtils.lookupColumnName(metaData, columnCount))) {
+                columnCount--;
+            }
+            List<String> fields = new ArrayList<>(columnCount);
+            int[] sqlTypes = new int[columnCount];
+            for (int i = 1; i <= columnCount; i++) {
+                fields.add(JdbcUtils.lookupColumnName(metaData, i));
+                sqlTypes[i - 1] = metaData.getColumnType(i);
+            }
+            List<Object[]> rows = new ArrayList<>(size);
+            boolean hasNext = false;
+            while (rs.next()) {
+                if (rows.size() == size) {
+                    hasNext = true;
+                    break;
+                }
+                Object[] row = new Object[columnCount];
+                for (int i = 1; i <= columnCount; i++) {
+                    row[i - 1] = JdbcUtils.getResultSetValue(rs, i);
+                }
+                rows.add(row);
+            }
+            return new RowPage(fields, sqlTypes, rows, hasNext);
+        }, parameters);
+    }
+
+    /**
+     * Vuelca la página en la respuesta con la forma pedida: mapas por fila, arrays por fila
+     * o un array tipado por columna.
+     */
+    static void setRows(DynamicTableData response, RowPage page, TableDataFormat format) {
+        response.setFormat(format);
+        switch (format) {
+            case ROWS -> {
+                List<Map<String, Object>> rows = new ArrayList<>(page.rows().size());
+                for (Object[] values : page.rows()) {
+                    Map<String, Object> row = new LinkedCaseInsensitiveMap<>(values.length);
+                    for (int i = 0; i < values.length; i++) {
+                        row.put(page.fields().get(i), values[i]);
+                    }
+                    rows.add(row);
+                }
+                response.setRows(rows);
+            }
+            case COMPACT -> {
+                response.setFields(page.fields());
+                response.setRowArrays(page.rows());
+            }
+            case COLUMNAR -> {
+                response.setFields(page.fields());
+                List<Object> columns = new ArrayList<>(page.fields().size());
+                for (int i = 0; i < page.fields().size(); i++) {
+                    columns.add(toColumnArray(page.rows(), i, page.sqlTypes()[i]));
+                }
+                response.setColumnData(columns);
+            }
+        }
+    }
+
+    /**
+     * Convierte una columna en un array primitivo ({@code long[]} o {@code double[]}) cuando es numérica
+     * y no tiene nulos; en otro caso devuelve un {@code Object[]}. Los enteros que no caben en un long
+     * (BIGINT UNSIGNED llega como BigInteger) se quedan como objetos.
+     */
+    private static Object toColumnArray(List<Object[]> rows, int column, int sqlType) {
+        boolean hasNulls = rows.stream().anyMatch(row -> row[column] == null);
+        switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> {
+                if (!hasNulls && rows.stream().allMatch(row -> row[column] instanceof Long || row[column] instanceof Integer
+                        || row[column] instanceof Short || row[column] instanceof Byte)) {
+                    long[] values = new long[rows.size()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = ((Number) rows.get(i)[column]).longValue();
+                    }
+                    return values;
+                }
+            }
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> {
+                if (!hasNulls && rows.stream().allMatch(row -> row[column] instanceof Number)) {
+                    double[] values = new double[rows.size()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = ((Number) rows.get(i)[column]).doubleValue();
+                    }
+                    return values;
+                }
+            }
+            default -> {
+                // Sin representación primitiva
+            }
+        }
+        Object[] values = new Object[rows.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rows.get(i)[column];
+        }
+        return values;
+    }
+
+    private String encodeCursor(String tableName, List<KeyColumn> keyColumns, RowPage page, Object[] lastRow) throws Exception {
+        List<Object> lastKey = new ArrayList<>();
+        for (KeyColumn key : keyColumns) {
+            int index = page.indexOf(key.name());
+            if (index < 0) {
+                throw new IllegalStateException("Key column " + key.name() + " is not part of the result");
+            }
+            lastKey.add(lastRow[index]);
+        }
+        return encodeCursor(tableName, keyColumns, lastKey);
+    }
+
+    /**
+     * Cursor opaco con la tabla y los valores de la última clave leída, que {@link #decodeCursor} devuelve
+     * con el tipo de cada columna.
+     */
+    String encodeCursor(String tableName, List<KeyColumn> keyColumns, List<Object> lastKey) throws Exception {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < keyColumns.size(); i++) {
+            values.add(toCursorValue(lastKey.get(i), keyColumns.get(i)));
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("t", tableName);
+        payload.put("k", values);
+        byte[] json = CURSOR_MAPPER.writeValueAsBytes(payload);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+    }
+
+    List<Object> decodeCursor(String cursor, String tableName, List<KeyColumn> keyColumns) {
+        Map<String, Object> payload;
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(cursor.getBytes(StandardCharsets.US_ASCII));
+            payload = CURSOR_MAPPER.readValue(json, new TypeReference<>() {});
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        if (!tableName.equals(payload.get("t")) || !(payload.get("k") instanceof List<?> values)
+                || values.size() != keyColumns.size()) {
+            throw new IllegalArgumentException("Cursor does not belong to table " + tableName);
+        }
+        List<Object> lastKey = new ArrayList<>();
+        for (int i = 0; i < keyColumns.size(); i++) {
+            Object value = values.get(i);
+            lastKey.add(value == null ? null : fromCursorValue(value.toString(), keyColumns.get(i)));
+        }
+        return lastKey;
+    }
+
+    /**
+     * Normaliza el valor de la clave a texto con un formato que {@link #fromCursorValue} sabe volver a leer,
+     * según el tipo SQL de la columna y no la clase que devuelva el driver (p. ej. {@code Timestamp} o
+     * {@code LocalDateTime}): los binarios van en Base64 y los timestamps con zona en ISO-8601 con su offset.
+     */
+    private String toCursorValue(Object value, KeyColumn key) {
+        if (value == null) {
+            return null;
+        }
+        switch (key.sqlType()) {
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY -> {
+                if (value instanceof byte[] bytes) {
+                    return Base64.getEncoder().encodeToString(bytes);
+                }
+            }
+            case Types.TIMESTAMP_WITH_TIMEZONE -> {
+                Instant instant = toInstant(value);
+                if (instant != null) {
+                    return instant.atOffset(ZoneOffset.UTC).toString();
+                }
+            }
+            case Types.TIME -> {
+                // Time.toString() pierde las fracciones de segundo: se guarda como LocalTime en ISO-8601
+                LocalTime localTime = toLocalTime(value);
+                if (localTime != null) {
+                    return localTime.toString();
+                }
+            }
+            case Types.REAL -> {
+                // Se lee como Float: un Double con el texto de un float no es el mismo valor que el de la columna
+                if (value instanceof Number number) {
+                    return Float.toString(number.floatValue());
+                }
+            }
+            default -> {
+                if (value instanceof LocalDateTime localDateTime) {
+                    return Timestamp.valueOf(localDateTime).toString();
+                }
+                if (value instanceof LocalDate localDate) {
+                    return Date.valueOf(localDate).toString();
+                }
+                if (!(value instanceof byte[])) {
+                    return value.toString();
+                }
+            }
+        }
+        throw new IllegalStateException("Key column " + key.name() + " returned a "
+                + value.getClass().getSimpleName() + " that cannot be stored in a cursor");
+    }
+
+    /**
+     * Instante de un timestamp con zona, venga como venga del driver; los textos pueden usar un espacio
+     * en lugar de la 'T' y offsets cortos como {@code +01}.
+     */
+    private Instant toInstant(Object value) {
+        if (value instanceof OffsetDateTime offsetDateTime) {
+            return offsetDateTime.toInstant();
+        }
+        if (value instanceof ZonedDateTime zonedDateTime) {
+            return zonedDateTime.toInstant();
+        }
+        if (value instanceof Instant instant) {
+            return instant;
+        }
+        if (value instanceof java.util.Date date) {
+            // Incluye Timestamp, que conserva los nanosegundos en toInstant()
+            return date.toInstant();
+        }
+        if (value instanceof String text) {
+            try {
+                return OffsetDateTime.parse(text.trim(), TIMESTAMP_WITH_OFFSET).toInstant();
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hora de una columna TIME con sus fracciones de segundo; {@link Time} solo guarda milisegundos
+     * desde la época en la zona de la JVM, y su {@code toLocalTime()} los descarta.
+     */
+    private LocalTime toLocalTime(Object value) {
+        if (value instanceof LocalTime localTime) {
+            return localTime;
+        }
+        if (value instanceof Time time) {
+            return Instant.ofEpochMilli(time.getTime()).atZone(ZoneId.systemDefault()).toLocalTime();
+        }
+        if (value instanceof String text) {
+            try {
+                return LocalTime.parse(text.trim());
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private Object fromCursorValue(String value, KeyColumn key) {
+        try {
+            return switch (key.sqlType()) {
+                case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> Long.valueOf(value);
+                case Types.NUMERIC, Types.DECIMAL -> new BigDecimal(value);
+                case Types.REAL -> Float.valueOf(value);
+                case Types.FLOAT, Types.DOUBLE -> Double.valueOf(value);
+                case Types.BIT, Types.BOOLEAN -> Boolean.valueOf(value);
+                case Types.DATE -> Date.valueOf(value);
+                case Types.TIME -> LocalTime.parse(value);
+                case Types.TIMESTAMP -> Timestamp.valueOf(value);
+                case Types.TIMESTAMP_WITH_TIMEZONE -> OffsetDateTime.parse(value);
+                case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY -> Base64.getDecoder().decode(value);
+                default -> "uuid".equalsIgnoreCase(key.typeName()) ? UUID.fromString(value) : value;
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor value for column " + key.name(), e);
+        }
+    }
+
+    private List<KeyColumn> toKeyColumns(Iterable<String> names, Map<String, KeyColumn> columnTypes) {
+        List<KeyColumn> keyColumns = new ArrayList<>();
+        for (String name : names) {
+            keyColumns.add(columnTypes.getOrDefault(name, new KeyColumn(name, Types.OTHER, null)));
+        }
+        return keyColumns;
+    }
+
     /**
      * Validates identifiers like table names to prevent SQL injection.
      *
@@ -105,6 +814,6 @@ public class SchemaDiscoveryService {
      * @return True if the identifier is valid, false otherwise.
      */
     private boolean isValidIdentifier(String identifier) {
-        return identifier != null && identifier.matches("^[a-zA-Z0-9_]+$");
+        return identifier != null && IDENTIFIER.matcher(identifier).matches();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,176 @@
+package ai.dataanalytic.querybridge.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-connection cache of schema metadata (tables, columns, keys).
+ * Entries are bounded in number and expire after a TTL; once an entry is older than the refresh
+ * interval it is still served while it is reloaded in the background.
+ * <p>
+ * Loads run outside the cache's map locks and concurrent misses for the same entry wait for a single load.
+ * A loader receives the connection currently registered for the user, never the one of the request that
+ * first cached the entry, so a refresh after the connection was rebuilt reads through the new pool; if the
+ * connection is no longer live on this node the entry is dropped instead of refreshed. An entry invalidated
+ * while it is being refreshed is not put back.
+ */
+@Slf4j
+@Service
+public class SchemaMetadataCache {
+
+    /**
+     * Reads one piece of metadata through the given connection.
+     */
+    @FunctionalInterface
+    public interface MetadataLoader<T> {
+        T load(ConnectionHandle handle) throws Exception;
+    }
+
+    /**
+     * Cache key. The loader travels with the key but is not part of its identity.
+     */
+    private record Key(String userId, String connectionId, String metadataKey, MetadataLoader<?> loader) {
+
+        private String connectionKey() {
+            return userId + ":" + connectionId;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && userId.equals(key.userId) && connectionId.equals(key.connectionId)
+                    && metadataKey.equals(key.metadataKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, connectionId, metadataKey);
+        }
+    }
+
+    private final UserDataSourceRegistry userDataSourceRegistry;
+
+    private final AsyncLoadingCache<Key, Object> cache;
+
+    private final ExecutorService loadExecutor;
+
+    public SchemaMetadataCache(UserDataSourceRegistry userDataSourceRegistry,
+                               @Value("${querybridge.schema-cache.max-entries:5000}") long maxEntries,
+                               @Value("${querybridge.schema-cache.ttl-seconds:3600}") long ttlSeconds,
+                               @Value("${querybridge.schema-cache.refresh-after-seconds:300}") long refreshAfterSeconds,
+                               @Value("${querybridge.schema-cache.load-threads:8}") int loadThreads) {
+        this.userDataSourceRegistry = userDataSourceRegistry;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.loadExecutor = Executors.newFixedThreadPool(loadThreads, runnable -> {
+            Thread thread = new Thread(runnable, "schema-cache-load-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .refreshAfterWrite(Duration.ofSeconds(refreshAfterSeconds))
+                .executor(loadExecutor)
+                .buildAsync(new AsyncCacheLoader<>() {
+                    @Override
+                    public CompletableFuture<?> asyncLoad(Key key, Executor executor) {
+                        return CompletableFuture.supplyAsync(() -> load(key, true), executor);
+                    }
+
+                    @Override
+                    public CompletableFuture<?> asyncReload(Key key, Object oldValue, Executor executor) {
+                        return CompletableFuture.supplyAsync(() -> load(key, false), executor);
+                    }
+                });
+    }
+
+    /**
+     * Returns the cached value for the given connection and metadata key, loading it on a miss.
+     *
+     * @param handle      the user connection
+     * @param metadataKey what is cached, e.g. {@code tables} or {@code table/<name>/columns}
+     * @param loader      reads the metadata through the connection it is given; it must not capture a
+     *                    connection or JdbcTemplate of its own, since it is reused for background refreshes
+     * @return the cached or freshly loaded value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(ConnectionHandle handle, String metadataKey, MetadataLoader<T> loader) throws Exception {
+        try {
+            return (T) cache.get(new Key(handle.getUserId(), handle.getConnectionId(), metadataKey, loader)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stores a value that was read as part of a larger metadata call, e.g. the columns of a table
+     * obtained from a schema snapshot.
+     *
+     * @param loader reads the value on its own when the entry is refreshed
+     */
+    public <T> void put(ConnectionHandle handle, String metadataKey, T value, MetadataLoader<T> loader) {
+        cache.put(new Key(handle.getUserId(), handle.getConnectionId(), metadataKey, loader),
+                CompletableFuture.completedFuture(value));
+    }
+
+    /**
+     * Drops every cached entry of a connection.
+     */
+    public void invalidate(String connectionKey) {
+        cache.synchronous().asMap().keySet().removeIf(key -> key.connectionKey().equals(connectionKey));
+    }
+
+    /**
+     * Drops the cached entries of a connection whose metadata key starts with the given prefix,
+     * e.g. every entry of a single table.
+     */
+    public void invalidate(String connectionKey, String metadataKeyPrefix) {
+        cache.synchronous().asMap().keySet().removeIf(key -> key.connectionKey().equals(connectionKey)
+                && key.metadataKey().startsWith(metadataKeyPrefix));
+    }
+
+    /**
+     * Runs the loader of the key against the connection currently registered for the user.
+     * A refresh of a connection that is gone returns null, which removes the entry.
+     */
+    private Object load(Key key, boolean initial) {
+        ConnectionHandle handle = userDataSourceRegistry.get(key.userId(), key.connectionId());
+        if (handle == null) {
+            if (initial) {
+                throw new IllegalStateException("Connection " + key.connectionId() + " is not open");
+            }
+            return null;
+        }
+        try {
+            return key.loader().load(handle);
+        } catch (Exception e) {
+            if (!initial) {
+                // Caffeine conserva el valor anterior y lo vuelve a intentar en la siguiente lectura
+                log.warn("Background refresh of schema metadata {}/{} failed: {}", key.connectionKey(),
+                        key.metadataKey(), e.getMessage());
+            }
+            throw e instanceof RuntimeException runtime ? runtime : new CompletionException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loadExecutor.shutdownNow();
+    }
+}
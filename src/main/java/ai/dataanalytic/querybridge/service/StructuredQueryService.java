@@ -0,0 +1,543 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.databridge.dto.QueryRequest;
+import ai.dataanalytic.databridge.dto.QueryResponse;
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles a structured {@link QueryRequest} (projection, typed filters, group-by, aggregates, order-by and limit)
+ * to parameterized SQL for the engine of the connection, and runs it. Table and column names are checked against
+ * the cached column metadata and quoted by the dialect; operators and aggregate functions come from a fixed list,
+ * and every value is bound as a parameter converted to the type of its column. Nothing the client sends is copied
+ * into the SQL text except names that exist in the table.
+ * <p>
+ * The same checks compile the {@code columns}, {@code filter} and {@code sort} parameters of table pages.
+ */
+@Service
+public class StructuredQueryService {
+
+    private static final ObjectMapper FILTER_MAPPER = new ObjectMapper();
+
+    private static final Pattern IDENTIFIER = Pattern.compile("^[a-zA-Z0-9_]+$");
+
+    // Oracle anterior a 12.2 no admite alias más largos
+    private static final int MAX_ALIAS_LENGTH = 30;
+
+    // Oracle no admite más de 1000 valores en un IN
+    private static final int MAX_IN_VALUES = 1000;
+
+    private static final Set<Integer> INTEGER_TYPES = Set.of(Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT);
+
+    private static final Set<Integer> NUMERIC_TYPES = Set.of(Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT,
+            Types.NUMERIC, Types.DECIMAL, Types.REAL, Types.FLOAT, Types.DOUBLE);
+
+    private static final Set<Integer> CHARACTER_TYPES = Set.of(Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR,
+            Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR, Types.CLOB, Types.NCLOB);
+
+    /**
+     * Column of the table as read from the metadata cache.
+     */
+    private record Column(String name, int sqlType, String typeName) {
+    }
+
+    /**
+     * SQL of a structured query, before the row limit is applied, and its parameters in order.
+     */
+    public record CompiledQuery(String sql, List<Object> parameters, boolean ordered) {
+    }
+
+    /**
+     * Projection, filter and order of a table page, before pagination. {@code where} and {@code orderBy}
+     * are null when the page is not filtered or sorted; the parameters belong to {@code where}.
+     */
+    public record TableQuery(String select, String where, List<Object> parameters, String orderBy) {
+    }
+
+    private final int timeoutSeconds;
+
+    private final int maxRows;
+
+    public StructuredQueryService(@Value("${querybridge.query.timeout-seconds:30}") int timeoutSeconds,
+                                  @Value("${querybridge.aggregate.max-rows:10000}") int maxRows) {
+        this.timeoutSeconds = timeoutSeconds;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Number of rows a request may return: its own limit, never above the configured one.
+     */
+    public int rowLimit(QueryRequest request) {
+        Integer limit = request.getLimit();
+        if (limit == null || limit <= 0) {
+            return maxRows;
+        }
+        return maxRows <= 0 ? limit : Math.min(limit, maxRows);
+    }
+
+    /**
+     * Compiles a request for the given table columns.
+     *
+     * @param columnMetadata the columns of the table, as returned by {@link SchemaDiscoveryService#listColumns}
+     * @throws IllegalArgumentException if the request names an unknown column, operator or function,
+     *                                  or a value cannot be converted to the type of its column
+     */
+    public CompiledQuery compile(QueryRequest request, List<Map<String, Object>> columnMetadata, SqlDialect dialect) {
+        String tableName = request.getTableName();
+        if (tableName == null || !IDENTIFIER.matcher(tableName).matches()) {
+            throw new IllegalArgumentException("Invalid table name");
+        }
+        Map<String, Column> columns = toColumns(columnMetadata);
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("Unknown table: " + tableName);
+        }
+
+        List<Column> groupBy = resolve(columns, request.getGroupBy());
+        List<QueryRequest.Aggregate> aggregates = request.getAggregates() == null ? List.of() : request.getAggregates();
+        boolean grouped = !groupBy.isEmpty() || !aggregates.isEmpty();
+
+        // Proyección: columnas pedidas, las de agrupación o todas
+        List<Column> projection = resolve(columns, request.getColumns());
+        if (grouped) {
+            if (projection.isEmpty()) {
+                projection = groupBy;
+            } else if (!groupBy.containsAll(projection)) {
+                throw new IllegalArgumentException("Selected columns must be in groupBy when aggregating");
+            }
+        } else if (projection.isEmpty()) {
+            projection = new ArrayList<>(columns.values());
+        }
+
+        List<String> selectList = new ArrayList<>();
+        Map<String, String> outputs = new LinkedCaseInsensitiveMap<>();
+        for (Column column : projection) {
+            String quoted = dialect.quoteIdentifier(column.name());
+            selectList.add(quoted);
+            outputs.put(column.name(), quoted);
+        }
+        // Alias de cada agregado -> expresión, para poder usarlo en HAVING
+        Map<String, String> aggregateExpressions = new LinkedCaseInsensitiveMap<>();
+        // MIN y MAX conservan el tipo de su columna; el resto de agregados se comparan con números
+        Map<String, Column> aggregateColumns = new LinkedCaseInsensitiveMap<>();
+        for (QueryRequest.Aggregate aggregate : aggregates) {
+            String expression = aggregateExpression(aggregate, columns, dialect);
+            String alias = aggregateAlias(aggregate);
+            if (outputs.containsKey(alias)) {
+                throw new IllegalArgumentException("Duplicate output name: " + alias);
+            }
+            String quotedAlias = dialect.quoteIdentifier(alias);
+            selectList.add(expression + " AS " + quotedAlias);
+            outputs.put(alias, quotedAlias);
+            aggregateExpressions.put(alias, expression);
+            String function = aggregate.getFunction().toLowerCase(Locale.ROOT);
+            if ("min".equals(function) || "max".equals(function)) {
+                aggregateColumns.put(alias, resolve(columns, aggregate.getColumn()));
+            }
+        }
+        if (selectList.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to select");
+        }
+
+        List<Object> parameters = new ArrayList<>();
+        List<String> where = new ArrayList<>();
+        List<String> having = new ArrayList<>();
+        // Los valores del HAVING van detrás de los del WHERE, como en el texto de la consulta
+        List<Object> havingParameters = new ArrayList<>();
+        if (request.getFilters() != null) {
+            for (QueryRequest.Filter filter : request.getFilters()) {
+                String aggregateExpression = filter.getColumn() == null ? null : aggregateExpressions.get(filter.getColumn());
+                if (aggregateExpression != null) {
+                    having.add(predicate(aggregateExpression, aggregateColumns.get(filter.getColumn()), filter, havingParameters));
+                } else {
+                    Column column = resolve(columns, filter.getColumn());
+                    where.add(predicate(dialect.quoteIdentifier(column.name()), column, filter, parameters));
+                }
+            }
+        }
+        parameters.addAll(havingParameters);
+        if (parameters.size() >= dialect.maxBindParameters()) {
+            throw new IllegalArgumentException("Too many filter values");
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(String.join(", ", selectList))
+                .append(" FROM ").append(tableName);
+        if (!where.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", where));
+        }
+        if (!groupBy.isEmpty()) {
+            sql.append(" GROUP BY ")
+                    .append(String.join(", ", groupBy.stream().map(column -> dialect.quoteIdentifier(column.name())).toList()));
+        }
+        if (!having.isEmpty()) {
+            sql.append(" HAVING ").append(String.join(" AND ", having));
+        }
+
+        List<String> orderBy = new ArrayList<>();
+        if (request.getOrderBy() != null) {
+            for (QueryRequest.Order order : request.getOrderBy()) {
+                orderBy.add(orderTerm(order, outputs, grouped ? null : columns, dialect));
+            }
+        }
+        if (!orderBy.isEmpty()) {
+            sql.append(" ORDER BY ").append(String.join(", ", orderBy));
+        }
+        return new CompiledQuery(sql.toString(), parameters, !orderBy.isEmpty());
+    }
+
+    /**
+     * Compiles the projection, filters and sort of a table page. Without any of them the page is read
+     * with {@code SELECT *} as before, and the column metadata is not needed.
+     *
+     * @param requiredColumns columns added to an explicit projection because the caller needs them, e.g. the
+     *                        key columns of a keyset cursor
+     * @throws IllegalArgumentException if a name, operator or value is not valid for the table
+     */
+    public TableQuery compileTableQuery(String tableName, List<String> projection, List<QueryRequest.Filter> filters,
+                                        List<QueryRequest.Order> sort, List<String> requiredColumns,
+                                        List<Map<String, Object>> columnMetadata, SqlDialect dialect) {
+        if (tableName == null || !IDENTIFIER.matcher(tableName).matches()) {
+            throw new IllegalArgumentException("Invalid table name");
+        }
+        if (projection.isEmpty() && filters.isEmpty() && sort.isEmpty()) {
+            return new TableQuery("SELECT * FROM " + tableName, null, List.of(), null);
+        }
+        Map<String, Column> columns = toColumns(columnMetadata);
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("Unknown table: " + tableName);
+        }
+
+        String selectList = "*";
+        if (!projection.isEmpty()) {
+            List<Column> selected = resolve(columns, projection);
+            for (Column column : resolve(columns, requiredColumns)) {
+                if (!selected.contains(column)) {
+                    selected.add(column);
+                }
+            }
+            selectList = String.join(", ", selected.stream().map(column -> dialect.quoteIdentifier(column.name())).toList());
+        }
+
+        List<Object> parameters = new ArrayList<>();
+        List<String> where = new ArrayList<>();
+        for (QueryRequest.Filter filter : filters) {
+            Column column = resolve(columns, filter.getColumn());
+            where.add(predicate(dialect.quoteIdentifier(column.name()), column, filter, parameters));
+        }
+        if (parameters.size() >= dialect.maxBindParameters()) {
+            throw new IllegalArgumentException("Too many filter values");
+        }
+        List<String> orderBy = new ArrayList<>();
+        for (QueryRequest.Order order : sort) {
+            orderBy.add(orderTerm(order, Map.of(), columns, dialect));
+        }
+        return new TableQuery("SELECT " + selectList + " FROM " + tableName,
+                where.isEmpty() ? null : String.join(" AND ", where),
+                parameters,
+                orderBy.isEmpty() ? null : String.join(", ", orderBy));
+    }
+
+    /**
+     * Reads a comma-separated list of column names, e.g. {@code id,name,created_at}.
+     */
+    public List<String> parseColumns(String columns) {
+        List<String> names = new ArrayList<>();
+        if (columns != null) {
+            for (String name : columns.split(",")) {
+                if (!name.isBlank()) {
+                    names.add(name.trim());
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Reads the filters of a table page, sent as a JSON array of {@code {"column", "operator", "value"}}
+     * objects like the filters of a structured query.
+     */
+    public List<QueryRequest.Filter> parseFilters(String filters) {
+        if (filters == null || filters.isBlank()) {
+            return List.of();
+        }
+        try {
+            List<QueryRequest.Filter> parsed = FILTER_MAPPER.readValue(filters, new TypeReference<>() {});
+            return parsed == null ? List.of() : parsed;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Malformed filter: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a sort such as {@code name,created_at:desc}: columns with an optional direction.
+     */
+    public List<QueryRequest.Order> parseSort(String sort) {
+        List<QueryRequest.Order> orders = new ArrayList<>();
+        for (String term : parseColumns(sort)) {
+            int colon = term.indexOf(':');
+            orders.add(colon < 0
+                    ? new QueryRequest.Order(term, null)
+                    : new QueryRequest.Order(term.substring(0, colon).trim(), term.substring(colon + 1).trim()));
+        }
+        return orders;
+    }
+
+    /**
+     * Runs a compiled query with the server statement timeout and returns at most {@code limit} rows.
+     */
+    public QueryResponse run(JdbcTemplate jdbcTemplate, SqlDialect dialect, CompiledQuery query, int limit) {
+        String sql = dialect.limit(query.sql(), query.ordered());
+        List<Object> parameters = new ArrayList<>(query.parameters());
+        // Se pide una fila de más para saber si el resultado se ha recortado
+        parameters.add(limit + 1);
+        ArgumentPreparedStatementSetter setter = new ArgumentPreparedStatementSetter(parameters.toArray());
+
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            if (timeoutSeconds > 0) {
+                ps.setQueryTimeout(timeoutSeconds);
+            }
+            setter.setValues(ps);
+            return ps;
+        }, (ResultSet rs) -> {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            if (columnCount > 1 && SqlDialect.ROW_NUMBER_ALIAS.equalsIgnoreCase(JdbcUtils.lookupColumnName(metaData, columnCount))) {
+                columnCount--;
+            }
+            List<String> fields = new ArrayList<>(columnCount);
+            for (int i = 1; i <= columnCount; i++) {
+                fields.add(JdbcUtils.lookupColumnName(metaData, i));
+            }
+            List<Object[]> rows = new ArrayList<>();
+            boolean truncated = false;
+            while (rs.next()) {
+                if (rows.size() == limit) {
+                    truncated = true;
+                    break;
+                }
+                Object[] row = new Object[columnCount];
+                for (int i = 1; i <= columnCount; i++) {
+                    row[i - 1] = JdbcUtils.getResultSetValue(rs, i);
+                }
+                rows.add(row);
+            }
+            return new QueryResponse(query.sql(), fields, rows, truncated, null);
+        });
+    }
+
+    private Map<String, Column> toColumns(List<Map<String, Object>> columnMetadata) {
+        Map<String, Column> columns = new LinkedCaseInsensitiveMap<>();
+        for (Map<String, Object> column : columnMetadata) {
+            String name = (String) column.get("COLUMN_NAME");
+            Object dataType = column.get("DATA_TYPE");
+            columns.put(name, new Column(name, dataType instanceof Number number ? number.intValue() : Types.OTHER,
+                    (String) column.get("TYPE_NAME")));
+        }
+        return columns;
+    }
+
+    private List<Column> resolve(Map<String, Column> columns, List<String> names) {
+        List<Column> resolved = new ArrayList<>();
+        if (names != null) {
+            for (String name : names) {
+                Column column = resolve(columns, name);
+                if (!resolved.contains(column)) {
+                    resolved.add(column);
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private Column resolve(Map<String, Column> columns, String name) {
+        Column column = name == null ? null : columns.get(name);
+        if (column == null) {
+            throw new IllegalArgumentException("Unknown column: " + name);
+        }
+        return column;
+    }
+
+    private String aggregateExpression(QueryRequest.Aggregate aggregate, Map<String, Column> columns, SqlDialect dialect) {
+        String function = aggregate.getFunction() == null ? "" : aggregate.getFunction().toLowerCase(Locale.ROOT);
+        if ("count".equals(function) && aggregate.getColumn() == null) {
+            return "COUNT(*)";
+        }
+        Column column = resolve(columns, aggregate.getColumn());
+        String quoted = dialect.quoteIdentifier(column.name());
+        return switch (function) {
+            case "count" -> "COUNT(" + quoted + ")";
+            case "count_distinct" -> "COUNT(DISTINCT " + quoted + ")";
+            case "min" -> "MIN(" + quoted + ")";
+            case "max" -> "MAX(" + quoted + ")";
+            case "sum" -> "SUM(" + numeric(column, quoted) + ")";
+            // SQL Server y DB2 devuelven la media de una columna entera truncada a entero
+            case "avg" -> "AVG(" + (INTEGER_TYPES.contains(column.sqlType()) ? quoted + " * 1.0" : numeric(column, quoted)) + ")";
+            default -> throw new IllegalArgumentException("Unsupported aggregate function: " + aggregate.getFunction());
+        };
+    }
+
+    private String numeric(Column column, String quoted) {
+        if (column.sqlType() != Types.OTHER && !NUMERIC_TYPES.contains(column.sqlType())) {
+            throw new IllegalArgumentException("Column " + column.name() + " is not numeric");
+        }
+        return quoted;
+    }
+
+    private String aggregateAlias(QueryRequest.Aggregate aggregate) {
+        String alias = aggregate.getAlias();
+        if (alias == null || alias.isEmpty()) {
+            alias = aggregate.getColumn() == null
+                    ? aggregate.getFunction().toLowerCase(Locale.ROOT)
+                    : aggregate.getFunction().toLowerCase(Locale.ROOT) + "_" + aggregate.getColumn();
+        }
+        if (!IDENTIFIER.matcher(alias).matches() || alias.length() > MAX_ALIAS_LENGTH) {
+            throw new IllegalArgumentException("Invalid alias: " + alias);
+        }
+        return alias;
+    }
+
+    /**
+     * Builds one condition and adds its values to the parameters.
+     *
+     * @param column the column that gives the type of the values, or null for a numeric aggregate
+     */
+    private String predicate(String expression, Column column, QueryRequest.Filter filter, List<Object> parameters) {
+        String operator = filter.getOperator() == null ? "eq" : filter.getOperator().toLowerCase(Locale.ROOT);
+        Object value = filter.getValue();
+        switch (operator) {
+            case "is_null":
+                return expression + " IS NULL";
+            case "is_not_null":
+                return expression + " IS NOT NULL";
+            case "in":
+            case "not_in": {
+                if (!(value instanceof Collection<?> values) || values.isEmpty() || values.size() > MAX_IN_VALUES) {
+                    throw new IllegalArgumentException(operator + " expects a list of 1 to " + MAX_IN_VALUES + " values");
+                }
+                for (Object item : values) {
+                    parameters.add(convert(item, column, filter.getColumn()));
+                }
+                String placeholders = String.join(", ", Collections.nCopies(values.size(), "?"));
+                return expression + ("in".equals(operator) ? " IN (" : " NOT IN (") + placeholders + ")";
+            }
+            case "between": {
+                if (!(value instanceof List<?> bounds) || bounds.size() != 2) {
+                    throw new IllegalArgumentException("between expects a list of two values");
+                }
+                parameters.add(convert(bounds.get(0), column, filter.getColumn()));
+                parameters.add(convert(bounds.get(1), column, filter.getColumn()));
+                return expression + " BETWEEN ? AND ?";
+            }
+            case "like": {
+                if (column == null || !CHARACTER_TYPES.contains(column.sqlType())) {
+                    throw new IllegalArgumentException("like needs a character column: " + filter.getColumn());
+                }
+                if (value == null) {
+                    throw new IllegalArgumentException("like needs a pattern");
+                }
+                parameters.add(value.toString());
+                return expression + " LIKE ?";
+            }
+            default: {
+                String comparison = switch (operator) {
+                    case "eq" -> " = ?";
+                    case "ne" -> " <> ?";
+                    case "lt" -> " < ?";
+                    case "le" -> " <= ?";
+                    case "gt" -> " > ?";
+                    case "ge" -> " >= ?";
+                    default -> throw new IllegalArgumentException("Unsupported operator: " + filter.getOperator());
+                };
+                parameters.add(convert(value, column, filter.getColumn()));
+                return expression + comparison;
+            }
+        }
+    }
+
+    /**
+     * Converts a JSON value to the Java type the driver expects for the column. Values compared with a
+     * numeric aggregate (no column) are bound as numbers.
+     */
+    private Object convert(Object value, Column column, String name) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null value for " + name + "; use is_null");
+        }
+        if (value instanceof Collection<?> || value instanceof Map<?, ?>) {
+            throw new IllegalArgumentException("Expected a single value for " + name);
+        }
+        String text = value.toString();
+        try {
+            if (column == null) {
+                return value instanceof Number ? new BigDecimal(text) : value;
+            }
+            return switch (column.sqlType()) {
+                case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> new BigDecimal(text).longValueExact();
+                case Types.NUMERIC, Types.DECIMAL -> new BigDecimal(text);
+                case Types.REAL, Types.FLOAT, Types.DOUBLE -> Double.valueOf(text);
+                case Types.BIT, Types.BOOLEAN -> value instanceof Boolean ? value : parseBoolean(text);
+                case Types.DATE -> Date.valueOf(LocalDate.parse(text));
+                case Types.TIMESTAMP -> text.indexOf('T') > 0 ? Timestamp.valueOf(LocalDateTime.parse(text)) : Timestamp.valueOf(text);
+                case Types.TIMESTAMP_WITH_TIMEZONE -> OffsetDateTime.parse(text);
+                case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR,
+                     Types.CLOB, Types.NCLOB -> text;
+                default -> "uuid".equalsIgnoreCase(column.typeName()) ? UUID.fromString(text) : value;
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid value for column " + name + ": " + text, e);
+        }
+    }
+
+    private static Boolean parseBoolean(String text) {
+        return switch (text.toLowerCase(Locale.ROOT)) {
+            case "true", "1" -> Boolean.TRUE;
+            case "false", "0" -> Boolean.FALSE;
+            default -> throw new IllegalArgumentException("Not a boolean: " + text);
+        };
+    }
+
+    /**
+     * ORDER BY term for an output name, or for any column of the table when the query is not grouped.
+     */
+    private String orderTerm(QueryRequest.Order order, Map<String, String> outputs, Map<String, Column> columns, SqlDialect dialect) {
+        String direction = order.getDirection() == null ? "asc" : order.getDirection().toLowerCase(Locale.ROOT);
+        if (!"asc".equals(direction) && !"desc".equals(direction)) {
+            throw new IllegalArgumentException("Invalid sort direction: " + order.getDirection());
+        }
+        String term = order.getColumn() == null ? null : outputs.get(order.getColumn());
+        if (term == null) {
+            if (columns == null) {
+                throw new IllegalArgumentException("Order by must name a selected column or aggregate: " + order.getColumn());
+            }
+            term = dialect.quoteIdentifier(resolve(columns, order.getColumn()).name());
+        }
+        return term + " " + direction.toUpperCase(Locale.ROOT);
+    }
+}
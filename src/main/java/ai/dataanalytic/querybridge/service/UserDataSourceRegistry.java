@@ -0,0 +1,220 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.querybridge.config.DataSourcePoolRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the {@link ConnectionHandle} of every user connection that is live on this node.
+ * Connections idle for longer than the timeout are evicted, and when the node holds more pools than allowed
+ * the least recently used connections are evicted first. Evicting releases the shared pool, which is closed
+ * when no other user references it; the connection is rebuilt lazily from MongoDB on its next use.
+ */
+@Slf4j
+@Service
+public class UserDataSourceRegistry {
+
+    private static final class Entry {
+        private final ConnectionHandle handle;
+        private final DataSource dataSource;
+        private volatile long lastAccessedAt;
+
+        private Entry(ConnectionHandle handle) {
+            this.handle = handle;
+            this.dataSource = handle.getDataSource();
+            this.lastAccessedAt = System.currentTimeMillis();
+        }
+    }
+
+    private final DataSourcePoolRegistry dataSourcePoolRegistry;
+
+    // Conexiones por userId:connectionId
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Creaciones en curso, para que las peticiones concurrentes esperen a una sola
+    private final Map<String, CompletableFuture<ConnectionHandle>> inFlight = new ConcurrentHashMap<>();
+
+    private final int maxPools;
+
+    private final long idleTimeoutMillis;
+
+    private final Counter idleEvictions;
+
+    private final Counter capacityEvictions;
+
+    public UserDataSourceRegistry(DataSourcePoolRegistry dataSourcePoolRegistry,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${querybridge.datasource.max-pools:200}") int maxPools,
+                                  @Value("${querybridge.datasource.idle-timeout-seconds:1800}") long idleTimeoutSeconds) {
+        this.dataSourcePoolRegistry = dataSourcePoolRegistry;
+        this.maxPools = maxPools;
+        this.idleTimeoutMillis = idleTimeoutSeconds * 1000;
+        this.idleEvictions = Counter.builder("querybridge.datasource.evictions")
+                .description("User connections evicted from this node")
+                .tag("reason", "idle")
+                .register(meterRegistry);
+        this.capacityEvictions = Counter.builder("querybridge.datasource.evictions")
+                .description("User connections evicted from this node")
+                .tag("reason", "capacity")
+                .register(meterRegistry);
+        Gauge.builder("querybridge.datasource.connections", entries, Map::size)
+                .description("User connections live on this node")
+                .register(meterRegistry);
+        Gauge.builder("querybridge.datasource.pools", dataSourcePoolRegistry, DataSourcePoolRegistry::getPoolCount)
+                .description("Shared connection pools open on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the handle of a user connection and marks it as recently used.
+     *
+     * @return the handle, or null if the connection is not live on this node
+     */
+    public ConnectionHandle get(String userId, String connectionId) {
+        Entry entry = entries.get(key(userId, connectionId));
+        if (entry == null) {
+            return null;
+        }
+        entry.lastAccessedAt = System.currentTimeMillis();
+        return entry.handle;
+    }
+
+    /**
+     * Returns the handle of a user connection, building it with the loader when it is not live on this node.
+     * Concurrent callers for the same connection wait for a single build instead of each opening a pool.
+     *
+     * @param loader builds the handle (e.g. from the MongoDB record); may return null if the connection is unknown
+     * @return the handle, or null if the loader returned null
+     */
+    public ConnectionHandle getOrCreate(String userId, String connectionId, Supplier<ConnectionHandle> loader) {
+        ConnectionHandle handle = get(userId, connectionId);
+        if (handle != null) {
+            return handle;
+        }
+        String key = key(userId, connectionId);
+        CompletableFuture<ConnectionHandle> created = new CompletableFuture<>();
+        CompletableFuture<ConnectionHandle> pending = inFlight.putIfAbsent(key, created);
+        if (pending != null) {
+            return pending.join();
+        }
+        try {
+            // Puede haberse registrado entre la primera consulta y la reserva
+            handle = get(userId, connectionId);
+            if (handle == null) {
+                handle = loader.get();
+                if (handle != null) {
+                    entries.put(key, new Entry(handle));
+                    enforceCapacity();
+                }
+            }
+            created.complete(handle);
+            return handle;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * Registers the handle of a user connection, replacing any previous one.
+     *
+     * @return the replaced handle, or null; the caller owns its pool reference
+     */
+    public ConnectionHandle put(ConnectionHandle handle) {
+        Entry previous = entries.put(key(handle.getUserId(), handle.getConnectionId()), new Entry(handle));
+        enforceCapacity();
+        return previous == null ? null : previous.handle;
+    }
+
+    /**
+     * Removes a user connection.
+     *
+     * @return the removed handle, or null; the caller owns its pool reference
+     */
+    public ConnectionHandle remove(String userId, String connectionId) {
+        Entry removed = entries.remove(key(userId, connectionId));
+        return removed == null ? null : removed.handle;
+    }
+
+    /**
+     * Evicts the connections that have not been used within the idle timeout.
+     */
+    @Scheduled(fixedDelayString = "${querybridge.datasource.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        long threshold = System.currentTimeMillis() - idleTimeoutMillis;
+        entries.forEach((key, entry) -> {
+            if (entry.lastAccessedAt < threshold && evict(key, entry)) {
+                idleEvictions.increment();
+                log.info("Evicted idle connection {}", key);
+            }
+        });
+    }
+
+    /**
+     * Keeps the number of open pools under the limit: first closes pools that nobody references,
+     * then evicts the least recently used connections.
+     */
+    private void enforceCapacity() {
+        if (dataSourcePoolRegistry.getPoolCount() <= maxPools) {
+            return;
+        }
+        dataSourcePoolRegistry.closeUnreferencedPools();
+        while (dataSourcePoolRegistry.getPoolCount() > maxPools) {
+            Optional<Map.Entry<String, Entry>> eldest = entries.entrySet().stream()
+                    .filter(e -> !isHeld(e.getValue()))
+                    .min(Comparator.comparingLong(e -> e.getValue().lastAccessedAt));
+            if (eldest.isEmpty()) {
+                log.warn("Pool limit of {} exceeded but every connection is in use", maxPools);
+                return;
+            }
+            if (evict(eldest.get().getKey(), eldest.get().getValue())) {
+                capacityEvictions.increment();
+                log.info("Evicted least recently used connection {}", eldest.get().getKey());
+            }
+        }
+    }
+
+    /**
+     * Removes the entry and releases its pool, closing it if this was the last reference.
+     * Connections with queries or transfers in flight are left alone.
+     */
+    private boolean evict(String key, Entry entry) {
+        if (isHeld(entry) || !entries.remove(key, entry)) {
+            return false;
+        }
+        dataSourcePoolRegistry.release(entry.dataSource, true);
+        return true;
+    }
+
+    /**
+     * Tells whether the pool of an entry is used by something other than the user connections of this registry:
+     * a transfer, a query or a metadata request holds its own pool reference for as long as it runs, even when it
+     * has no connection checked out at the moment (e.g. between chunks, or before the response body starts).
+     */
+    private boolean isHeld(Entry entry) {
+        if (dataSourcePoolRegistry.isInUse(entry.dataSource)) {
+            return true;
+        }
+        long registered = entries.values().stream().filter(e -> e.dataSource == entry.dataSource).count();
+        return dataSourcePoolRegistry.getReferences(entry.dataSource) > registered;
+    }
+
+    private String key(String userId, String connectionId) {
+        return userId + ":" + connectionId;
+    }
+}
@@ -0,0 +1,221 @@
+package ai.dataanalytic.sharedlibrary.dialect;
+
+import java.sql.Types;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * SQL:2008 dialect ({@code OFFSET ... ROWS FETCH NEXT ... ROWS ONLY}, double-quoted identifiers).
+ * Used for engines without a dedicated dialect and as the base of the engine-specific ones.
+ */
+public class AnsiSqlDialect implements SqlDialect {
+
+    @Override
+    public String getName() {
+        return "ansi";
+    }
+
+    @Override
+    public String quoteIdentifier(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    @Override
+    public String paginate(String sql, boolean ordered) {
+        return sql + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+    }
+
+    @Override
+    public Object[] paginationParameters(int limit, long offset) {
+        return new Object[]{offset, limit};
+    }
+
+    @Override
+    public String limit(String sql, boolean ordered) {
+        return sql + " FETCH FIRST ? ROWS ONLY";
+    }
+
+    @Override
+    public String estimatedRowCountSql() {
+        return null;
+    }
+
+    @Override
+    public String insertSql(String tableName, List<String> columns, int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(quoteIdentifier(columns.get(i)));
+        }
+        sql.append(") VALUES ");
+        String row = placeholders(columns.size());
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append(row);
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public String upsertSql(String tableName, List<String> columns, List<String> keyColumns) {
+        StringBuilder sql = new StringBuilder("MERGE INTO ").append(tableName).append(" t USING ")
+                .append(mergeSource(columns)).append(" ON (");
+        for (int i = 0; i < keyColumns.size(); i++) {
+            String key = quoteIdentifier(keyColumns.get(i));
+            sql.append(i == 0 ? "" : " AND ").append("t.").append(key).append(" = s.").append(key);
+        }
+        sql.append(')');
+        String updates = columns.stream()
+                .filter(column -> !keyColumns.contains(column))
+                .map(this::quoteIdentifier)
+                .map(column -> column + " = s." + column)
+                .collect(Collectors.joining(", "));
+        if (!updates.isEmpty()) {
+            sql.append(" WHEN MATCHED THEN UPDATE SET ").append(updates);
+        }
+        String quoted = columns.stream().map(this::quoteIdentifier).collect(Collectors.joining(", "));
+        sql.append(" WHEN NOT MATCHED THEN INSERT (").append(quoted).append(") VALUES (")
+                .append(columns.stream().map(column -> "s." + quoteIdentifier(column)).collect(Collectors.joining(", ")))
+                .append(')');
+        return sql.toString();
+    }
+
+    @Override
+    public String columnType(ColumnDefinition column) {
+        int size = column.size();
+        return switch (column.sqlType()) {
+            case Types.BIT, Types.BOOLEAN -> booleanType();
+            case Types.TINYINT, Types.SMALLINT -> "SMALLINT";
+            case Types.INTEGER -> "INTEGER";
+            case Types.BIGINT -> bigintType();
+            case Types.REAL -> "REAL";
+            case Types.FLOAT, Types.DOUBLE -> doubleType();
+            case Types.NUMERIC, Types.DECIMAL -> decimalType(size, column.scale());
+            case Types.CHAR, Types.NCHAR -> size > 0 && size <= 255 ? "CHAR(" + size + ")" : varcharType(size);
+            case Types.VARCHAR, Types.NVARCHAR -> varcharType(size);
+            case Types.LONGVARCHAR, Types.LONGNVARCHAR, Types.CLOB, Types.NCLOB, Types.SQLXML -> textType();
+            case Types.BINARY, Types.VARBINARY -> binaryType(size);
+            case Types.LONGVARBINARY, Types.BLOB -> blobType();
+            case Types.DATE -> "DATE";
+            case Types.TIME, Types.TIME_WITH_TIMEZONE -> timeType();
+            case Types.TIMESTAMP -> timestampType();
+            case Types.TIMESTAMP_WITH_TIMEZONE -> timestampWithTimeZoneType();
+            // Engine-specific types (uuid, json, intervals...) travel as text
+            default -> textType();
+        };
+    }
+
+    @Override
+    public String createTableSql(String tableName, List<ColumnDefinition> columns, boolean unlogged) {
+        return "CREATE TABLE " + tableName + " (" + columns.stream()
+                .map(column -> quoteIdentifier(column.name()) + " " + columnType(column) + (column.nullable() ? "" : " NOT NULL"))
+                .collect(Collectors.joining(", ")) + ")";
+    }
+
+    @Override
+    public String addPrimaryKeySql(String tableName, List<String> columns) {
+        return "ALTER TABLE " + tableName + " ADD PRIMARY KEY (" + quotedList(columns) + ")";
+    }
+
+    @Override
+    public String createIndexSql(String indexName, String tableName, List<String> columns, boolean unique) {
+        return "CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + quoteIdentifier(indexName)
+                + " ON " + tableName + " (" + quotedList(columns) + ")";
+    }
+
+    @Override
+    public String addForeignKeySql(String tableName, String constraintName, List<String> columns,
+                                   String referencedTable, List<String> referencedColumns) {
+        return "ALTER TABLE " + tableName + " ADD CONSTRAINT " + quoteIdentifier(constraintName)
+                + " FOREIGN KEY (" + quotedList(columns) + ") REFERENCES " + referencedTable
+                + " (" + quotedList(referencedColumns) + ")";
+    }
+
+    @Override
+    public int maxBindParameters() {
+        return 2000;
+    }
+
+    protected String booleanType() {
+        return "BOOLEAN";
+    }
+
+    protected String bigintType() {
+        return "BIGINT";
+    }
+
+    protected String doubleType() {
+        return "DOUBLE PRECISION";
+    }
+
+    /**
+     * DECIMAL with the source precision, capped at what the engine accepts; unknown precisions get the maximum.
+     */
+    protected String decimalType(int precision, int scale) {
+        int max = maxDecimalPrecision();
+        if (precision <= 0 || precision > max) {
+            return "DECIMAL(" + max + ", " + Math.min(Math.max(scale, 0), max / 2) + ")";
+        }
+        return "DECIMAL(" + precision + ", " + Math.max(scale, 0) + ")";
+    }
+
+    protected int maxDecimalPrecision() {
+        return 38;
+    }
+
+    /**
+     * VARCHAR of the source length, or the text type when the length is unknown or over the engine limit.
+     */
+    protected String varcharType(int size) {
+        return size > 0 && size <= maxVarcharLength() ? "VARCHAR(" + size + ")" : textType();
+    }
+
+    protected int maxVarcharLength() {
+        return 4000;
+    }
+
+    protected String textType() {
+        return "CLOB";
+    }
+
+    protected String binaryType(int size) {
+        return size > 0 && size <= maxVarcharLength() ? "VARBINARY(" + size + ")" : blobType();
+    }
+
+    protected String blobType() {
+        return "BLOB";
+    }
+
+    protected String timeType() {
+        return "TIME";
+    }
+
+    protected String timestampType() {
+        return "TIMESTAMP";
+    }
+
+    protected String timestampWithTimeZoneType() {
+        return "TIMESTAMP WITH TIME ZONE";
+    }
+
+    protected String quotedList(List<String> columns) {
+        return columns.stream().map(this::quoteIdentifier).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Source row of the MERGE built by {@link #upsertSql(String, List, List)}, aliased {@code s}.
+     */
+    protected String mergeSource(List<String> columns) {
+        return "(VALUES " + placeholders(columns.size()) + ") AS s ("
+                + columns.stream().map(this::quoteIdentifier).collect(Collectors.joining(", ")) + ")";
+    }
+
+    /**
+     * Returns {@code (?, ?, ...)} with the given number of placeholders.
+     */
+    protected static String placeholders(int count) {
+        StringBuilder row = new StringBuilder("(");
+        for (int i = 0; i < count; i++) {
+            row.append(i == 0 ? "?" : ", ?");
+        }
+        return row.append(')').toString();
+    }
+}
@@ -0,0 +1,11 @@
+package ai.dataanalytic.sharedlibrary.dialect;
+
+/**
+ * Column of a table to create, as reported by the source database metadata.
+ *
+ * @param sqlType {@link java.sql.Types} code
+ * @param size    length of character and binary columns, precision of numeric ones (0 if unknown)
+ * @param scale   digits after the decimal point of numeric columns
+ */
+public record ColumnDefinition(String name, int sqlType, int size, int scale, boolean nullable) {
+}
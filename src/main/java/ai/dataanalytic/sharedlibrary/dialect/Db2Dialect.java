@@ -0,0 +1,51 @@
+package ai.dataanalytic.sharedlibrary.dialect;
+
+import java.util.List;
+
+/**
+ * DB2 for LUW: {@code OFFSET ... FETCH FIRST}, estimates from {@code SYSCAT.TABLES.CARD}.
+ */
+public class Db2Dialect extends AnsiSqlDialect {
+
+    @Override
+    public String getName() {
+        return "db2";
+    }
+
+    @Override
+    public String paginate(String sql, boolean ordered) {
+        return sql + " OFFSET ? ROWS FETCH FIRST ? ROWS ONLY";
+    }
+
+    @Override
+    public String estimatedRowCountSql() {
+        // CARD is -1 when RUNSTATS never ran on the table
+        return "SELECT CARD FROM SYSCAT.TABLES WHERE TABSCHEMA = CURRENT SCHEMA AND TABNAME = UPPER(?)";
+    }
+
+    @Override
+    protected String doubleType() {
+        return "DOUBLE";
+    }
+
+    @Override
+    protected int maxDecimalPrecision() {
+        return 31;
+    }
+
+    @Override
+    protected int maxVarcharLength() {
+        return 32672;
+    }
+
+    @Override
+    public int maxBindParameters() {
+        return 32767;
+    }
+
+    @Override
+    public String hashPartitionPredicate(String tableName, List<String> columns, int partitions, int partition) {
+        // RID() returns the physical row id
+        return "MOD(RID(" + tableName + "), " + partitions + ") = " + partition;
+    }
+}
@@ -0,0 +1,108 @@
+package ai.dataanalytic.sharedlibrary.dialect;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * MySQL and MariaDB: back-quoted identifiers, {@code LIMIT/OFFSET}, estimates from {@code information_schema}.
+ */
+public class MySqlDialect extends AnsiSqlDialect {
+
+    @Override
+    public String getName() {
+        return "mysql";
+    }
+
+    @Override
+    public String quoteIdentifier(String identifier) {
+        return '`' + identifier.replace("`", "``") + '`';
+    }
+
+    @Override
+    public String paginate(String sql, boolean ordered) {
+        return sql + " LIMIT ? OFFSET ?";
+    }
+
+    @Override
+    public Object[] paginationParameters(int limit, long offset) {
+        return new Object[]{limit, offset};
+    }
+
+    @Override
+    public String limit(String sql, boolean ordered) {
+        return sql + " LIMIT ?";
+    }
+
+    @Override
+    public String estimatedRowCountSql() {
+        return "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+    }
+
+    @Override
+    public String upsertSql(String tableName, List<String> columns, List<String> keyColumns) {
+        // The key is whatever primary or unique key the row collides with
+        String updates = columns.stream()
+                .filter(column -> !keyColumns.contains(column))
+                .map(this::quoteIdentifier)
+                .map(column -> column + " = VALUES(" + column + ")")
+                .collect(Collectors.joining(", "));
+        if (updates.isEmpty()) {
+            String key = quoteIdentifier(keyColumns.get(0));
+            updates = key + " = " + key;
+        }
+        return insertSql(tableName, columns, 1) + " ON DUPLICATE KEY UPDATE " + updates;
+    }
+
+    @Override
+    protected String doubleType() {
+        return "DOUBLE";
+    }
+
+    @Override
+    protected int maxDecimalPrecision() {
+        return 65;
+    }
+
+    @Override
+    protected String textType() {
+        return "LONGTEXT";
+    }
+
+    @Override
+    protected String blobType() {
+        return "LONGBLOB";
+    }
+
+    @Override
+    protected String timestampType() {
+        // DATETIME has no time zone conversion and keeps microseconds with (6)
+        return "DATETIME(6)";
+    }
+
+    @Override
+    protected String timestampWithTimeZoneType() {
+        return "DATETIME(6)";
+    }
+
+    @Override
+    public int maxBindParameters() {
+        return 65535;
+    }
+
+    @Override
+    public int streamingFetchSize(int fetchSize) {
+        // Connector/J streams row by row only with Integer.MIN_VALUE
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public String hashPartitionPredicate(String tableName, List<String> columns, int partitions, int partition) {
+        String hashed = columns.stream().map(this::quoteIdentifier).collect(Collectors.joining(", "));
+        return "MOD(CRC32(CONCAT_WS('|', " + hashed + ")), " + partitions + ") = " + partition;
+    }
+
+    @Override
+    public boolean backslashEscapesStrings() {
+        return true;
+    }
+}
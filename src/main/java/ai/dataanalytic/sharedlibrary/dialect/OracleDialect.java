@@ -0,0 +1,130 @@
+package ai.dataanalytic.sharedlibrary.dialect;
+
+import java.util.List;
+
+/**
+ * Oracle: {@code OFFSET ... FETCH} from 12c on and {@code ROWNUM} before, {@code INSERT ALL} for multi-row
+ * inserts and estimates from {@code ALL_TABLES.NUM_ROWS}.
+ */
+public class OracleDialect extends AnsiSqlDialect {
+
+    private final boolean rowNumPaging;
+
+    /**
+     * @param majorVersion the database major version, or 0 if unknown (assumes 12c or later)
+     */
+    public OracleDialect(int majorVersion) {
+        this.rowNumPaging = majorVersion > 0 && majorVersion < 12;
+    }
+
+    @Override
+    public String getName() {
+        return rowNumPaging ? "oracle11" : "oracle";
+    }
+
+    @Override
+    public String paginate(String sql, boolean ordered) {
+        if (!rowNumPaging) {
+            return super.paginate(sql, ordered);
+        }
+        // ROWNUM is assigned before ORDER BY, so the ordered query is nested first
+        return "SELECT * FROM (SELECT q_.*, ROWNUM " + ROW_NUMBER_ALIAS + " FROM (" + sql + ") q_ WHERE ROWNUM <= ?) WHERE "
+                + ROW_NUMBER_ALIAS + " > ?";
+    }
+
+    @Override
+    public Object[] paginationParameters(int limit, long offset) {
+        if (!rowNumPaging) {
+            return super.paginationParameters(limit, offset);
+        }
+        return new Object[]{offset + limit, offset};
+    }
+
+    @Override
+    public String limit(String sql, boolean ordered) {
+        if (!rowNumPaging) {
+            return super.limit(sql, ordered);
+        }
+        return "SELECT * FROM (" + sql + ") WHERE ROWNUM <= ?";
+    }
+
+    @Override
+    public String estimatedRowCountSql() {
+        return "SELECT NUM_ROWS FROM ALL_TABLES WHERE OWNER = SYS_CONTEXT('USERENV', 'CURRENT_SCHEMA') AND TABLE_NAME = UPPER(?)";
+    }
+
+    @Override
+    public String insertSql(String tableName, List<String> columns, int rows) {
+        if (rows == 1) {
+            return super.insertSql(tableName, columns, rows);
+        }
+        // Oracle has no multi-row VALUES list
+        StringBuilder into = new StringBuilder(" INTO ").append(tableName).append(" (");
+        for (int i = 0; i < columns.size(); i++) {
+            into.append(i == 0 ? "" : ", ").append(quoteIdentifier(columns.get(i)));
+        }
+        into.append(") VALUES ").append(placeholders(columns.size()));
+        StringBuilder sql = new StringBuilder("INSERT ALL");
+        for (int i = 0; i < rows; i++) {
+            sql.append(into);
+        }
+        return sql.append(" SELECT 1 FROM DUAL").toString();
+    }
+
+    @Override
+    protected String mergeSource(List<String> columns) {
+        // No VALUES constructor in a FROM clause: select the row from DUAL
+        StringBuilder select = new StringBuilder("(SELECT ");
+        for (int i = 0; i < columns.size(); i++) {
+            select.append(i == 0 ? "" : ", ").append("? AS ").append(quoteIdentifier(columns.get(i)));
+        }
+        return select.append(" FROM DUAL) s").toString();
+    }
+
+    @Override
+    protected String booleanType() {
+        return "NUMBER(1)";
+    }
+
+    @Override
+    protected String bigintType() {
+        return "NUMBER(19)";
+    }
+
+    @Override
+    protected String doubleType() {
+        return "BINARY_DOUBLE";
+    }
+
+    @Override
+    protected String decimalType(int precision, int scale) {
+        // NUMBER without a precision keeps any value
+        return precision <= 0 || precision > 38 ? "NUMBER" : "NUMBER(" + precision + ", " + Math.max(scale, 0) + ")";
+    }
+
+    @Override
+    protected String varcharType(int size) {
+        return size > 0 && size <= maxVarcharLength() ? "VARCHAR2(" + size + " CHAR)" : textType();
+    }
+
+    @Override
+    protected String binaryType(int size) {
+        return size > 0 && size <= 2000 ? "RAW(" + size + ")" : blobType();
+    }
+
+    @Override
+    protected String timeType() {
+        return "TIMESTAMP";
+    }
+
+    @Override
+    public int maxBindParameters() {
+        return 65535;
+    }
+
+    @Override
+    public String hashPartitionPredicate(String tableName, List<String> columns, int partitions, int partition) {
+        // Hashing the ROWID spreads rows evenly whatever the columns are
+        return "ORA_HASH(ROWID, " + (partitions - 1) + ") = " + partition;
+    }
+}
@@ -0,0 +1,121 @@
+package ai.dataanalytic.sharedlibrary.dialect;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * PostgreSQL: {@code LIMIT/OFFSET}, estimates from {@code pg_class.reltuples}.
+ */
+public class PostgreSqlDialect extends AnsiSqlDialect {
+
+    @Override
+    public String getName() {
+        return "postgresql";
+    }
+
+    @Override
+    public String paginate(String sql, boolean ordered) {
+        return sql + " LIMIT ? OFFSET ?";
+    }
+
+    @Override
+    public Object[] paginationParameters(int limit, long offset) {
+        return new Object[]{limit, offset};
+    }
+
+    @Override
+    public String limit(String sql, boolean ordered) {
+        return sql + " LIMIT ?";
+    }
+
+    @Override
+    public String estimatedRowCountSql() {
+        // reltuples is -1 when the table was never analyzed
+        return "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)";
+    }
+
+    @Override
+    public String upsertSql(String tableName, List<String> columns, List<String> keyColumns) {
+        String keys = keyColumns.stream().map(this::quoteIdentifier).collect(Collectors.joining(", "));
+        String updates = columns.stream()
+                .filter(column -> !keyColumns.contains(column))
+                .map(this::quoteIdentifier)
+                .map(column -> column + " = EXCLUDED." + column)
+                .collect(Collectors.joining(", "));
+        return insertSql(tableName, columns, 1) + " ON CONFLICT (" + keys + ")"
+                + (updates.isEmpty() ? " DO NOTHING" : " DO UPDATE SET " + updates);
+    }
+
+    @Override
+    public String createTableSql(String tableName, List<ColumnDefinition> columns, boolean unlogged) {
+        // Unlogged tables skip the WAL while loading; SET LOGGED writes them to the WAL once at the end
+        String sql = super.createTableSql(tableName, columns, unlogged);
+        return unlogged ? "CREATE UNLOGGED TABLE" + sql.substring("CREATE TABLE".length()) : sql;
+    }
+
+    @Override
+    public String loggedTableSql(String tableName) {
+        return "ALTER TABLE " + tableName + " SET LOGGED";
+    }
+
+    @Override
+    public int maxBindParameters() {
+        // The wire protocol carries the parameter count in a 16-bit field
+        return 32767;
+    }
+
+    @Override
+    protected String decimalType(int precision, int scale) {
+        // numeric without a precision keeps any value; the driver reports it as precision 0 or 131089
+        return precision <= 0 || precision > 1000 ? "NUMERIC" : super.decimalType(precision, scale);
+    }
+
+    @Override
+    protected int maxVarcharLength() {
+        return 10485760;
+    }
+
+    @Override
+    protected String textType() {
+        return "TEXT";
+    }
+
+    @Override
+    protected String binaryType(int size) {
+        return "BYTEA";
+    }
+
+    @Override
+    protected String blobType() {
+        return "BYTEA";
+    }
+
+    @Override
+    public boolean streamingRequiresTransaction() {
+        return true;
+    }
+
+    @Override
+    public String hashPartitionPredicate(String tableName, List<String> columns, int partitions, int partition) {
+        String hashed = columns.stream().map(this::quoteIdentifier).collect(Collectors.joining(", "));
+        // hashtext is a signed int4: shift it to non-negative before taking the bucket
+        return "mod(hashtext(concat_ws('|', " + hashed + "))::bigint + 2147483648, " + partitions + ") = " + partition;
+    }
+
+    @Override
+    public String blockCountSql() {
+        return "SELECT relpages::bigint FROM pg_class WHERE oid = to_regclass(?)";
+    }
+
+    @Override
+    public String blockRangePredicate(Long fromBlock, Long toBlock) {
+        // TID range scans (PostgreSQL 14+) read only the blocks of the range
+        if (fromBlock == null) {
+            return "ctid < '(" + toBlock + ",0)'::tid";
+        }
+        if (toBlock == null) {
+            return "ctid >= '(" + fromBlock + ",0)'::tid";
+        }
+        return "ctid >= '(" + fromBlock + ",0)'::tid AND ctid < '(" + toBlock + ",0)'::tid";
+    }
+}
@@ -0,0 +1,198 @@
+package ai.dataanalytic.sharedlibrary.dialect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Engine-specific SQL used by the query bridge and the data bridge: paging, row estimates,
+ * identifier quoting, multi-row inserts and streaming settings.
+ * Implementations are stateless and obtained through {@link SqlDialects}.
+ */
+public interface SqlDialect {
+
+    /**
+     * Alias of the row number column some dialects add to paginated queries; readers skip it.
+     */
+    String ROW_NUMBER_ALIAS = "qb_rn_";
+
+    String getName();
+
+    /**
+     * Quotes an identifier (table or column name) as it was reported by the database metadata.
+     */
+    String quoteIdentifier(String identifier);
+
+    /**
+     * Wraps a query so it returns one page. The returned SQL takes the parameters built by
+     * {@link #paginationParameters(int, long)}, appended after the query's own parameters.
+     *
+     * @param sql     the query to page
+     * @param ordered whether the query already has an ORDER BY clause
+     */
+    String paginate(String sql, boolean ordered);
+
+    /**
+     * Parameters of the SQL returned by {@link #paginate(String, boolean)}, in the order the dialect expects them.
+     */
+    Object[] paginationParameters(int limit, long offset);
+
+    /**
+     * Wraps a query so it returns at most the number of rows given by one extra parameter.
+     *
+     * @param sql     the query to limit
+     * @param ordered whether the query already has an ORDER BY clause
+     */
+    String limit(String sql, boolean ordered);
+
+    /**
+     * Predicate that keeps the rows after a key in key order: {@code (k1 > ?) OR (k1 = ? AND k2 > ?) ...}.
+     * It is spelled out instead of a row value comparison, which not every engine supports.
+     * The parameters are built by {@link #keysetParameters(List)}.
+     */
+    default String keysetPredicate(List<String> keyColumns) {
+        List<String> disjuncts = new ArrayList<>();
+        for (int i = 0; i < keyColumns.size(); i++) {
+            StringBuilder conjunct = new StringBuilder("(");
+            for (int j = 0; j < i; j++) {
+                conjunct.append(quoteIdentifier(keyColumns.get(j))).append(" = ? AND ");
+            }
+            conjunct.append(quoteIdentifier(keyColumns.get(i))).append(" > ?)");
+            disjuncts.add(conjunct.toString());
+        }
+        return String.join(" OR ", disjuncts);
+    }
+
+    /**
+     * Parameters of {@link #keysetPredicate(List)} for the last key read.
+     */
+    default List<Object> keysetParameters(List<Object> lastKey) {
+        List<Object> parameters = new ArrayList<>();
+        for (int i = 0; i < lastKey.size(); i++) {
+            parameters.addAll(lastKey.subList(0, i + 1));
+        }
+        return parameters;
+    }
+
+    /**
+     * Query that reads the estimated number of rows of a table from the engine statistics,
+     * taking the table name as its only parameter.
+     *
+     * @return the query, or null if the engine keeps no usable statistics
+     */
+    String estimatedRowCountSql();
+
+    /**
+     * Builds an INSERT of {@code rows} rows with positional parameters, row after row.
+     */
+    String insertSql(String tableName, List<String> columns, int rows);
+
+    /**
+     * Builds a statement that inserts one row, or updates the row with the same key if it already exists.
+     * The parameters are the values of {@code columns}, in order.
+     *
+     * @param keyColumns the columns that identify a row; they must have a unique constraint on the table
+     */
+    String upsertSql(String tableName, List<String> columns, List<String> keyColumns);
+
+    /**
+     * Native column type for a column read from another engine, e.g. {@code VARCHAR(100)} or {@code TEXT}.
+     */
+    String columnType(ColumnDefinition column);
+
+    /**
+     * Builds a CREATE TABLE with the columns and their nullability, without keys or indexes.
+     *
+     * @param unlogged create the table without write-ahead logging where the engine supports it;
+     *                 {@link #loggedTableSql(String)} turns logging back on after the load
+     */
+    String createTableSql(String tableName, List<ColumnDefinition> columns, boolean unlogged);
+
+    /**
+     * Statement that turns write-ahead logging back on for a table created unlogged.
+     *
+     * @return the statement, or null if the engine never creates unlogged tables
+     */
+    default String loggedTableSql(String tableName) {
+        return null;
+    }
+
+    String addPrimaryKeySql(String tableName, List<String> columns);
+
+    String createIndexSql(String indexName, String tableName, List<String> columns, boolean unique);
+
+    String addForeignKeySql(String tableName, String constraintName, List<String> columns,
+                            String referencedTable, List<String> referencedColumns);
+
+    /**
+     * Maximum number of bind parameters in a single statement.
+     */
+    int maxBindParameters();
+
+    /**
+     * Maximum number of rows in a single multi-row INSERT.
+     */
+    default int maxInsertRows() {
+        return 1000;
+    }
+
+    /**
+     * Fetch size to set on a statement so the driver streams rows instead of buffering the whole result.
+     */
+    default int streamingFetchSize(int fetchSize) {
+        return fetchSize;
+    }
+
+    /**
+     * Whether the driver only honours the fetch size inside a transaction (auto-commit off).
+     */
+    default boolean streamingRequiresTransaction() {
+        return false;
+    }
+
+    /**
+     * Whether a backslash escapes the next character inside string literals, as MySQL does by default.
+     */
+    default boolean backslashEscapesStrings() {
+        return false;
+    }
+
+    /**
+     * Whether identifiers can be quoted with square brackets, as in SQL Server.
+     */
+    default boolean squareBracketQuotes() {
+        return false;
+    }
+
+    /**
+     * Predicate that keeps the rows of one hash bucket, used to split a table that has no numeric key.
+     *
+     * @param tableName  the table being split
+     * @param columns    the columns to hash (the key if there is one, otherwise every column)
+     * @param partitions the number of buckets
+     * @param partition  the bucket to keep, from 0 to {@code partitions - 1}
+     * @return the predicate, or null if the engine has no suitable hash function
+     */
+    default String hashPartitionPredicate(String tableName, List<String> columns, int partitions, int partition) {
+        return null;
+    }
+
+    /**
+     * Query that returns the number of storage blocks of a table, taking the table name as its only parameter.
+     * Used to split tables by physical row address.
+     *
+     * @return the query, or null if the engine does not support block range scans
+     */
+    default String blockCountSql() {
+        return null;
+    }
+
+    /**
+     * Predicate that keeps the rows stored in the blocks {@code [fromBlock, toBlock)}.
+     *
+     * @param fromBlock first block, or null for no lower bound
+     * @param toBlock   block after the last one, or null for no upper bound
+     */
+    default String blockRangePredicate(Long fromBlock, Long toBlock) {
+        return null;
+    }
+}
@@ -0,0 +1,83 @@
+package ai.dataanalytic.sharedlibrary.dialect;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+/**
+ * Resolves the {@link SqlDialect} of a database from its configured type or from its metadata.
+ */
+@Slf4j
+public class SqlDialects {
+
+    private static final SqlDialect ANSI = new AnsiSqlDialect();
+    private static final SqlDialect POSTGRESQL = new PostgreSqlDialect();
+    private static final SqlDialect MYSQL = new MySqlDialect();
+    private static final SqlDialect SQLSERVER = new SqlServerDialect();
+    private static final SqlDialect ORACLE = new OracleDialect(0);
+    private static final SqlDialect ORACLE_11 = new OracleDialect(11);
+    private static final SqlDialect DB2 = new Db2Dialect();
+
+    private SqlDialects() {}
+
+    /**
+     * Returns the dialect for a database type as used in connection requests
+     * ({@code postgresql}, {@code mysql}, {@code sqlserver}, {@code oracle}, {@code db2}).
+     * Unknown or missing types get the ANSI dialect.
+     */
+    public static SqlDialect forDatabaseType(String databaseType) {
+        if (databaseType == null) {
+            return ANSI;
+        }
+        return switch (databaseType.toLowerCase()) {
+            case "postgresql" -> POSTGRESQL;
+            case "mysql", "mariadb" -> MYSQL;
+            case "sqlserver" -> SQLSERVER;
+            case "oracle" -> ORACLE;
+            case "db2" -> DB2;
+            default -> ANSI;
+        };
+    }
+
+    /**
+     * Returns the dialect for the product name and version reported by {@link DatabaseMetaData}.
+     */
+    public static SqlDialect forProduct(String productName, int majorVersion) {
+        String product = productName == null ? "" : productName.toLowerCase();
+        if (product.contains("postgresql")) {
+            return POSTGRESQL;
+        }
+        if (product.contains("mysql") || product.contains("mariadb")) {
+            return MYSQL;
+        }
+        if (product.contains("microsoft sql server")) {
+            return SQLSERVER;
+        }
+        if (product.contains("oracle")) {
+            return majorVersion > 0 && majorVersion < 12 ? ORACLE_11 : ORACLE;
+        }
+        if (product.startsWith("db2")) {
+            return DB2;
+        }
+        return ANSI;
+    }
+
+    public static SqlDialect of(DatabaseMetaData metaData) throws SQLException {
+        return forProduct(metaData.getDatabaseProductName(), metaData.getDatabaseMajorVersion());
+    }
+
+    /**
+     * Detects the dialect from a pooled connection. Falls back to the ANSI dialect if the metadata cannot be read.
+     */
+    public static SqlDialect of(DataSource dataSource) {
+        try (Connection con = dataSource.getConnection()) {
+            return of(con.getMetaData());
+        } catch (SQLException e) {
+            log.warn("Could not detect SQL dialect: {}", e.getMessage());
+            return ANSI;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ai.dataanalytic.sharedlibrary.dialect;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * SQL Server 2012 and later: bracketed identifiers, {@code OFFSET ... FETCH}, estimates from {@code sys.partitions}.
+ */
+public class SqlServerDialect extends AnsiSqlDialect {
+
+    @Override
+    public String getName() {
+        return "sqlserver";
+    }
+
+    @Override
+    public String quoteIdentifier(String identifier) {
+        return '[' + identifier.replace("]", "]]") + ']';
+    }
+
+    @Override
+    public String paginate(String sql, boolean ordered) {
+        // OFFSET ... FETCH is only valid after an ORDER BY
+        return sql + (ordered ? "" : " ORDER BY (SELECT NULL)") + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+    }
+
+    @Override
+    public String limit(String sql, boolean ordered) {
+        return sql + (ordered ? "" : " ORDER BY (SELECT NULL)") + " OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY";
+    }
+
+    @Override
+    public String estimatedRowCountSql() {
+        return "SELECT SUM(p.rows) FROM sys.partitions p WHERE p.object_id = OBJECT_ID(?) AND p.index_id IN (0, 1)";
+    }
+
+    @Override
+    public String upsertSql(String tableName, List<String> columns, List<String> keyColumns) {
+        // MERGE must be terminated with a semicolon
+        return super.upsertSql(tableName, columns, keyColumns) + ";";
+    }
+
+    @Override
+    protected String booleanType() {
+        return "BIT";
+    }
+
+    @Override
+    protected String doubleType() {
+        return "FLOAT";
+    }
+
+    @Override
+    protected String varcharType(int size) {
+        return size > 0 && size <= maxVarcharLength() ? "NVARCHAR(" + size + ")" : textType();
+    }
+
+    @Override
+    protected String textType() {
+        return "NVARCHAR(MAX)";
+    }
+
+    @Override
+    protected String binaryType(int size) {
+        return size > 0 && size <= 8000 ? "VARBINARY(" + size + ")" : blobType();
+    }
+
+    @Override
+    protected String blobType() {
+        return "VARBINARY(MAX)";
+    }
+
+    @Override
+    protected String timestampType() {
+        return "DATETIME2";
+    }
+
+    @Override
+    protected String timestampWithTimeZoneType() {
+        return "DATETIMEOFFSET";
+    }
+
+    @Override
+    public int maxBindParameters() {
+        // The limit is 2100; a few are left for the driver
+        return 2000;
+    }
+
+    @Override
+    public int maxInsertRows() {
+        // Table value constructors accept at most 1000 rows
+        return 1000;
+    }
+
+    @Override
+    public String hashPartitionPredicate(String tableName, List<String> columns, int partitions, int partition) {
+        String hashed = columns.stream().map(this::quoteIdentifier).collect(Collectors.joining(", "));
+        return "ABS(CAST(CHECKSUM(" + hashed + ") AS BIGINT)) % " + partitions + " = " + partition;
+    }
+
+    @Override
+    public boolean squareBracketQuotes() {
+        return true;
+    }
+}
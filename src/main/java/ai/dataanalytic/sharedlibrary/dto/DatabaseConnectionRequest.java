@@ -18,4 +18,5 @@ public class DatabaseConnectionRequest {
     private String sid;          // e.g., ORCL
     private String instance;    // e.g., SQL-Server
     private String connectionId;
+    private Integer resultCacheTtlSeconds; // null: valor por defecto, 0: sin caché de resultados
 }
@@ -0,0 +1,83 @@
+package ai.dataanalytic.databridge.batch;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.context.RepeatContextSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveChunkCompletionPolicyTest {
+
+    @Test
+    void initialSizeIsKeptWithinTheBounds() {
+        assertThat(new AdaptiveChunkCompletionPolicy(50, 100, 1000, 1000).getChunkSize()).isEqualTo(100);
+        assertThat(new AdaptiveChunkCompletionPolicy(5000, 100, 1000, 1000).getChunkSize()).isEqualTo(1000);
+        assertThat(new AdaptiveChunkCompletionPolicy(10, 0, -1, 1000).getChunkSize()).isEqualTo(1);
+    }
+
+    @Test
+    void fastChunksDoubleTheSizeUpToTheMaximum() {
+        AdaptiveChunkCompletionPolicy policy = new AdaptiveChunkCompletionPolicy(100, 10, 300, 60_000);
+
+        runChunk(policy);
+        assertThat(policy.getChunkSize()).isEqualTo(200);
+        runChunk(policy);
+        assertThat(policy.getChunkSize()).isEqualTo(300);
+        runChunk(policy);
+        assertThat(policy.getChunkSize()).isEqualTo(300);
+    }
+
+    @Test
+    void slowChunksHalveTheSizeDownToTheMinimum() throws Exception {
+        AdaptiveChunkCompletionPolicy policy = new AdaptiveChunkCompletionPolicy(100, 30, 1000, 0);
+
+        for (int expected : new int[]{50, 30, 30}) {
+            ChunkContext chunk = chunkContext();
+            policy.beforeChunk(chunk);
+            Thread.sleep(1);
+            policy.afterChunk(chunk);
+            assertThat(policy.getChunkSize()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void failedChunksDoNotChangeTheSize() {
+        AdaptiveChunkCompletionPolicy policy = new AdaptiveChunkCompletionPolicy(100, 10, 1000, 60_000);
+
+        ChunkContext chunk = chunkContext();
+        policy.beforeChunk(chunk);
+        policy.afterChunkError(chunk);
+        policy.afterChunk(chunk);
+
+        assertThat(policy.getChunkSize()).isEqualTo(100);
+    }
+
+    @Test
+    void chunksInProgressKeepTheSizeTheyStartedWith() {
+        AdaptiveChunkCompletionPolicy policy = new AdaptiveChunkCompletionPolicy(2, 1, 100, 60_000);
+        RepeatContext started = policy.start(null);
+
+        // Otra partición termina un chunk rápido y duplica el tamaño compartido
+        runChunk(policy);
+        assertThat(policy.getChunkSize()).isEqualTo(4);
+
+        assertThat(policy.isComplete(started)).isFalse();
+        ((RepeatContextSupport) started).increment();
+        ((RepeatContextSupport) started).increment();
+        assertThat(policy.isComplete(started)).isTrue();
+    }
+
+    private static void runChunk(AdaptiveChunkCompletionPolicy policy) {
+        ChunkContext chunk = chunkContext();
+        policy.beforeChunk(chunk);
+        policy.afterChunk(chunk);
+    }
+
+    private static ChunkContext chunkContext() {
+        return new ChunkContext(new StepContext(new StepExecution("transfer", new JobExecution(1L))));
+    }
+}
@@ -0,0 +1,106 @@
+package ai.dataanalytic.databridge.batch;
+
+import ai.dataanalytic.querybridge.dto.SchemaSnapshot;
+import ai.dataanalytic.querybridge.service.SchemaDiscoveryService;
+import ai.dataanalytic.sharedlibrary.dialect.AnsiSqlDialect;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CreateDestinationTableTaskletTest {
+
+    private final SchemaDiscoveryService schemaDiscoveryService = new SchemaDiscoveryService();
+
+    private SingleConnectionDataSource source;
+
+    private SingleConnectionDataSource destination;
+
+    private JdbcTemplate sourceJdbcTemplate;
+
+    private JdbcTemplate destinationJdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        source = new SingleConnectionDataSource("jdbc:h2:mem:create-source", "sa", "", true);
+        destination = new SingleConnectionDataSource("jdbc:h2:mem:create-destination", "sa", "", true);
+        sourceJdbcTemplate = new JdbcTemplate(source);
+        destinationJdbcTemplate = new JdbcTemplate(destination);
+        sourceJdbcTemplate.execute("CREATE TABLE orders (id BIGINT PRIMARY KEY, code CHAR(3), name VARCHAR(80) NOT NULL,"
+                + " total DECIMAL(10, 2), paid BOOLEAN, created_at TIMESTAMP)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        source.destroy();
+        destination.destroy();
+    }
+
+    @Test
+    void createsTheColumnsOfTheSourceTableWithoutKeys() {
+        ChunkContext chunk = chunkContext();
+
+        tasklet(false).execute(null, chunk);
+
+        SchemaSnapshot.Table created = schemaDiscoveryService.getTableSnapshot("orders", destinationJdbcTemplate);
+        assertThat(created.getColumns()).extracting(SchemaSnapshot.Column::getType)
+                .containsExactly("BIGINT", "CHARACTER", "CHARACTER VARYING", "DECIMAL", "BOOLEAN", "TIMESTAMP");
+        assertThat(created.getColumns()).extracting(SchemaSnapshot.Column::isNullable)
+                .containsExactly(false, true, false, true, true, true);
+        assertThat(created.getColumns().get(2).getSize()).isEqualTo(80);
+        assertThat(created.getColumns().get(3).getDecimalDigits()).isEqualTo(2);
+        // La clave primaria se añade después de la carga
+        assertThat(created.getPrimaryKey()).isEmpty();
+
+        ExecutionContext jobContext = chunk.getStepContext().getStepExecution().getJobExecution().getExecutionContext();
+        assertThat(jobContext.get(CreateDestinationTableTasklet.CREATED)).isEqualTo(true);
+        assertThat(jobContext.get(CreateDestinationTableTasklet.UNLOGGED)).isEqualTo(false);
+    }
+
+    @Test
+    void upsertsGetThePrimaryKeyUpFront() {
+        tasklet(true).execute(null, chunkContext());
+
+        assertThat(schemaDiscoveryService.getTableSnapshot("orders", destinationJdbcTemplate).getPrimaryKey())
+                .containsExactly("ID");
+    }
+
+    @Test
+    void existingTablesAreLeftAlone() {
+        destinationJdbcTemplate.execute("CREATE TABLE orders (id BIGINT)");
+        ChunkContext chunk = chunkContext();
+
+        tasklet(true).execute(null, chunk);
+
+        assertThat(schemaDiscoveryService.getTableSnapshot("orders", destinationJdbcTemplate).getColumns()).hasSize(1);
+        assertThat(chunk.getStepContext().getStepExecution().getJobExecution().getExecutionContext()
+                .containsKey(CreateDestinationTableTasklet.CREATED)).isFalse();
+    }
+
+    @Test
+    void missingSourceTableFailsTheStep() {
+        sourceJdbcTemplate.execute("DROP TABLE orders");
+
+        assertThatThrownBy(() -> tasklet(false).execute(null, chunkContext()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("orders");
+    }
+
+    private CreateDestinationTableTasklet tasklet(boolean primaryKeyUpFront) {
+        return new CreateDestinationTableTasklet(schemaDiscoveryService, sourceJdbcTemplate, destinationJdbcTemplate,
+                new AnsiSqlDialect(), "orders", true, primaryKeyUpFront);
+    }
+
+    private static ChunkContext chunkContext() {
+        return new ChunkContext(new StepContext(new StepExecution("dataTransferPrepareStep", new JobExecution(1L))));
+    }
+}
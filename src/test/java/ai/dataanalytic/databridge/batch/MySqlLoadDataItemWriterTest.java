@@ -0,0 +1,62 @@
+package ai.dataanalytic.databridge.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MySqlLoadDataItemWriterTest {
+
+    private static final RowSchema SCHEMA = new RowSchema(new String[]{"id", "name", "payload", "active"},
+            new int[]{Types.BIGINT, Types.VARCHAR, Types.VARBINARY, Types.BOOLEAN});
+
+    @Test
+    void nullIsBackslashNAndEmptyStringIsQuoted() {
+        assertThat(encode(row(1L, null, null, null), row(2L, "", null, null)))
+                .isEqualTo("\"1\",\\N,\\N,\\N\n\"2\",\"\",\\N,\\N\n");
+    }
+
+    @Test
+    void theTextNullIsNotANull() {
+        assertThat(encode(row(1L, "\\N", null, null))).isEqualTo("\"1\",\"\\\\N\",\\N,\\N\n");
+    }
+
+    @Test
+    void quotesBackslashesAndLineBreaksAreEscaped() {
+        assertThat(encode(row(1L, "say \"hi\"\\ \n\r,", null, null)))
+                .isEqualTo("\"1\",\"say \\\"hi\\\"\\\\ \\n\\r,\",\\N,\\N\n");
+    }
+
+    @Test
+    void nulBytesAreEscaped() {
+        assertThat(encode(row(1L, "a\0b", null, null))).isEqualTo("\"1\",\"a\\0b\",\\N,\\N\n");
+    }
+
+    @Test
+    void booleansAreOneAndZero() {
+        assertThat(encode(row(1L, "x", null, true), row(2L, "y", null, false)))
+                .isEqualTo("\"1\",\"x\",\\N,\"1\"\n\"2\",\"y\",\\N,\"0\"\n");
+    }
+
+    @Test
+    void bytesAreWrittenRawWithTheirSpecialBytesEscaped() {
+        byte[] encoded = MySqlLoadDataItemWriter.encode(List.of(row(1L, "x", new byte[]{0, '"', '\\', '\n', -1}, null)),
+                new int[]{2});
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.writeBytes(new byte[]{'"', '\\', '0', '\\', '"', '\\', '\\', '\\', 'n', -1, '"', '\n'});
+        assertThat(encoded).containsExactly(expected.toByteArray());
+    }
+
+    private static String encode(TransferRow... rows) {
+        return new String(MySqlLoadDataItemWriter.encode(List.of(rows), new int[]{0, 1, 2, 3}), StandardCharsets.UTF_8);
+    }
+
+    private static TransferRow row(Object... values) {
+        return new TransferRow(SCHEMA, values);
+    }
+}
@@ -0,0 +1,62 @@
+package ai.dataanalytic.databridge.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PostgresCopyItemWriterTest {
+
+    private static final RowSchema SCHEMA = new RowSchema(new String[]{"id", "name", "payload", "active"},
+            new int[]{Types.BIGINT, Types.VARCHAR, Types.VARBINARY, Types.BOOLEAN});
+
+    @Test
+    void nullIsAnUnquotedEmptyFieldAndEmptyStringIsQuoted() {
+        assertThat(csv(row(1L, null, null, null), row(2L, "", null, null)))
+                .isEqualTo("\"1\",,,\n\"2\",\"\",,\n");
+    }
+
+    @Test
+    void quotesAreDoubledAndBackslashesKept() {
+        assertThat(csv(row(1L, "say \"hi\"", null, null), row(2L, "C:\\temp\\N", null, null)))
+                .isEqualTo("\"1\",\"say \"\"hi\"\"\",,\n\"2\",\"C:\\temp\\N\",,\n");
+    }
+
+    @Test
+    void lineBreaksAndSeparatorsStayInsideTheQuotes() {
+        assertThat(csv(row(1L, "a,b\nc\r\n\\.", null, null))).isEqualTo("\"1\",\"a,b\nc\r\n\\.\",,\n");
+    }
+
+    @Test
+    void bytesAreWrittenAsByteaHexAndBooleansAsText() {
+        assertThat(csv(row(1L, "x", new byte[]{0, 15, -1}, true), row(2L, "y", new byte[0], false)))
+                .isEqualTo("\"1\",\"x\",\"\\x000fff\",\"true\"\n\"2\",\"y\",\"\\x\",\"false\"\n");
+    }
+
+    @Test
+    void destinationOrderFollowsThePositions() {
+        String csv = new String(PostgresCopyItemWriter.toCsv(List.of(row(1L, "a", null, true)), new int[]{3, 1, 0}),
+                StandardCharsets.UTF_8);
+
+        assertThat(csv).isEqualTo("\"true\",\"a\",\"1\"\n");
+    }
+
+    @Test
+    void nulCharactersAreRejectedWithTheColumnName() {
+        assertThatThrownBy(() -> csv(row(1L, "a\0b", null, null)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("name");
+    }
+
+    private static String csv(TransferRow... rows) {
+        return new String(PostgresCopyItemWriter.toCsv(List.of(rows), new int[]{0, 1, 2, 3}), StandardCharsets.UTF_8);
+    }
+
+    private static TransferRow row(Object... values) {
+        return new TransferRow(SCHEMA, values);
+    }
+}
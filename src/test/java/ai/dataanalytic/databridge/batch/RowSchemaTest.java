@@ -0,0 +1,101 @@
+package ai.dataanalytic.databridge.batch;
+
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class RowSchemaTest {
+
+    private static final RowSchema SOURCE = schema("ID", "Name", "amount");
+
+    @Test
+    void destinationColumnsAreMatchedIgnoringCase() {
+        assertThat(SOURCE.destinationPositionsOf(List.of("amount", "id", "name"))).containsExactly(2, 0, 1);
+    }
+
+    @Test
+    void destinationColumnsMissingFromTheSourceFail() {
+        assertThatThrownBy(() -> SOURCE.destinationPositionsOf(List.of("id", "name", "amount", "created_at")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("[created_at]");
+    }
+
+    @Test
+    void sourceColumnsMissingFromTheDestinationFail() {
+        assertThatThrownBy(() -> SOURCE.destinationPositionsOf(List.of("id", "name")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("[amount]");
+    }
+
+    @Test
+    void rowNumberColumnOfThePaginationIsNotData() {
+        assertThat(schema("id", SqlDialect.ROW_NUMBER_ALIAS).destinationPositionsOf(List.of("id"))).containsExactly(0);
+    }
+
+    @Test
+    void schemasOfDifferentReadersWithTheSameColumnsAreEqual() {
+        RowSchema other = schema("ID", "Name", "amount");
+
+        assertThat(other).isEqualTo(SOURCE).hasSameHashCodeAs(SOURCE);
+        assertThat(schema("ID", "Name")).isNotEqualTo(SOURCE);
+    }
+
+    @Test
+    void statementSetterBindsByPositionAndRejectsMismatchedColumns() throws Exception {
+        PreparedStatement ps = mock(PreparedStatement.class);
+        TransferRowPreparedStatementSetter setter = new TransferRowPreparedStatementSetter(List.of("amount", "id", "name"));
+
+        setter.setValues(new TransferRow(SOURCE, new Object[]{"1", "a", "10"}), ps);
+        setter.setValues(new TransferRow(schema("ID", "Name", "amount"), new Object[]{"2", "b", "20"}), ps);
+
+        verify(ps).setString(1, "10");
+        verify(ps).setString(2, "1");
+        verify(ps).setString(3, "a");
+        verify(ps).setString(2, "2");
+        assertThatThrownBy(() -> new TransferRowPreparedStatementSetter(List.of("id", "name", "note"))
+                .setValues(new TransferRow(SOURCE, new Object[]{1L, "a", 10}), ps))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("[note]");
+    }
+
+    @Test
+    void mapperReadsTheSchemaOnceAndKeepsTheValueTypes() {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:h2:mem:row-mapper", "sa", "", true);
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.execute("CREATE TABLE t (id BIGINT, amount DOUBLE PRECISION, name VARCHAR(10))");
+            jdbcTemplate.update("INSERT INTO t VALUES (1, 2.5, 'a'), (2, NULL, NULL)");
+
+            List<TransferRow> rows = jdbcTemplate.query("SELECT id, amount, name FROM t ORDER BY id", new TransferRowMapper());
+
+            assertThat(rows).hasSize(2);
+            assertThat(rows.get(1).getSchema()).isSameAs(rows.get(0).getSchema());
+            assertThat(rows.get(0).getSchema().getNames()).containsExactly("ID", "AMOUNT", "NAME");
+            assertThat(rows.get(0).getSchema().getSqlType(0)).isEqualTo(Types.BIGINT);
+            assertThat(rows.get(0).getLong(0)).isEqualTo(1L);
+            assertThat(rows.get(0).getDouble(1)).isEqualTo(2.5d);
+            assertThat(rows.get(0).get(2)).isEqualTo("a");
+            assertThat(rows.get(1).isNull(1)).isTrue();
+            assertThat(rows.get(1).isNull(2)).isTrue();
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private static RowSchema schema(String... names) {
+        int[] types = new int[names.length];
+        Arrays.fill(types, Types.OTHER);
+        return new RowSchema(names, types);
+    }
+}
@@ -0,0 +1,38 @@
+package ai.dataanalytic.databridge.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Types;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlServerBulkCopyItemWriterTest {
+
+    private static final RowSchema SCHEMA = new RowSchema(new String[]{"ID", "Name", "payload", "active"},
+            new int[]{Types.BIGINT, Types.VARCHAR, Types.VARBINARY, Types.BIT});
+
+    @Test
+    void rowsFollowTheDestinationColumnsAndKeepTheirValues() {
+        byte[] payload = {0, 15, -1};
+        SqlServerBulkCopyItemWriter.ChunkBulkData data = new SqlServerBulkCopyItemWriter.ChunkBulkData(
+                List.of("active", "name", "payload", "id"),
+                new int[]{Types.BIT, Types.NVARCHAR, Types.VARBINARY, Types.BIGINT},
+                new int[]{1, 50, 16, 19}, new int[]{0, 0, 0, 0},
+                List.of(new TransferRow(SCHEMA, new Object[]{1L, "say \"hi\"\\\0", payload, true}),
+                        new TransferRow(SCHEMA, new Object[]{2L, "", null, null})),
+                new int[]{3, 1, 2, 0});
+
+        assertThat(data.getColumnOrdinals()).containsExactly(1, 2, 3, 4);
+        assertThat(data.getColumnName(2)).isEqualTo("name");
+        assertThat(data.getColumnType(1)).isEqualTo(Types.BIT);
+        assertThat(data.getPrecision(2)).isEqualTo(50);
+
+        assertThat(data.next()).isTrue();
+        // Texto, bytes y booleanos llegan tal cual: el driver los envía con el tipo de la columna
+        assertThat(data.getRowData()).containsExactly(true, "say \"hi\"\\\0", payload, 1L);
+        assertThat(data.next()).isTrue();
+        assertThat(data.getRowData()).containsExactly(null, "", null, 2L);
+        assertThat(data.next()).isFalse();
+    }
+}
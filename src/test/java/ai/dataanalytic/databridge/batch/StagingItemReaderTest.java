@@ -0,0 +1,207 @@
+package ai.dataanalytic.databridge.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class StagingItemReaderTest {
+
+    private static final RowSchema SCHEMA = new RowSchema(new String[]{"id", "name"}, new int[]{Types.BIGINT, Types.VARCHAR});
+
+    @TempDir
+    Path stagingRoot;
+
+    @Test
+    void valuesKeepTheirTypeThroughASegment() throws Exception {
+        Timestamp timestamp = Timestamp.valueOf("2024-03-01 10:15:30.123456789");
+        List<Object> values = Arrays.asList(null, "ñ\u0000\"x", 1L, 2, (short) 3, (byte) 4, 5.5d, 6.5f,
+                new BigDecimal("10.50"), new BigInteger("123456789012345678901234567890"), true, new byte[]{0, -1, 127},
+                timestamp, Date.valueOf("2024-03-01"), Time.valueOf("10:15:30"), LocalDate.of(2024, 3, 1),
+                LocalDateTime.of(2024, 3, 1, 10, 15, 30, 1), LocalTime.of(10, 15, 30, 5), OffsetDateTime.parse("2024-03-01T10:15:30+02:00"),
+                UUID.randomUUID(), "x".repeat(70_000));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (Object value : values) {
+                StagingItemReader.writeValue(out, value);
+            }
+            // Un tipo desconocido viaja como texto
+            StagingItemReader.writeValue(out, new StringBuilder("driver type"));
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        List<Object> decoded = new ArrayList<>();
+        for (int i = 0; i <= values.size(); i++) {
+            decoded.add(StagingItemReader.readValue(in));
+        }
+
+        assertThat(decoded.subList(0, values.size())).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(values);
+        assertThat(((Timestamp) decoded.get(values.indexOf(timestamp))).getNanos()).isEqualTo(123456789);
+        assertThat(decoded.get(values.size())).isEqualTo("driver type");
+    }
+
+    @Test
+    void rowsSpilledToDiskAreReadBackInOrder() throws Exception {
+        SourceReader source = new SourceReader(rows(10), -1);
+        Path directory = stagingRoot.resolve("job").resolve("partition0");
+        StagingItemReader reader = new StagingItemReader(source, directory, 2, 2);
+
+        reader.open(new ExecutionContext());
+        // El buffer solo admite un lote: el resto se escribe en segmentos mientras nadie consume
+        await().atMost(5, TimeUnit.SECONDS).until(() -> source.closed);
+        assertThat(segments(directory)).isNotEmpty();
+        if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(directory))).isEqualTo("rwx------");
+        }
+
+        assertThat(readAll(reader)).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+        reader.close();
+        assertThat(directory).doesNotExist();
+    }
+
+    @Test
+    void restartLoadsTheUncommittedRowsFromTheStagedSource() throws Exception {
+        SourceReader source = new SourceReader(rows(10), -1);
+        Path directory = stagingRoot.resolve("job").resolve("partition0");
+        StagingItemReader reader = new StagingItemReader(source, directory, 2, 2);
+        reader.open(new ExecutionContext());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> source.closed);
+
+        reader.read();
+        reader.read();
+        reader.read();
+        reader.update(new ExecutionContext());
+        reader.read();
+        // El paso falla con la fila 3 sin confirmar
+        reader.close();
+        assertThat(StagingItemReader.isStaged(directory)).isTrue();
+
+        SourceReader untouched = new SourceReader(List.of(), -1);
+        StagingItemReader restarted = new StagingItemReader(untouched, directory, 2, 2);
+        restarted.open(new ExecutionContext());
+
+        assertThat(readAll(restarted)).containsExactlyInAnyOrder(3L, 4L, 5L, 6L, 7L, 8L, 9L);
+        assertThat(untouched.opened).isFalse();
+        restarted.close();
+        assertThat(directory).doesNotExist();
+    }
+
+    @Test
+    void failureBeforeTheSourceIsStagedDiscardsTheDirectory() throws Exception {
+        SourceReader source = new SourceReader(rows(10), 5);
+        Path directory = stagingRoot.resolve("job").resolve("partition0");
+        StagingItemReader reader = new StagingItemReader(source, directory, 2, 2);
+        reader.open(new ExecutionContext());
+
+        assertThatThrownBy(() -> readAll(reader)).isInstanceOf(ItemStreamException.class)
+                .hasRootCauseMessage("source failed");
+        reader.close();
+
+        assertThat(directory).doesNotExist();
+        assertThat(StagingItemReader.isStaged(directory)).isFalse();
+    }
+
+    @Test
+    void segmentsOfAnotherFormatAreNotRead() throws Exception {
+        Path directory = stagingRoot.resolve("job").resolve("partition0");
+        Files.createDirectories(directory);
+        Files.write(directory.resolve("segment-00000000"), new byte[]{(byte) 0xAC, (byte) 0xED, 0, 5});
+        Files.createFile(directory.resolve("source-complete"));
+        StagingItemReader reader = new StagingItemReader(new SourceReader(List.of(), -1), directory, 2, 2);
+        reader.open(new ExecutionContext());
+
+        assertThatThrownBy(reader::read).isInstanceOf(java.io.IOException.class);
+    }
+
+    private static List<Long> readAll(StagingItemReader reader) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        TransferRow row;
+        while ((row = reader.read()) != null) {
+            ids.add((Long) row.get(0));
+        }
+        return ids;
+    }
+
+    private static List<Path> segments(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("segment-")).toList();
+        }
+    }
+
+    private static List<TransferRow> rows(int count) {
+        List<TransferRow> rows = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            rows.add(new TransferRow(SCHEMA, new Object[]{i, "row " + i}));
+        }
+        return rows;
+    }
+
+    /**
+     * Source that returns the given rows and can fail at a position.
+     */
+    private static final class SourceReader implements ItemStreamReader<TransferRow> {
+
+        private final List<TransferRow> rows;
+
+        private final int failAt;
+
+        private int position;
+
+        private volatile boolean opened;
+
+        private volatile boolean closed;
+
+        SourceReader(List<TransferRow> rows, int failAt) {
+            this.rows = rows;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public void open(ExecutionContext executionContext) {
+            opened = true;
+        }
+
+        @Override
+        public TransferRow read() {
+            if (position == failAt) {
+                throw new IllegalStateException("source failed");
+            }
+            return position < rows.size() ? rows.get(position++) : null;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
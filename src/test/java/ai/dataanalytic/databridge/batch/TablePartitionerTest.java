@@ -0,0 +1,163 @@
+package ai.dataanalytic.databridge.batch;
+
+import ai.dataanalytic.querybridge.service.SchemaDiscoveryService;
+import ai.dataanalytic.querybridge.service.SchemaDiscoveryService.KeyColumn;
+import ai.dataanalytic.sharedlibrary.dialect.AnsiSqlDialect;
+import ai.dataanalytic.sharedlibrary.dialect.MySqlDialect;
+import ai.dataanalytic.sharedlibrary.dialect.PostgreSqlDialect;
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TablePartitionerTest {
+
+    @Test
+    void keyRangesCoverEveryKeyExactlyOnce() {
+        Map<String, ExecutionContext> partitions = partitionByKey(new AnsiSqlDialect(), 1L, 10L, 4);
+
+        assertThat(partitions).hasSize(4);
+        assertThat(partitions.values()).allSatisfy(context ->
+                assertThat(context.getString(TablePartitioner.STRATEGY)).isEqualTo("key-range"));
+        // Las claves fuera de [MIN, MAX] caen en los extremos abiertos
+        for (long key = -100; key <= 100; key++) {
+            assertThat(matching(partitions, key)).as("partitions holding key %d", key).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void keyRangesAreOpenAtBothEnds() {
+        Map<String, ExecutionContext> partitions = partitionByKey(new AnsiSqlDialect(), 1L, 10L, 4);
+        List<String> predicates = predicates(partitions);
+
+        assertThat(predicates).contains("\"id\" < 3", "\"id\" >= 3 AND \"id\" < 5", "\"id\" >= 5 AND \"id\" < 7", "\"id\" >= 7");
+    }
+
+    @Test
+    void keyRangesNeverOutnumberTheKeys() {
+        Map<String, ExecutionContext> partitions = partitionByKey(new AnsiSqlDialect(), 5L, 6L, 8);
+
+        assertThat(predicates(partitions)).containsExactlyInAnyOrder("\"id\" < 6", "\"id\" >= 6");
+    }
+
+    @Test
+    void singleKeyValueGivesOnePartitionWithoutPredicate() {
+        Map<String, ExecutionContext> partitions = partitionByKey(new AnsiSqlDialect(), 7L, 7L, 4);
+
+        assertThat(partitions).hasSize(1);
+        assertThat(partitions.get("partition0").containsKey(TablePartitioner.PREDICATE)).isFalse();
+    }
+
+    @Test
+    void integralDecimalKeysAreSplitByRange() {
+        Map<String, ExecutionContext> partitions = partitionByKey(new AnsiSqlDialect(), new BigDecimal("0"),
+                new BigDecimal("99"), 3);
+
+        assertThat(partitions).hasSize(3);
+        for (long key = -10; key <= 110; key++) {
+            assertThat(matching(partitions, key)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void nonIntegerKeysFallBackToHashBuckets() {
+        Map<String, ExecutionContext> partitions = partitionByKey(new MySqlDialect(), "a", "z", 3);
+
+        assertThat(partitions).hasSize(3);
+        assertThat(predicates(partitions)).containsExactlyInAnyOrder(
+                "MOD(CRC32(CONCAT_WS('|', `id`)), 3) = 0",
+                "MOD(CRC32(CONCAT_WS('|', `id`)), 3) = 1",
+                "MOD(CRC32(CONCAT_WS('|', `id`)), 3) = 2");
+        assertThat(partitions.values()).allSatisfy(context ->
+                assertThat(context.getString(TablePartitioner.STRATEGY)).isEqualTo("hash"));
+    }
+
+    @Test
+    void tablesWithoutHashFunctionAreCopiedWhole() {
+        Map<String, ExecutionContext> partitions = partitionByKey(new AnsiSqlDialect(), "a", "z", 3);
+
+        assertThat(partitions).hasSize(1);
+        assertThat(partitions.get("partition0").getString(TablePartitioner.STRATEGY)).isEqualTo("none");
+    }
+
+    @Test
+    void hashPredicatesKeepOneBucket() {
+        List<String> columns = List.of("a", "b");
+
+        assertThat(new PostgreSqlDialect().hashPartitionPredicate("t", columns, 4, 1))
+                .isEqualTo("mod(hashtext(concat_ws('|', \"a\", \"b\"))::bigint + 2147483648, 4) = 1");
+        assertThat(new MySqlDialect().hashPartitionPredicate("t", columns, 4, 1))
+                .isEqualTo("MOD(CRC32(CONCAT_WS('|', `a`, `b`)), 4) = 1");
+        assertThat(new AnsiSqlDialect().hashPartitionPredicate("t", columns, 4, 1)).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void keyIsLookedUpInTheSchemaOfTheConnection() {
+        SchemaDiscoveryService schemaDiscoveryService = mock(SchemaDiscoveryService.class);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(schemaDiscoveryService.findKeyColumns("t", jdbcTemplate)).thenReturn(List.of());
+        when(jdbcTemplate.query(anyString(), any(ResultSetExtractor.class))).thenReturn(List.of("a", "b"));
+
+        Map<String, ExecutionContext> partitions = new TablePartitioner(schemaDiscoveryService, jdbcTemplate,
+                new MySqlDialect(), "t").partition(2);
+
+        verify(schemaDiscoveryService).findKeyColumns("t", jdbcTemplate);
+        // Sin clave se reparte por el hash de todas las columnas
+        assertThat(predicates(partitions)).containsExactlyInAnyOrder(
+                "MOD(CRC32(CONCAT_WS('|', `a`, `b`)), 2) = 0",
+                "MOD(CRC32(CONCAT_WS('|', `a`, `b`)), 2) = 1");
+    }
+
+    private static Map<String, ExecutionContext> partitionByKey(SqlDialect dialect, Object min, Object max, int gridSize) {
+        SchemaDiscoveryService schemaDiscoveryService = mock(SchemaDiscoveryService.class);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(schemaDiscoveryService.findKeyColumns("t", jdbcTemplate)).thenReturn(List.of(new KeyColumn("id", Types.BIGINT, "int8")));
+        Map<String, Object> bounds = new HashMap<>();
+        bounds.put("min_key", min);
+        bounds.put("max_key", max);
+        when(jdbcTemplate.queryForMap(anyString())).thenReturn(bounds);
+        return new TablePartitioner(schemaDiscoveryService, jdbcTemplate, dialect, "t").partition(gridSize);
+    }
+
+    private static List<String> predicates(Map<String, ExecutionContext> partitions) {
+        return partitions.values().stream().map(context -> context.getString(TablePartitioner.PREDICATE)).toList();
+    }
+
+    private static long matching(Map<String, ExecutionContext> partitions, long key) {
+        return predicates(partitions).stream().filter(predicate -> holds(predicate, key)).count();
+    }
+
+    /**
+     * Evaluates a key range predicate ({@code "id" >= a AND "id" < b}) for one key.
+     */
+    private static boolean holds(String predicate, long key) {
+        for (String bound : predicate.split(" AND ")) {
+            String[] parts = bound.split(" ");
+            long value = Long.parseLong(parts[2]);
+            boolean inside = switch (parts[1]) {
+                case "<" -> key < value;
+                case ">=" -> key >= value;
+                default -> throw new IllegalArgumentException(predicate);
+            };
+            if (!inside) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
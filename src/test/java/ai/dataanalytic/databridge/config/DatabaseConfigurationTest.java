@@ -0,0 +1,37 @@
+package ai.dataanalytic.databridge.config;
+
+import ai.dataanalytic.sharedlibrary.dialect.PostgreSqlDialect;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DatabaseConfigurationTest {
+
+    private static final List<String> COLUMNS = List.of("OrderId", "LineNo", "amount");
+
+    @Test
+    void requestedKeysTakeTheDestinationSpelling() {
+        List<String> keys = DatabaseConfiguration.destinationKeyColumns(COLUMNS, List.of("orderid", " LINENO"), "lines");
+
+        assertThat(keys).containsExactly("OrderId", "LineNo");
+        // La clave no se actualiza y se cita como la escribe el destino
+        assertThat(new PostgreSqlDialect().upsertSql("lines", COLUMNS, keys))
+                .endsWith("ON CONFLICT (\"OrderId\", \"LineNo\") DO UPDATE SET \"amount\" = EXCLUDED.\"amount\"");
+    }
+
+    @Test
+    void keysThatAreNotDestinationColumnsAreRejected() {
+        assertThatThrownBy(() -> DatabaseConfiguration.destinationKeyColumns(COLUMNS, List.of("order_id"), "lines"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("order_id");
+    }
+
+    @Test
+    void repeatedKeysAreKeptOnce() {
+        assertThat(DatabaseConfiguration.destinationKeyColumns(COLUMNS, List.of("OrderId", "ORDERID"), "lines"))
+                .containsExactly("OrderId");
+    }
+}
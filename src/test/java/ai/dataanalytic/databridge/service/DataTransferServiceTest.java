@@ -0,0 +1,263 @@
+package ai.dataanalytic.databridge.service;
+
+import ai.dataanalytic.databridge.batch.KeysetTransferItemReader;
+import ai.dataanalytic.databridge.batch.StagingItemReader;
+import ai.dataanalytic.databridge.dto.TransferStatus;
+import ai.dataanalytic.querybridge.config.DataSourcePoolRegistry;
+import ai.dataanalytic.querybridge.service.ConnectionHandle;
+import ai.dataanalytic.querybridge.service.RowCountService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.launch.JobOperator;
+import org.springframework.batch.core.repository.JobRestartException;
+import org.springframework.core.task.TaskRejectedException;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class DataTransferServiceTest {
+
+    private static final JobInstance INSTANCE = new JobInstance(1L, "dataTransferJob");
+
+    private final JobLauncher asyncJobLauncher = mock(JobLauncher.class);
+
+    private final JobLauncher syncJobLauncher = mock(JobLauncher.class);
+
+    private final JobExplorer jobExplorer = mock(JobExplorer.class);
+
+    private final JobOperator jobOperator = mock(JobOperator.class);
+
+    private final Job job = mock(Job.class);
+
+    private final DataSourcePoolRegistry poolRegistry = mock(DataSourcePoolRegistry.class);
+
+    private final ConnectionHandle source = new ConnectionHandle("u1", "src", "postgresql", mock(DataSource.class));
+
+    private final ConnectionHandle destination = new ConnectionHandle("u1", "dst", "postgresql", mock(DataSource.class));
+
+    @TempDir
+    Path stagingDirectory;
+
+    private DataTransferService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DataTransferService(asyncJobLauncher, syncJobLauncher, jobExplorer, jobOperator, job,
+                mock(RowCountService.class), mock(WatermarkService.class), poolRegistry, stagingDirectory.toString());
+        when(poolRegistry.acquire(any(DataSource.class))).thenReturn(true);
+    }
+
+    @Test
+    void restartIsQueuedOnTheAsynchronousLauncher() throws Exception {
+        JobExecution failed = execution(7L, BatchStatus.FAILED);
+        register(failed);
+        JobExecution restarted = execution(8L, BatchStatus.STARTING);
+        when(asyncJobLauncher.run(job, failed.getJobParameters())).thenReturn(restarted);
+
+        assertThat(service.restart(7L, "u1", source, destination).getExecutionId()).isEqualTo(8L);
+
+        verify(asyncJobLauncher).run(job, failed.getJobParameters());
+        verifyNoInteractions(syncJobLauncher, jobOperator);
+        // Las conexiones quedan retenidas hasta que el listener del job las libere
+        verify(poolRegistry, never()).release(any(DataSource.class));
+        ConnectionHolder.removeJob("job-1");
+    }
+
+    @Test
+    void rejectedRestartReleasesItsConnections() throws Exception {
+        JobExecution failed = execution(7L, BatchStatus.FAILED);
+        register(failed);
+        JobExecution rejected = execution(8L, BatchStatus.FAILED);
+        rejected.setExitStatus(ExitStatus.FAILED.addExitDescription(new TaskRejectedException("queue full")));
+        when(asyncJobLauncher.run(job, failed.getJobParameters())).thenReturn(rejected);
+
+        assertThatThrownBy(() -> service.restart(7L, "u1", source, destination))
+                .isInstanceOf(TaskRejectedException.class);
+
+        verify(poolRegistry, times(2)).release(any(DataSource.class));
+        assertThat(ConnectionHolder.getJdbcTemplate("job-1", "source")).isNull();
+    }
+
+    @Test
+    void onlyTheLatestExecutionCanBeRestarted() throws Exception {
+        JobExecution failed = execution(7L, BatchStatus.FAILED);
+        when(jobExplorer.getJobExecution(7L)).thenReturn(failed);
+        when(jobExplorer.getLastJobExecution(INSTANCE)).thenReturn(execution(9L, BatchStatus.FAILED));
+
+        assertThatThrownBy(() -> service.restart(7L, "u1", source, destination))
+                .isInstanceOf(JobRestartException.class);
+        verifyNoInteractions(asyncJobLauncher);
+    }
+
+    @Test
+    void transfersOfOtherUsersAreNotFound() throws Exception {
+        register(execution(7L, BatchStatus.FAILED));
+
+        assertThat(service.restart(7L, "u2", source, destination)).isNull();
+        verifyNoInteractions(asyncJobLauncher);
+    }
+
+    @Test
+    void statusAddsUpTheWorkerPartitions() {
+        JobExecution running = execution(7L, BatchStatus.STARTED, new JobParametersBuilder()
+                .addString("jobId", "job-1")
+                .addString("tableName", "orders")
+                .addString("userId", "u1", false)
+                .addLong("estimatedRows", 1000L, false)
+                .toJobParameters());
+        running.setStartTime(LocalDateTime.now().minusSeconds(10));
+        worker(running, "dataTransferManagerStep", BatchStatus.STARTED, 0);
+        worker(running, "dataTransferWorkerStep:partition0", BatchStatus.COMPLETED, 300).setReadCount(300);
+        worker(running, "dataTransferWorkerStep:partition1", BatchStatus.STARTED, 200).setReadCount(250);
+        register(running);
+
+        TransferStatus status = service.getStatus(7L, "u1");
+
+        assertThat(status.getStatus()).isEqualTo("STARTED");
+        assertThat(status.getReadCount()).isEqualTo(550);
+        assertThat(status.getWriteCount()).isEqualTo(500);
+        assertThat(status.getPartitions()).isEqualTo(2);
+        assertThat(status.getCompletedPartitions()).isEqualTo(1);
+        assertThat(status.getRunningPartitions()).containsExactly("dataTransferWorkerStep:partition1");
+        assertThat(status.getEstimatedTotalRows()).isEqualTo(1000L);
+        // ~50 filas/s durante 10 s: quedan ~500 filas, unos 10 s
+        assertThat(status.getRowsPerSecond()).isBetween(40.0, 51.0);
+        assertThat(status.getEtaSeconds()).isBetween(9L, 13L);
+        assertThat(service.getStatus(7L, "u2")).isNull();
+    }
+
+    @Test
+    void finishedTransfersHaveNoEta() {
+        JobExecution completed = execution(7L, BatchStatus.COMPLETED);
+        completed.setStartTime(LocalDateTime.now().minusSeconds(10));
+        completed.setEndTime(LocalDateTime.now());
+        completed.addFailureException(new IllegalStateException("ignored"));
+        register(completed);
+
+        TransferStatus status = service.getStatus(7L, "u1");
+
+        assertThat(status.getEtaSeconds()).isNull();
+        assertThat(status.getMessage()).isEqualTo("ignored");
+    }
+
+    @Test
+    void stopAsksTheOperatorAndReturnsTheUpdatedStatus() throws Exception {
+        when(jobExplorer.getJobExecution(7L)).thenReturn(execution(7L, BatchStatus.STARTED), execution(7L, BatchStatus.STOPPING));
+
+        assertThat(service.stop(7L, "u1").getStatus()).isEqualTo("STOPPING");
+        verify(jobOperator).stop(7L);
+
+        assertThat(service.stop(7L, "u2")).isNull();
+        verify(jobOperator, times(1)).stop(7L);
+    }
+
+    @Test
+    void partitionsThatWouldCopyCommittedRowsAgainCannotRestart() {
+        JobExecution failed = execution(7L, BatchStatus.FAILED);
+        worker(failed, "dataTransferWorkerStep:partition0", BatchStatus.COMPLETED, 500);
+        worker(failed, "dataTransferWorkerStep:partition1", BatchStatus.FAILED, 0);
+        worker(failed, "dataTransferWorkerStep:partition2", BatchStatus.FAILED, 200);
+        register(failed);
+
+        assertThatThrownBy(() -> service.restart(7L, "u1", source, destination))
+                .isInstanceOf(JobRestartException.class)
+                .hasMessageContaining("partition2");
+        verifyNoInteractions(asyncJobLauncher);
+    }
+
+    @Test
+    void partitionsWithNothingCommittedCanRestart() throws Exception {
+        JobExecution failed = execution(7L, BatchStatus.FAILED);
+        worker(failed, "dataTransferWorkerStep:partition0", BatchStatus.COMPLETED, 500);
+        worker(failed, "dataTransferWorkerStep:partition1", BatchStatus.FAILED, 0);
+        assertRestarts(failed);
+    }
+
+    @Test
+    void checkpointedPartitionsCanRestart() throws Exception {
+        JobExecution failed = execution(7L, BatchStatus.FAILED);
+        StepExecution step = worker(failed, "dataTransferWorkerStep:partition0", BatchStatus.FAILED, 200);
+        step.getExecutionContext().put(KeysetTransferItemReader.DEFAULT_NAME + ".lastKey", new ArrayList<>(List.of(200L)));
+        assertRestarts(failed);
+    }
+
+    @Test
+    void upsertingTransfersCanRestart() throws Exception {
+        JobExecution failed = execution(7L, BatchStatus.STOPPED, new JobParametersBuilder()
+                .addString("jobId", "job-1")
+                .addString("upsert", "true")
+                .addString("userId", "u1", false)
+                .toJobParameters());
+        worker(failed, "dataTransferWorkerStep:partition0", BatchStatus.STOPPED, 200);
+        assertRestarts(failed);
+    }
+
+    @Test
+    void partitionsStagedWholeCanRestart() throws Exception {
+        JobExecution failed = execution(7L, BatchStatus.FAILED);
+        worker(failed, "dataTransferWorkerStep:partition0", BatchStatus.FAILED, 200);
+        Path directory = StagingItemReader.directory(stagingDirectory.toString(), "job-1", "dataTransferWorkerStep:partition0");
+        Files.createDirectories(directory);
+        Files.createFile(directory.resolve("source-complete"));
+        assertRestarts(failed);
+    }
+
+    private void assertRestarts(JobExecution failed) throws Exception {
+        register(failed);
+        when(asyncJobLauncher.run(job, failed.getJobParameters())).thenReturn(execution(8L, BatchStatus.STARTING));
+
+        assertThat(service.restart(7L, "u1", source, destination).getExecutionId()).isEqualTo(8L);
+        ConnectionHolder.removeJob("job-1");
+    }
+
+    private static StepExecution worker(JobExecution execution, String name, BatchStatus status, long written) {
+        StepExecution step = execution.createStepExecution(name);
+        step.setStatus(status);
+        step.setWriteCount(written);
+        return step;
+    }
+
+    private void register(JobExecution execution) {
+        when(jobExplorer.getJobExecution(execution.getId())).thenReturn(execution);
+        when(jobExplorer.getLastJobExecution(INSTANCE)).thenReturn(execution);
+    }
+
+    static JobExecution execution(long id, BatchStatus status) {
+        return execution(id, status, new JobParametersBuilder()
+                .addString("jobId", "job-1")
+                .addString("tableName", "orders")
+                .addString("userId", "u1", false)
+                .toJobParameters());
+    }
+
+    static JobExecution execution(long id, BatchStatus status, JobParameters parameters) {
+        JobExecution execution = new JobExecution(INSTANCE, id, parameters);
+        execution.setStatus(status);
+        return execution;
+    }
+}
@@ -0,0 +1,130 @@
+package ai.dataanalytic.databridge.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchemaTransferServiceTest {
+
+    @Test
+    void referencedTablesComeFirst() {
+        Map<String, List<String>> dependencies = dependencies(
+                "order_lines", List.of("orders", "products"),
+                "orders", List.of("customers"),
+                "products", List.of(),
+                "customers", List.of());
+
+        List<String> ordered = SchemaTransferService.order(dependencies);
+
+        assertThat(ordered).containsExactlyInAnyOrder("order_lines", "orders", "products", "customers");
+        assertDependenciesComeFirst(ordered, dependencies);
+        assertThat(dependencies.get("order_lines")).containsExactly("orders", "products");
+    }
+
+    @Test
+    void cyclesRunOneTableAfterTheOther() {
+        Map<String, List<String>> dependencies = dependencies(
+                "employees", List.of("departments"),
+                "departments", List.of("employees", "locations"),
+                "locations", List.of());
+
+        List<String> ordered = SchemaTransferService.order(dependencies);
+
+        assertThat(ordered).hasSize(3).startsWith("locations");
+        assertDependenciesComeFirst(ordered, dependencies);
+        // La segunda tabla del ciclo espera a la primera, y la referencia que cerraba el ciclo desaparece
+        String first = ordered.get(1);
+        String second = ordered.get(2);
+        assertThat(dependencies.get(second)).contains(first);
+        assertThat(dependencies.get(first)).doesNotContain(second);
+        assertThat(dependencies.get("departments")).contains("locations");
+    }
+
+    @Test
+    void tablesReferencingACycleWaitForIt() {
+        Map<String, List<String>> dependencies = dependencies(
+                "a", List.of("b"),
+                "b", List.of("a"),
+                "c", List.of("a"),
+                "d", List.of());
+
+        List<String> ordered = SchemaTransferService.order(dependencies);
+
+        assertThat(ordered).containsExactly("a", "b", "d", "c");
+        assertThat(dependencies.get("c")).containsExactly("a");
+        assertDependenciesComeFirst(ordered, dependencies);
+    }
+
+    @Test
+    void tablesReferencingACycleWaitForItWhenListedFirst() {
+        Map<String, List<String>> dependencies = dependencies(
+                "c", List.of("a"),
+                "a", List.of("b"),
+                "b", List.of("a"));
+
+        List<String> ordered = SchemaTransferService.order(dependencies);
+
+        assertThat(ordered).containsExactly("a", "b", "c");
+        assertThat(dependencies.get("a")).isEmpty();
+        assertThat(dependencies.get("b")).containsExactly("a");
+        assertThat(dependencies.get("c")).containsExactly("a");
+        assertDependenciesComeFirst(ordered, dependencies);
+    }
+
+    @Test
+    void tablesBetweenTwoCyclesKeepTheirParents() {
+        Map<String, List<String>> dependencies = dependencies(
+                "y2", List.of("y1", "link"),
+                "link", List.of("x1"),
+                "y1", List.of("y2"),
+                "x1", List.of("x2"),
+                "x2", List.of("x1", "x1"),
+                "unknown_ref", List.of("not_selected"));
+
+        List<String> ordered = SchemaTransferService.order(dependencies);
+
+        assertThat(ordered).containsExactlyInAnyOrder("y2", "link", "y1", "x1", "x2", "unknown_ref");
+        assertDependenciesComeFirst(ordered, dependencies);
+        assertThat(dependencies.get("link")).containsExactly("x1");
+        assertThat(dependencies.get("x2")).containsExactly("x1");
+        assertThat(dependencies.get("unknown_ref")).isEmpty();
+        assertThat(ordered.indexOf("link")).isLessThan(Math.min(ordered.indexOf("y1"), ordered.indexOf("y2")));
+    }
+
+    @Test
+    void selfReferencesDoNotBlockTheTable() {
+        Map<String, List<String>> dependencies = dependencies(
+                "categories", List.of("categories"),
+                "products", List.of("categories"));
+
+        List<String> ordered = SchemaTransferService.order(dependencies);
+
+        assertThat(ordered).containsExactly("categories", "products");
+        assertThat(dependencies.get("categories")).isEmpty();
+        assertDependenciesComeFirst(ordered, dependencies);
+    }
+
+    /**
+     * Every table only waits for tables placed before it, so the chained copies cannot deadlock.
+     */
+    private static void assertDependenciesComeFirst(List<String> ordered, Map<String, List<String>> dependencies) {
+        for (int i = 0; i < ordered.size(); i++) {
+            assertThat(ordered.subList(0, i)).as("tables before %s", ordered.get(i))
+                    .containsAll(dependencies.get(ordered.get(i)));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, List<String>> dependencies(Object... entries) {
+        Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            dependencies.put((String) entries[i], new ArrayList<>((List<String>) entries[i + 1]));
+        }
+        return dependencies;
+    }
+}
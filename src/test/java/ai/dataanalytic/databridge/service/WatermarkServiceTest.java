@@ -0,0 +1,78 @@
+package ai.dataanalytic.databridge.service;
+
+import ai.dataanalytic.databridge.dto.TransferWatermark;
+import ai.dataanalytic.databridge.mongodb.repository.TransferWatermarkRepository;
+import ai.dataanalytic.sharedlibrary.dialect.PostgreSqlDialect;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WatermarkServiceTest {
+
+    private static final Instant MAX = Instant.parse("2024-03-01T10:15:30.123456Z");
+
+    private final TransferWatermarkRepository repository = mock(TransferWatermarkRepository.class);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    private final WatermarkService service = new WatermarkService(repository);
+
+    @Test
+    void timestampsWithTimeZoneKeepTheirInstant() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Object.class))).thenReturn(MAX.atOffset(ZoneOffset.ofHours(-7)));
+        when(repository.findById("u1:src:dst:orders")).thenReturn(Optional.of(watermark("2024-02-01T00:00:00.5+01:00")));
+
+        JobParameters parameters = addParameters();
+
+        assertThat(parameters.getString(WatermarkService.TO)).isEqualTo("2024-03-01T10:15:30.123456Z");
+        assertThat(parameters.getString(WatermarkService.FROM)).isEqualTo("2024-01-31T23:00:00.500Z");
+        assertThat(parameters.getString(WatermarkService.TYPE)).isEqualTo(WatermarkService.INSTANT);
+        assertThat(WatermarkService.parameterValue(parameters.getString(WatermarkService.TO), parameters.getString(WatermarkService.TYPE)))
+                .isEqualTo(MAX.atOffset(ZoneOffset.UTC));
+    }
+
+    @Test
+    void marksSavedAsLocalTimesAreReadInTheZoneThatSavedThem() {
+        LocalDateTime legacy = LocalDateTime.of(2024, 2, 1, 12, 0);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Object.class))).thenReturn(MAX.atOffset(ZoneOffset.UTC));
+        when(repository.findById("u1:src:dst:orders")).thenReturn(Optional.of(watermark(legacy)));
+
+        JobParameters parameters = addParameters();
+
+        assertThat(OffsetDateTime.parse(parameters.getString(WatermarkService.FROM)).toInstant())
+                .isEqualTo(legacy.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    @Test
+    void localTimestampsAndNumbersAreNotInstants() {
+        assertThat(WatermarkService.normalize(Timestamp.valueOf("2024-03-01 10:15:30"))).isEqualTo(LocalDateTime.of(2024, 3, 1, 10, 15, 30));
+        assertThat(WatermarkService.normalize(42)).isEqualTo(42L);
+        assertThat(WatermarkService.parameterValue("2024-03-01T10:15:30Z", null)).isEqualTo("2024-03-01T10:15:30Z");
+        assertThat(WatermarkService.parameterValue(42L, WatermarkService.INSTANT)).isEqualTo(42L);
+    }
+
+    private JobParameters addParameters() {
+        JobParametersBuilder builder = new JobParametersBuilder();
+        service.addParameters(builder, "u1", "src", "dst", "orders", "updated_at", jdbcTemplate, new PostgreSqlDialect());
+        return builder.toJobParameters();
+    }
+
+    private static TransferWatermark watermark(Object value) {
+        return new TransferWatermark("u1:src:dst:orders", "u1", "src", "dst", "orders", "updated_at", value, 1L, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,82 @@
+package ai.dataanalytic.querybridge.config;
+
+import ai.dataanalytic.sharedlibrary.dto.DatabaseConnectionRequest;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DataSourcePoolRegistryTest {
+
+    private final DynamicDataSourceManager manager = mock(DynamicDataSourceManager.class);
+
+    private final HikariDataSource pool = mock(HikariDataSource.class);
+
+    private final DataSourcePoolRegistry registry = new DataSourcePoolRegistry(manager, new PoolProperties());
+
+    private final DatabaseConnectionRequest credentials = new DatabaseConnectionRequest();
+
+    DataSourcePoolRegistryTest() {
+        credentials.setDatabaseType("postgresql");
+        credentials.setUserName("u");
+        credentials.setPassword("p");
+        when(manager.resolveJdbcUrl(any())).thenReturn("jdbc:postgresql://db/app");
+        when(manager.createDataSource(any(), anyString())).thenReturn(pool);
+    }
+
+    @Test
+    void poolsAreSharedAndCountedPerReference() {
+        DataSource first = registry.acquire(credentials);
+        DataSource second = registry.acquire(credentials);
+
+        assertThat(second).isSameAs(first);
+        assertThat(registry.getReferences(first)).isEqualTo(2);
+        registry.release(first);
+        assertThat(registry.getReferences(first)).isEqualTo(1);
+    }
+
+    @Test
+    void lastReleaseClosesThePoolOutsideTheMapLock() throws Exception {
+        DataSource dataSource = registry.acquire(credentials);
+        AtomicReference<Boolean> acquiredWhileClosing = new AtomicReference<>();
+        doAnswer(invocation -> {
+            // Con el cierre dentro del compute, otro hilo que toque la misma entrada quedaría bloqueado
+            acquiredWhileClosing.set(CompletableFuture.supplyAsync(() -> registry.acquire(dataSource)).get(5, TimeUnit.SECONDS));
+            return null;
+        }).when(pool).close();
+
+        registry.release(dataSource, true);
+
+        verify(pool).close();
+        assertThat(acquiredWhileClosing.get()).isFalse();
+        assertThat(registry.getPoolCount()).isZero();
+    }
+
+    @Test
+    void sweepClosesUnreferencedPoolsOutsideTheMapLock() throws Exception {
+        DataSource dataSource = registry.acquire(credentials);
+        registry.release(dataSource);
+        AtomicReference<Boolean> acquiredWhileClosing = new AtomicReference<>();
+        doAnswer(invocation -> {
+            acquiredWhileClosing.set(CompletableFuture.supplyAsync(() -> registry.acquire(dataSource)).get(5, TimeUnit.SECONDS));
+            return null;
+        }).when(pool).close();
+
+        registry.closeUnreferencedPools();
+
+        verify(pool).close();
+        assertThat(acquiredWhileClosing.get()).isFalse();
+        assertThat(registry.getPoolCount()).isZero();
+    }
+}
@@ -0,0 +1,193 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.querybridge.config.DataSourcePoolRegistry;
+import ai.dataanalytic.querybridge.dto.QueryRequest;
+import jakarta.servlet.http.HttpSession;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PermissionDeniedDataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DatabaseServiceImplTest {
+
+    @Mock
+    private DataSourcePoolRegistry dataSourcePoolRegistry;
+
+    @Mock
+    private UserDataSourceRegistry userDataSourceRegistry;
+
+    @Mock
+    private SchemaMetadataCache schemaMetadataCache;
+
+    @Mock
+    private Environment environment;
+
+    @Mock
+    private QueryValidationService queryValidationService;
+
+    @Mock
+    private QueryExecutionService queryExecutionService;
+
+    @Mock
+    private HttpSession session;
+
+    @InjectMocks
+    private DatabaseServiceImpl service;
+
+    private static final QueryValidationService.ParsedQuery PARSED =
+            new QueryValidationService.ParsedQuery("SELECT 1", "SELECT ?", "f1", "SELECT 1", Set.of());
+
+    private final ConnectionHandle handle = new ConnectionHandle("u1", "c1", "postgresql", mock(DataSource.class));
+
+    // Sin base de datos detrás: el dialecto no se puede averiguar
+    private final ConnectionHandle queryHandle = mock(ConnectionHandle.class);
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(session.getAttribute("userId")).thenReturn("u1");
+    }
+
+    @Test
+    void requestsHoldAPoolReferenceWhileTheyUseTheConnection() throws Exception {
+        when(userDataSourceRegistry.getOrCreate(eq("u1"), eq("c1"), any())).thenReturn(handle);
+        when(dataSourcePoolRegistry.acquire(any(DataSource.class))).thenReturn(true);
+        when(schemaMetadataCache.get(eq(handle), eq("tables"), any())).thenReturn(List.of("orders"));
+
+        assertThat(service.listTables(session, "c1").getBody()).containsExactly("orders");
+
+        InOrder order = inOrder(dataSourcePoolRegistry, schemaMetadataCache);
+        order.verify(dataSourcePoolRegistry).acquire(handle.getDataSource());
+        order.verify(schemaMetadataCache).get(eq(handle), eq("tables"), any());
+        order.verify(dataSourcePoolRegistry).release(handle.getDataSource());
+    }
+
+    @Test
+    void failedRequestsReleaseTheirReference() throws Exception {
+        when(userDataSourceRegistry.getOrCreate(eq("u1"), eq("c1"), any())).thenReturn(handle);
+        when(dataSourcePoolRegistry.acquire(any(DataSource.class))).thenReturn(true);
+        when(schemaMetadataCache.get(eq(handle), eq("tables"), any())).thenThrow(new SQLException("boom"));
+
+        assertThat(service.listTables(session, "c1").getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+
+        verify(dataSourcePoolRegistry).release(handle.getDataSource());
+    }
+
+    @Test
+    void connectionEvictedWhileOpeningIsResolvedAgain() throws Exception {
+        ConnectionHandle rebuilt = new ConnectionHandle("u1", "c1", "postgresql", mock(DataSource.class));
+        when(userDataSourceRegistry.getOrCreate(eq("u1"), eq("c1"), any())).thenReturn(handle, rebuilt);
+        when(dataSourcePoolRegistry.acquire(handle.getDataSource())).thenReturn(false);
+        when(dataSourcePoolRegistry.acquire(rebuilt.getDataSource())).thenReturn(true);
+        when(schemaMetadataCache.get(eq(rebuilt), eq("tables"), any())).thenReturn(List.of("orders"));
+
+        assertThat(service.listTables(session, "c1").getBody()).containsExactly("orders");
+
+        verify(dataSourcePoolRegistry, never()).release(handle.getDataSource());
+        verify(dataSourcePoolRegistry, times(1)).release(rebuilt.getDataSource());
+    }
+
+    @Test
+    void queriesThatCannotRunAreRejectedBeforeTheResponseIsCommitted() {
+        QueryRequest request = executableQuery();
+        when(queryExecutionService.start(eq("c1"), eq("q1"), any(), eq(queryHandle), eq(request), any()))
+                .thenThrow(new BadSqlGrammarException("StreamingQuery", "SELECT * FROM missing",
+                        new SQLException("relation \"missing\" does not exist", "42P01")))
+                .thenThrow(new QueryTimeoutException("timed out"))
+                .thenThrow(new CannotGetJdbcConnectionException("no connection"));
+
+        ResponseEntity<StreamingResponseBody> badSql = service.executeQuery(request, session, "c1");
+        assertThat(badSql.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(badSql.getHeaders().containsKey("X-Query-Id")).isFalse();
+        assertThat(service.executeQuery(request, session, "c1").getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+        assertThat(service.executeQuery(request, session, "c1").getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        // La consulta arrancada se queda con la referencia y la libera ella misma
+        verify(dataSourcePoolRegistry, never()).release(any(DataSource.class));
+    }
+
+    @Test
+    void startedQueriesAreStreamedUnderTheirId() throws Exception {
+        QueryRequest request = executableQuery();
+        QueryExecutionService.StartedQuery started = mock(QueryExecutionService.StartedQuery.class);
+        when(started.getQueryId()).thenReturn("q1");
+        when(queryExecutionService.start(eq("c1"), eq("q1"), any(), eq(queryHandle), eq(request), any())).thenReturn(started);
+
+        ResponseEntity<StreamingResponseBody> response = service.executeQuery(request, session, "c1");
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getFirst("X-Query-Id")).isEqualTo("q1");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        verify(started).writeTo(out);
+        verify(dataSourcePoolRegistry, never()).release(any(DataSource.class));
+    }
+
+    @Test
+    void duplicateQueryIdsReleaseTheReference() {
+        when(queryHandle.getDataSource()).thenReturn(mock(DataSource.class));
+        when(queryHandle.getUserId()).thenReturn("u1");
+        when(userDataSourceRegistry.getOrCreate(eq("u1"), eq("c1"), any())).thenReturn(queryHandle);
+        when(dataSourcePoolRegistry.acquire(any(DataSource.class))).thenReturn(true);
+        when(queryValidationService.validate(eq("SELECT 1"), any())).thenReturn(PARSED);
+        when(queryExecutionService.newQueryId("u1", "q1")).thenThrow(new IllegalStateException("Query already running: q1"));
+        QueryRequest request = new QueryRequest();
+        request.setQuery("SELECT 1");
+        request.setQueryId("q1");
+
+        assertThat(service.executeQuery(request, session, "c1").getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+
+        verify(dataSourcePoolRegistry).release(queryHandle.getDataSource());
+    }
+
+    @Test
+    void errorStatusesSplitClientAndServerFaults() {
+        assertThat(DatabaseServiceImpl.queryErrorStatus(new DataIntegrityViolationException("bad value")))
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(DatabaseServiceImpl.queryErrorStatus(new PermissionDeniedDataAccessException("denied", null)))
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(DatabaseServiceImpl.queryErrorStatus(new UncategorizedSQLException("q", "SELECT 1", new SQLException("?"))))
+                .isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    private QueryRequest executableQuery() {
+        when(queryHandle.getDataSource()).thenReturn(mock(DataSource.class));
+        when(queryHandle.getUserId()).thenReturn("u1");
+        when(userDataSourceRegistry.getOrCreate(eq("u1"), eq("c1"), any())).thenReturn(queryHandle);
+        when(dataSourcePoolRegistry.acquire(any(DataSource.class))).thenReturn(true);
+        when(queryValidationService.validate(eq("SELECT 1"), any())).thenReturn(PARSED);
+        when(queryExecutionService.newQueryId("u1", null)).thenReturn("q1");
+        QueryRequest request = new QueryRequest();
+        request.setQuery("SELECT 1");
+        return request;
+    }
+}
@@ -0,0 +1,77 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.querybridge.config.DataSourcePoolRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueryResultCacheTest {
+
+    private static final byte[] RESULT = "[{\"id\":1}]".getBytes(StandardCharsets.UTF_8);
+
+    private final DataSourcePoolRegistry poolRegistry = mock(DataSourcePoolRegistry.class);
+
+    private final ConnectionHandle orders = new ConnectionHandle("u1", "orders", "postgresql", mock(DataSource.class));
+
+    private final ConnectionHandle billing = new ConnectionHandle("u1", "billing", "postgresql", mock(DataSource.class));
+
+    private final QueryResultCache cache = new QueryResultCache(poolRegistry, new ObjectMapper(), new SimpleMeterRegistry(),
+            1 << 20, 60, 1 << 16, 1 << 12, false, "pool");
+
+    @BeforeEach
+    void setUp() {
+        when(poolRegistry.fingerprintOf(orders.getDataSource())).thenReturn("pool-a");
+        when(poolRegistry.fingerprintOf(billing.getDataSource())).thenReturn("pool-b");
+    }
+
+    @Test
+    void finishedLoadsAreStoredAndHandedToWaitingRequests() {
+        String key = cache.key(orders, "query", "SELECT 1");
+        assertThat(cache.joinLoad(key)).isNull();
+        CompletableFuture<byte[]> waiting = cache.joinLoad(key);
+
+        cache.finishLoad(key, RESULT, 60);
+
+        assertThat(cache.get(key)).isEqualTo(RESULT);
+        assertThat(waiting.join()).isEqualTo(RESULT);
+    }
+
+    @Test
+    void loadsThatStartedBeforeAnInvalidationAreNotStored() {
+        String key = cache.key(orders, "query", "SELECT 1");
+        assertThat(cache.joinLoad(key)).isNull();
+        CompletableFuture<byte[]> waiting = cache.joinLoad(key);
+
+        // El usuario vuelve a conectar mientras la lectura sigue en curso
+        cache.invalidate(orders);
+        cache.finishLoad(key, RESULT, 60);
+
+        assertThat(cache.get(key)).isNull();
+        assertThat(waiting.join()).isNull();
+
+        // La siguiente lectura empieza después de la invalidación y sí se guarda
+        assertThat(cache.joinLoad(key)).isNull();
+        cache.finishLoad(key, RESULT, 60);
+        assertThat(cache.get(key)).isEqualTo(RESULT);
+    }
+
+    @Test
+    void invalidatingAnotherPoolKeepsTheLoad() {
+        String key = cache.key(orders, "query", "SELECT 1");
+        assertThat(cache.joinLoad(key)).isNull();
+
+        cache.invalidate(billing);
+        cache.finishLoad(key, RESULT, 60);
+
+        assertThat(cache.get(key)).isEqualTo(RESULT);
+    }
+}
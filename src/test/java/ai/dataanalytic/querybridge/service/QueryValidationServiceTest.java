@@ -0,0 +1,127 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.querybridge.service.QueryValidationService.ParsedQuery;
+import ai.dataanalytic.sharedlibrary.dialect.AnsiSqlDialect;
+import ai.dataanalytic.sharedlibrary.dialect.MySqlDialect;
+import ai.dataanalytic.sharedlibrary.dialect.PostgreSqlDialect;
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryValidationServiceTest {
+
+    private static final SqlDialect POSTGRESQL = new PostgreSqlDialect();
+
+    private final QueryValidationService service = new QueryValidationService(100, 2000, 1);
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void acceptsReadOnlyQueries() {
+        ParsedQuery query = service.validate("SELECT o.id FROM orders o JOIN customers c ON c.id = o.customer_id", POSTGRESQL);
+
+        assertThat(query.tables()).containsExactlyInAnyOrder("orders", "customers");
+        assertThat(service.validate("WITH t AS (SELECT 1 AS x) SELECT x FROM t", POSTGRESQL).sql())
+                .isEqualTo("WITH t AS (SELECT 1 AS x) SELECT x FROM t");
+        assertThat(service.validate("SELECT a FROM t1 UNION SELECT a FROM t2", POSTGRESQL).tables())
+                .containsExactlyInAnyOrder("t1", "t2");
+    }
+
+    @Test
+    void dropsTrailingSemicolonsAndComments() {
+        assertThat(service.validate("SELECT * FROM t; -- done\n", POSTGRESQL).sql()).isEqualTo("SELECT * FROM t");
+    }
+
+    @Test
+    void rejectsEverythingButASingleSelect() {
+        assertRejected("", "Empty query");
+        assertRejected("DELETE FROM t", "Only SELECT");
+        assertRejected("UPDATE t SET a = 1", "Only SELECT");
+        assertRejected("SELECT 1; SELECT 2", "Only one statement");
+        assertRejected("SELECT * FORM t", "Cannot parse");
+    }
+
+    @Test
+    void rejectsWritingAndLockingSelects() {
+        assertRejected("SELECT * INTO t2 FROM t", "SELECT INTO");
+        assertRejected("SELECT * FROM t FOR UPDATE", "Locking reads");
+        assertRejected("WITH w AS (SELECT * FROM t FOR UPDATE) SELECT * FROM w", "Locking reads");
+        assertRejected("SELECT a FROM t1 UNION SELECT a FROM t2 FOR UPDATE", "Locking reads");
+    }
+
+    @Test
+    void rejectsLockingReadsInSubqueries() {
+        assertRejected("SELECT * FROM t WHERE x IN (SELECT y FROM u FOR UPDATE)", "Locking reads");
+        assertRejected("SELECT * FROM t WHERE EXISTS (SELECT 1 FROM u WHERE u.id = t.id FOR SHARE)", "Locking reads");
+        assertRejected("SELECT * FROM (SELECT * FROM u FOR UPDATE) s", "Locking reads");
+        assertRejected("SELECT t.a, (SELECT max(b) FROM u FOR UPDATE) FROM t", "Locking reads");
+        assertRejected("SELECT * FROM t JOIN (SELECT * FROM u FOR NO KEY UPDATE) s ON s.id = t.id", "Locking reads");
+        assertRejected("WITH w AS (SELECT * FROM t WHERE a IN (SELECT a FROM u FOR UPDATE)) SELECT * FROM w",
+                "Locking reads");
+    }
+
+    @Test
+    void rejectsSelectIntoInSubqueries() {
+        assertRejected("SELECT * FROM t WHERE x IN (SELECT y INTO z FROM u)", "SELECT INTO");
+    }
+
+    @Test
+    void acceptsSubqueriesThatOnlyRead() {
+        assertThat(service.validate("SELECT * FROM t WHERE x IN (SELECT y FROM u) AND EXISTS (SELECT 1 FROM v)",
+                POSTGRESQL).tables()).containsExactlyInAnyOrder("t", "u", "v");
+    }
+
+    @Test
+    void rejectsMySqlExecutableComments() {
+        assertThatThrownBy(() -> service.validate("SELECT /*! SLEEP(10) */ 1", new MySqlDialect()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Executable comments");
+    }
+
+    @Test
+    void queriesThatOnlyDifferInLiteralsShareTheFingerprint() {
+        ParsedQuery first = service.validate("SELECT * FROM t WHERE id = 1 AND name = 'a'", POSTGRESQL);
+        ParsedQuery second = service.validate("select *\n  from t  where id = 42 and name = 'it''s' -- last", POSTGRESQL);
+
+        assertThat(second.fingerprint()).isEqualTo(first.fingerprint());
+        assertThat(second.fingerprintId()).isEqualTo(first.fingerprintId());
+        assertThat(first.fingerprint()).doesNotContain("'a'", "1");
+        assertThat(second.normalizedSql()).isNotEqualTo(first.normalizedSql());
+    }
+
+    @Test
+    void differentShapesHaveDifferentFingerprints() {
+        ParsedQuery byId = service.validate("SELECT * FROM t WHERE id = 1", POSTGRESQL);
+        ParsedQuery byName = service.validate("SELECT * FROM t WHERE name = 'x'", POSTGRESQL);
+        ParsedQuery quoted = service.validate("SELECT * FROM t WHERE \"ID\" = 1", POSTGRESQL);
+
+        assertThat(byName.fingerprint()).isNotEqualTo(byId.fingerprint());
+        assertThat(quoted.fingerprint()).isNotEqualTo(byId.fingerprint());
+    }
+
+    @Test
+    void whitespaceAndCommentsDoNotChangeTheNormalizedSql() {
+        ParsedQuery compact = service.validate("SELECT a FROM t WHERE b = 'x'", new AnsiSqlDialect());
+        ParsedQuery spaced = service.validate("SELECT  a /* note */\nFROM t\tWHERE b = 'x'", new AnsiSqlDialect());
+
+        assertThat(spaced.normalizedSql()).isEqualTo(compact.normalizedSql());
+    }
+
+    @Test
+    void cachedVerdictsStillRejectEveryLiteralVariant() {
+        assertRejected("SELECT * FROM t WHERE id = 1 FOR UPDATE", "Locking reads");
+        assertRejected("SELECT * FROM t WHERE id = 2 FOR UPDATE", "Locking reads");
+    }
+
+    private void assertRejected(String sql, String reason) {
+        assertThatThrownBy(() -> service.validate(sql, POSTGRESQL))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(reason);
+    }
+}
@@ -0,0 +1,122 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.sharedlibrary.dialect.AnsiSqlDialect;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResultSetStreamerFormatTest {
+
+    private static final String QUERY = "SELECT id, name FROM items ORDER BY id";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ResultSetStreamer streamer = new ResultSetStreamer(objectMapper, 2);
+
+    private SingleConnectionDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:streaming", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(20))");
+        jdbcTemplate.execute("INSERT INTO items VALUES (1, 'a'), (2, NULL), (3, 'c\"d')");
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void ndjsonWritesOneObjectPerLine() throws Exception {
+        List<JsonNode> lines = ndjson(stream(new ResultSetStreamer.Limits(0, 0, 0, 0), ResultSetStreamer.Format.NDJSON));
+
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(1).get("NAME").isNull()).isTrue();
+        assertThat(lines.get(2).get("NAME").asText()).isEqualTo("c\"d");
+    }
+
+    @Test
+    void jsonWrapsTheRowsAndSaysWhetherTheyWereCut() throws Exception {
+        JsonNode complete = objectMapper.readTree(stream(new ResultSetStreamer.Limits(0, 0, 0, 0), ResultSetStreamer.Format.JSON));
+        assertThat(complete.get("rows")).hasSize(3);
+        assertThat(complete.get("truncated").asBoolean()).isFalse();
+
+        JsonNode cut = objectMapper.readTree(stream(new ResultSetStreamer.Limits(0, 2, 0, 0), ResultSetStreamer.Format.JSON));
+        assertThat(cut.get("rows")).hasSize(2);
+        assertThat(cut.get("truncated").asBoolean()).isTrue();
+        assertThat(cut.get("reason").asText()).isEqualTo("max_rows");
+        assertThat(cut.get("rows").get(1).get("ID").asInt()).isEqualTo(2);
+    }
+
+    @Test
+    void truncatedNdjsonEndsWithAMarkerLine() throws Exception {
+        List<JsonNode> byRows = ndjson(stream(new ResultSetStreamer.Limits(0, 2, 0, 0), ResultSetStreamer.Format.NDJSON));
+        assertThat(byRows).hasSize(3);
+        assertThat(byRows.get(2).get("reason").asText()).isEqualTo("max_rows");
+        assertThat(byRows.get(2).get("rows").asInt()).isEqualTo(2);
+
+        List<JsonNode> byBytes = ndjson(stream(new ResultSetStreamer.Limits(0, 0, 1, 0), ResultSetStreamer.Format.NDJSON));
+        assertThat(byBytes).hasSize(2);
+        assertThat(byBytes.get(1).get("reason").asText()).isEqualTo("max_bytes");
+    }
+
+    @Test
+    void rowLimitThatMatchesTheResultIsNotATruncation() throws Exception {
+        assertThat(ndjson(stream(new ResultSetStreamer.Limits(0, 3, 0, 0), ResultSetStreamer.Format.NDJSON))).hasSize(3);
+    }
+
+    @Test
+    void cancelledQueriesLeaveTheBodyUnterminated() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResultSetStreamer.QueryControl cancelAfterFirstRow = new ResultSetStreamer.QueryControl() {
+            @Override
+            public void started(Statement statement) {
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+
+        assertThatThrownBy(() -> streamer.stream(jdbcTemplate, new AnsiSqlDialect(), QUERY, null,
+                new ResultSetStreamer.Limits(0, 0, 0, 0), ResultSetStreamer.Format.JSON, out, cancelAfterFirstRow))
+                .isInstanceOf(DataAccessException.class);
+        assertThatThrownBy(() -> objectMapper.readTree(out.toByteArray())).isInstanceOf(Exception.class);
+    }
+
+    private byte[] stream(ResultSetStreamer.Limits limits, ResultSetStreamer.Format format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        streamer.stream(jdbcTemplate, new AnsiSqlDialect(), QUERY, null, limits, format, out, null);
+        return out.toByteArray();
+    }
+
+    private List<JsonNode> ndjson(byte[] body) throws Exception {
+        String text = new String(body, StandardCharsets.UTF_8);
+        assertThat(text).endsWith("\n");
+        return text.lines().map(String::trim).filter(line -> !line.isEmpty()).map(line -> {
+            try {
+                return objectMapper.readTree(line);
+            } catch (Exception e) {
+                throw new AssertionError("Not a JSON line: " + line, e);
+            }
+        }).toList();
+    }
+}
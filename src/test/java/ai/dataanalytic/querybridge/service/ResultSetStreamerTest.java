@@ -0,0 +1,102 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.sharedlibrary.dialect.PostgreSqlDialect;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResultSetStreamerTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+
+    private final Connection connection = mock(Connection.class);
+
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+
+    private final ResultSetStreamer streamer = new ResultSetStreamer(new ObjectMapper(), 100);
+
+    private final ResultSetStreamer.Limits limits = new ResultSetStreamer.Limits(0, 10, 0, 30);
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setExceptionTranslator(new SQLStateSQLExceptionTranslator());
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(statement);
+    }
+
+    @Test
+    void openRunsTheQueryBeforeAnyRowIsWritten() throws Exception {
+        ResultSet resultSet = twoRows("id", 1L, 2L);
+        when(statement.executeQuery()).thenReturn(resultSet);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ResultSetStreamer.OpenQuery query = streamer.open(jdbcTemplate, new PostgreSqlDialect(), "SELECT id FROM t",
+                null, limits, null)) {
+            verify(statement).executeQuery();
+            assertThat(out.size()).isZero();
+
+            assertThat(streamer.write(query, ResultSetStreamer.Format.NDJSON, out)).isEqualTo(2);
+        }
+
+        assertThat(out.toString(StandardCharsets.UTF_8).lines().map(String::trim)).containsExactly("{\"id\":1}", "{\"id\":2}");
+        InOrder order = inOrder(resultSet, statement, connection);
+        order.verify(resultSet).close();
+        order.verify(statement).close();
+        order.verify(connection).rollback();
+        order.verify(connection).setAutoCommit(true);
+        order.verify(connection).setReadOnly(false);
+        order.verify(connection).close();
+    }
+
+    @Test
+    void queriesThatCannotRunFailWhenOpenedAndGiveTheConnectionBack() throws Exception {
+        when(statement.executeQuery()).thenThrow(new SQLException("relation \"t\" does not exist", "42P01"));
+
+        assertThatThrownBy(() -> streamer.open(jdbcTemplate, new PostgreSqlDialect(), "SELECT id FROM t", null, limits, null))
+                .isInstanceOf(BadSqlGrammarException.class);
+
+        verify(statement).close();
+        verify(connection).rollback();
+        verify(connection).setReadOnly(false);
+        verify(connection).close();
+    }
+
+    private static ResultSet twoRows(String column, Object first, Object second) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(metaData.getColumnLabel(1)).thenReturn(column);
+        when(metaData.getColumnType(1)).thenReturn(Types.BIGINT);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getObject(1)).thenReturn(first, second);
+        return resultSet;
+    }
+}
@@ -0,0 +1,114 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.sharedlibrary.dialect.AnsiSqlDialect;
+import ai.dataanalytic.sharedlibrary.dialect.PostgreSqlDialect;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RowCountServiceTest {
+
+    private final RowCountService service = new RowCountService(300, 100, 100_000, "exact");
+
+    @Test
+    void filtersThatPrintAlikeDoNotShareACount() {
+        assertThat(RowCountService.filteredKey("u1:c1", "t", "a IN (?)", List.of("x, y")))
+                .isNotEqualTo(RowCountService.filteredKey("u1:c1", "t", "a IN (?)", List.of("x", "y")));
+        assertThat(RowCountService.filteredKey("u1:c1", "t", "a = ?", List.of(1L)))
+                .isNotEqualTo(RowCountService.filteredKey("u1:c1", "t", "a = ?", List.of("1")));
+        assertThat(RowCountService.filteredKey("u1:c1", "t", "a = ?", Arrays.asList((Object) null)))
+                .isNotEqualTo(RowCountService.filteredKey("u1:c1", "t", "a = ?", List.of("null")));
+        assertThat(RowCountService.filteredKey("u1:c1", "t", "a = ?[1]", List.of()))
+                .isNotEqualTo(RowCountService.filteredKey("u1:c1", "t", "a = ?", List.of(1)));
+    }
+
+    @Test
+    void filteredCountsAreCachedPerValuesAndDroppedWithTheConnection() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), any(Object[].class))).thenReturn(3L, 5L, 8L);
+
+        assertThat(count(jdbcTemplate, List.of("x, y")).value()).isEqualTo(3L);
+        assertThat(count(jdbcTemplate, List.of("x", "y")).value()).isEqualTo(5L);
+        assertThat(count(jdbcTemplate, List.of("x, y")).value()).isEqualTo(3L);
+
+        service.invalidate("u1:c1");
+        assertThat(count(jdbcTemplate, List.of("x, y")).value()).isEqualTo(8L);
+        verify(jdbcTemplate, times(3)).queryForObject(anyString(), eq(Long.class), any(Object[].class));
+    }
+
+    @Test
+    void autoUsesStatisticsForLargeTablesAndCountsSmallOnes() {
+        RowCountService auto = new RowCountService(300, 100, 100_000, "auto");
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq("big"))).thenReturn(List.of(2_000_000L));
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq("small"))).thenReturn(List.of(40L));
+        when(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM small", Long.class)).thenReturn(42L);
+
+        assertThat(auto.getDefaultMode()).isEqualTo(RowCountService.Mode.AUTO);
+        assertThat(countTable(auto, jdbcTemplate, "big", RowCountService.Mode.AUTO))
+                .isEqualTo(new RowCountService.RowCount(2_000_000L, false));
+        assertThat(countTable(auto, jdbcTemplate, "small", RowCountService.Mode.AUTO))
+                .isEqualTo(new RowCountService.RowCount(42L, true));
+        assertThat(countTable(auto, jdbcTemplate, "small", RowCountService.Mode.ESTIMATED))
+                .isEqualTo(new RowCountService.RowCount(40L, false));
+        // El recuento exacto se sirve desde la caché
+        assertThat(countTable(auto, jdbcTemplate, "small", RowCountService.Mode.EXACT).value()).isEqualTo(42L);
+        verify(jdbcTemplate, times(1)).queryForObject("SELECT COUNT(*) FROM small", Long.class);
+    }
+
+    @Test
+    void tablesWithoutStatisticsAreCountedExactly() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        // PostgreSQL devuelve -1 si la tabla nunca se ha analizado
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq("t"))).thenReturn(List.of(-1L));
+        when(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM t", Long.class)).thenReturn(7L);
+
+        assertThat(countTable(service, jdbcTemplate, "t", RowCountService.Mode.ESTIMATED))
+                .isEqualTo(new RowCountService.RowCount(7L, true));
+        assertThat(countTable(service, jdbcTemplate, "t", RowCountService.Mode.NONE).value()).isNull();
+    }
+
+    @Test
+    void filteredCountsOfLargeTablesAreSkipped() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq("t"))).thenReturn(List.of(2_000_000L));
+
+        for (RowCountService.Mode mode : new RowCountService.Mode[]{RowCountService.Mode.AUTO, RowCountService.Mode.ESTIMATED}) {
+            assertThat(service.countRows("u1:c1", "t", "a = ?", List.of(1), jdbcTemplate, new PostgreSqlDialect(), mode)
+                    .value()).isNull();
+        }
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Long.class), any(Object[].class));
+    }
+
+    @Test
+    void countModesAreParsedIgnoringCase() {
+        assertThat(RowCountService.Mode.from("Estimated", RowCountService.Mode.AUTO)).isEqualTo(RowCountService.Mode.ESTIMATED);
+        assertThat(RowCountService.Mode.from(null, RowCountService.Mode.NONE)).isEqualTo(RowCountService.Mode.NONE);
+        assertThatThrownBy(() -> RowCountService.Mode.from("fast", RowCountService.Mode.AUTO))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("fast");
+    }
+
+    private static RowCountService.RowCount countTable(RowCountService service, JdbcTemplate jdbcTemplate, String table,
+                                                       RowCountService.Mode mode) {
+        return service.countRows("u1:c1", table, jdbcTemplate, new PostgreSqlDialect(), mode);
+    }
+
+    private RowCountService.RowCount count(JdbcTemplate jdbcTemplate, List<Object> parameters) {
+        return service.countRows("u1:c1", "t", "a = ANY (?)", parameters,
+                jdbcTemplate, new AnsiSqlDialect(), RowCountService.Mode.EXACT);
+    }
+}
@@ -0,0 +1,228 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.querybridge.dto.DynamicTableData;
+import ai.dataanalytic.querybridge.dto.TableDataFormat;
+import ai.dataanalytic.querybridge.service.SchemaDiscoveryService.KeyColumn;
+import ai.dataanalytic.sharedlibrary.dialect.PostgreSqlDialect;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class SchemaDiscoveryServiceTest {
+
+    private static final KeyColumn ID = new KeyColumn("id", Types.BIGINT, "int8");
+
+    private static final KeyColumn CREATED_AT = new KeyColumn("created_at", Types.TIMESTAMP_WITH_TIMEZONE, "timestamptz");
+
+    private static final BigInteger BIG = new BigInteger("18446744073709551615");
+
+    private static final Instant INSTANT = Instant.parse("2024-03-01T10:15:30.123456Z");
+
+    private final SchemaDiscoveryService service = new SchemaDiscoveryService();
+
+    @Test
+    void cursorRoundTripsCompositeKeys() throws Exception {
+        KeyColumn amount = new KeyColumn("amount", Types.NUMERIC, "numeric");
+        KeyColumn name = new KeyColumn("name", Types.VARCHAR, "varchar");
+        List<KeyColumn> keyColumns = List.of(ID, amount, name);
+
+        String cursor = service.encodeCursor("orders", keyColumns, List.of(42, new BigDecimal("10.50"), "a,b"));
+
+        assertThat(service.decodeCursor(cursor, "orders", keyColumns))
+                .containsExactly(42L, new BigDecimal("10.50"), "a,b");
+    }
+
+    @Test
+    void cursorKeepsNullKeyValues() throws Exception {
+        List<KeyColumn> keyColumns = List.of(new KeyColumn("name", Types.VARCHAR, "varchar"), ID);
+
+        String cursor = service.encodeCursor("orders", keyColumns, Arrays.asList(null, 7L));
+
+        assertThat(service.decodeCursor(cursor, "orders", keyColumns)).containsExactly(null, 7L);
+    }
+
+    @Test
+    void binaryKeysTravelAsBase64() throws Exception {
+        KeyColumn hash = new KeyColumn("hash", Types.VARBINARY, "bytea");
+        byte[] bytes = {0, 1, -1, 127, -128};
+
+        List<Object> decoded = roundTrip(hash, bytes);
+
+        assertThat((byte[]) decoded.get(0)).containsExactly(bytes);
+    }
+
+    @Test
+    void timestampWithTimeZoneKeepsTheInstantWhateverTheDriverReturns() throws Exception {
+        for (Object value : List.of(Timestamp.from(INSTANT), INSTANT.atOffset(ZoneOffset.ofHours(2)),
+                INSTANT.atZone(ZoneOffset.ofHours(-5)), INSTANT, "2024-03-01 11:15:30.123456+01")) {
+            Object decoded = roundTrip(CREATED_AT, value).get(0);
+
+            assertThat(decoded).isInstanceOf(OffsetDateTime.class);
+            assertThat(((OffsetDateTime) decoded).toInstant()).as("decoded %s", value).isEqualTo(INSTANT);
+        }
+    }
+
+    @Test
+    void localDateAndTimeKeysComeBackAsJdbcTypes() throws Exception {
+        LocalDateTime dateTime = LocalDateTime.of(2024, 3, 1, 10, 15, 30, 500_000_000);
+        LocalDate date = LocalDate.of(2024, 3, 1);
+
+        assertThat(roundTrip(new KeyColumn("ts", Types.TIMESTAMP, "timestamp"), dateTime))
+                .containsExactly(Timestamp.valueOf(dateTime));
+        assertThat(roundTrip(new KeyColumn("d", Types.DATE, "date"), date)).containsExactly(Date.valueOf(date));
+    }
+
+    @Test
+    void timeKeysKeepTheirFractionOfSecond() throws Exception {
+        KeyColumn time = new KeyColumn("t", Types.TIME, "time");
+        LocalTime value = LocalTime.of(10, 15, 30, 123_456_000);
+
+        assertThat(roundTrip(time, value)).containsExactly(value);
+        assertThat(roundTrip(time, new Time(Timestamp.valueOf("1970-01-01 10:15:30.25").getTime())))
+                .containsExactly(LocalTime.of(10, 15, 30, 250_000_000));
+        // Los cursores emitidos antes con Time.toString() se siguen leyendo
+        assertThat(service.decodeCursor(service.encodeCursor("t", List.of(new KeyColumn("t", Types.VARCHAR, "varchar")),
+                List.of("10:15:30")), "t", List.of(time))).containsExactly(LocalTime.of(10, 15, 30));
+    }
+
+    @Test
+    void realKeysComeBackAsTheSameFloat() throws Exception {
+        KeyColumn real = new KeyColumn("r", Types.REAL, "float4");
+        KeyColumn doublePrecision = new KeyColumn("d", Types.DOUBLE, "float8");
+
+        assertThat(roundTrip(real, 0.1f)).containsExactly(0.1f);
+        assertThat(roundTrip(real, (double) 0.1f)).containsExactly(0.1f);
+        assertThat(roundTrip(doublePrecision, 0.1d)).containsExactly(0.1d);
+    }
+
+    @Test
+    void keysetPagesNeedAPositiveSize() {
+        StructuredQueryService.TableQuery query = new StructuredQueryService.TableQuery("SELECT * FROM orders", null, List.of(), null);
+
+        for (int size : new int[]{0, -1}) {
+            assertThat(service.getTableDataWithKeyset("orders", query, mock(JdbcTemplate.class), new PostgreSqlDialect(),
+                    List.of(ID), null, size, TableDataFormat.ROWS).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @Test
+    void uuidKeysComeBackAsUuids() throws Exception {
+        UUID uuid = UUID.randomUUID();
+
+        assertThat(roundTrip(new KeyColumn("id", Types.OTHER, "uuid"), uuid)).containsExactly(uuid);
+    }
+
+    @Test
+    void cursorOfAnotherTableIsRejected() throws Exception {
+        String cursor = service.encodeCursor("orders", List.of(ID), List.of(1L));
+
+        assertThatThrownBy(() -> service.decodeCursor(cursor, "customers", List.of(ID)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.decodeCursor(cursor, "orders", List.of(ID, ID)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.decodeCursor("not a cursor", "orders", List.of(ID)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void cursorWithAValueOfTheWrongTypeIsRejected() throws Exception {
+        String cursor = service.encodeCursor("orders", List.of(new KeyColumn("name", Types.VARCHAR, "varchar")),
+                List.of("abc"));
+
+        assertThatThrownBy(() -> service.decodeCursor(cursor, "orders", List.of(ID)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("id");
+    }
+
+    @Test
+    void keysetIsOnlyOfferedForTypesACursorCanHold() {
+        assertThat(ID.supportsKeyset()).isTrue();
+        assertThat(CREATED_AT.supportsKeyset()).isTrue();
+        assertThat(new KeyColumn("id", Types.OTHER, "uuid").supportsKeyset()).isTrue();
+        assertThat(new KeyColumn("doc", Types.OTHER, "jsonb").supportsKeyset()).isFalse();
+        assertThat(new KeyColumn("tags", Types.ARRAY, "_text").supportsKeyset()).isFalse();
+        assertThat(new KeyColumn("body", Types.BLOB, "blob").supportsKeyset()).isFalse();
+    }
+
+    @Test
+    void pageFormatsShareTheSameValues() {
+        for (TableDataFormat format : TableDataFormat.values()) {
+            DynamicTableData response = new DynamicTableData();
+            SchemaDiscoveryService.setRows(response, page(), format);
+            assertThat(response.getFormat()).isEqualTo(format);
+
+            switch (format) {
+                case ROWS -> {
+                    assertThat(response.getRows()).hasSize(2);
+                    assertThat(response.getRows().get(0)).containsEntry("id", 1L).containsEntry("NAME", "a");
+                    assertThat(response.getRows().get(1)).containsEntry("name", null);
+                    assertThat(response.getFields()).isNull();
+                }
+                case COMPACT -> {
+                    assertThat(response.getFields()).containsExactly("id", "name", "score", "big");
+                    assertThat(response.getRowArrays().get(1)).containsExactly(2L, null, 2.5d, BIG);
+                    assertThat(response.getRows()).isNull();
+                }
+                case COLUMNAR -> {
+                    assertThat(response.getFields()).containsExactly("id", "name", "score", "big");
+                    assertThat(response.getColumnData()).hasSize(4);
+                }
+            }
+        }
+    }
+
+    @Test
+    void columnarUsesPrimitiveArraysOnlyWhenEveryValueFits() {
+        DynamicTableData response = new DynamicTableData();
+        SchemaDiscoveryService.setRows(response, page(), TableDataFormat.COLUMNAR);
+
+        List<Object> columns = response.getColumnData();
+        assertThat((long[]) columns.get(0)).containsExactly(1L, 2L);
+        assertThat((Object[]) columns.get(1)).containsExactly("a", null);
+        assertThat((double[]) columns.get(2)).containsExactly(0.5d, 2.5d);
+        // Un BIGINT UNSIGNED mayor que Long.MAX_VALUE no se trunca a long
+        assertThat((Object[]) columns.get(3)).containsExactly(BigInteger.ONE, BIG);
+    }
+
+    @Test
+    void columnarKeepsNullableNumbersAsObjects() {
+        DynamicTableData response = new DynamicTableData();
+        SchemaDiscoveryService.RowPage page = new SchemaDiscoveryService.RowPage(List.of("n"), new int[]{Types.INTEGER},
+                List.of(new Object[]{1}, new Object[]{null}), false);
+
+        SchemaDiscoveryService.setRows(response, page, TableDataFormat.COLUMNAR);
+
+        assertThat((Object[]) response.getColumnData().get(0)).containsExactly(1, null);
+    }
+
+    private static SchemaDiscoveryService.RowPage page() {
+        return new SchemaDiscoveryService.RowPage(List.of("id", "name", "score", "big"),
+                new int[]{Types.BIGINT, Types.VARCHAR, Types.DOUBLE, Types.BIGINT},
+                List.of(new Object[]{1L, "a", 0.5d, BigInteger.ONE}, new Object[]{2L, null, 2.5d, BIG}), false);
+    }
+
+    private List<Object> roundTrip(KeyColumn key, Object value) throws Exception {
+        String cursor = service.encodeCursor("t", List.of(key), List.of(value));
+        return service.decodeCursor(cursor, "t", List.of(key));
+    }
+}
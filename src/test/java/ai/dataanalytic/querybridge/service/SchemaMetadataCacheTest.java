@@ -0,0 +1,81 @@
+package ai.dataanalytic.querybridge.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SchemaMetadataCacheTest {
+
+    private final UserDataSourceRegistry registry = mock(UserDataSourceRegistry.class);
+
+    private final ConnectionHandle handle = new ConnectionHandle("u1", "c1", "postgresql", mock(DataSource.class));
+
+    private final SchemaMetadataCache cache = new SchemaMetadataCache(registry, 100, 3600, 300, 2);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void shutdown() {
+        cache.shutdown();
+    }
+
+    @Test
+    void entriesAreLoadedOnceThroughTheRegisteredConnection() throws Exception {
+        ConnectionHandle rebuilt = new ConnectionHandle("u1", "c1", "postgresql", mock(DataSource.class));
+        when(registry.get("u1", "c1")).thenReturn(rebuilt);
+
+        List<String> tables = cache.get(handle, "tables", this::tables);
+
+        assertThat(tables).containsExactly("orders");
+        assertThat(cache.get(handle, "tables", this::tables)).isSameAs(tables);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void invalidationDropsTheEntriesOfTheConnectionOrOfOneTable() throws Exception {
+        when(registry.get("u1", "c1")).thenReturn(handle);
+        cache.get(handle, "tables", this::tables);
+        cache.put(handle, "table/orders/columns", List.of("id"), current -> List.of("id"));
+        cache.put(handle, "table/customers/columns", List.of("id"), current -> List.of("id"));
+
+        cache.invalidate("u1:c1", "table/orders/");
+        assertThat(cache.<List<String>>get(handle, "table/orders/columns", current -> List.of("id", "total"))).containsExactly("id", "total");
+        assertThat(cache.<List<String>>get(handle, "table/customers/columns", current -> List.of("other"))).containsExactly("id");
+
+        cache.invalidate("u1:c1");
+        cache.get(handle, "tables", this::tables);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void loadErrorsKeepTheirTypeAndAreNotCached() throws Exception {
+        when(registry.get("u1", "c1")).thenReturn(handle);
+
+        assertThatThrownBy(() -> cache.get(handle, "tables", current -> {
+            throw new SQLException("permission denied");
+        })).isInstanceOf(SQLException.class);
+
+        assertThat(cache.get(handle, "tables", this::tables)).containsExactly("orders");
+    }
+
+    @Test
+    void connectionsThatAreNotOpenCannotLoad() {
+        assertThatThrownBy(() -> cache.get(handle, "tables", this::tables))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("c1");
+    }
+
+    private List<String> tables(ConnectionHandle current) {
+        loads.incrementAndGet();
+        return List.of("orders");
+    }
+}
@@ -0,0 +1,75 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.querybridge.dto.SchemaSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchemaSnapshotTest {
+
+    private final SchemaDiscoveryService service = new SchemaDiscoveryService();
+
+    private SingleConnectionDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:snapshot", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE customers (id BIGINT PRIMARY KEY, name VARCHAR(80) NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE orders (region CHAR(2), id BIGINT, customer_id BIGINT, total DECIMAL(10, 2),"
+                + " PRIMARY KEY (region, id), CONSTRAINT fk_orders_customer FOREIGN KEY (customer_id) REFERENCES customers (id))");
+        jdbcTemplate.execute("CREATE INDEX ix_orders_total ON orders (total)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void snapshotHoldsEveryTableWithItsColumnsKeysAndIndexes() {
+        SchemaSnapshot snapshot = service.getSchemaSnapshot(jdbcTemplate);
+
+        Map<String, SchemaSnapshot.Table> tables = snapshot.getTables().stream()
+                .collect(Collectors.toMap(SchemaSnapshot.Table::getName, Function.identity()));
+        assertThat(tables).containsOnlyKeys("CUSTOMERS", "ORDERS");
+
+        SchemaSnapshot.Table orders = tables.get("ORDERS");
+        assertThat(orders.getColumns()).extracting(SchemaSnapshot.Column::getName)
+                .containsExactly("REGION", "ID", "CUSTOMER_ID", "TOTAL");
+        assertThat(orders.getColumns().get(3).getDecimalDigits()).isEqualTo(2);
+        assertThat(orders.getPrimaryKey()).containsExactly("REGION", "ID");
+        assertThat(orders.getForeignKeys()).singleElement().satisfies(fk -> {
+            assertThat(fk.getName()).isEqualTo("FK_ORDERS_CUSTOMER");
+            assertThat(fk.getColumns()).containsExactly("CUSTOMER_ID");
+            assertThat(fk.getReferencedTable()).isEqualTo("CUSTOMERS");
+            assertThat(fk.getReferencedColumns()).containsExactly("ID");
+        });
+        assertThat(orders.getIndexes()).anySatisfy(index -> {
+            assertThat(index.getName()).isEqualTo("IX_ORDERS_TOTAL");
+            assertThat(index.isUnique()).isFalse();
+            assertThat(index.getColumns()).containsExactly("TOTAL");
+        });
+        assertThat(tables.get("CUSTOMERS").getColumns().get(1).isNullable()).isFalse();
+    }
+
+    @Test
+    void singleTableSnapshotMatchesTheWholeSchemaOne() {
+        SchemaSnapshot.Table fromSchema = service.getSchemaSnapshot(jdbcTemplate).getTables().stream()
+                .filter(table -> table.getName().equals("ORDERS")).findFirst().orElseThrow();
+
+        // El nombre se busca también en mayúsculas
+        assertThat(service.getTableSnapshot("orders", jdbcTemplate)).isEqualTo(fromSchema);
+        assertThat(service.getTableSnapshot("missing", jdbcTemplate)).isNull();
+    }
+}
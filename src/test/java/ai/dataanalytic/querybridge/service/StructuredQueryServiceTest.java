@@ -0,0 +1,223 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.databridge.dto.QueryRequest;
+import ai.dataanalytic.databridge.dto.QueryRequest.Aggregate;
+import ai.dataanalytic.databridge.dto.QueryRequest.Filter;
+import ai.dataanalytic.databridge.dto.QueryRequest.Order;
+import ai.dataanalytic.querybridge.service.StructuredQueryService.CompiledQuery;
+import ai.dataanalytic.sharedlibrary.dialect.MySqlDialect;
+import ai.dataanalytic.sharedlibrary.dialect.PostgreSqlDialect;
+import ai.dataanalytic.sharedlibrary.dialect.SqlDialect;
+import ai.dataanalytic.sharedlibrary.dialect.SqlServerDialect;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StructuredQueryServiceTest {
+
+    private static final SqlDialect POSTGRESQL = new PostgreSqlDialect();
+
+    private static final List<Map<String, Object>> SALES = List.of(
+            column("region", "varchar", Types.VARCHAR),
+            column("amount", "int4", Types.INTEGER),
+            column("sold_at", "date", Types.DATE));
+
+    private final StructuredQueryService service = new StructuredQueryService(30, 1000);
+
+    @Test
+    void compilesAGroupedQueryWithWhereAndHaving() {
+        QueryRequest request = new QueryRequest();
+        request.setTableName("sales");
+        request.setGroupBy(List.of("region"));
+        request.setAggregates(List.of(
+                new Aggregate("sum", "amount", "total"),
+                new Aggregate("avg", "amount", null),
+                new Aggregate("count", null, null)));
+        // El filtro del HAVING va primero para comprobar que sus valores se enlazan después de los del WHERE
+        request.setFilters(List.of(
+                new Filter("total", "gt", 100),
+                new Filter("sold_at", "between", List.of("2024-01-01", "2024-12-31")),
+                new Filter("region", "in", List.of("EU", "US"))));
+        request.setOrderBy(List.of(new Order("total", "desc")));
+
+        CompiledQuery query = service.compile(request, SALES, POSTGRESQL);
+
+        assertThat(query.sql()).isEqualTo("SELECT \"region\", SUM(\"amount\") AS \"total\", AVG(\"amount\" * 1.0) AS \"avg_amount\","
+                + " COUNT(*) AS \"count\" FROM sales WHERE \"sold_at\" BETWEEN ? AND ? AND \"region\" IN (?, ?)"
+                + " GROUP BY \"region\" HAVING SUM(\"amount\") > ? ORDER BY \"total\" DESC");
+        assertThat(query.parameters()).containsExactly(Date.valueOf("2024-01-01"), Date.valueOf("2024-12-31"),
+                "EU", "US", new BigDecimal("100"));
+        assertThat(query.ordered()).isTrue();
+    }
+
+    @Test
+    void compilesAPlainSelectWithTheDialectQuoting() {
+        QueryRequest request = new QueryRequest();
+        request.setTableName("sales");
+        request.setColumns(List.of("region", "amount"));
+        request.setFilters(List.of(new Filter("amount", "ge", "10"), new Filter("region", "is_not_null", null),
+                new Filter("region", "like", "E%")));
+        request.setOrderBy(List.of(new Order("sold_at", null)));
+
+        CompiledQuery query = service.compile(request, SALES, new SqlServerDialect());
+
+        assertThat(query.sql()).isEqualTo("SELECT [region], [amount] FROM sales"
+                + " WHERE [amount] >= ? AND [region] IS NOT NULL AND [region] LIKE ? ORDER BY [sold_at] ASC");
+        assertThat(query.parameters()).containsExactly(10L, "E%");
+    }
+
+    @Test
+    void selectsEveryColumnWhenNoneIsRequested() {
+        QueryRequest request = new QueryRequest();
+        request.setTableName("sales");
+
+        CompiledQuery query = service.compile(request, SALES, POSTGRESQL);
+
+        assertThat(query.sql()).isEqualTo("SELECT \"region\", \"amount\", \"sold_at\" FROM sales");
+        assertThat(query.parameters()).isEmpty();
+        assertThat(query.ordered()).isFalse();
+    }
+
+    @Test
+    void rejectsNamesThatAreNotColumnsOfTheTable() {
+        QueryRequest unknownColumn = new QueryRequest();
+        unknownColumn.setTableName("sales");
+        unknownColumn.setColumns(List.of("region; DROP TABLE sales"));
+        assertRejected(unknownColumn, "Unknown column");
+
+        QueryRequest unknownFilter = new QueryRequest();
+        unknownFilter.setTableName("sales");
+        unknownFilter.setFilters(List.of(new Filter("price", "eq", 1)));
+        assertRejected(unknownFilter, "Unknown column: price");
+
+        QueryRequest invalidTable = new QueryRequest();
+        invalidTable.setTableName("sales s");
+        assertRejected(invalidTable, "Invalid table name");
+    }
+
+    @Test
+    void rejectsInvalidAggregations() {
+        QueryRequest ungrouped = new QueryRequest();
+        ungrouped.setTableName("sales");
+        ungrouped.setColumns(List.of("amount"));
+        ungrouped.setGroupBy(List.of("region"));
+        assertRejected(ungrouped, "must be in groupBy");
+
+        QueryRequest sumOfText = new QueryRequest();
+        sumOfText.setTableName("sales");
+        sumOfText.setAggregates(List.of(new Aggregate("sum", "region", null)));
+        assertRejected(sumOfText, "is not numeric");
+
+        QueryRequest unknownFunction = new QueryRequest();
+        unknownFunction.setTableName("sales");
+        unknownFunction.setAggregates(List.of(new Aggregate("median", "amount", null)));
+        assertRejected(unknownFunction, "Unsupported aggregate function");
+
+        QueryRequest orderByHidden = new QueryRequest();
+        orderByHidden.setTableName("sales");
+        orderByHidden.setGroupBy(List.of("region"));
+        orderByHidden.setOrderBy(List.of(new Order("amount", "asc")));
+        assertRejected(orderByHidden, "Order by must name a selected column");
+    }
+
+    @Test
+    void rejectsValuesThatDoNotFitTheColumn() {
+        QueryRequest notANumber = new QueryRequest();
+        notANumber.setTableName("sales");
+        notANumber.setFilters(List.of(new Filter("amount", "eq", "ten")));
+        assertRejected(notANumber, "Invalid value for column amount");
+
+        QueryRequest likeOnNumber = new QueryRequest();
+        likeOnNumber.setTableName("sales");
+        likeOnNumber.setFilters(List.of(new Filter("amount", "like", "1%")));
+        assertRejected(likeOnNumber, "like needs a character column");
+
+        QueryRequest nullValue = new QueryRequest();
+        nullValue.setTableName("sales");
+        nullValue.setFilters(List.of(new Filter("region", "eq", null)));
+        assertRejected(nullValue, "use is_null");
+    }
+
+    @Test
+    void rowLimitNeverExceedsTheConfiguredOne() {
+        QueryRequest request = new QueryRequest();
+        assertThat(service.rowLimit(request)).isEqualTo(1000);
+        request.setLimit(50);
+        assertThat(service.rowLimit(request)).isEqualTo(50);
+        request.setLimit(5000);
+        assertThat(service.rowLimit(request)).isEqualTo(1000);
+    }
+
+    @Test
+    void tablePagesWithoutOptionsKeepSelectStar() {
+        StructuredQueryService.TableQuery query = service.compileTableQuery("sales", List.of(), List.of(), List.of(),
+                List.of("region"), List.of(), POSTGRESQL);
+
+        assertThat(query.select()).isEqualTo("SELECT * FROM sales");
+        assertThat(query.where()).isNull();
+        assertThat(query.parameters()).isEmpty();
+        assertThat(query.orderBy()).isNull();
+    }
+
+    @Test
+    void tablePagesPushTheProjectionFiltersAndSortDown() {
+        StructuredQueryService.TableQuery query = service.compileTableQuery("sales", List.of("amount"),
+                List.of(new Filter("region", "in", List.of("EU", "US")), new Filter("amount", "lt", "500")),
+                List.of(new Order("sold_at", "desc")), List.of("region"), SALES, new MySqlDialect());
+
+        // Las columnas que necesita el cursor se añaden a la proyección
+        assertThat(query.select()).isEqualTo("SELECT `amount`, `region` FROM sales");
+        assertThat(query.where()).isEqualTo("`region` IN (?, ?) AND `amount` < ?");
+        assertThat(query.parameters()).containsExactly("EU", "US", 500L);
+        assertThat(query.orderBy()).isEqualTo("`sold_at` DESC");
+    }
+
+    @Test
+    void tablePagesRejectWhatIsNotAColumnOfTheTable() {
+        assertThatThrownBy(() -> service.compileTableQuery("sales", List.of("price"), List.of(), List.of(), List.of(),
+                SALES, POSTGRESQL)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.compileTableQuery("sales", List.of(), List.of(new Filter("amount", "gt", "abc")),
+                List.of(), List.of(), SALES, POSTGRESQL)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.compileTableQuery("sales; DROP TABLE x", List.of("amount"), List.of(), List.of(),
+                List.of(), SALES, POSTGRESQL)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.compileTableQuery("missing", List.of("amount"), List.of(), List.of(), List.of(),
+                List.of(), POSTGRESQL)).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Unknown table");
+    }
+
+    @Test
+    void parsesTheTablePageParameters() {
+        assertThat(service.parseColumns(" region, ,amount ")).containsExactly("region", "amount");
+        assertThat(service.parseColumns(null)).isEmpty();
+
+        List<Order> sort = service.parseSort("region,sold_at:desc");
+        assertThat(sort).extracting(Order::getColumn).containsExactly("region", "sold_at");
+        assertThat(sort).extracting(Order::getDirection).containsExactly(null, "desc");
+
+        List<Filter> filters = service.parseFilters("[{\"column\":\"region\",\"operator\":\"in\",\"value\":[\"EU\",\"US\"]}]");
+        assertThat(filters).singleElement().satisfies(filter -> {
+            assertThat(filter.getColumn()).isEqualTo("region");
+            assertThat(filter.getValue()).isEqualTo(List.of("EU", "US"));
+        });
+        assertThat(service.parseFilters(" ")).isEmpty();
+        assertThatThrownBy(() -> service.parseFilters("region=EU"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Malformed filter");
+    }
+
+    private void assertRejected(QueryRequest request, String reason) {
+        assertThatThrownBy(() -> service.compile(request, SALES, POSTGRESQL))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(reason);
+    }
+
+    private static Map<String, Object> column(String name, String typeName, int dataType) {
+        return Map.of("COLUMN_NAME", name, "TYPE_NAME", typeName, "DATA_TYPE", dataType);
+    }
+}
@@ -0,0 +1,122 @@
+package ai.dataanalytic.querybridge.service;
+
+import ai.dataanalytic.querybridge.config.DataSourcePoolRegistry;
+import ai.dataanalytic.sharedlibrary.dialect.AnsiSqlDialect;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class UserDataSourceRegistryTest {
+
+    private final UserDataSourceRegistry registry = new UserDataSourceRegistry(mock(DataSourcePoolRegistry.class),
+            new SimpleMeterRegistry(), 200, 1800);
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentRequestsBuildTheConnectionOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ConnectionHandle built = new ConnectionHandle("u1", "c1", "postgresql", mock(DataSource.class));
+
+        List<Future<ConnectionHandle>> requests = new ArrayList<>();
+        requests.add(executor.submit(() -> registry.getOrCreate("u1", "c1", () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return built;
+        })));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        // Las demás peticiones llegan mientras la primera sigue leyendo MongoDB
+        for (int i = 0; i < 3; i++) {
+            requests.add(executor.submit(() -> registry.getOrCreate("u1", "c1", () -> {
+                loads.incrementAndGet();
+                return new ConnectionHandle("u1", "c1", "postgresql", mock(DataSource.class));
+            })));
+        }
+        release.countDown();
+
+        for (Future<ConnectionHandle> request : requests) {
+            assertThat(request.get(5, TimeUnit.SECONDS)).isSameAs(built);
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(registry.get("u1", "c1")).isSameAs(built);
+    }
+
+    @Test
+    void unknownConnectionsAreNotRemembered() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(registry.getOrCreate("u1", "missing", () -> {
+            loads.incrementAndGet();
+            return null;
+        })).isNull();
+        assertThat(registry.getOrCreate("u1", "missing", () -> {
+            loads.incrementAndGet();
+            return null;
+        })).isNull();
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void failedBuildsAreRetriedOnTheNextRequest() {
+        ConnectionHandle built = new ConnectionHandle("u1", "c1", "postgresql", mock(DataSource.class));
+
+        assertThatThrownBy(() -> registry.getOrCreate("u1", "c1", () -> {
+            throw new IllegalStateException("mongo down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(registry.getOrCreate("u1", "c1", () -> built)).isSameAs(built);
+    }
+
+    @Test
+    void handlesReuseTheirTemplatesAndReadTheMetadataOnce() throws Exception {
+        SingleConnectionDataSource h2 = new SingleConnectionDataSource("jdbc:h2:mem:handle", "sa", "", true);
+        try {
+            DataSource dataSource = spy(h2);
+            ConnectionHandle handle = new ConnectionHandle("u1", "c1", "h2", dataSource);
+
+            assertThat(handle.getJdbcTemplate()).isSameAs(handle.getJdbcTemplate());
+            assertThat(handle.getNamedParameterJdbcTemplate().getJdbcTemplate()).isSameAs(handle.getJdbcTemplate());
+            assertThat(handle.getDatabaseInfo().productName()).isEqualTo("H2");
+            assertThat(handle.getDialect()).isInstanceOf(AnsiSqlDialect.class);
+            assertThat(handle.getDatabaseInfo()).isSameAs(handle.getDatabaseInfo());
+            verify(dataSource, times(1)).getConnection();
+        } finally {
+            h2.destroy();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
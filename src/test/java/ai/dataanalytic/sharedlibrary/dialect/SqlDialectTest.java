@@ -0,0 +1,213 @@
+package ai.dataanalytic.sharedlibrary.dialect;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlDialectTest {
+
+    private static final String QUERY = "SELECT * FROM t ORDER BY id";
+
+    @Test
+    void resolvesDialectsFromTypeAndProduct() {
+        assertThat(SqlDialects.forDatabaseType("postgresql")).isInstanceOf(PostgreSqlDialect.class);
+        assertThat(SqlDialects.forDatabaseType("mariadb")).isInstanceOf(MySqlDialect.class);
+        assertThat(SqlDialects.forDatabaseType("sqlserver")).isInstanceOf(SqlServerDialect.class);
+        assertThat(SqlDialects.forDatabaseType(null)).isInstanceOf(AnsiSqlDialect.class);
+        assertThat(SqlDialects.forDatabaseType("h2").getName()).isEqualTo("ansi");
+        assertThat(SqlDialects.forProduct("Oracle", 11).getName()).isEqualTo("oracle11");
+        assertThat(SqlDialects.forProduct("Oracle", 19).getName()).isEqualTo("oracle");
+        assertThat(SqlDialects.forProduct("Microsoft SQL Server", 16)).isInstanceOf(SqlServerDialect.class);
+    }
+
+    @Test
+    void quotesIdentifiersEscapingTheQuoteCharacter() {
+        assertThat(new AnsiSqlDialect().quoteIdentifier("a\"b")).isEqualTo("\"a\"\"b\"");
+        assertThat(new MySqlDialect().quoteIdentifier("a`b")).isEqualTo("`a``b`");
+        assertThat(new SqlServerDialect().quoteIdentifier("a]b")).isEqualTo("[a]]b]");
+    }
+
+    @Test
+    void ansiPagesWithOffsetFetch() {
+        SqlDialect dialect = new AnsiSqlDialect();
+
+        assertThat(dialect.paginate(QUERY, true)).isEqualTo(QUERY + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+        assertThat(dialect.paginationParameters(50, 100)).containsExactly(100L, 50);
+        assertThat(dialect.limit(QUERY, true)).isEqualTo(QUERY + " FETCH FIRST ? ROWS ONLY");
+    }
+
+    @Test
+    void postgreSqlAndMySqlPageWithLimitOffset() {
+        for (SqlDialect dialect : new SqlDialect[]{new PostgreSqlDialect(), new MySqlDialect()}) {
+            assertThat(dialect.paginate(QUERY, true)).isEqualTo(QUERY + " LIMIT ? OFFSET ?");
+            assertThat(dialect.paginationParameters(50, 100)).containsExactly(50, 100L);
+            assertThat(dialect.limit(QUERY, true)).isEqualTo(QUERY + " LIMIT ?");
+        }
+    }
+
+    @Test
+    void sqlServerAddsAnOrderByWhenTheQueryHasNone() {
+        SqlDialect dialect = new SqlServerDialect();
+        String unordered = "SELECT * FROM t";
+
+        assertThat(dialect.paginate(QUERY, true)).isEqualTo(QUERY + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+        assertThat(dialect.paginate(unordered, false))
+                .isEqualTo(unordered + " ORDER BY (SELECT NULL) OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+        assertThat(dialect.paginationParameters(50, 100)).containsExactly(100L, 50);
+        assertThat(dialect.limit(unordered, false))
+                .isEqualTo(unordered + " ORDER BY (SELECT NULL) OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY");
+    }
+
+    @Test
+    void oracle11PagesWithRowNum() {
+        SqlDialect dialect = new OracleDialect(11);
+
+        assertThat(dialect.paginate(QUERY, true)).isEqualTo("SELECT * FROM (SELECT q_.*, ROWNUM qb_rn_ FROM ("
+                + QUERY + ") q_ WHERE ROWNUM <= ?) WHERE qb_rn_ > ?");
+        assertThat(dialect.paginationParameters(50, 100)).containsExactly(150L, 100L);
+        assertThat(dialect.limit(QUERY, true)).isEqualTo("SELECT * FROM (" + QUERY + ") WHERE ROWNUM <= ?");
+    }
+
+    @Test
+    void oracle12PagesWithOffsetFetch() {
+        SqlDialect dialect = new OracleDialect(19);
+
+        assertThat(dialect.paginate(QUERY, true)).isEqualTo(QUERY + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+        assertThat(dialect.paginationParameters(50, 100)).containsExactly(100L, 50);
+    }
+
+    @Test
+    void keysetPredicateComparesEachKeyPrefix() {
+        SqlDialect dialect = new AnsiSqlDialect();
+
+        assertThat(dialect.keysetPredicate(List.of("a"))).isEqualTo("(\"a\" > ?)");
+        assertThat(dialect.keysetPredicate(List.of("a", "b", "c")))
+                .isEqualTo("(\"a\" > ?) OR (\"a\" = ? AND \"b\" > ?) OR (\"a\" = ? AND \"b\" = ? AND \"c\" > ?)");
+        assertThat(new MySqlDialect().keysetPredicate(List.of("a", "b"))).isEqualTo("(`a` > ?) OR (`a` = ? AND `b` > ?)");
+    }
+
+    @Test
+    void keysetParametersRepeatTheKeyPrefixes() {
+        SqlDialect dialect = new AnsiSqlDialect();
+
+        assertThat(dialect.keysetParameters(List.of(1))).containsExactly(1);
+        assertThat(dialect.keysetParameters(List.of(1, "x", 3))).containsExactly(1, 1, "x", 1, "x", 3);
+    }
+
+    @Test
+    void ansiUpsertIsAMerge() {
+        assertThat(new AnsiSqlDialect().upsertSql("t", List.of("k", "b"), List.of("k")))
+                .isEqualTo("MERGE INTO t t USING (VALUES (?, ?)) AS s (\"k\", \"b\") ON (t.\"k\" = s.\"k\")"
+                        + " WHEN MATCHED THEN UPDATE SET \"b\" = s.\"b\""
+                        + " WHEN NOT MATCHED THEN INSERT (\"k\", \"b\") VALUES (s.\"k\", s.\"b\")");
+    }
+
+    @Test
+    void mergeWithoutNonKeyColumnsOnlyInserts() {
+        assertThat(new AnsiSqlDialect().upsertSql("t", List.of("k1", "k2"), List.of("k1", "k2")))
+                .isEqualTo("MERGE INTO t t USING (VALUES (?, ?)) AS s (\"k1\", \"k2\")"
+                        + " ON (t.\"k1\" = s.\"k1\" AND t.\"k2\" = s.\"k2\")"
+                        + " WHEN NOT MATCHED THEN INSERT (\"k1\", \"k2\") VALUES (s.\"k1\", s.\"k2\")");
+    }
+
+    @Test
+    void sqlServerTerminatesTheMerge() {
+        assertThat(new SqlServerDialect().upsertSql("t", List.of("k", "b"), List.of("k")))
+                .startsWith("MERGE INTO t t USING (VALUES (?, ?)) AS s ([k], [b]) ON (t.[k] = s.[k])")
+                .endsWith(" VALUES (s.[k], s.[b]);");
+    }
+
+    @Test
+    void oracleMergesARowSelectedFromDual() {
+        assertThat(new OracleDialect(19).upsertSql("t", List.of("k", "b"), List.of("k")))
+                .startsWith("MERGE INTO t t USING (SELECT ? AS \"k\", ? AS \"b\" FROM DUAL) s ON (t.\"k\" = s.\"k\")");
+    }
+
+    @Test
+    void postgreSqlUpsertsOnConflict() {
+        SqlDialect dialect = new PostgreSqlDialect();
+
+        assertThat(dialect.upsertSql("t", List.of("k", "b", "c"), List.of("k")))
+                .isEqualTo("INSERT INTO t (\"k\", \"b\", \"c\") VALUES (?, ?, ?) ON CONFLICT (\"k\")"
+                        + " DO UPDATE SET \"b\" = EXCLUDED.\"b\", \"c\" = EXCLUDED.\"c\"");
+        assertThat(dialect.upsertSql("t", List.of("k"), List.of("k")))
+                .isEqualTo("INSERT INTO t (\"k\") VALUES (?) ON CONFLICT (\"k\") DO NOTHING");
+    }
+
+    @Test
+    void mySqlUpsertsOnDuplicateKey() {
+        SqlDialect dialect = new MySqlDialect();
+
+        assertThat(dialect.upsertSql("t", List.of("k", "b"), List.of("k")))
+                .isEqualTo("INSERT INTO t (`k`, `b`) VALUES (?, ?) ON DUPLICATE KEY UPDATE `b` = VALUES(`b`)");
+        assertThat(dialect.upsertSql("t", List.of("k"), List.of("k")))
+                .isEqualTo("INSERT INTO t (`k`) VALUES (?) ON DUPLICATE KEY UPDATE `k` = `k`");
+    }
+
+    @Test
+    void columnTypesFollowTheDestinationEngine() {
+        ColumnDefinition name = new ColumnDefinition("name", Types.VARCHAR, 80, 0, true);
+        ColumnDefinition amount = new ColumnDefinition("amount", Types.DECIMAL, 12, 2, true);
+        ColumnDefinition flag = new ColumnDefinition("flag", Types.BOOLEAN, 1, 0, true);
+        ColumnDefinition createdAt = new ColumnDefinition("created_at", Types.TIMESTAMP_WITH_TIMEZONE, 0, 0, true);
+
+        assertThat(types(new AnsiSqlDialect(), name, amount, flag, createdAt))
+                .containsExactly("VARCHAR(80)", "DECIMAL(12, 2)", "BOOLEAN", "TIMESTAMP WITH TIME ZONE");
+        assertThat(types(new PostgreSqlDialect(), name, amount, flag, createdAt))
+                .containsExactly("VARCHAR(80)", "DECIMAL(12, 2)", "BOOLEAN", "TIMESTAMP WITH TIME ZONE");
+        assertThat(types(new MySqlDialect(), name, amount, flag, createdAt))
+                .containsExactly("VARCHAR(80)", "DECIMAL(12, 2)", "BOOLEAN", "DATETIME(6)");
+        assertThat(types(new SqlServerDialect(), name, amount, flag, createdAt))
+                .containsExactly("NVARCHAR(80)", "DECIMAL(12, 2)", "BIT", "DATETIMEOFFSET");
+        assertThat(types(new OracleDialect(19), name, amount, flag, createdAt))
+                .containsExactly("VARCHAR2(80 CHAR)", "NUMBER(12, 2)", "NUMBER(1)", "TIMESTAMP WITH TIME ZONE");
+    }
+
+    @Test
+    void unboundedSourceColumnsGetTheWidestType() {
+        ColumnDefinition text = new ColumnDefinition("body", Types.VARCHAR, Integer.MAX_VALUE, 0, true);
+        ColumnDefinition numeric = new ColumnDefinition("n", Types.NUMERIC, 0, 0, true);
+        ColumnDefinition bytes = new ColumnDefinition("b", Types.VARBINARY, 0, 0, true);
+        ColumnDefinition uuid = new ColumnDefinition("id", Types.OTHER, 0, 0, true);
+
+        assertThat(types(new AnsiSqlDialect(), text, numeric, bytes, uuid)).containsExactly("CLOB", "DECIMAL(38, 0)", "BLOB", "CLOB");
+        assertThat(types(new PostgreSqlDialect(), text, numeric, bytes, uuid)).containsExactly("TEXT", "NUMERIC", "BYTEA", "TEXT");
+        assertThat(types(new MySqlDialect(), text, numeric, bytes, uuid))
+                .containsExactly("LONGTEXT", "DECIMAL(65, 0)", "LONGBLOB", "LONGTEXT");
+        assertThat(types(new SqlServerDialect(), text, numeric, bytes, uuid))
+                .containsExactly("NVARCHAR(MAX)", "DECIMAL(38, 0)", "VARBINARY(MAX)", "NVARCHAR(MAX)");
+        assertThat(types(new OracleDialect(19), text, numeric, bytes, uuid)).containsExactly("CLOB", "NUMBER", "BLOB", "CLOB");
+    }
+
+    @Test
+    void createTableHasOnlyColumnsAndIsUnloggedOnPostgreSql() {
+        List<ColumnDefinition> columns = List.of(new ColumnDefinition("id", Types.BIGINT, 19, 0, false),
+                new ColumnDefinition("name", Types.VARCHAR, 80, 0, true));
+
+        assertThat(new AnsiSqlDialect().createTableSql("t", columns, true))
+                .isEqualTo("CREATE TABLE t (\"id\" BIGINT NOT NULL, \"name\" VARCHAR(80))");
+        assertThat(new AnsiSqlDialect().loggedTableSql("t")).isNull();
+        assertThat(new PostgreSqlDialect().createTableSql("t", columns, true))
+                .isEqualTo("CREATE UNLOGGED TABLE t (\"id\" BIGINT NOT NULL, \"name\" VARCHAR(80))");
+        assertThat(new PostgreSqlDialect().createTableSql("t", columns, false)).startsWith("CREATE TABLE t (");
+        assertThat(new PostgreSqlDialect().loggedTableSql("t")).isEqualTo("ALTER TABLE t SET LOGGED");
+    }
+
+    @Test
+    void keysAndIndexesQuoteTheirColumns() {
+        SqlDialect dialect = new MySqlDialect();
+
+        assertThat(dialect.addPrimaryKeySql("t", List.of("a", "b"))).isEqualTo("ALTER TABLE t ADD PRIMARY KEY (`a`, `b`)");
+        assertThat(dialect.createIndexSql("ix_t", "t", List.of("a"), true)).isEqualTo("CREATE UNIQUE INDEX `ix_t` ON t (`a`)");
+        assertThat(dialect.addForeignKeySql("t", "fk_t", List.of("p"), "parent", List.of("id")))
+                .isEqualTo("ALTER TABLE t ADD CONSTRAINT `fk_t` FOREIGN KEY (`p`) REFERENCES parent (`id`)");
+    }
+
+    private static List<String> types(SqlDialect dialect, ColumnDefinition... columns) {
+        return Arrays.stream(columns).map(dialect::columnType).toList();
+    }
+}